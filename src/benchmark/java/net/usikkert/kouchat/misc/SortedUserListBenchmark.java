@@ -0,0 +1,81 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.util.BenchmarkUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link SortedUserList#add(User)}, with lists of different sizes.
+ *
+ * <p>The user is removed again after being added, to keep the size of the list the same.</p>
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SortedUserListBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int users;
+
+    private SortedUserList userList;
+    private User newUser;
+
+    @Setup
+    public void setUp() {
+        userList = new SortedUserList();
+
+        for (int i = 0; i < users; i++) {
+            userList.add(BenchmarkUtils.createUser(i));
+        }
+
+        // Sorts in the middle of the list
+        newUser = new User("User" + (users / 2) + "b", 1);
+    }
+
+    @Benchmark
+    public int addAndRemove() {
+        userList.add(newUser);
+        userList.remove(newUser);
+
+        return userList.size();
+    }
+}
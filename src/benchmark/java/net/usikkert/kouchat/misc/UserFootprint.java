@@ -0,0 +1,124 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.usikkert.kouchat.net.CountingMessageResponder;
+import net.usikkert.kouchat.net.MessageParser;
+import net.usikkert.kouchat.settings.Settings;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+/**
+ * Measures how much memory is used by the users in a large chat, with
+ * <a href="https://openjdk.java.net/projects/code-tools/jol/">JOL</a>.
+ *
+ * <p>The users are created by parsing the same messages the network would give when logging on,
+ * so the strings are the ones from the parser.</p>
+ *
+ * <p>Run with: <code>mvn -P benchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=net.usikkert.kouchat.misc.UserFootprint</code></p>
+ *
+ * @author Christian Ihle
+ */
+public final class UserFootprint {
+
+    private static final int USERS = 1000;
+    private static final int FIRST_USER_CODE = 100000;
+
+    private UserFootprint() {
+
+    }
+
+    public static void main(final String[] args) {
+        final List<User> users = createUsers();
+
+        System.out.println(VM.current().details());
+        System.out.println(ClassLayout.parseClass(User.class).toPrintable());
+        System.out.println(GraphLayout.parseInstance(users.get(0)).toFootprint());
+
+        final long totalSize = GraphLayout.parseInstance(users).totalSize();
+        System.out.println("Users: " + users.size());
+        System.out.println("Total bytes: " + totalSize);
+        System.out.println("Bytes per user: " + totalSize / users.size());
+    }
+
+    private static List<User> createUsers() {
+        final Settings settings = new Settings();
+        final UserCollectingResponder responder = new UserCollectingResponder();
+        final MessageParser messageParser = new MessageParser(responder, settings);
+
+        // The parser ignores other users until it has seen our own logon message
+        messageParser.messageArrived(settings.getMe().getCode() + "!LOGON#" + settings.getMe().getNick() + ":",
+                                     "192.168.1.1");
+
+        for (int i = 0; i < USERS; i++) {
+            final int code = FIRST_USER_CODE + i;
+            final String ipAddress = "10.0." + (i / 250) + "." + (i % 250 + 2);
+
+            messageParser.messageArrived(code + "!LOGON#User" + i + ":", ipAddress);
+            messageParser.messageArrived(code + "!CLIENT#User" + i + ":(KouChat v1.5.0 Swing)[1234]" +
+                                                 "{" + (i % 3 == 0 ? "Windows 10" : "Linux") + "}<40001>/40002\\",
+                                         ipAddress);
+            messageParser.messageArrived(code + "!EXPOSING#User" + i + ":", ipAddress);
+        }
+
+        return responder.getUsers();
+    }
+
+    /**
+     * Keeps the users that log on, and updates them with the client information,
+     * like {@link net.usikkert.kouchat.net.DefaultMessageResponder}.
+     */
+    private static class UserCollectingResponder extends CountingMessageResponder {
+
+        private final List<User> users = new ArrayList<>();
+
+        public List<User> getUsers() {
+            return users;
+        }
+
+        @Override
+        public void userLogOn(final User newUser) {
+            users.add(newUser);
+        }
+
+        @Override
+        public void clientInfo(final int userCode, final String client, final long timeSinceLogon,
+                               final String operatingSystem, final int privateChatPort, final int tcpChatPort,
+                               final int fileTransferPort) {
+            final User user = users.get(userCode - FIRST_USER_CODE);
+
+            user.setClient(client);
+            user.setLogonTime(System.currentTimeMillis() - timeSinceLogon);
+            user.setOperatingSystem(operatingSystem);
+            user.setPrivateChatPort(privateChatPort);
+            user.setTcpChatPort(tcpChatPort);
+            user.setFileTransferPort(fileTransferPort);
+        }
+    }
+}
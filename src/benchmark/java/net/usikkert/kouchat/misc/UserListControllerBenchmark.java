@@ -0,0 +1,87 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.BenchmarkUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of looking up users in {@link UserListController}, with user lists of different sizes.
+ *
+ * <p>The last user in the list is used, since that is the slowest to find.</p>
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserListControllerBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int users;
+
+    private UserListController userListController;
+    private int lastCode;
+    private String lastNick;
+
+    @Setup
+    public void setUp() {
+        userListController = new UserListController(new Settings());
+        final UserList userList = userListController.getUserList();
+
+        for (int i = 0; i < users; i++) {
+            userList.add(BenchmarkUtils.createUser(i));
+        }
+
+        final User lastUser = userList.get(users - 1);
+        lastCode = lastUser.getCode();
+        lastNick = lastUser.getNick();
+    }
+
+    @Benchmark
+    public User getUserByCode() {
+        return userListController.getUser(lastCode);
+    }
+
+    @Benchmark
+    public User getUserByNickName() {
+        return userListController.getUser(lastNick);
+    }
+}
@@ -0,0 +1,150 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import net.usikkert.kouchat.misc.User;
+
+/**
+ * A message responder for benchmarks that only counts the calls,
+ * so the parsing is measured without the work of responding.
+ *
+ * @author Christian Ihle
+ */
+public class CountingMessageResponder implements MessageResponder, PrivateMessageResponder {
+
+    private int calls;
+
+    /**
+     * Gets the number of calls to the responder.
+     *
+     * @return The number of calls.
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    @Override
+    public void messageArrived(final int userCode, final String msg, final int color) {
+        calls++;
+    }
+
+    @Override
+    public void topicChanged(final int userCode, final String newTopic, final String nick, final long time) {
+        calls++;
+    }
+
+    @Override
+    public void topicRequested(final int userCode) {
+        calls++;
+    }
+
+    @Override
+    public void awayChanged(final int userCode, final boolean away, final String awayMsg) {
+        calls++;
+    }
+
+    @Override
+    public void nickChanged(final int userCode, final String newNick) {
+        calls++;
+    }
+
+    @Override
+    public void nickCrash() {
+        calls++;
+    }
+
+    @Override
+    public void meLogOn(final String ipAddress) {
+        calls++;
+    }
+
+    @Override
+    public void userLogOn(final User newUser) {
+        calls++;
+    }
+
+    @Override
+    public void userLogOff(final int userCode) {
+        calls++;
+    }
+
+    @Override
+    public void userExposing(final int userCode, final String nick, final String awayMsg,
+                             final String ipAddress) {
+        calls++;
+    }
+
+    @Override
+    public void exposeRequested() {
+        calls++;
+    }
+
+    @Override
+    public void writingChanged(final int userCode, final boolean writing) {
+        calls++;
+    }
+
+    @Override
+    public void meIdle(final String ipAddress) {
+        calls++;
+    }
+
+    @Override
+    public void userIdle(final int userCode, final String ipAddress) {
+        calls++;
+    }
+
+    @Override
+    public void userAlive(final int userCode) {
+        calls++;
+    }
+
+    @Override
+    public void fileSend(final int userCode, final long byteSize, final String fileName, final String user,
+                         final int fileHash) {
+        calls++;
+    }
+
+    @Override
+    public void folderSend(final int userCode, final long byteSize, final String folderName, final String user,
+                           final int fileHash, final int fileCount) {
+        calls++;
+    }
+
+    @Override
+    public void fileSendAborted(final int userCode, final String fileName, final int fileHash) {
+        calls++;
+    }
+
+    @Override
+    public void fileSendAccepted(final int userCode, final String fileName, final int fileHash, final int port) {
+        calls++;
+    }
+
+    @Override
+    public void clientInfo(final int userCode, final String client, final long timeSinceLogon,
+                           final String operatingSystem, final int privateChatPort, final int tcpChatPort,
+                           final int fileTransferPort) {
+        calls++;
+    }
+}
@@ -0,0 +1,64 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+
+/**
+ * A network service for benchmarks that throws away the messages instead of sending them,
+ * so building the messages is measured without the network.
+ *
+ * @author Christian Ihle
+ */
+public class DiscardingNetworkService extends NetworkService {
+
+    private long characters;
+
+    public DiscardingNetworkService(final Controller controller, final Settings settings) {
+        super(controller, settings, new ErrorHandler());
+    }
+
+    /**
+     * Gets the number of characters in the messages thrown away so far.
+     *
+     * @return The number of characters.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    @Override
+    public boolean sendMessageToAllUsers(final String message) {
+        characters += message.length();
+        return true;
+    }
+
+    @Override
+    public boolean sendMessageToUser(final String message, final User user) {
+        characters += message.length();
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.tcp.TCPNetworkService;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.BenchmarkUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link MessageDeduplicator#messageArrived(String, String)},
+ * with a user list of different sizes.
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageDeduplicatorBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int users;
+
+    private Controller controller;
+    private MessageDeduplicator messageDeduplicator;
+    private int forwarded;
+    private String chatMessage;
+    private String privateMessage;
+
+    @Setup
+    public void setUp() {
+        final Settings settings = new Settings();
+        controller = BenchmarkUtils.createController(settings);
+
+        for (int i = 0; i < users; i++) {
+            controller.getUserList().add(BenchmarkUtils.createUser(i));
+        }
+
+        final ParsedMessageListener countingListener = new ParsedMessageListener() {
+            @Override
+            public void messageArrived(final ParsedMessage message, final String ipAddress) {
+                forwarded++;
+            }
+        };
+
+        final ErrorHandler errorHandler = new ErrorHandler();
+        final MessageRepairService messageRepairService = new MessageRepairService(
+                new MessageSender(errorHandler), new TCPNetworkService(controller, settings, errorHandler),
+                controller, settings);
+
+        messageDeduplicator = new MessageDeduplicator(controller, messageRepairService, new TransportPolicy(settings));
+        messageDeduplicator.registerMainChatReceiverListener(countingListener);
+        messageDeduplicator.registerPrivateChatReceiverListener(countingListener);
+
+        // The last user in the sorted list is the slowest to look up
+        final User user = controller.getUserList().get(users - 1);
+        final int meCode = settings.getMe().getCode();
+
+        chatMessage = user.getCode() + "!MSG#" + user.getNick() + ":[-15987646]Hello there";
+        privateMessage = user.getCode() + "!PRIVMSG#" + user.getNick() + ":(" + meCode + ")[-15987646]Hello there";
+    }
+
+    @TearDown
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Benchmark
+    public int chatMessage() {
+        messageDeduplicator.messageArrived(chatMessage, "192.168.1.2");
+        return forwarded;
+    }
+
+    @Benchmark
+    public int privateMessage() {
+        messageDeduplicator.messageArrived(privateMessage, "192.168.1.2");
+        return forwarded;
+    }
+}
@@ -0,0 +1,98 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.settings.Settings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link MessageParser#messageArrived(String, String)},
+ * with the most common messages on the network.
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageParserBenchmark {
+
+    @Param({"MSG", "IDLE", "WRITING", "CLIENT", "EXPOSING"})
+    private String type;
+
+    private CountingMessageResponder responder;
+    private MessageParser messageParser;
+    private String message;
+
+    @Setup
+    public void setUp() {
+        final Settings settings = new Settings();
+        final int meCode = settings.getMe().getCode();
+
+        responder = new CountingMessageResponder();
+        messageParser = new MessageParser(responder, settings);
+
+        // The parser ignores other users until it has seen our own logon message
+        messageParser.messageArrived(meCode + "!LOGON#" + settings.getMe().getNick() + ":", "192.168.1.1");
+
+        message = createMessage(type);
+    }
+
+    @Benchmark
+    public int messageArrived() {
+        messageParser.messageArrived(message, "192.168.1.2");
+        return responder.getCalls();
+    }
+
+    private String createMessage(final String messageType) {
+        switch (messageType) {
+            case "MSG":
+                return "100001!MSG#Peer:[-15987646]Hello there, how is everyone doing today?";
+            case "IDLE":
+                return "100001!IDLE#Peer:";
+            case "WRITING":
+                return "100001!WRITING#Peer:";
+            case "CLIENT":
+                return "100001!CLIENT#Peer:(KouChat v1.5.0 Swing)[123456]{Linux}<40001>/40002\\";
+            case "EXPOSING":
+                return "100001!EXPOSING#Peer:";
+            default:
+                throw new IllegalArgumentException("Unknown message type: " + messageType);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.misc.CommandException;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.BenchmarkUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of building messages in {@link NetworkMessages}. The messages are thrown away instead of sent.
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NetworkMessagesBenchmark {
+
+    private Controller controller;
+    private DiscardingNetworkService networkService;
+    private NetworkMessages networkMessages;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        final Settings settings = new Settings();
+        controller = BenchmarkUtils.createController(settings);
+        networkService = new DiscardingNetworkService(controller, settings);
+        networkMessages = new NetworkMessages(networkService, settings);
+
+        user = BenchmarkUtils.createUser(1);
+        user.setPrivateChatPort(40001);
+    }
+
+    @TearDown
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Benchmark
+    public long sendChatMessage() throws CommandException {
+        networkMessages.sendChatMessage("Hello there, how is everyone doing today?");
+        return networkService.getCharacters();
+    }
+
+    @Benchmark
+    public long sendPrivateMessage() throws CommandException {
+        networkMessages.sendPrivateMessage("Are you coming to lunch?", user);
+        return networkService.getCharacters();
+    }
+
+    @Benchmark
+    public long sendIdleMessage() {
+        networkMessages.sendIdleMessage();
+        return networkService.getCharacters();
+    }
+
+    @Benchmark
+    public long sendClient() {
+        networkMessages.sendClient();
+        return networkService.getCharacters();
+    }
+}
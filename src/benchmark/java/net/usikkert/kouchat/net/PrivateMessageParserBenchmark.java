@@ -0,0 +1,81 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.settings.Settings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link PrivateMessageParser#messageArrived(String, String)}.
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrivateMessageParserBenchmark {
+
+    private CountingMessageResponder responder;
+    private PrivateMessageParser privateMessageParser;
+    private String messageToMe;
+    private String messageToOther;
+
+    @Setup
+    public void setUp() {
+        final Settings settings = new Settings();
+        final int meCode = settings.getMe().getCode();
+
+        responder = new CountingMessageResponder();
+        privateMessageParser = new PrivateMessageParser(responder, settings);
+
+        messageToMe = "100001!PRIVMSG#Peer:(" + meCode + ")[-15987646]Are you coming to lunch?";
+        messageToOther = "100001!PRIVMSG#Peer:(100002)[-15987646]Are you coming to lunch?";
+    }
+
+    @Benchmark
+    public int messageToMe() {
+        privateMessageParser.messageArrived(messageToMe, "192.168.1.2");
+        return responder.getCalls();
+    }
+
+    @Benchmark
+    public int messageToOther() {
+        privateMessageParser.messageArrived(messageToOther, "192.168.1.2");
+        return responder.getCalls();
+    }
+}
@@ -0,0 +1,150 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.ui.swing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.ui.swing.messages.SwingMessages;
+import net.usikkert.kouchat.util.ResourceLoader;
+import net.usikkert.kouchat.util.ResourceValidator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of highlighting urls and smileys with {@link HighlightDocumentFilter},
+ * in a normal chat message and in a large pasted message.
+ *
+ * <p>{@link #findHighlights()} only searches the text. {@link #insertMessage()} inserts the message
+ * in a document on the event dispatch thread, and includes running the highlighting task
+ * the filter puts on the event queue.</p>
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HighlightDocumentFilterBenchmark {
+
+    private static final String[] WORDS = {
+            "hello", "there", "www.kouchat.net", ":)", "at", "http://google.com/search?q=x", ":(", "foo:)",
+            "exception", "in", "thread", "ftp.download.com", "8)", "java.lang.NullPointerException", ";)", "www.kou"
+    };
+
+    @Param({"10", "2000"})
+    private int words;
+
+    private HighlightDocumentFilter filter;
+    private DefaultStyledDocument document;
+    private SimpleAttributeSet attributeSet;
+    private String message;
+    private Runnable insertMessageTask;
+    private Runnable emptyTask;
+
+    @Setup
+    public void setUp() {
+        final ImageLoader imageLoader = new ImageLoader(new ErrorHandler(), new SwingMessages(),
+                                                        new ResourceValidator(), new ResourceLoader());
+        final Settings settings = new Settings();
+        settings.setSmileys(true);
+
+        filter = new HighlightDocumentFilter(true, imageLoader, settings);
+        document = new DefaultStyledDocument();
+        document.setDocumentFilter(filter);
+        attributeSet = new SimpleAttributeSet();
+        message = createMessage(words);
+
+        insertMessageTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    document.remove(0, document.getLength());
+                    document.insertString(0, message, attributeSet);
+                }
+
+                catch (final BadLocationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        emptyTask = new Runnable() {
+            @Override
+            public void run() {
+
+            }
+        };
+    }
+
+    @Benchmark
+    public List<HighlightDocumentFilter.Highlight> findHighlights() {
+        return filter.findHighlights(message, true);
+    }
+
+    @Benchmark
+    public int insertMessage() throws InvocationTargetException, InterruptedException {
+        SwingUtilities.invokeAndWait(insertMessageTask);
+
+        // Waits for the highlighting task queued by the filter
+        SwingUtilities.invokeAndWait(emptyTask);
+
+        return document.getLength();
+    }
+
+    private static String createMessage(final int wordsInMessage) {
+        final Random random = new Random(42);
+        final StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < wordsInMessage; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return builder.append('\n').toString();
+    }
+}
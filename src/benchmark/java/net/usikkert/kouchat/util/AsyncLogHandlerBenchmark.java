@@ -0,0 +1,136 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the time a thread spends logging a debug message, when writing to the console
+ * directly like {@link java.util.logging.ConsoleHandler}, and through an {@link AsyncLogHandler}.
+ *
+ * <p>The console is simulated with a stream that throws away what is written,
+ * so this is the best case for writing directly.</p>
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncLogHandlerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean async;
+
+    private java.util.logging.Logger julLogger;
+    private Logger logger;
+    private Handler handler;
+
+    @Setup
+    public void setUp() {
+        final StreamHandler consoleHandler = new StreamHandler(new DiscardingOutputStream(), new SimpleFormatter()) {
+            @Override
+            public synchronized void publish(final LogRecord record) {
+                super.publish(record);
+
+                if (!async) {
+                    flush(); // Like ConsoleHandler
+                }
+            }
+        };
+
+        consoleHandler.setLevel(Level.ALL);
+
+        if (async) {
+            final AsyncLogHandler asyncLogHandler = new AsyncLogHandler(
+                    consoleHandler, AsyncLogHandler.DEFAULT_CAPACITY, new Metrics());
+            asyncLogHandler.start();
+            handler = asyncLogHandler;
+        }
+
+        else {
+            handler = consoleHandler;
+        }
+
+        julLogger = java.util.logging.Logger.getLogger(AsyncLogHandlerBenchmark.class.getName());
+        logger = Logger.getLogger(AsyncLogHandlerBenchmark.class);
+        julLogger.setUseParentHandlers(false);
+        julLogger.setLevel(Level.ALL);
+        julLogger.addHandler(handler);
+    }
+
+    @TearDown
+    public void tearDown() {
+        julLogger.removeHandler(handler);
+        julLogger.setUseParentHandlers(true);
+        julLogger.setLevel(null);
+        handler.close();
+    }
+
+    @Benchmark
+    public void julLogger() {
+        julLogger.fine("Message arrived from 192.168.1.2: 12345678!MSG#Christian:[-15987646]Hello there");
+    }
+
+    @Benchmark
+    public void logger() {
+        logger.fine("Message arrived from %s: %s", "192.168.1.2", "12345678!MSG#Christian:[-15987646]Hello there");
+    }
+
+    /**
+     * Output stream that throws away everything written to it.
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(final int b) {
+
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+
+        }
+    }
+}
@@ -0,0 +1,74 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import net.usikkert.kouchat.message.CoreMessages;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.PropertyFileSettingsSaver;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.testclient.TestClientUserInterface;
+
+/**
+ * Utilities for benchmarks.
+ *
+ * @author Christian Ihle
+ */
+public final class BenchmarkUtils {
+
+    /** The first user code used by {@link #createUser(int)}. */
+    public static final int FIRST_USER_CODE = 100000;
+
+    private BenchmarkUtils() {
+
+    }
+
+    /**
+     * Creates a controller that is not started or logged on, so it can be used without a network.
+     *
+     * @param settings The settings to use.
+     * @return The new controller.
+     */
+    public static Controller createController(final Settings settings) {
+        final ErrorHandler errorHandler = new ErrorHandler();
+        final CoreMessages coreMessages = new CoreMessages();
+
+        return new Controller(new TestClientUserInterface(settings, errorHandler), settings,
+                              new PropertyFileSettingsSaver(settings, coreMessages, errorHandler),
+                              coreMessages, errorHandler);
+    }
+
+    /**
+     * Creates a user with a unique code and nick name based on the index.
+     *
+     * @param index The index of the user.
+     * @return The new user.
+     */
+    public static User createUser(final int index) {
+        final User user = new User("User" + index, FIRST_USER_CODE + index);
+        user.setIpAddress("192.168.1." + (index % 250 + 1));
+
+        return user;
+    }
+}
@@ -0,0 +1,129 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of debug logging of a received message, like the network threads do for every message.
+ *
+ * <p>Compares the old way of building the message with string concatenation for {@link java.util.logging.Logger}
+ * with message parameters to {@link Logger}, with debug logging both on and off.</p>
+ *
+ * @author Christian Ihle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean fineEnabled;
+
+    private java.util.logging.Logger julLogger;
+    private Logger logger;
+    private Level originalLevel;
+
+    // Not constants, so the concatenation can't be done by the compiler
+    private String ip = "192.168.1.2";
+    private String message = "12345678!MSG#Christian:[-15987646]Hello there, how are you doing today?";
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        julLogger = java.util.logging.Logger.getLogger(LoggerBenchmark.class.getName());
+        logger = Logger.getLogger(LoggerBenchmark.class);
+
+        originalLevel = julLogger.getLevel();
+        julLogger.setLevel(fineEnabled ? Level.FINE : Level.INFO);
+        julLogger.setUseParentHandlers(false);
+        julLogger.addHandler(new BlackholeHandler(blackhole));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (final Handler handler : julLogger.getHandlers()) {
+            julLogger.removeHandler(handler);
+        }
+
+        julLogger.setUseParentHandlers(true);
+        julLogger.setLevel(originalLevel);
+    }
+
+    @Benchmark
+    public void julWithConcatenation() {
+        julLogger.log(Level.FINE, "Message arrived from " + ip + ": " + message);
+    }
+
+    @Benchmark
+    public void loggerWithParameters() {
+        logger.fine("Message arrived from %s: %s", ip, message);
+    }
+
+    /**
+     * Handler that gives the message and the caller to the blackhole, like a formatter would use them.
+     */
+    private static final class BlackholeHandler extends Handler {
+
+        private final Blackhole blackhole;
+
+        BlackholeHandler(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void publish(final LogRecord record) {
+            blackhole.consume(record.getMessage());
+            blackhole.consume(record.getSourceClassName());
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
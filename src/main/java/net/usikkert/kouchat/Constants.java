@@ -109,6 +109,12 @@ public interface Constants {
      */
     String NETWORK_IP = "224.168.5.200";
 
+    /**
+     * The site-local IPv6 multicast address used for sending and receiving
+     * packets for the main chat, on networks with IPv6.
+     */
+    String NETWORK_IPV6 = "ff05::224:168:5:200";
+
     /**
      * The temporary multicast address used for sending and
      * receiving packets.
@@ -126,6 +132,13 @@ public interface Constants {
      */
     int MESSAGE_MAX_BYTES = 450;
 
+    /**
+     * Max number of bytes allowed in a message to the main chat.
+     * Larger messages than {@link #MESSAGE_MAX_BYTES} are split
+     * in several udp packets.
+     */
+    int CHAT_MESSAGE_MAX_BYTES = 8000;
+
     /**
      * The folder where the application can save files.
      */
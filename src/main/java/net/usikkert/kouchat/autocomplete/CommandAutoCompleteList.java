@@ -44,6 +44,7 @@ public class CommandAutoCompleteList implements AutoCompleteList {
         "/receive",
         "/reject",
         "/send",
+        "/stats",
         "/topic",
         "/transfers",
         "/users",
@@ -61,6 +61,14 @@ public class ControllerInformation implements ControllerInformationMBean {
         controller.logOff(true);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String startupTimes() {
+        return controller.getStartupTimer().getReport();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -38,4 +38,11 @@ public interface ControllerInformationMBean extends JMXBean {
      * Logs the client off the network.
      */
     void logOff();
+
+    /**
+     * Shows how long it took to reach each of the startup phases.
+     *
+     * @return The startup phases, with time in milliseconds since the application was started.
+     */
+    String startupTimes();
 }
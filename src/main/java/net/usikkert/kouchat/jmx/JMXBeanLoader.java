@@ -28,7 +28,9 @@ import java.util.List;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.net.ConnectionWorker;
+import net.usikkert.kouchat.net.TransportPolicy;
 import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.Validate;
 
 /**
@@ -40,6 +42,8 @@ import net.usikkert.kouchat.util.Validate;
  *   <li>{@link NetworkInformation}</li>
  *   <li>{@link ControllerInformation}</li>
  *   <li>{@link GeneralInformation}</li>
+ *   <li>{@link TransportInformation}</li>
+ *   <li>{@link Statistics}</li>
  * </ul>
  *
  * @author Christian Ihle
@@ -53,20 +57,25 @@ public class JMXBeanLoader {
      *
      * @param controller The controller.
      * @param connectionWorker The connection worker.
+     * @param transportPolicy The transport policy.
      * @param settings The settings.
      * @param errorHandler The error handler to use.
      */
     public JMXBeanLoader(final Controller controller, final ConnectionWorker connectionWorker,
-                         final Settings settings, final ErrorHandler errorHandler) {
+                         final TransportPolicy transportPolicy, final Settings settings,
+                         final ErrorHandler errorHandler) {
         Validate.notNull(controller, "Controller can not be null");
         Validate.notNull(connectionWorker, "ConnectionWorker can not be null");
+        Validate.notNull(transportPolicy, "Transport policy can not be null");
         Validate.notNull(settings, "Settings can not be null");
         Validate.notNull(errorHandler, "Error handler can not be null");
 
         jmxBeans = Arrays.asList(
                 new NetworkInformation(connectionWorker, settings, errorHandler),
                 new ControllerInformation(controller),
-                new GeneralInformation(settings));
+                new GeneralInformation(settings),
+                new TransportInformation(transportPolicy, settings),
+                new Statistics(Metrics.getSharedMetrics()));
     }
 
     public List<JMXBean> getJMXBeans() {
@@ -29,6 +29,9 @@ import java.util.List;
 
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.net.ConnectionWorker;
+import net.usikkert.kouchat.net.NetworkChanges;
+import net.usikkert.kouchat.net.NetworkInterfaceInfo;
+import net.usikkert.kouchat.net.NetworkInventory;
 import net.usikkert.kouchat.net.NetworkUtils;
 import net.usikkert.kouchat.net.OperatingSystemNetworkInfo;
 import net.usikkert.kouchat.settings.Settings;
@@ -103,18 +106,12 @@ public class NetworkInformation implements NetworkInformationMBean {
     public String[] showUsableNetworks() {
         final List<String> list = new ArrayList<>();
 
-        final Enumeration<NetworkInterface> networkInterfaces = networkUtils.getNetworkInterfaces();
-
-        if (networkInterfaces == null) {
+        if (networkUtils.getNetworkInterfaces() == null) {
             return new String[]{"No network interfaces detected."};
         }
 
-        while (networkInterfaces.hasMoreElements()) {
-            final NetworkInterface netif = networkInterfaces.nextElement();
-
-            if (networkUtils.isUsable(netif)) {
-                list.add(networkUtils.getNetworkInterfaceInfo(netif));
-            }
+        for (final NetworkInterfaceInfo networkInterfaceInfo : networkUtils.getUsableNetworkInterfaces()) {
+            list.add(networkUtils.getNetworkInterfaceInfo(networkInterfaceInfo.getNetworkInterface()));
         }
 
         if (list.size() == 0) {
@@ -145,6 +142,20 @@ public class NetworkInformation implements NetworkInformationMBean {
         return list.toArray(new String[list.size()]);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String showLastNetworkChanges() {
+        final NetworkChanges lastChanges = NetworkInventory.getSharedInventory().getLastChanges();
+
+        if (lastChanges.isEmpty()) {
+            return "No network changes detected.";
+        }
+
+        return lastChanges.toString();
+    }
+
     /**
      * {@inheritDoc}
      */
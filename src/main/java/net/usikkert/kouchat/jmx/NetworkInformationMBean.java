@@ -63,6 +63,14 @@ public interface NetworkInformationMBean extends JMXBean {
      */
     String[] showAllNetworks() throws SocketException;
 
+    /**
+     * Shows which network interfaces were added, removed, or got different addresses
+     * the last time the network interfaces changed.
+     *
+     * @return The last changes to the network interfaces.
+     */
+    String showLastNetworkChanges();
+
     /**
      * Disconnects from the network, without logging off.
      */
@@ -20,71 +20,63 @@
  *   If not, see <http://www.gnu.org/licenses/>.                           *
  ***************************************************************************/
 
-package net.usikkert.kouchat.ui.swing;
-
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.swing.text.AttributeSet;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.DocumentFilter;
+package net.usikkert.kouchat.jmx;
 
+import net.usikkert.kouchat.net.MessageTrace;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.Validate;
 
 /**
- * This is a document filter list that can be used when more than one
- * document filter is needed.
- *
- * <p>This filter does not make any changes to the text. The text is added
- * to the document, and then a list of sub-filters are notified so they can
- * do their magic.</p>
+ * This is a JMX MBean for statistics about what the application is doing.
+ * Includes the time spent in each stage by traced chat messages, from {@link MessageTrace}.
  *
  * @author Christian Ihle
  */
-public class DocumentFilterList extends DocumentFilter {
+public class Statistics implements StatisticsMBean {
 
-    /** A list of sub-filters that are notified when text is added. */
-    private final List<DocumentFilter> filters;
+    /** The metrics to show. */
+    private final Metrics metrics;
 
     /**
      * Constructor.
+     *
+     * @param metrics The metrics to show.
      */
-    public DocumentFilterList() {
-        filters = new ArrayList<>();
+    public Statistics(final Metrics metrics) {
+        Validate.notNull(metrics, "Metrics can not be null");
+
+        this.metrics = metrics;
     }
 
     /**
-     * Inserts the text at the end of the Document, and notifies the sub-filters.
-     *
      * {@inheritDoc}
      */
     @Override
-    public synchronized void insertString(final FilterBypass fb, final int offset, final String text,
-            final AttributeSet attr) throws BadLocationException {
-        super.insertString(fb, offset, text, attr);
+    public String[] showStatistics() {
+        return metrics.toPrometheusText().split("\n");
+    }
 
-        for (final DocumentFilter filter : filters) {
-            filter.insertString(fb, offset, text, attr);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMessageTraceSampleRate() {
+        return MessageTrace.getSampleRate();
     }
 
     /**
-     * Adds the document filter for notification when text is added.
-     *
-     * @param filter The document filter to add.
+     * {@inheritDoc}
      */
-    public synchronized void addDocumentFilter(final DocumentFilter filter) {
-        Validate.notNull(filter, "Document filter can not be null");
-        filters.add(filter);
+    @Override
+    public void setMessageTraceSampleRate(final int sampleRate) {
+        MessageTrace.setSampleRate(sampleRate);
     }
 
     /**
-     * Removes the document filter from the notification list.
-     *
-     * @param filter The document filter to remove.
+     * {@inheritDoc}
      */
-    public synchronized void removeDocumentFilter(final DocumentFilter filter) {
-        Validate.notNull(filter, "Document filter can not be null");
-        filters.remove(filter);
+    @Override
+    public String getBeanName() {
+        return "Statistics";
     }
 }
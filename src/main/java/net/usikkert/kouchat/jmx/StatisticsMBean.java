@@ -0,0 +1,53 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.jmx;
+
+/**
+ * This is a JMX MBean interface for statistics about what the application is doing.
+ *
+ * @author Christian Ihle
+ */
+public interface StatisticsMBean extends JMXBean {
+
+    /**
+     * Shows the counters, gauges and latencies the application measures, in the Prometheus text format.
+     *
+     * @return One line for each value.
+     */
+    String[] showStatistics();
+
+    /**
+     * Gets how often sent chat messages are traced, to measure the time spent in each stage on the way
+     * to the other users.
+     *
+     * @return One of this many chat messages are traced, or 0 if tracing is off.
+     */
+    int getMessageTraceSampleRate();
+
+    /**
+     * Sets how often sent chat messages are traced.
+     *
+     * @param sampleRate Trace one of this many chat messages. Use 0 to stop tracing.
+     */
+    void setMessageTraceSampleRate(int sampleRate);
+}
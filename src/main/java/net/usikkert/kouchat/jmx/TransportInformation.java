@@ -0,0 +1,114 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.jmx;
+
+import java.util.List;
+import java.util.Locale;
+
+import net.usikkert.kouchat.net.TransportPolicy;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.settings.TransportMode;
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * This is a JMX MBean for choosing how messages to all users are sent.
+ *
+ * @author Christian Ihle
+ */
+public class TransportInformation implements TransportInformationMBean {
+
+    /** Chooses how messages are sent, and measures multicast. */
+    private final TransportPolicy transportPolicy;
+
+    private final Settings settings;
+
+    /**
+     * Constructor.
+     *
+     * @param transportPolicy To get information about how messages are sent.
+     * @param settings The settings to use.
+     */
+    public TransportInformation(final TransportPolicy transportPolicy, final Settings settings) {
+        Validate.notNull(transportPolicy, "Transport policy can not be null");
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.transportPolicy = transportPolicy;
+        this.settings = settings;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getTransportMode() {
+        return settings.getTransportMode().name();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setTransportMode(final String transportMode) {
+        Validate.notEmpty(transportMode, "Transport mode can not be empty");
+
+        settings.setTransportMode(TransportMode.valueOf(transportMode.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] showUserTransports() {
+        final List<String> list = transportPolicy.describeUsers();
+
+        if (list.isEmpty()) {
+            return new String[]{"No users measured."};
+        }
+
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSkippedTcpMessageCount() {
+        return transportPolicy.getSkippedTcpMessageCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSkippedMulticastMessageCount() {
+        return transportPolicy.getSkippedMulticastMessageCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBeanName() {
+        return "Transport";
+    }
+}
@@ -0,0 +1,67 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.jmx;
+
+/**
+ * This is a JMX MBean interface for choosing how messages to all users are sent.
+ *
+ * @author Christian Ihle
+ */
+public interface TransportInformationMBean extends JMXBean {
+
+    /**
+     * Gets how messages to all users are sent.
+     *
+     * @return One of <code>AUTO</code>, <code>BOTH</code>, <code>MULTICAST_ONLY</code> or <code>TCP_ONLY</code>.
+     */
+    String getTransportMode();
+
+    /**
+     * Sets how messages to all users are sent. Stored the next time the settings are saved.
+     *
+     * @param transportMode One of <code>AUTO</code>, <code>BOTH</code>, <code>MULTICAST_ONLY</code>
+     *                      or <code>TCP_ONLY</code>.
+     */
+    void setTransportMode(String transportMode);
+
+    /**
+     * Shows how well multicast works for each user, and how messages are sent to them.
+     *
+     * @return One line for each user.
+     */
+    String[] showUserTransports();
+
+    /**
+     * Gets the number of messages to users that were not sent over tcp, because multicast was enough.
+     *
+     * @return The number of messages.
+     */
+    long getSkippedTcpMessageCount();
+
+    /**
+     * Gets the number of messages to all users that were only sent over tcp.
+     *
+     * @return The number of messages.
+     */
+    long getSkippedMulticastMessageCount();
+}
@@ -36,10 +36,13 @@ public class ChatState {
     private boolean wrote;
 
     /** Whether the client is logged on to the chat. */
-    private boolean loggedOn;
+    private volatile boolean loggedOn;
 
     /** Whether the client has completed the logon procedure. */
-    private boolean logonCompleted;
+    private volatile boolean logonCompleted;
+
+    /** When the last message that is part of the logon procedure arrived. */
+    private volatile long lastLogonActivity;
 
     /**
      * Constructor.
@@ -94,6 +97,10 @@ public class ChatState {
      */
     public void setLoggedOn(final boolean loggedOn) {
         this.loggedOn = loggedOn;
+
+        if (loggedOn) {
+            registerLogonActivity();
+        }
     }
 
     /**
@@ -113,4 +120,21 @@ public class ChatState {
     public void setLogonCompleted(final boolean logonCompleted) {
         this.logonCompleted = logonCompleted;
     }
+
+    /**
+     * Registers that a message that is part of the logon procedure arrived just now,
+     * like the initial topic or one of the users already in the chat.
+     */
+    public void registerLogonActivity() {
+        lastLogonActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets when the last message that is part of the logon procedure arrived.
+     *
+     * @return The time of the last logon activity in milliseconds, or <code>0</code> if none has arrived.
+     */
+    public long getLastLogonActivity() {
+        return lastLogonActivity;
+    }
 }
@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.message.CoreMessages;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileSender;
 import net.usikkert.kouchat.net.FileToSend;
@@ -37,6 +38,7 @@ import net.usikkert.kouchat.net.TransferList;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.ui.UserInterface;
 import net.usikkert.kouchat.util.DateTools;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.Tools;
 import net.usikkert.kouchat.util.Validate;
 
@@ -305,6 +307,16 @@ public class CommandParser {
                         }
                     }
 
+                    else if (sendFile.isDirectory()) {
+                        try {
+                            sendFolder(user, new FileBatch(sendFile));
+                        }
+
+                        catch (final CommandException e) {
+                            msgController.showSystemMessage(e.getMessage());
+                        }
+                    }
+
                     else {
                         msgController.showSystemMessage(
                                 coreMessages.getMessage("core.command.send.systemMessage.noSuchFile", file));
@@ -670,6 +682,18 @@ public class CommandParser {
         }
     }
 
+    /**
+     * Command: <em>/stats</em>.
+     *
+     * <p>Shows the statistics about what the application is doing, in the Prometheus text format.</p>
+     */
+    private void cmdStats() {
+        final String statistics = Metrics.getSharedMetrics().toPrometheusText().trim();
+
+        msgController.showSystemMessage(coreMessages.getMessage("core.command.stats.systemMessage.statistics") +
+                                                "\n" + statistics);
+    }
+
     /**
      * Command: <em>/quit</em>.
      *
@@ -777,6 +801,25 @@ public class CommandParser {
                 file.getName(), fileSend.getId(), size, user.getNick()));
     }
 
+    /**
+     * Sends a folder with several files to a user. The files are sent together, as a single file transfer.
+     *
+     * @param user The user to send to.
+     * @param fileBatch The files to send to the user.
+     * @throws CommandException If there was a problem sending the folder.
+     */
+    public void sendFolder(final User user, final FileBatch fileBatch) throws CommandException {
+        controller.sendFolder(user, fileBatch);
+        final FileToSend file = fileBatch.toFileToSend();
+        final FileSender fileSend = tList.addFileSender(user, file);
+        ui.showTransfer(fileSend);
+
+        final String size = Tools.byteToString(file.length());
+        msgController.showSystemMessage(coreMessages.getMessage(
+                "core.command.send.systemMessage.sendingFolder",
+                file.getName(), fileBatch.getFileCount(), fileSend.getId(), size, user.getNick()));
+    }
+
     /**
      * Cancels a file transfer, even if the file transfer has not been
      * answered by the other user yet.
@@ -820,6 +863,7 @@ public class CommandParser {
                         coreMessages.getMessage("core.command.receive.systemMessage.help") + "\n" +
                         coreMessages.getMessage("core.command.reject.systemMessage.help") + "\n" +
                         coreMessages.getMessage("core.command.send.systemMessage.help") + "\n" +
+                        coreMessages.getMessage("core.command.stats.systemMessage.help") + "\n" +
                         coreMessages.getMessage("core.command.topic.systemMessage.help") + "\n" +
                         coreMessages.getMessage("core.command.transfers.systemMessage.help") + "\n" +
                         coreMessages.getMessage("core.command.users.systemMessage.help") + "\n" +
@@ -876,6 +920,8 @@ public class CommandParser {
                 cmdUsers();
             } else if (command.equals("transfers")) {
                 cmdTransfers();
+            } else if (command.equals("stats")) {
+                cmdStats();
             } else if (command.equals("quit")) {
                 cmdQuit();
             } else if (command.startsWith("/")) {
@@ -34,11 +34,15 @@ import net.usikkert.kouchat.message.CoreMessages;
 import net.usikkert.kouchat.net.AsyncMessageResponderWrapper;
 import net.usikkert.kouchat.net.DefaultMessageResponder;
 import net.usikkert.kouchat.net.DefaultPrivateMessageResponder;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileSender;
 import net.usikkert.kouchat.net.FileToSend;
+import net.usikkert.kouchat.net.FileTransferConnectionPool;
+import net.usikkert.kouchat.net.FileTransferServer;
 import net.usikkert.kouchat.net.MessageParser;
 import net.usikkert.kouchat.net.MessageResponder;
+import net.usikkert.kouchat.net.MessageTrace;
 import net.usikkert.kouchat.net.NetworkMessages;
 import net.usikkert.kouchat.net.NetworkService;
 import net.usikkert.kouchat.net.PrivateMessageParser;
@@ -48,6 +52,8 @@ import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.settings.SettingsSaver;
 import net.usikkert.kouchat.ui.UserInterface;
 import net.usikkert.kouchat.util.DateTools;
+import net.usikkert.kouchat.util.MetricGauge;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.TimerTools;
 import net.usikkert.kouchat.util.Tools;
 import net.usikkert.kouchat.util.Validate;
@@ -67,17 +73,17 @@ import org.jetbrains.annotations.Nullable;
  */
 public class Controller implements NetworkConnectionListener {
 
-    /** The time to wait after the network is up before logon is set as completed. */
-    private static final int LOGON_DELAY = 1500;
-
     private final DateTools dateTools = new DateTools();
     private final TimerTools timerTools = new TimerTools();
 
     private final ChatState chatState;
+    private final StartupTimer startupTimer;
     private final UserListController userListController;
     private final NetworkService networkService;
     private final NetworkMessages networkMessages;
     private final IdleThread idleThread;
+    private final WritingController writingController;
+    private final ResponseController responseController;
     private final TransferList tList;
     private final WaitingList wList;
     private final User me;
@@ -89,6 +95,7 @@ public class Controller implements NetworkConnectionListener {
     private final Thread shutdownHook;
     private final CoreMessages coreMessages;
     private final ErrorHandler errorHandler;
+    private final MetricGauge usersGauge;
 
     /**
      * Constructor. Initializes the controller.
@@ -125,6 +132,7 @@ public class Controller implements NetworkConnectionListener {
 
         Runtime.getRuntime().addShutdownHook(shutdownHook);
 
+        startupTimer = new StartupTimer();
         me = settings.getMe();
         userListController = new UserListController(settings);
         chatState = new ChatState();
@@ -141,8 +149,29 @@ public class Controller implements NetworkConnectionListener {
         final PrivateMessageParser privmsgParser = new PrivateMessageParser(privmsgResponder, settings);
         networkService.registerPrivateChatReceiverListener(privmsgParser);
         networkMessages = new NetworkMessages(networkService, settings);
+        writingController = new WritingController(userListController, networkMessages);
+        responseController = new ResponseController(userListController, networkMessages, getTopic(), settings);
         networkService.registerNetworkConnectionListener(this);
         msgController = ui.getMessageController();
+
+        usersGauge = new MetricGauge() {
+            @Override
+            public long getValue() {
+                return getUserList().size();
+            }
+        };
+
+        Metrics.getSharedMetrics().registerGauge("kouchat_users", usersGauge);
+
+        startupTimer.markPhase(StartupTimer.CONTROLLER_CREATED);
+    }
+
+    /**
+     * Starts looking for the network interface to use in the background, so it's ready
+     * when {@link #logOn()} is called. Use this while the rest of the user interface is created.
+     */
+    public void prepareNetwork() {
+        networkService.prepareNetwork();
     }
 
     /**
@@ -151,11 +180,14 @@ public class Controller implements NetworkConnectionListener {
     public void start() {
         dayTimer.startTimer();
         idleThread.start();
+        writingController.start();
 
         msgController.showSystemMessage(coreMessages.getMessage("core.startup.systemMessage.welcome",
                                                                 Constants.APP_NAME));
         final String date = dateTools.currentDateToString(coreMessages.getMessage("core.dateFormat.today"));
         msgController.showSystemMessage(coreMessages.getMessage("core.startup.systemMessage.todayIs", date));
+
+        startupTimer.markPhase(StartupTimer.UI_STARTED);
     }
 
     /**
@@ -176,6 +208,15 @@ public class Controller implements NetworkConnectionListener {
         return userListController.getUserList();
     }
 
+    /**
+     * Checks if any of the other users have a client that is too old to send and read sequence numbers.
+     *
+     * @return If there are any users without sequence numbers.
+     */
+    public boolean isUsersWithoutSequenceNumbers() {
+        return userListController.isUsersWithoutSequenceNumbers();
+    }
+
     /**
      * Returns if the application user wrote the last time
      * {@link #changeWriting(int, boolean)} was called.
@@ -191,23 +232,23 @@ public class Controller implements NetworkConnectionListener {
      * Updates the write state for the user. This is useful to see which
      * users are currently writing.
      *
-     * If the user is the application user, messages will be sent to the
-     * other clients to notify of changes.
+     * If the user is the application user, the user list is updated right away, and
+     * the other clients are notified when appropriate. Changes for other users are
+     * collected for a short while before the user list is updated.
      *
      * @param code The user code for the user to update.
      * @param writing True if the user is writing.
+     * @see WritingController
      */
     public void changeWriting(final int code, final boolean writing) {
-        userListController.changeWriting(code, writing);
-
         if (code == me.getCode()) {
+            userListController.changeWriting(code, writing);
             chatState.setWrote(writing);
+            writingController.meWritingChanged(writing);
+        }
 
-            if (writing) {
-                networkMessages.sendWritingMessage();
-            } else {
-                networkMessages.sendStoppedWritingMessage();
-            }
+        else {
+            writingController.userWritingChanged(code, writing);
         }
     }
 
@@ -373,15 +414,17 @@ public class Controller implements NetworkConnectionListener {
     private void sendLogOn() {
         networkMessages.sendLogonMessage();
         networkMessages.sendClient();
-        networkMessages.sendExposeMessage();
-        networkMessages.sendGetTopicMessage();
+        responseController.askUsersToIdentify();
     }
 
     /**
-     * This should be run after a successful logon, to update the connection state.
+     * This should be run after a successful logon, to update the connection state
+     * when the initial chat state has arrived.
      */
     private void runDelayedLogon() {
-        timerTools.scheduleTimerTask("DelayedLogonTimer", new DelayedLogonTask(networkService, chatState), LOGON_DELAY);
+        timerTools.scheduleRepeatingTimerTask("DelayedLogonTimer",
+                                              new DelayedLogonTask(networkService, chatState, startupTimer),
+                                              DelayedLogonTask.CHECK_PERIOD, DelayedLogonTask.CHECK_PERIOD);
     }
 
     /**
@@ -418,6 +461,7 @@ public class Controller implements NetworkConnectionListener {
             closeAllUserResources();
         }
 
+        writingController.reset();
         me.reset();
     }
 
@@ -452,6 +496,7 @@ public class Controller implements NetworkConnectionListener {
         user.setOnline(false);
         cancelFileTransfers(user);
         userList.remove(user);
+        writingController.userRemoved(user.getCode());
 
         if (user.getPrivchat() != null) {
             msgController.showPrivateSystemMessage(user, privateSystemMessage);
@@ -510,29 +555,27 @@ public class Controller implements NetworkConnectionListener {
     private void doShutdown() {
         idleThread.stopThread();
         dayTimer.stopTimer();
+        writingController.stop();
+        responseController.stop();
         msgController.shutdown();
+        networkService.shutdown();
+        Metrics.getSharedMetrics().removeGauge("kouchat_users", usersGauge);
     }
 
     /**
-     * Sends a message over the network, asking the other clients to identify
-     * themselves.
+     * Asks the other clients to identify themselves and send the topic,
+     * unless they were asked very recently.
      */
-    public void sendExposeMessage() {
-        networkMessages.sendExposeMessage();
+    public void askUsersToIdentify() {
+        responseController.askUsersToIdentify();
     }
 
     /**
-     * Sends a message over the network to identify this client.
+     * Another client asked everyone to identify. Identifies this client
+     * after a short random delay.
      */
-    public void sendExposingMessage() {
-        networkMessages.sendExposingMessage();
-    }
-
-    /**
-     * Sends a message over the network to ask for the current topic.
-     */
-    public void sendGetTopicMessage() {
-        networkMessages.sendGetTopicMessage();
+    public void exposeRequested() {
+        responseController.exposeRequested();
     }
 
     /**
@@ -545,6 +588,15 @@ public class Controller implements NetworkConnectionListener {
         }
     }
 
+    /**
+     * Gets when the last message was successfully sent to all the other users.
+     *
+     * @return The time in milliseconds, or 0 if no messages have been sent.
+     */
+    public long getLastMessageSentTime() {
+        return networkService.getLastMessageSentTime();
+    }
+
     /**
      * Sends a chat message over the network, to all the other users.
      *
@@ -561,19 +613,43 @@ public class Controller implements NetworkConnectionListener {
             throw new CommandException(coreMessages.getMessage("core.chatMessage.error.meIsAway"));
         } else if (msg.trim().length() == 0) {
             throw new CommandException(coreMessages.getMessage("core.chatMessage.error.emptyMessage"));
-        } else if (Tools.getBytes(msg) > Constants.MESSAGE_MAX_BYTES) {
+        } else if (Tools.getBytes(msg) > Constants.CHAT_MESSAGE_MAX_BYTES) {
             throw new CommandException(coreMessages.getMessage("core.chatMessage.error.messageTooLong",
+                                                               Constants.CHAT_MESSAGE_MAX_BYTES));
+        } else if (Tools.getBytes(msg) > Constants.MESSAGE_MAX_BYTES && isUsersWithoutSequenceNumbers()) {
+            // Older clients ignore the fragments, so the message would never show up for them
+            throw new CommandException(coreMessages.getMessage("core.chatMessage.error.messageTooLongForOldClients",
                                                                Constants.MESSAGE_MAX_BYTES));
         } else {
-            networkMessages.sendChatMessage(msg);
+            MessageTrace.startSending();
+
+            try {
+                networkMessages.sendChatMessage(msg);
+            }
+
+            finally {
+                MessageTrace.clear();
+            }
         }
     }
 
     /**
-     * Sends a message over the network with the current topic.
+     * Another client asked for the topic. Sends the current topic right away if this client
+     * is elected to answer, or later if no one else has answered by then.
+     *
+     * @param userCode The unique code of the user asking for the topic.
+     */
+    public void topicRequested(final int userCode) {
+        responseController.topicRequested(userCode);
+    }
+
+    /**
+     * Registers that another client sent a topic, so this client can skip answering with the same topic.
+     *
+     * @param time The time when the received topic was set.
      */
-    public void sendTopicRequestedMessage() {
-        networkMessages.sendTopicRequestedMessage(getTopic());
+    public void topicAnswered(final long time) {
+        responseController.topicAnswered(time);
     }
 
     /**
@@ -671,6 +747,63 @@ public class Controller implements NetworkConnectionListener {
         }
     }
 
+    /**
+     * Sends a message over the network to notify another user that the
+     * application user wants to send a folder with several files.
+     *
+     * @param user The user asked to receive a folder.
+     * @param fileBatch The files to send.
+     * @throws CommandException If the specified user is the application user,
+     *                          or there is no connection to the network,
+     *                          or the application user is away,
+     *                          or the specified user is away,
+     *                          or the folder name is too long,
+     *                          or there are no files to send,
+     *                          or the client of the user can not receive folders.
+     */
+    public void sendFolder(final User user, final FileBatch fileBatch) throws CommandException {
+        Validate.notNull(user, "User can not be null");
+        Validate.notNull(fileBatch, "File batch can not be null");
+
+        if (user.isMe()) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.isMe"));
+        } else if (!isConnected()) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.notConnected"));
+        } else if (me.isAway()) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.meIsAway"));
+        } else if (user.isAway()) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.userIsAway"));
+        } else if (Tools.getBytes(fileBatch.getName()) > Constants.MESSAGE_MAX_BYTES) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.messageTooLong",
+                                                               Constants.MESSAGE_MAX_BYTES));
+        } else if (fileBatch.getFileCount() == 0) {
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.noFilesInFolder"));
+        } else if (user.getFileTransferPort() == 0) {
+            // Folders are sent through the file transfer server, which older clients don't have
+            throw new CommandException(coreMessages.getMessage("core.sendFile.error.folderNotSupported"));
+        } else {
+            networkMessages.sendFolder(user, fileBatch);
+        }
+    }
+
+    /**
+     * Gets the server for receiving files over connections that are kept open.
+     *
+     * @return The file transfer server.
+     */
+    public FileTransferServer getFileTransferServer() {
+        return networkService.getFileTransferServer();
+    }
+
+    /**
+     * Gets the pool of connections for sending files.
+     *
+     * @return The file transfer connection pool.
+     */
+    public FileTransferConnectionPool getFileTransferConnectionPool() {
+        return networkService.getFileTransferConnectionPool();
+    }
+
     /**
      * Gets the list of current transfers.
      *
@@ -700,13 +833,6 @@ public class Controller implements NetworkConnectionListener {
         }
     }
 
-    /**
-     * Sends a message over the network with more information about this client.
-     */
-    public void sendClientInfo() {
-        networkMessages.sendClient();
-    }
-
     /**
      * Sends a private chat message over the network, to the specified user.
      *
@@ -807,6 +933,7 @@ public class Controller implements NetworkConnectionListener {
     public void networkCameUp(final boolean silent) {
         // Network came up after a logon
         if (!isLoggedOn()) {
+            startupTimer.markPhase(StartupTimer.NETWORK_UP);
             runDelayedLogon();
             sendLogOn();
         }
@@ -856,13 +983,23 @@ public class Controller implements NetworkConnectionListener {
         return chatState;
     }
 
+    /**
+     * Gets the startup timer.
+     *
+     * @return The startup timer.
+     */
+    public StartupTimer getStartupTimer() {
+        return startupTimer;
+    }
+
     /**
      * Creates an instance of a JMX bean loader, and returns it.
      *
      * @return A JMX bean loader.
      */
     public JMXBeanLoader createJMXBeanLoader() {
-        return new JMXBeanLoader(this, networkService.getConnectionWorker(), settings, errorHandler);
+        return new JMXBeanLoader(this, networkService.getConnectionWorker(), networkService.getTransportPolicy(),
+                                 settings, errorHandler);
     }
 
     public void registerNetworkConnectionListener(final NetworkConnectionListener listener) {
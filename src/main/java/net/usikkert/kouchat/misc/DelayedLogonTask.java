@@ -35,25 +35,77 @@ import net.usikkert.kouchat.util.Validate;
  * be initialized before logon is set as completed. After logon is set as completed then all changes
  * to users are treated as regular events, like topic changed, user logged on, and more.</p>
  *
+ * <p>Instead of waiting a fixed amount of time, the task is run repeatedly and completes the logon
+ * as soon as the client has logged on and no more of the initial chat state has arrived for
+ * {@link #QUIET_PERIOD} milliseconds. The other clients answer the request to identify after a random
+ * delay, so the logon is never completed before {@link #ANSWER_PERIOD} milliseconds have passed since
+ * the request was sent, even if the first answers arrived quickly. If the network is slow the logon
+ * is completed anyway after {@link #MAX_DELAY} milliseconds.</p>
+ *
  * @author Christian Ihle
  */
 public class DelayedLogonTask extends TimerTask {
 
+    /** How often to check if the logon can be completed, in milliseconds. */
+    public static final long CHECK_PERIOD = 100;
+
+    /** How long to wait for more of the initial chat state to arrive, in milliseconds. */
+    public static final long QUIET_PERIOD = 300;
+
+    /** Extra time to allow for answers to be delayed on the network, in milliseconds. */
+    public static final long NETWORK_SLACK = 200;
+
+    /**
+     * The shortest time to wait for the answers to the request to identify, in milliseconds.
+     * This task is started right before the request is sent.
+     */
+    public static final long ANSWER_PERIOD = ResponseController.EXPOSING_MAX_DELAY + NETWORK_SLACK;
+
+    /** The longest time to wait before completing the logon, in milliseconds. */
+    public static final long MAX_DELAY = 1500;
+
     private final NetworkService networkService;
     private final ChatState chatState;
+    private final StartupTimer startupTimer;
+    private final long startTime;
+
+    public DelayedLogonTask(final NetworkService networkService, final ChatState chatState,
+                            final StartupTimer startupTimer) {
+        this(networkService, chatState, startupTimer, System.currentTimeMillis());
+    }
 
-    public DelayedLogonTask(final NetworkService networkService, final ChatState chatState) {
+    DelayedLogonTask(final NetworkService networkService, final ChatState chatState,
+                     final StartupTimer startupTimer, final long startTime) {
         Validate.notNull(networkService, "NetworkService can not be null");
         Validate.notNull(chatState, "ChatState can not be null");
+        Validate.notNull(startupTimer, "StartupTimer can not be null");
 
         this.networkService = networkService;
         this.chatState = chatState;
+        this.startupTimer = startupTimer;
+        this.startTime = startTime;
     }
 
     @Override
     public void run() {
+        final long now = System.currentTimeMillis();
+
+        if (now - startTime >= MAX_DELAY) {
+            cancel();
+            completeLogon();
+        }
+
+        else if (chatState.isLoggedOn() && now - startTime >= ANSWER_PERIOD
+                && now - chatState.getLastLogonActivity() >= QUIET_PERIOD) {
+            cancel();
+            completeLogon();
+        }
+    }
+
+    private void completeLogon() {
         if (networkService.isNetworkUp()) {
             chatState.setLogonCompleted(true);
+            startupTimer.markPhase(StartupTimer.LOGON_COMPLETED);
         }
     }
 }
@@ -0,0 +1,161 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.Random;
+
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * Calculates how often idle messages should be sent, and how long to wait
+ * before a silent user is timed out, based on the number of users on the network.
+ *
+ * <p>Every client receives the idle messages of every other client, so the
+ * total heartbeat traffic grows with the square of the number of users.
+ * To keep the load down on large networks, the interval grows with the number
+ * of users, and a random jitter is added to avoid all the clients sending at the
+ * same time. Any other message sent to all users also proves that the client is
+ * alive, so idle messages are skipped when there has been recent traffic.</p>
+ *
+ * <p>Older clients use a fixed timeout of {@link #TIMEOUT} milliseconds, and only
+ * accept idle messages as proof of life. The interval is therefore capped,
+ * and an idle message is always sent at least every {@link #MAX_SILENCE}
+ * milliseconds, so that the longest possible gap stays below their timeout.</p>
+ *
+ * @author Christian Ihle
+ */
+public class HeartbeatPolicy {
+
+    /** Number of milliseconds between idle messages on small networks. */
+    public static final int IDLE_TIME = 15000;
+
+    /** The highest number of milliseconds between idle messages, before jitter. */
+    public static final int MAX_IDLE_TIME = 40000;
+
+    /** The number of other users the network can have before the interval starts to grow. */
+    public static final int USERS_PER_IDLE_TIME = 10;
+
+    /** How many percent the interval is randomly adjusted up or down. */
+    public static final int JITTER_PERCENT = 20;
+
+    /** The longest time to go without sending an idle message, even if other messages are sent. */
+    public static final int MAX_SILENCE = 60000;
+
+    /**
+     * If an idle message has not been received from another
+     * client in this number of milliseconds, then it's not
+     * on the network anymore and must be removed. Used on small networks.
+     */
+    public static final int TIMEOUT = 120000;
+
+    /** The number of longest possible intervals to wait before a user times out. */
+    public static final int MISSED_IDLE_MESSAGES = 3;
+
+    private final Random random;
+
+    /**
+     * Constructor.
+     */
+    public HeartbeatPolicy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param random The random generator to use for jitter.
+     */
+    public HeartbeatPolicy(final Random random) {
+        Validate.notNull(random, "Random can not be null");
+        this.random = random;
+    }
+
+    /**
+     * Gets the interval between idle messages without jitter.
+     *
+     * <p>Stays at {@link #IDLE_TIME} until there are more than {@link #USERS_PER_IDLE_TIME}
+     * other users, and then grows linearly up to {@link #MAX_IDLE_TIME}.</p>
+     *
+     * @param otherUsers The number of other users on the network.
+     * @return The interval in milliseconds.
+     */
+    public long getBaseIdleInterval(final int otherUsers) {
+        if (otherUsers <= USERS_PER_IDLE_TIME) {
+            return IDLE_TIME;
+        }
+
+        final long interval = (long) IDLE_TIME * otherUsers / USERS_PER_IDLE_TIME;
+
+        return Math.min(interval, MAX_IDLE_TIME);
+    }
+
+    /**
+     * Gets the interval to wait before the next idle message, with a random jitter
+     * of up to {@link #JITTER_PERCENT} percent in either direction.
+     *
+     * @param otherUsers The number of other users on the network.
+     * @return The interval in milliseconds.
+     */
+    public long getIdleInterval(final int otherUsers) {
+        final long baseInterval = getBaseIdleInterval(otherUsers);
+        final long maxJitter = baseInterval * JITTER_PERCENT / 100;
+        final long jitter = (long) ((random.nextDouble() * 2 - 1) * maxJitter);
+
+        return baseInterval + jitter;
+    }
+
+    /**
+     * Gets the number of milliseconds a user can be silent before timing out.
+     *
+     * <p>Never shorter than {@link #TIMEOUT}, but grows to allow for
+     * {@link #MISSED_IDLE_MESSAGES} of the longest possible interval on large networks.</p>
+     *
+     * @param otherUsers The number of other users on the network.
+     * @return The timeout in milliseconds.
+     */
+    public long getTimeout(final int otherUsers) {
+        final long baseInterval = getBaseIdleInterval(otherUsers);
+        final long longestInterval = baseInterval + baseInterval * JITTER_PERCENT / 100;
+
+        return Math.max(TIMEOUT, longestInterval * MISSED_IDLE_MESSAGES);
+    }
+
+    /**
+     * Checks if an idle message needs to be sent, or if other messages sent recently
+     * are enough to show that this client is alive.
+     *
+     * @param otherUsers The number of other users on the network.
+     * @param currentTime The current time, in milliseconds.
+     * @param lastIdleMessageSent When the last idle message was sent, in milliseconds.
+     * @param lastMessageSent When the last message of any kind was sent, in milliseconds.
+     * @return If an idle message should be sent.
+     */
+    public boolean shouldSendIdleMessage(final int otherUsers, final long currentTime,
+                                         final long lastIdleMessageSent, final long lastMessageSent) {
+        if (currentTime - lastIdleMessageSent >= MAX_SILENCE) {
+            return true;
+        }
+
+        return currentTime - lastMessageSent >= getBaseIdleInterval(otherUsers);
+    }
+}
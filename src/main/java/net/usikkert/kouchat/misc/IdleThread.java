@@ -31,12 +31,15 @@ import net.usikkert.kouchat.util.Validate;
 
 /**
  * This thread is responsible for sending a special "idle"
- * message every IDLE_TIME milliseconds to inform other clients
+ * message at regular intervals to inform other clients
  * that this client is still online. It will also check if
  * other clients have stopped sending these messages,
  * and if that is the case, remove them and show a message
  * in the user interface.
  *
+ * <p>The interval and the timeout grows with the number of users on the network,
+ * as decided by the {@link HeartbeatPolicy}.</p>
+ *
  * @author Christian Ihle
  */
 public class IdleThread extends Thread {
@@ -44,27 +47,18 @@ public class IdleThread extends Thread {
     /** The logger. */
     private static final Logger LOG = Logger.getLogger(IdleThread.class.getName());
 
-    /**
-     * Number of milliseconds to wait before the next
-     * idle message will be sent.
-     */
-    private static final int IDLE_TIME = 15000;
-
-    /**
-     * If an idle message has not been received from another
-     * client in this number of milliseconds, then it's not
-     * on the network anymore and must be removed.
-     */
-    private static final int TIMEOUT = 120000;
-
     private final Controller controller;
     private final UserList userList;
     private final User me;
     private final MessageController msgController;
+    private final HeartbeatPolicy heartbeatPolicy;
 
     /** The thread runs while this is true. */
     private boolean run;
 
+    /** When the last idle message was sent, in milliseconds. */
+    private long lastIdleMessageSent;
+
     /**
      * Constructor. Makes sure the thread is ready to start.
      *
@@ -82,6 +76,7 @@ public class IdleThread extends Thread {
         userList = controller.getUserList();
         me = settings.getMe();
         msgController = ui.getMessageController();
+        heartbeatPolicy = new HeartbeatPolicy();
 
         run = true;
         setName("IdleThread");
@@ -90,7 +85,7 @@ public class IdleThread extends Thread {
     /**
      * This is where most of the action is.
      *
-     * <li>Sends idle messages
+     * <li>Sends idle messages, unless other messages were sent recently
      * <li>Restarts the network if there are problems
      * <li>Removes timed out clients
      */
@@ -100,25 +95,34 @@ public class IdleThread extends Thread {
         me.setLastIdle(System.currentTimeMillis());
 
         while (run) {
-            controller.sendIdleMessage();
-            boolean timeout = false;
+            final int otherUsers = Math.max(0, userList.size() - 1);
+            final long currentTime = System.currentTimeMillis();
+
+            if (heartbeatPolicy.shouldSendIdleMessage(otherUsers, currentTime, lastIdleMessageSent,
+                                                      controller.getLastMessageSentTime())) {
+                controller.sendIdleMessage();
+                lastIdleMessageSent = currentTime;
+            }
+
+            final long timeout = heartbeatPolicy.getTimeout(otherUsers);
+            boolean timedOut = false;
 
             for (int i = 0; i < userList.size(); i++) {
                 final User temp = userList.get(i);
 
-                if (temp.getCode() != me.getCode() && temp.getLastIdle() < System.currentTimeMillis() - TIMEOUT) {
+                if (temp.getCode() != me.getCode() && temp.getLastIdle() < System.currentTimeMillis() - timeout) {
                     userTimedOut(temp);
-                    timeout = true;
+                    timedOut = true;
                     i--;
                 }
             }
 
-            if (timeout) {
+            if (timedOut) {
                 controller.updateAfterTimeout();
             }
 
             try {
-                sleep(IDLE_TIME);
+                sleep(heartbeatPolicy.getIdleInterval(otherUsers));
             }
 
             // Sleep interrupted - probably from stopThread()
@@ -22,6 +22,8 @@
 
 package net.usikkert.kouchat.misc;
 
+import net.usikkert.kouchat.net.MessageTrace;
+import net.usikkert.kouchat.net.MessageTraceStage;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.ui.ChatWindow;
 import net.usikkert.kouchat.ui.UserInterface;
@@ -76,6 +78,8 @@ public class MessageController {
      * @param color The color the user chose for the message.
      */
     public void showUserMessage(final String user, final String message, final int color) {
+        MessageTrace.recordStage(MessageTraceStage.SHOWN);
+
         final String msg = Tools.getTime() + " <" + user + ">: " + message;
         chat.appendToChat(msg, color);
         cLog.append(msg);
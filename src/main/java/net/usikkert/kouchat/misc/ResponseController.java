@@ -0,0 +1,292 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.usikkert.kouchat.net.NetworkMessages;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * Answers requests from other clients to identify and to get the topic, without flooding the network.
+ *
+ * <p>A client that logs on, or sees a message from an unknown user, asks every client on the network
+ * to identify and send the topic. If every client answers at once, the burst of packets can be big enough
+ * to make some of them disappear. To avoid that:</p>
+ *
+ * <ul>
+ *   <li>The answer to an expose request is sent after a short random delay. Further expose requests
+ *       arriving before the answer is sent are covered by the same answer.</li>
+ *   <li>The topic is answered right away only by the elected client, which is the one with the lowest
+ *       user code, not counting the client asking. If the elected client is about to identify itself,
+ *       the topic is sent right after that, since a client asking for the topic ignores topics from
+ *       users it doesn't know yet. The others wait a little longer than that, and drop their answer
+ *       if someone else has already answered with the same topic.</li>
+ *   <li>Other clients are not asked to identify more often than once a second.</li>
+ * </ul>
+ *
+ * @author Christian Ihle
+ */
+public class ResponseController {
+
+    /** The longest random delay, in milliseconds, before answering an expose request. */
+    protected static final int EXPOSING_MAX_DELAY = 500;
+
+    /**
+     * The shortest random delay, in milliseconds, before a client that is not elected answers the topic.
+     * Longer than the delay before answering an expose request, to give the elected client time to answer.
+     */
+    protected static final int TOPIC_MIN_DELAY = EXPOSING_MAX_DELAY + 200;
+
+    /** The longest random delay, in milliseconds, before a client that is not elected answers the topic. */
+    protected static final int TOPIC_MAX_DELAY = TOPIC_MIN_DELAY + 500;
+
+    /** The number of answers with the same topic to see before dropping the own answer. */
+    protected static final int TOPIC_SUPPRESS_COUNT = 1;
+
+    /** Minimum number of milliseconds between each time other clients are asked to identify. */
+    protected static final int IDENTIFY_INTERVAL = 1000;
+
+    private final UserList userList;
+    private final NetworkMessages networkMessages;
+    private final Topic topic;
+    private final User me;
+    private final Random random;
+    private final Timer timer;
+
+    /** If an answer to an expose request is waiting to be sent. */
+    private boolean exposingScheduled;
+
+    /** If the elected answer to a topic request should be sent together with the answer to an expose request. */
+    private boolean topicAfterExposing;
+
+    /** If an answer to a topic request is waiting to be sent. */
+    private boolean topicScheduled;
+
+    /** The number of answers with the same topic seen since the own answer was scheduled. */
+    private int topicAnswersSeen;
+
+    /** When other clients were last asked to identify. */
+    private long lastIdentifyRequest;
+
+    /** If the timer has been stopped, and can not be used anymore. */
+    private boolean stopped;
+
+    /**
+     * Constructor.
+     *
+     * @param userListController The controller for the list of users on the network.
+     * @param networkMessages The network messages to use for sending answers.
+     * @param topic The current topic.
+     * @param settings The settings to use.
+     */
+    public ResponseController(final UserListController userListController, final NetworkMessages networkMessages,
+                              final Topic topic, final Settings settings) {
+        Validate.notNull(userListController, "User list controller can not be null");
+        Validate.notNull(networkMessages, "Network messages can not be null");
+        Validate.notNull(topic, "Topic can not be null");
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.networkMessages = networkMessages;
+        this.topic = topic;
+
+        userList = userListController.getUserList();
+        me = settings.getMe();
+        random = new Random();
+        timer = new Timer("ResponseTimer", true);
+    }
+
+    /**
+     * Stops the timer. No more scheduled answers are sent after this.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        timer.cancel();
+    }
+
+    /**
+     * Schedules an answer to a request from another client to identify, unless one is scheduled already.
+     */
+    public void exposeRequested() {
+        synchronized (this) {
+            if (exposingScheduled) {
+                return;
+            }
+
+            exposingScheduled = true;
+        }
+
+        schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sendExposing();
+            }
+        }, random.nextInt(EXPOSING_MAX_DELAY));
+    }
+
+    /**
+     * Answers a request from another client to get the topic. The elected client answers right away,
+     * while the others schedule an answer, unless one is scheduled already.
+     *
+     * @param requesterCode The unique code of the user asking for the topic.
+     */
+    public void topicRequested(final int requesterCode) {
+        if (isElectedToAnswerTopic(requesterCode)) {
+            synchronized (this) {
+                if (exposingScheduled) {
+                    topicAfterExposing = true;
+                    return;
+                }
+            }
+
+            networkMessages.sendTopicRequestedMessage(topic);
+            return;
+        }
+
+        synchronized (this) {
+            if (topicScheduled) {
+                return;
+            }
+
+            topicScheduled = true;
+            topicAnswersSeen = 0;
+        }
+
+        schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sendTopic();
+            }
+        }, TOPIC_MIN_DELAY + random.nextInt(TOPIC_MAX_DELAY - TOPIC_MIN_DELAY));
+    }
+
+    /**
+     * Registers a topic sent by another client. Should be called after the topic has been updated,
+     * so the answer is counted only if the topic is the same as, or newer than, the current topic.
+     *
+     * @param time The time when the received topic was set.
+     */
+    public synchronized void topicAnswered(final long time) {
+        if (topicScheduled && time >= topic.getTime()) {
+            topicAnswersSeen++;
+        }
+    }
+
+    /**
+     * Asks the other clients to identify and send the topic,
+     * unless they were asked less than {@link #IDENTIFY_INTERVAL} milliseconds ago.
+     */
+    public void askUsersToIdentify() {
+        askUsersToIdentify(System.currentTimeMillis());
+    }
+
+    /**
+     * Asks the other clients to identify and send the topic, unless they were asked recently.
+     *
+     * @param now The current time.
+     */
+    protected void askUsersToIdentify(final long now) {
+        synchronized (this) {
+            if (lastIdentifyRequest > 0 && now - lastIdentifyRequest < IDENTIFY_INTERVAL) {
+                return;
+            }
+
+            lastIdentifyRequest = now;
+        }
+
+        networkMessages.sendExposeMessage();
+        networkMessages.sendGetTopicMessage();
+    }
+
+    /**
+     * Sends the scheduled answer to the expose requests, with information about this client,
+     * followed by the topic if this client was elected to answer a topic request in the meantime.
+     */
+    protected void sendExposing() {
+        final boolean sendTopic;
+
+        synchronized (this) {
+            exposingScheduled = false;
+            sendTopic = topicAfterExposing;
+            topicAfterExposing = false;
+        }
+
+        networkMessages.sendExposingMessage();
+        networkMessages.sendClient();
+
+        if (sendTopic) {
+            networkMessages.sendTopicRequestedMessage(topic);
+        }
+    }
+
+    /**
+     * Sends the scheduled answer to the topic requests, unless enough other clients have answered already.
+     */
+    protected void sendTopic() {
+        synchronized (this) {
+            topicScheduled = false;
+
+            if (topicAnswersSeen >= TOPIC_SUPPRESS_COUNT) {
+                return;
+            }
+        }
+
+        networkMessages.sendTopicRequestedMessage(topic);
+    }
+
+    /**
+     * Checks if the application user has the lowest user code on the network, not counting the user asking.
+     *
+     * @param requesterCode The unique code of the user asking for the topic.
+     * @return If the application user should answer the topic request right away.
+     */
+    protected boolean isElectedToAnswerTopic(final int requesterCode) {
+        // Users can log off while looking, so the list must not change until done
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final int code = userList.get(i).getCode();
+
+                if (code != requesterCode && code < me.getCode()) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Schedules a task on the timer, if the timer is still running.
+     *
+     * @param task The task to schedule.
+     * @param delay Milliseconds to wait before running the task.
+     */
+    private synchronized void schedule(final TimerTask task, final long delay) {
+        if (!stopped) {
+            timer.schedule(task, delay);
+        }
+    }
+}
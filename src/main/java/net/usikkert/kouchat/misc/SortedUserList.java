@@ -37,6 +37,9 @@ import org.jetbrains.annotations.Nullable;
  * <p>The users in the list are sorted by nick name,
  * as specified in {@link User#compareTo(User)}.</p>
  *
+ * <p>The list is changed from several threads. Each operation is synchronized on the list,
+ * so operations that need several steps can synchronize on the list as well.</p>
+ *
  * @author Christian Ihle
  */
 public class SortedUserList implements UserList {
@@ -61,7 +64,7 @@ public class SortedUserList implements UserList {
      * {@inheritDoc}
      */
     @Override
-    public boolean add(final User user) {
+    public synchronized boolean add(final User user) {
         Validate.notNull(user, "User can not be null");
 
         final boolean success = userList.add(user);
@@ -79,7 +82,7 @@ public class SortedUserList implements UserList {
      */
     @Nullable
     @Override
-    public User get(final int pos) {
+    public synchronized User get(final int pos) {
         if (pos < userList.size()) {
             return userList.get(pos);
         } else {
@@ -91,7 +94,7 @@ public class SortedUserList implements UserList {
      * {@inheritDoc}
      */
     @Override
-    public int indexOf(final User user) {
+    public synchronized int indexOf(final User user) {
         Validate.notNull(user, "User can not be null");
 
         return userList.indexOf(user);
@@ -101,7 +104,7 @@ public class SortedUserList implements UserList {
      * {@inheritDoc}
      */
     @Override
-    public boolean remove(final User user) {
+    public synchronized boolean remove(final User user) {
         Validate.notNull(user, "User can not be null");
 
         final int pos = userList.indexOf(user);
@@ -120,7 +123,7 @@ public class SortedUserList implements UserList {
      * {@inheritDoc}
      */
     @Override
-    public User set(final int pos, final User user) {
+    public synchronized User set(final int pos, final User user) {
         Validate.notNull(user, "User can not be null");
 
         final User oldUser = userList.set(pos, user);
@@ -134,7 +137,7 @@ public class SortedUserList implements UserList {
      * {@inheritDoc}
      */
     @Override
-    public int size() {
+    public synchronized int size() {
         return userList.size();
     }
 
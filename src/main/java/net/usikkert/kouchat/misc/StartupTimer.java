@@ -0,0 +1,142 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Keeps track of how long it takes to reach the different phases of the startup,
+ * measured from when the virtual machine was started.
+ *
+ * <p>Only the first time a phase is reached is recorded, so reconnecting to the network
+ * later does not change the startup times.</p>
+ *
+ * @author Christian Ihle
+ */
+public class StartupTimer {
+
+    /** The controller is created, and the user interface is being built. */
+    @NonNls
+    public static final String CONTROLLER_CREATED = "Controller created";
+
+    /** The user interface is ready, and the welcome messages are shown. */
+    @NonNls
+    public static final String UI_STARTED = "User interface started";
+
+    /** A network interface is found, and the logon messages are about to be sent. */
+    @NonNls
+    public static final String NETWORK_UP = "Network up";
+
+    /** The initial state of the chat is received, and the user can start chatting. */
+    @NonNls
+    public static final String LOGON_COMPLETED = "Logon completed";
+
+    private static final Logger LOG = Logger.getLogger(StartupTimer.class);
+
+    private final long startTime;
+    private final Map<String, Long> phaseTimes;
+
+    /**
+     * Constructor. Measures from when the virtual machine was started.
+     */
+    public StartupTimer() {
+        this(ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    /**
+     * Constructor. Measures from the specified start time.
+     *
+     * @param startTime The time to measure from, in milliseconds.
+     */
+    StartupTimer(final long startTime) {
+        this.startTime = startTime;
+        phaseTimes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Records that the startup phase was reached now, unless it has been reached before.
+     *
+     * @param phase The phase that was reached.
+     */
+    public synchronized void markPhase(@NonNls final String phase) {
+        Validate.notEmpty(phase, "Phase can not be empty");
+
+        if (!phaseTimes.containsKey(phase)) {
+            final long elapsedTime = System.currentTimeMillis() - startTime;
+            phaseTimes.put(phase, elapsedTime);
+
+            LOG.fine("Startup phase '%s' reached after %s ms", phase, elapsedTime);
+        }
+    }
+
+    /**
+     * Gets the number of milliseconds it took to reach the startup phase.
+     *
+     * @param phase The phase to get the time of.
+     * @return The time in milliseconds, or <code>-1</code> if the phase has not been reached.
+     */
+    public synchronized long getPhaseTime(@NonNls final String phase) {
+        final Long elapsedTime = phaseTimes.get(phase);
+
+        if (elapsedTime == null) {
+            return -1;
+        }
+
+        return elapsedTime;
+    }
+
+    /**
+     * Gets the time of all the startup phases reached so far, in the order they were reached.
+     *
+     * @return The phases, with the number of milliseconds it took to reach them.
+     */
+    public synchronized Map<String, Long> getPhaseTimes() {
+        return new LinkedHashMap<>(phaseTimes);
+    }
+
+    /**
+     * Creates a report with one line for each startup phase reached so far.
+     *
+     * @return The report.
+     */
+    public synchronized String getReport() {
+        final StringBuilder report = new StringBuilder();
+
+        for (final Map.Entry<String, Long> phaseTime : phaseTimes.entrySet()) {
+            if (report.length() > 0) {
+                report.append("\n");
+            }
+
+            report.append(phaseTime.getKey()).append(": ").append(phaseTime.getValue()).append(" ms");
+        }
+
+        return report.toString();
+    }
+}
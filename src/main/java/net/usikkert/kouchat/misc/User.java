@@ -22,6 +22,9 @@
 
 package net.usikkert.kouchat.misc;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.usikkert.kouchat.ui.PrivateChatWindow;
 
 import org.jetbrains.annotations.Nullable;
@@ -39,13 +42,33 @@ public class User implements Comparable<User> {
     /** The user's away message. Can not be blank if away, and must be blank if not away. */
     private String awayMsg;
 
-    /** The user's ip address. */
+    /** The user's ip address. This is the one used when connecting to the user. */
     private String ipAddress;
 
-    /** The user's operating system, like <code>Windows Vista</code> or <code>Linux</code>. */
+    /**
+     * The user's ip address in the other protocol family, if the user has both IPv4 and IPv6.
+     * Messages from the user can arrive from either.
+     */
+    @Nullable
+    private String otherIpAddress;
+
+    /**
+     * Other ip addresses the user sends the same messages from, if the user is on more than one network.
+     * Never used when connecting to the user. Only created when needed, since most users have none.
+     */
+    @Nullable
+    private List<String> additionalIpAddresses;
+
+    /**
+     * The user's operating system, like <code>Windows Vista</code> or <code>Linux</code>.
+     * Interned, since most users have one of a few operating systems.
+     */
     private String operatingSystem;
 
-    /** Which type of chat client the user is connected with, like <code>KouChat v.1.0.0 Swing</code>. */
+    /**
+     * Which type of chat client the user is connected with, like <code>KouChat v.1.0.0 Swing</code>.
+     * Interned, since most users have one of a few clients.
+     */
     private String client;
 
     /** The user's host name. */
@@ -61,9 +84,15 @@ public class User implements Comparable<User> {
     /** The port to use when connecting to this user directly using tcp. */
     private int tcpChatPort;
 
+    /** The port to use when connecting to this user for file transfers, or 0 if the user has no such port. */
+    private int fileTransferPort;
+
     /** Whether a tcp connection is enabled for this user. */
     private boolean tcpEnabled;
 
+    /** Whether the user sends sequence numbers with the messages, and can read them. */
+    private boolean sequenceNumbersEnabled;
+
     /** The time when the last idle message came from this user. */
     private long lastIdle;
 
@@ -118,6 +147,7 @@ public class User implements Comparable<User> {
         newMsg = false;
         privateChatPort = 0;
         tcpChatPort = 0;
+        fileTransferPort = 0;
         privchat = null;
         online = true;
         newPrivMsg = false;
@@ -131,10 +161,13 @@ public class User implements Comparable<User> {
         writing = false;
         away = false;
         ipAddress = "<unknown>";
+        otherIpAddress = null;
+        additionalIpAddresses = null;
         hostName = null;
         newMsg = false;
         privateChatPort = 0;
         tcpChatPort = 0;
+        fileTransferPort = 0;
         privchat = null;
         newPrivMsg = false;
     }
@@ -266,14 +299,146 @@ public class User implements Comparable<User> {
     }
 
     /**
-     * Sets the user's ip address.
+     * Sets the user's ip address, and makes it the one used when connecting to the user.
+     *
+     * <p>If the current ip address is in the other protocol family, it's kept as the other ip address.</p>
      *
      * @param ipAddress The user's ip address.
      */
     public void setIpAddress(final String ipAddress) {
+        if (!isUnknownIpAddress() && !sameProtocolFamily(this.ipAddress, ipAddress)) {
+            otherIpAddress = this.ipAddress;
+        }
+
+        else if (otherIpAddress != null && sameProtocolFamily(otherIpAddress, ipAddress)) {
+            otherIpAddress = null;
+        }
+
         this.ipAddress = ipAddress;
     }
 
+    /**
+     * Gets all the known ip addresses of the user. At most one IPv4 and one IPv6 address,
+     * with the one used when connecting to the user first.
+     *
+     * @return The user's ip addresses.
+     */
+    public List<String> getIpAddresses() {
+        final List<String> ipAddresses = new ArrayList<>(2);
+        ipAddresses.add(ipAddress);
+
+        if (otherIpAddress != null) {
+            ipAddresses.add(otherIpAddress);
+        }
+
+        return ipAddresses;
+    }
+
+    /**
+     * Checks if the ip address is one of the known ip addresses of the user.
+     *
+     * @param anIpAddress The ip address to check.
+     * @return If the user has the ip address.
+     */
+    public boolean hasIpAddress(final String anIpAddress) {
+        return anIpAddress.equals(ipAddress) || anIpAddress.equals(otherIpAddress);
+    }
+
+    /**
+     * Adds the ip address if it's the first one seen from the user in its protocol family.
+     * The ip address used when connecting to the user is not changed, unless it was unknown.
+     *
+     * @param anIpAddress The ip address to add.
+     * @return If the ip address was added.
+     */
+    public boolean addIpAddress(final String anIpAddress) {
+        if (isUnknownIpAddress()) {
+            ipAddress = anIpAddress;
+            return true;
+        }
+
+        if (otherIpAddress != null || sameProtocolFamily(ipAddress, anIpAddress)) {
+            return false;
+        }
+
+        otherIpAddress = anIpAddress;
+        return true;
+    }
+
+    /**
+     * Adds an ip address the user sends the same messages from on another network. Messages from
+     * this ip address are then not taken as a sign that the ip address of the user has changed.
+     * Does nothing if the ip address is already known.
+     *
+     * @param anIpAddress The ip address to add.
+     */
+    public void addAdditionalIpAddress(final String anIpAddress) {
+        if (hasIpAddress(anIpAddress) || hasAdditionalIpAddress(anIpAddress)) {
+            return;
+        }
+
+        if (additionalIpAddresses == null) {
+            additionalIpAddresses = new ArrayList<>(1);
+        }
+
+        additionalIpAddresses.add(anIpAddress);
+    }
+
+    /**
+     * Checks if the ip address is one the user sends the same messages from on another network.
+     *
+     * @param anIpAddress The ip address to check.
+     * @return If the ip address is one of the additional ip addresses of the user.
+     */
+    public boolean hasAdditionalIpAddress(final String anIpAddress) {
+        return additionalIpAddresses != null && additionalIpAddresses.contains(anIpAddress);
+    }
+
+    /**
+     * Updates the known ip address of the user in the same protocol family as the given ip address.
+     * The ip address used when connecting to the user stays in the same protocol family.
+     * Additional ip addresses from other networks are not counted as a change.
+     *
+     * @param anIpAddress The new ip address.
+     * @return The ip address that was replaced, or <code>null</code> if no known ip address changed.
+     */
+    @Nullable
+    public String updateIpAddress(final String anIpAddress) {
+        if (hasIpAddress(anIpAddress) || hasAdditionalIpAddress(anIpAddress) || addIpAddress(anIpAddress)) {
+            return null;
+        }
+
+        final String replacedIpAddress;
+
+        if (sameProtocolFamily(ipAddress, anIpAddress)) {
+            replacedIpAddress = ipAddress;
+            ipAddress = anIpAddress;
+        }
+
+        else {
+            replacedIpAddress = otherIpAddress;
+            otherIpAddress = anIpAddress;
+        }
+
+        return replacedIpAddress;
+    }
+
+    private boolean isUnknownIpAddress() {
+        return ipAddress.equals("<unknown>");
+    }
+
+    /**
+     * Checks if the ip addresses are both IPv4 or both IPv6. IPv6 addresses are the only ones with
+     * colons in them, so this works without looking up the addresses.
+     *
+     * @param ipAddress1 The first ip address.
+     * @param ipAddress2 The second ip address.
+     * @return If the ip addresses are in the same protocol family.
+     */
+    private static boolean sameProtocolFamily(final String ipAddress1, final String ipAddress2) {
+        return ipAddress1.contains(":") == ipAddress2.contains(":");
+    }
+
     /**
      * Gets the user's operating system.
      *
@@ -284,12 +449,12 @@ public class User implements Comparable<User> {
     }
 
     /**
-     * Sets the user's operating system.
+     * Sets the user's operating system. The text is shared with other users with the same operating system.
      *
      * @param operatingSystem The user's operating system.
      */
     public void setOperatingSystem(final String operatingSystem) {
-        this.operatingSystem = operatingSystem;
+        this.operatingSystem = intern(operatingSystem);
     }
 
     /**
@@ -320,12 +485,12 @@ public class User implements Comparable<User> {
     }
 
     /**
-     * Sets the client the user is using.
+     * Sets the client the user is using. The text is shared with other users with the same client.
      *
      * @param client The client the user is using.
      */
     public void setClient(final String client) {
-        this.client = client;
+        this.client = intern(client);
     }
 
     /**
@@ -401,6 +566,26 @@ public class User implements Comparable<User> {
         this.tcpChatPort = tcpChatPort;
     }
 
+    /**
+     * Gets the port to use when sending files to this user over a connection that is kept open
+     * between the files. Users without this port get a new server for each file.
+     *
+     * @return The port to use for file transfers, or 0 if the user has no such port.
+     */
+    public int getFileTransferPort() {
+        return fileTransferPort;
+    }
+
+    /**
+     * Sets the port to use when sending files to this user over a connection that is kept open
+     * between the files.
+     *
+     * @param fileTransferPort The port to use for file transfers, or 0 if the user has no such port.
+     */
+    public void setFileTransferPort(final int fileTransferPort) {
+        this.fileTransferPort = fileTransferPort;
+    }
+
     /**
      * Gets whether a tcp connection is enabled for this user.
      *
@@ -419,6 +604,24 @@ public class User implements Comparable<User> {
         this.tcpEnabled = tcpEnabled;
     }
 
+    /**
+     * Gets whether this user sends sequence numbers with the messages, and can read them.
+     *
+     * @return If sequence numbers are enabled for this user.
+     */
+    public boolean isSequenceNumbersEnabled() {
+        return sequenceNumbersEnabled;
+    }
+
+    /**
+     * Sets whether this user sends sequence numbers with the messages, and can read them.
+     *
+     * @param sequenceNumbersEnabled If sequence numbers are enabled for this user.
+     */
+    public void setSequenceNumbersEnabled(final boolean sequenceNumbersEnabled) {
+        this.sequenceNumbersEnabled = sequenceNumbersEnabled;
+    }
+
     /**
      * Checks if this user is logged on to the chat.
      *
@@ -492,6 +695,21 @@ public class User implements Comparable<User> {
         this.privateChatLogger = privateChatLogger;
     }
 
+    /**
+     * Gets the shared copy of the text, so users with the same text don't each keep a copy of it.
+     *
+     * @param text The text to get the shared copy of.
+     * @return The shared copy, or <code>null</code> if the text is <code>null</code>.
+     */
+    @Nullable
+    private static String intern(@Nullable final String text) {
+        if (text == null) {
+            return null;
+        }
+
+        return text.intern();
+    }
+
     /**
      * Returns the nick name.
      *
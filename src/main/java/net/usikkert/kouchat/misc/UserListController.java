@@ -64,12 +64,14 @@ public class UserListController {
     public User getUser(final int code) {
         User user = null;
 
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
-
-            if (temp.getCode() == code) {
-                user = temp;
-                break;
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getCode() == code) {
+                    user = temp;
+                    break;
+                }
             }
         }
 
@@ -86,12 +88,14 @@ public class UserListController {
     public User getUser(final String nickname) {
         User user = null;
 
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
 
-            if (temp.getNick().equalsIgnoreCase(nickname)) {
-                user = temp;
-                break;
+                if (temp.getNick().equalsIgnoreCase(nickname)) {
+                    user = temp;
+                    break;
+                }
             }
         }
 
@@ -105,13 +109,15 @@ public class UserListController {
      * @param nickname The new nick name of the user.
      */
     public void changeNickName(final int code, final String nickname) {
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
-
-            if (temp.getCode() == code) {
-                temp.setNick(nickname);
-                userList.set(i, temp);
-                break;
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getCode() == code) {
+                    temp.setNick(nickname);
+                    userList.set(i, temp);
+                    break;
+                }
             }
         }
     }
@@ -124,14 +130,16 @@ public class UserListController {
      * @param awaymsg The new away message.
      */
     public void changeAwayStatus(final int code, final boolean away, final String awaymsg) {
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
-
-            if (temp.getCode() == code) {
-                temp.setAway(away);
-                temp.setAwayMsg(awaymsg);
-                userList.set(i, temp);
-                break;
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getCode() == code) {
+                    temp.setAway(away);
+                    temp.setAwayMsg(awaymsg);
+                    userList.set(i, temp);
+                    break;
+                }
             }
         }
     }
@@ -143,13 +151,15 @@ public class UserListController {
      * @param writing If the user is writing.
      */
     public void changeWriting(final int code, final boolean writing) {
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
-
-            if (temp.getCode() == code) {
-                temp.setWriting(writing);
-                userList.set(i, temp);
-                break;
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getCode() == code) {
+                    temp.setWriting(writing);
+                    userList.set(i, temp);
+                    break;
+                }
             }
         }
     }
@@ -161,13 +171,15 @@ public class UserListController {
      * @param newMsg If the user has new private messages.
      */
     public void changeNewMessage(final int code, final boolean newMsg) {
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
-
-            if (temp.getCode() == code) {
-                temp.setNewPrivMsg(newMsg);
-                userList.set(i, temp);
-                break;
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getCode() == code) {
+                    temp.setNewPrivMsg(newMsg);
+                    userList.set(i, temp);
+                    break;
+                }
             }
         }
     }
@@ -181,12 +193,14 @@ public class UserListController {
     public boolean isNickNameInUse(final String nickname) {
         boolean inUse = false;
 
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
 
-            if (temp.getNick().equalsIgnoreCase(nickname) && !temp.isMe()) {
-                inUse = true;
-                break;
+                if (temp.getNick().equalsIgnoreCase(nickname) && !temp.isMe()) {
+                    inUse = true;
+                    break;
+                }
             }
         }
 
@@ -202,12 +216,14 @@ public class UserListController {
     public boolean isNewUser(final int code) {
         boolean newUser = true;
 
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
 
-            if (temp.getCode() == code) {
-                newUser = false;
-                break;
+                if (temp.getCode() == code) {
+                    newUser = false;
+                    break;
+                }
             }
         }
 
@@ -225,11 +241,34 @@ public class UserListController {
      * @return If there are any timeout users.
      */
     public boolean isTimeoutUsers() {
-        for (int i = 0; i < userList.size(); i++) {
-            final User temp = userList.get(i);
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (temp.getNick().equals("" + temp.getCode())) {
+                    return true;
+                }
+            }
+        }
 
-            if (temp.getNick().equals("" + temp.getCode())) {
-                return true;
+        return false;
+    }
+
+    /**
+     * Checks if the user list contains users with a client that is too old to send and read sequence numbers.
+     * Such clients can not put together main chat messages split in fragments, or tell messages that are
+     * sent again from new messages.
+     *
+     * @return If there are any users without sequence numbers.
+     */
+    public boolean isUsersWithoutSequenceNumbers() {
+        synchronized (userList) {
+            for (int i = 0; i < userList.size(); i++) {
+                final User temp = userList.get(i);
+
+                if (!temp.isMe() && !temp.isSequenceNumbersEnabled()) {
+                    return true;
+                }
             }
         }
 
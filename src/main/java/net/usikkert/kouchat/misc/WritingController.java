@@ -0,0 +1,406 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.usikkert.kouchat.net.NetworkMessages;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * Keeps track of who is writing, and limits how often writing notices are sent and shown.
+ *
+ * <p>For the application user:</p>
+ * <ul>
+ *   <li>The first writing notice is sent right away.</li>
+ *   <li>The stopped writing notice waits a couple of seconds, and is never sent if the user starts writing
+ *       again before that. A user sending several messages in a row only sends one pair of notices.</li>
+ *   <li>Notices are never sent more often than once a second.</li>
+ *   <li>While writing, the writing notice is repeated every now and then, so the other clients
+ *       can let it expire if the stopped writing notice is lost.</li>
+ * </ul>
+ *
+ * <p>For other users:</p>
+ * <ul>
+ *   <li>Notices are collected for a short while before the user list is updated, and only the last state
+ *       of each user is used. Notices that don't change the state of the user are ignored.</li>
+ *   <li>A user that has not repeated the writing notice for a while is set as not writing.
+ *       Only users that have been seen repeating the notice are checked, since older clients
+ *       send the writing notice once, however long the user is writing.</li>
+ * </ul>
+ *
+ * @author Christian Ihle
+ */
+public class WritingController {
+
+    private static final Logger LOG = Logger.getLogger(WritingController.class);
+
+    /** Milliseconds to wait before notifying that the application user stopped writing. */
+    protected static final int STOP_DELAY = 2000;
+
+    /** Minimum number of milliseconds between notices from the application user. */
+    protected static final int MIN_INTERVAL = 1000;
+
+    /** Milliseconds between each repeat of the writing notice, while the application user is writing. */
+    protected static final int REFRESH_INTERVAL = 20000;
+
+    /** Milliseconds before a user that has not repeated the writing notice is set as not writing. */
+    protected static final int EXPIRY_TIME = 3 * REFRESH_INTERVAL;
+
+    /** Milliseconds to collect notices from other users before updating the user list. */
+    protected static final int COALESCE_DELAY = 250;
+
+    /** Milliseconds between each check for expired writing notices. */
+    private static final int EXPIRY_CHECK_INTERVAL = 5000;
+
+    private final UserListController userListController;
+    private final NetworkMessages networkMessages;
+    private final Timer timer;
+
+    /** If the application user is writing right now. */
+    private boolean meWriting;
+
+    /** If the other clients have been told that the application user is writing. */
+    private boolean announcedWriting;
+
+    /** When the last notice was sent. */
+    private long lastAnnouncement;
+
+    /** When the application user stopped writing. */
+    private long meStoppedWriting;
+
+    /** The next scheduled check of notices to send, if any. */
+    private TimerTask announceTask;
+
+    /** The latest writing state received from other users, by user code, not yet shown in the user list. */
+    private final Map<Integer, Boolean> pendingChanges;
+
+    /** When the last writing notice was received from each user that is writing, by user code. */
+    private final Map<Integer, Long> lastWritingNotices;
+
+    /** Codes of the users that repeat the writing notice while writing, so their notices can expire. */
+    private final Set<Integer> refreshingUsers;
+
+    /** The next scheduled update of the user list, if any. */
+    private TimerTask flushTask;
+
+    /** If the timer has been stopped, and can not be used anymore. */
+    private boolean stopped;
+
+    /**
+     * Constructor.
+     *
+     * @param userListController The controller for the user list to update.
+     * @param networkMessages The network messages to use for sending notices.
+     */
+    public WritingController(final UserListController userListController, final NetworkMessages networkMessages) {
+        Validate.notNull(userListController, "User list controller can not be null");
+        Validate.notNull(networkMessages, "Network messages can not be null");
+
+        this.userListController = userListController;
+        this.networkMessages = networkMessages;
+
+        pendingChanges = new LinkedHashMap<>();
+        lastWritingNotices = new HashMap<>();
+        refreshingUsers = new HashSet<>();
+        timer = new Timer("WritingTimer", true);
+    }
+
+    /**
+     * Starts the regular check for expired writing notices from other users.
+     */
+    public void start() {
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                expireWritingNotices(System.currentTimeMillis());
+            }
+        }, EXPIRY_CHECK_INTERVAL, EXPIRY_CHECK_INTERVAL);
+    }
+
+    /**
+     * Stops the timer. No more notices are sent or handled after this.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        timer.cancel();
+    }
+
+    /**
+     * Registers that the application user started or stopped writing,
+     * and notifies the other clients when appropriate.
+     *
+     * @param writing If the application user is writing.
+     */
+    public void meWritingChanged(final boolean writing) {
+        meWritingChanged(writing, System.currentTimeMillis());
+    }
+
+    /**
+     * Registers a writing notice from another user. The user list is updated a little later.
+     *
+     * @param code The unique code of the user.
+     * @param writing If the user is writing.
+     */
+    public void userWritingChanged(final int code, final boolean writing) {
+        userWritingChanged(code, writing, System.currentTimeMillis());
+    }
+
+    /**
+     * Forgets everything about the writing notices from a user that logged off or timed out.
+     *
+     * @param code The unique code of the user.
+     */
+    public synchronized void userRemoved(final int code) {
+        lastWritingNotices.remove(code);
+        refreshingUsers.remove(code);
+        pendingChanges.remove(code);
+    }
+
+    /**
+     * Forgets the writing state of the application user, without notifying anyone.
+     * Used when logging off, since the other clients remove the user anyway.
+     */
+    public synchronized void reset() {
+        meWriting = false;
+        announcedWriting = false;
+        cancelAnnounceTask();
+    }
+
+    /**
+     * Registers that the application user started or stopped writing.
+     *
+     * @param writing If the application user is writing.
+     * @param now The current time.
+     */
+    protected void meWritingChanged(final boolean writing, final long now) {
+        synchronized (this) {
+            if (writing == meWriting) {
+                return;
+            }
+
+            meWriting = writing;
+
+            if (!writing) {
+                meStoppedWriting = now;
+            }
+        }
+
+        announce(now);
+    }
+
+    /**
+     * Sends a notice to the other clients if it's time, and schedules the next check.
+     *
+     * @param now The current time.
+     */
+    protected void announce(final long now) {
+        final Boolean notice;
+
+        synchronized (this) {
+            cancelAnnounceTask();
+
+            final long nextAllowed = lastAnnouncement + MIN_INTERVAL;
+            long nextCheck = -1;
+            Boolean noticeToSend = null;
+
+            if (meWriting) {
+                final long nextRefresh = lastAnnouncement + REFRESH_INTERVAL;
+
+                if ((!announcedWriting && now >= nextAllowed) || (announcedWriting && now >= nextRefresh)) {
+                    noticeToSend = true;
+                    nextCheck = now + REFRESH_INTERVAL;
+                } else if (!announcedWriting) {
+                    nextCheck = nextAllowed;
+                } else {
+                    nextCheck = nextRefresh;
+                }
+            }
+
+            else if (announcedWriting) {
+                final long stopTime = Math.max(meStoppedWriting + STOP_DELAY, nextAllowed);
+
+                if (now >= stopTime) {
+                    noticeToSend = false;
+                } else {
+                    nextCheck = stopTime;
+                }
+            }
+
+            if (noticeToSend != null) {
+                announcedWriting = noticeToSend;
+                lastAnnouncement = now;
+            }
+
+            if (nextCheck != -1) {
+                scheduleAnnounceTask(nextCheck - now);
+            }
+
+            notice = noticeToSend;
+        }
+
+        if (notice != null) {
+            if (notice) {
+                networkMessages.sendWritingMessage();
+            } else {
+                networkMessages.sendStoppedWritingMessage();
+            }
+        }
+    }
+
+    /**
+     * Registers a writing notice from another user, and schedules an update of the user list.
+     *
+     * @param code The unique code of the user.
+     * @param writing If the user is writing.
+     * @param now The current time.
+     */
+    protected synchronized void userWritingChanged(final int code, final boolean writing, final long now) {
+        if (writing) {
+            if (lastWritingNotices.put(code, now) != null) {
+                refreshingUsers.add(code);
+            }
+        } else {
+            lastWritingNotices.remove(code);
+        }
+
+        pendingChanges.put(code, writing);
+
+        if (flushTask == null && !stopped) {
+            flushTask = new TimerTask() {
+                @Override
+                public void run() {
+                    flushChanges();
+                }
+            };
+
+            timer.schedule(flushTask, COALESCE_DELAY);
+        }
+    }
+
+    /**
+     * Sets users that have not repeated the writing notice for a while as not writing.
+     * Users that have never repeated the notice are left alone.
+     *
+     * @param now The current time.
+     */
+    protected void expireWritingNotices(final long now) {
+        final List<Integer> expiredCodes = new ArrayList<>();
+
+        synchronized (this) {
+            final Iterator<Map.Entry<Integer, Long>> iterator = lastWritingNotices.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                final Map.Entry<Integer, Long> entry = iterator.next();
+
+                if (refreshingUsers.contains(entry.getKey()) && entry.getValue() < now - EXPIRY_TIME) {
+                    expiredCodes.add(entry.getKey());
+                    pendingChanges.remove(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (final Integer code : expiredCodes) {
+            updateUserList(code, false);
+        }
+    }
+
+    /**
+     * Updates the user list with the latest writing state of each user that sent a notice.
+     */
+    protected void flushChanges() {
+        final Map<Integer, Boolean> changes;
+
+        synchronized (this) {
+            changes = new LinkedHashMap<>(pendingChanges);
+            pendingChanges.clear();
+            flushTask = null;
+        }
+
+        for (final Map.Entry<Integer, Boolean> change : changes.entrySet()) {
+            updateUserList(change.getKey(), change.getValue());
+        }
+    }
+
+    /**
+     * Changes the writing state of the user in the user list, if it's different from before.
+     *
+     * @param code The unique code of the user.
+     * @param writing If the user is writing.
+     */
+    private void updateUserList(final int code, final boolean writing) {
+        // Runs on the timer thread. The timer stops for good if an exception gets through.
+        try {
+            final User user = userListController.getUser(code);
+
+            if (user != null && user.isWriting() != writing) {
+                userListController.changeWriting(code, writing);
+            }
+        }
+
+        catch (final RuntimeException e) {
+            LOG.severe(e, "Failed to change writing state of user %s", code);
+        }
+    }
+
+    /**
+     * Schedules a new check of notices to send.
+     *
+     * @param delay Milliseconds to wait before the check.
+     */
+    private void scheduleAnnounceTask(final long delay) {
+        if (stopped) {
+            return;
+        }
+
+        announceTask = new TimerTask() {
+            @Override
+            public void run() {
+                announce(System.currentTimeMillis());
+            }
+        };
+
+        timer.schedule(announceTask, Math.max(0, delay));
+    }
+
+    /**
+     * Cancels the scheduled check of notices to send, if any.
+     */
+    private void cancelAnnounceTask() {
+        if (announceTask != null) {
+            announceTask.cancel();
+            announceTask = null;
+        }
+    }
+}
@@ -69,15 +69,26 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
      */
     @Override
     public void messageArrived(final int userCode, final String msg, final int color) {
+        MessageTrace.recordStage(MessageTraceStage.RESPONDER_WRAPPER);
+
         // A little hack to stop messages from showing before the user is logged on
         if (controller.isNewUser(userCode)) {
             askUserToIdentify(userCode);
+            final MessageTrace trace = MessageTrace.getCurrentTrace();
 
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
                     waitForUserToIdentify(userCode);
-                    messageResponder.messageArrived(userCode, msg, color);
+                    MessageTrace.resume(trace);
+
+                    try {
+                        messageResponder.messageArrived(userCode, msg, color);
+                    }
+
+                    finally {
+                        MessageTrace.clear();
+                    }
                 }
             });
         }
@@ -102,8 +113,8 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
     }
 
     @Override
-    public void topicRequested() {
-        messageResponder.topicRequested();
+    public void topicRequested(final int userCode) {
+        messageResponder.topicRequested(userCode);
     }
 
     /**
@@ -155,8 +166,9 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
     }
 
     @Override
-    public void userExposing(final User user) {
-        messageResponder.userExposing(user);
+    public void userExposing(final int userCode, final String nick, final String awayMsg,
+                             final String ipAddress) {
+        messageResponder.userExposing(userCode, nick, awayMsg, ipAddress);
     }
 
     @Override
@@ -188,6 +200,11 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
         }
     }
 
+    @Override
+    public void userAlive(final int userCode) {
+        messageResponder.userAlive(userCode);
+    }
+
     /**
      * Receives a file transfer, which may take a long time. Needs to run in a different thread.
      * Handles unidentified users.
@@ -208,6 +225,26 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
         });
     }
 
+    /**
+     * Receives a folder, which may take a long time. Needs to run in a different thread.
+     * Handles unidentified users.
+     */
+    @Override
+    public void folderSend(final int userCode, final long byteSize, final String folderName,
+                           final String user, final int fileHash, final int fileCount) {
+        if (controller.isNewUser(userCode)) {
+            askUserToIdentify(userCode);
+        }
+
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                waitForUserToIdentify(userCode);
+                messageResponder.folderSend(userCode, byteSize, folderName, user, fileHash, fileCount);
+            }
+        });
+    }
+
     @Override
     public void fileSendAborted(final int userCode, final String fileName, final int fileHash) {
         messageResponder.fileSendAborted(userCode, fileName, fileHash);
@@ -229,23 +266,24 @@ public class AsyncMessageResponderWrapper implements MessageResponder {
 
     @Override
     public void clientInfo(final int userCode, final String client, final long timeSinceLogon,
-                           final String operatingSystem, final int privateChatPort, final int tcpChatPort) {
-        messageResponder.clientInfo(userCode, client, timeSinceLogon, operatingSystem, privateChatPort, tcpChatPort);
+                           final String operatingSystem, final int privateChatPort, final int tcpChatPort,
+                           final int fileTransferPort) {
+        messageResponder.clientInfo(userCode, client, timeSinceLogon, operatingSystem, privateChatPort, tcpChatPort,
+                                    fileTransferPort);
     }
 
     /**
-     * Asks user with the specified userCode to identify with {@link #userExposing(User)}.
+     * Asks user with the specified userCode to identify with {@link #userExposing(int, String, String, String)}.
      * Adds user to waiting list so we know this user sent a message without being known,
      * and also so we can wait for this user to identify before continuing an operation.
      */
     void askUserToIdentify(final int userCode) {
         waitingList.addWaitingUser(userCode);
-        controller.sendExposeMessage();
-        controller.sendGetTopicMessage();
+        controller.askUsersToIdentify();
     }
 
     /**
-     * Waits for user with the specified userCode to identify in {@link #userExposing(User)}.
+     * Waits for user with the specified userCode to identify in {@link #userExposing(int, String, String, String)}.
      * Gives up after 2 seconds.
      */
     void waitForUserToIdentify(final int userCode) {
@@ -24,7 +24,11 @@ package net.usikkert.kouchat.net;
 
 import java.net.NetworkInterface;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +45,8 @@ import org.jetbrains.annotations.Nullable;
  *
  * Every now and then, the thread will check if there are better
  * networks available, and reconnect to that network instead.
+ * On operating systems supported by {@link NetworkChangeWatcher}, the
+ * check is done right away when the network configuration changes.
  *
  * @author Christian Ihle
  */
@@ -56,6 +62,7 @@ public class ConnectionWorker implements Runnable {
     private static final int SLEEP_DOWN = 1000 * 15;
 
     private final NetworkUtils networkUtils = new NetworkUtils();
+    private final NetworkInventory networkInventory = NetworkInventory.getSharedInventory();
 
     /** Indicates whether the thread should run or not. */
     private boolean run;
@@ -67,6 +74,9 @@ public class ConnectionWorker implements Runnable {
     @Nullable
     private NetworkInterface networkInterface;
 
+    /** Other usable network interfaces to use as well, when multi interface mode is enabled. */
+    private List<NetworkInterface> additionalNetworkInterfaces = Collections.emptyList();
+
     /** The working thread. */
     @Nullable
     private Thread worker;
@@ -77,9 +87,22 @@ public class ConnectionWorker implements Runnable {
     /** For locating the operating system's choice of network interface. */
     private final OperatingSystemNetworkInfo osNetworkInfo;
 
+    /** For checking the network right away when the network configuration changes. */
+    private final NetworkChangeWatcher networkChangeWatcher;
+
     /** The settings to use for the network. */
     private final Settings settings;
 
+    /** Lock to wait on between each time the network is checked. */
+    private final Object sleepLock = new Object();
+
+    /** If a network check was asked for since the thread last waited. Guarded by sleepLock. */
+    private boolean networkCheckRequested;
+
+    /** Network interface selection started in the background before the thread was started. */
+    @Nullable
+    private FutureTask<NetworkInterface> networkProbe;
+
     /**
      * Constructor.
      *
@@ -94,6 +117,7 @@ public class ConnectionWorker implements Runnable {
 
         listeners = new ArrayList<>();
         osNetworkInfo = new OperatingSystemNetworkInfo(settings, errorHandler);
+        networkChangeWatcher = new NetworkChangeWatcher(this);
     }
 
     /**
@@ -112,13 +136,13 @@ public class ConnectionWorker implements Runnable {
 
             try {
                 if (networkUp) {
-                    Thread.sleep(SLEEP_UP);
+                    waitForNextCheck(SLEEP_UP);
                 } else {
-                    Thread.sleep(SLEEP_DOWN);
+                    waitForNextCheck(SLEEP_DOWN);
                 }
             }
 
-            // Sleep interrupted - probably from stop() or checkNetwork()
+            // Sleep interrupted - probably from stop()
             catch (final InterruptedException e) {
                 LOG.log(Level.FINE, e.toString());
             }
@@ -137,8 +161,27 @@ public class ConnectionWorker implements Runnable {
      * Asks the thread to check the network now to detect loss of network connectivity.
      */
     public void checkNetwork() {
-        if (worker != null) {
-            worker.interrupt();
+        synchronized (sleepLock) {
+            networkCheckRequested = true;
+            sleepLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the next time the network should be checked. That is when the timeout has passed,
+     * or when {@link #checkNetwork()} is called. If a check was asked for while the network was
+     * being updated, there is no waiting.
+     *
+     * @param timeout The longest time to wait, in milliseconds.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    private void waitForNextCheck(final long timeout) throws InterruptedException {
+        synchronized (sleepLock) {
+            if (!networkCheckRequested) {
+                sleepLock.wait(timeout);
+            }
+
+            networkCheckRequested = false;
         }
     }
 
@@ -149,7 +192,7 @@ public class ConnectionWorker implements Runnable {
      * @return If the network is up or not after this update is done.
      */
     private synchronized boolean updateNetwork() {
-        final NetworkInterface netif = selectNetworkInterface();
+        final NetworkInterface netif = takeProbedNetworkInterface();
 
         // No network interface to connect with
         if (!networkUtils.isUsable(netif)) {
@@ -167,8 +210,10 @@ public class ConnectionWorker implements Runnable {
             final String origNetwork = networkInterface == null ? "[null]" : networkInterface.getName();
             LOG.log(Level.FINE, "Changing network from " + origNetwork + " to " + netif.getName());
             networkInterface = netif;
+            updateAdditionalNetworkInterfaces();
 
             if (networkUp) {
+                NetworkMetrics.networkReconnected();
                 notifyNetworkDown(true);
                 notifyNetworkUp(true);
             }
@@ -182,9 +227,19 @@ public class ConnectionWorker implements Runnable {
         else if (!networkUp) {
             LOG.log(Level.FINE, "Network " + netif.getName() + " is up again");
             networkInterface = netif;
+            updateAdditionalNetworkInterfaces();
+            NetworkMetrics.networkReconnected();
             notifyNetworkUp(false);
         }
 
+        // The main network is the same, but other networks came or went in multi interface mode
+        else if (updateAdditionalNetworkInterfaces()) {
+            LOG.log(Level.FINE, "Changing additional networks to " + getNames(additionalNetworkInterfaces));
+            NetworkMetrics.networkReconnected();
+            notifyNetworkDown(true);
+            notifyNetworkUp(true);
+        }
+
         // Else, the old connection is still up
 
         return true;
@@ -200,6 +255,45 @@ public class ConnectionWorker implements Runnable {
         return !networkUtils.sameNetworkInterface(netif, networkInterface);
     }
 
+    /**
+     * Finds the usable network interfaces to use in addition to the current network interface,
+     * if multi interface mode is enabled in the settings.
+     *
+     * @return If the additional network interfaces are different from before.
+     */
+    private boolean updateAdditionalNetworkInterfaces() {
+        final List<NetworkInterface> additional = new ArrayList<>();
+
+        if (settings.isMultiInterface()) {
+            for (final NetworkInterface netif : networkInventory.getSnapshot().getUsableNetworkInterfaces()) {
+                if (!networkUtils.sameNetworkInterface(netif, networkInterface)) {
+                    additional.add(netif);
+                }
+            }
+        }
+
+        final boolean changed = !getNames(additional).equals(getNames(additionalNetworkInterfaces));
+        additionalNetworkInterfaces = additional;
+
+        return changed;
+    }
+
+    /**
+     * Gets the names of the network interfaces, in the same order.
+     *
+     * @param networkInterfaces The network interfaces to get the names of.
+     * @return The names.
+     */
+    private List<String> getNames(final List<NetworkInterface> networkInterfaces) {
+        final List<String> names = new ArrayList<>();
+
+        for (final NetworkInterface netif : networkInterfaces) {
+            names.add(netif.getName());
+        }
+
+        return names;
+    }
+
     /**
      * Notifies all the listeners that they can prepare to be notified that the network is up.
      */
@@ -254,7 +348,63 @@ public class ConnectionWorker implements Runnable {
             run = true;
             worker = new Thread(this, "ConnectionWorker");
             worker.start();
+            networkChangeWatcher.start();
+        }
+    }
+
+    /**
+     * Starts selecting the network interface to use in a background thread, so the result is
+     * ready when the thread is started. Finding the operating system's choice of network interface
+     * can take up to a couple of seconds, and this makes it possible to do that while the
+     * user interface is loading.
+     *
+     * <p>Does nothing if the thread is already running, or if a probe is in progress.</p>
+     */
+    public synchronized void probeNetwork() {
+        if (networkProbe != null || isAlive()) {
+            return;
+        }
+
+        networkProbe = new FutureTask<>(new Callable<NetworkInterface>() {
+            @Override
+            public NetworkInterface call() {
+                return selectNetworkInterface();
+            }
+        });
+
+        final Thread probeThread = new Thread(networkProbe, "NetworkProbe");
+        probeThread.setDaemon(true);
+        probeThread.start();
+    }
+
+    /**
+     * Gets the network interface found by {@link #probeNetwork()} the first time after a probe,
+     * and waits for the probe to finish if necessary. Otherwise a new network interface is selected.
+     *
+     * @return The network interface to use, or <code>null</code> if none was found.
+     */
+    @Nullable
+    private NetworkInterface takeProbedNetworkInterface() {
+        if (networkProbe == null) {
+            return selectNetworkInterface();
+        }
+
+        final FutureTask<NetworkInterface> probe = networkProbe;
+        networkProbe = null;
+
+        try {
+            return probe.get();
+        }
+
+        catch (final InterruptedException e) {
+            LOG.log(Level.FINE, "Interrupted while waiting for network probe: " + e.toString());
+        }
+
+        catch (final ExecutionException e) {
+            LOG.log(Level.WARNING, "Network probe failed: " + e.getCause(), e.getCause());
         }
+
+        return selectNetworkInterface();
     }
 
     /**
@@ -262,6 +412,7 @@ public class ConnectionWorker implements Runnable {
      */
     public void stop() {
         run = false;
+        networkChangeWatcher.stop();
 
         if (worker != null) {
             worker.interrupt();
@@ -280,11 +431,16 @@ public class ConnectionWorker implements Runnable {
      * <p>If no usable network interfaces are found, then <code>null</code>
      * is returned.</p>
      *
+     * <p>The {@link NetworkInventory} is refreshed first, so the rest of the application
+     * sees the same network interfaces as the selection was based on.</p>
+     *
      * @return The network interface found, or <code>null</code>.
      * @see NetworkUtils#isUsable(NetworkInterface)
      */
     @Nullable
     private NetworkInterface selectNetworkInterface() {
+        networkInventory.refresh();
+
         final NetworkInterface firstUsableNetIf = networkUtils.findFirstUsableNetworkInterface();
 
         if (firstUsableNetIf == null) {
@@ -336,6 +492,16 @@ public class ConnectionWorker implements Runnable {
         return networkInterface;
     }
 
+    /**
+     * Gets the other network interfaces to send and receive on, in addition to the current
+     * network interface. Always empty unless multi interface mode is enabled.
+     *
+     * @return The additional network interfaces.
+     */
+    public synchronized List<NetworkInterface> getAdditionalNetworkInterfaces() {
+        return Collections.unmodifiableList(additionalNetworkInterfaces);
+    }
+
     /**
      * Checks if the network is up.
      *
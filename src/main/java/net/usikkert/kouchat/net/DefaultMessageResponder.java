@@ -98,6 +98,8 @@ public class DefaultMessageResponder implements MessageResponder {
      */
     @Override
     public void messageArrived(final int userCode, final String msg, final int color) {
+        MessageTrace.recordStage(MessageTraceStage.RESPONDER);
+
         if (!controller.isNewUser(userCode)) {
             final User user = controller.getUser(userCode);
 
@@ -225,6 +227,7 @@ public class DefaultMessageResponder implements MessageResponder {
 
                     // Shown during startup.
                     else {
+                        chatState.registerLogonActivity();
                         final String date = dateTools.dateToString(new Date(time), "HH:mm:ss, dd. MMM. yy");
                         msgController.showSystemMessage("Topic is: " + newTopic + " (set by " + nick + " at " + date + ")");
                     }
@@ -242,17 +245,32 @@ public class DefaultMessageResponder implements MessageResponder {
                 }
             }
         }
+
+        controller.topicAnswered(time);
     }
 
     /**
      * Adds unknown users that are exposing themselves.
      * This happens mostly during startup, but can also happen after a timeout.
      *
-     * @param user The unknown user who was exposed.
+     * <p>Known users are only checked for changes in nick name and away message.</p>
+     *
+     * @param userCode The unique code of the user who was exposed.
+     * @param nick The nick name of the user.
+     * @param awayMsg The away message of the user, or an empty string if not away.
+     * @param ipAddress The IP address of the user.
      */
     @Override
-    public void userExposing(final User user) {
-        if (controller.isNewUser(user.getCode())) {
+    public void userExposing(final int userCode, final String nick, final String awayMsg,
+                             final String ipAddress) {
+        if (controller.isNewUser(userCode)) {
+            final User user = new User(nick, userCode);
+            user.setIpAddress(ipAddress);
+            user.setAwayMsg(awayMsg);
+            user.setAway(awayMsg.length() > 0);
+            user.setLastIdle(System.currentTimeMillis());
+            user.setLogonTime(System.currentTimeMillis());
+
             // Usually this happens when someone returns from a timeout
             if (chatState.isLogonCompleted()) {
                 userShowedUp(user);
@@ -260,21 +278,22 @@ public class DefaultMessageResponder implements MessageResponder {
 
             // This should ONLY happen during logon
             else {
+                chatState.registerLogonActivity();
                 wList.removeWaitingUser(user.getCode());
                 controller.getUserList().add(user);
             }
         }
 
         else {
-            final User orgUser = controller.getUser(user.getCode());
+            final User orgUser = controller.getUser(userCode);
 
             // When users timeout, there can become sync issues
-            if (!orgUser.getNick().equals(user.getNick())) {
-                nickChanged(user.getCode(), user.getNick());
+            if (!orgUser.getNick().equals(nick)) {
+                nickChanged(userCode, nick);
             }
 
-            if (!orgUser.getAwayMsg().equals(user.getAwayMsg())) {
-                awayChanged(user.getCode(), user.isAway(), user.getAwayMsg());
+            if (!orgUser.getAwayMsg().equals(awayMsg)) {
+                awayChanged(userCode, awayMsg.length() > 0, awayMsg);
             }
         }
     }
@@ -372,9 +391,12 @@ public class DefaultMessageResponder implements MessageResponder {
     public void meIdle(final String ipAddress) {
         me.setLastIdle(System.currentTimeMillis());
 
-        if (!me.getIpAddress().equals(ipAddress) && chatState.isLoggedOn()) {
-            msgController.showSystemMessage("You changed ip from " + me.getIpAddress() + " to " + ipAddress);
-            me.setIpAddress(ipAddress);
+        if (chatState.isLoggedOn()) {
+            final String oldIpAddress = me.updateIpAddress(ipAddress);
+
+            if (oldIpAddress != null) {
+                msgController.showSystemMessage("You changed ip from " + oldIpAddress + " to " + ipAddress);
+            }
         }
     }
 
@@ -396,18 +418,35 @@ public class DefaultMessageResponder implements MessageResponder {
 
         user.setLastIdle(System.currentTimeMillis());
 
-        if (!user.getIpAddress().equals(ipAddress)) {
-            msgController.showSystemMessage(user.getNick() + " changed ip from " + user.getIpAddress() + " to " + ipAddress);
-            user.setIpAddress(ipAddress);
+        final String oldIpAddress = user.updateIpAddress(ipAddress);
+
+        if (oldIpAddress != null) {
+            msgController.showSystemMessage(user.getNick() + " changed ip from " + oldIpAddress + " to " + ipAddress);
+        }
+    }
+
+    /**
+     * Updates the idle time of the user, since any message works as a sign of life.
+     *
+     * @param userCode The unique code of the user who sent a message.
+     */
+    @Override
+    public void userAlive(final int userCode) {
+        final User user = controller.getUser(userCode);
+
+        if (user != null) {
+            user.setLastIdle(System.currentTimeMillis());
         }
     }
 
     /**
-     * Sends the current topic.
+     * Sends the current topic, if no one else does it first.
+     *
+     * @param userCode The unique code of the user who requested the topic.
      */
     @Override
-    public void topicRequested() {
-        controller.sendTopicRequestedMessage();
+    public void topicRequested(final int userCode) {
+        controller.topicRequested(userCode);
     }
 
     /**
@@ -422,12 +461,11 @@ public class DefaultMessageResponder implements MessageResponder {
     }
 
     /**
-     * Sends information about this client to the other clients.
+     * Sends information about this client to the other clients, after a short random delay.
      */
     @Override
     public void exposeRequested() {
-        controller.sendExposingMessage();
-        controller.sendClientInfo();
+        controller.exposeRequested();
     }
 
     /**
@@ -483,47 +521,92 @@ public class DefaultMessageResponder implements MessageResponder {
             msgController.showSystemMessage(
                     user + " is trying to send the file " + fileName + " (#" + fileRes.getId() + ") [" + size + "]");
 
-            if (ui.askFileSave(user, fileName, size)) {
-                ui.showFileSave(fileRes);
+            receive(tmpUser, user, fileRes, fileName, fileHash, size);
+        }
 
-                if (fileRes.isAccepted() && !fileRes.isCanceled()) {
-                    ui.showTransfer(fileRes);
+        else {
+            LOG.severe("Could not find user: %s", user);
+        }
+    }
 
-                    try {
-                        final int port = fileRes.startServer();
-                        controller.sendFileAccept(tmpUser, port, fileHash, fileName);
+    /**
+     * Asks the application user if a folder with several files from another user should be received.
+     * The files arrive as one stream, through the file transfer server.
+     *
+     * @param userCode The unique code of the user who is asking to send a folder.
+     * @param byteSize The size of the whole batch of files in bytes.
+     * @param folderName The name of the folder.
+     * @param user The nick name of the user.
+     * @param fileHash The hash code of the batch.
+     * @param fileCount The number of files in the folder.
+     */
+    @Override
+    public void folderSend(final int userCode, final long byteSize, final String folderName, final String user,
+                           final int fileHash, final int fileCount) {
+        if (!controller.isNewUser(userCode)) {
+            final String size = Tools.byteToString(byteSize) + ", " + fileCount + " files";
+            final User tmpUser = controller.getUser(userCode);
+            final File defaultFolder = new File(
+                    System.getProperty("user.home") + System.getProperty("file.separator") + folderName);
+            final FileReceiver fileRes = tList.addFolderReceiver(tmpUser, defaultFolder, byteSize, fileCount);
 
-                        if (fileRes.transfer()) {
-                            msgController.showSystemMessage("Successfully received " + fileName +
-                                                                    " from " + user + ", and saved as " + fileRes.getFile().getName());
-                        }
+            msgController.showSystemMessage(
+                    user + " is trying to send the folder " + folderName + " (#" + fileRes.getId() + ") [" + size + "]");
 
-                        else {
-                            msgController.showSystemMessage("Failed to receive " + fileName + " from " + user);
-                            fileRes.cancel();
-                        }
-                    }
+            receive(tmpUser, user, fileRes, folderName, fileHash, size);
+        }
 
-                    // Failed to start the server
-                    catch (final ServerException e) {
-                        LOG.severe(e, "Failed to start server: %s", e.getMessage());
-                        msgController.showSystemMessage("Failed to receive " + fileName + " from " + user);
-                        controller.sendFileAbort(tmpUser, fileHash, fileName);
-                        fileRes.cancel();
+        else {
+            LOG.severe("Could not find user: %s", user);
+        }
+    }
+
+    /**
+     * Asks the application user to accept the file or folder, and receives it if accepted.
+     *
+     * @param tmpUser The user sending the file.
+     * @param user The nick name of the user.
+     * @param fileRes The file receiver.
+     * @param fileName The name of the file or folder.
+     * @param fileHash The hash code of the file.
+     * @param size The size of the file, in readable format.
+     */
+    private void receive(final User tmpUser, final String user, final FileReceiver fileRes, final String fileName,
+                         final int fileHash, final String size) {
+        if (ui.askFileSave(user, fileName, size)) {
+            ui.showFileSave(fileRes);
+
+            if (fileRes.isAccepted() && !fileRes.isCanceled()) {
+                ui.showTransfer(fileRes);
+
+                try {
+                    final int port = startReceiving(tmpUser, fileRes, fileHash);
+                    controller.sendFileAccept(tmpUser, port, fileHash, fileName);
+
+                    if (fileRes.transfer()) {
+                        msgController.showSystemMessage("Successfully received " + fileName +
+                                                                " from " + user + ", and saved as " + fileRes.getFile().getName());
                     }
 
-                    // Failed to send the accept message
-                    catch (final CommandException e) {
+                    else {
                         msgController.showSystemMessage("Failed to receive " + fileName + " from " + user);
                         fileRes.cancel();
                     }
                 }
 
-                else if (!fileRes.isCanceled()) {
-                    msgController.showSystemMessage("You declined to receive " + fileName + " from " + user);
+                // Failed to start the server
+                catch (final ServerException e) {
+                    LOG.severe(e, "Failed to start server: %s", e.getMessage());
+                    msgController.showSystemMessage("Failed to receive " + fileName + " from " + user);
                     controller.sendFileAbort(tmpUser, fileHash, fileName);
+                    fileRes.cancel();
                 }
 
+                // Failed to send the accept message
+                catch (final CommandException e) {
+                    msgController.showSystemMessage("Failed to receive " + fileName + " from " + user);
+                    fileRes.cancel();
+                }
             }
 
             else if (!fileRes.isCanceled()) {
@@ -531,12 +614,42 @@ public class DefaultMessageResponder implements MessageResponder {
                 controller.sendFileAbort(tmpUser, fileHash, fileName);
             }
 
-            tList.removeFileReceiver(fileRes);
         }
 
-        else {
-            LOG.severe("Could not find user: %s", user);
+        else if (!fileRes.isCanceled()) {
+            msgController.showSystemMessage("You declined to receive " + fileName + " from " + user);
+            controller.sendFileAbort(tmpUser, fileHash, fileName);
         }
+
+        tList.removeFileReceiver(fileRes);
+    }
+
+    /**
+     * Gets ready to receive the file, and returns the port the user should send the file to.
+     * Uses the file transfer server if the user knows how to send files to it,
+     * or starts a server only for this file if not. Folders always use the file transfer server.
+     *
+     * @param user The user sending the file.
+     * @param fileRes The file receiver.
+     * @param fileHash The hash code of the file.
+     * @return The port the user should send the file to.
+     * @throws ServerException If the server could not be started.
+     */
+    private int startReceiving(final User user, final FileReceiver fileRes, final int fileHash) throws ServerException {
+        if (user.getFileTransferPort() > 0 || fileRes.isFolder()) {
+            final FileTransferServer fileTransferServer = controller.getFileTransferServer();
+
+            if (fileTransferServer.isStarted()) {
+                return fileRes.useServer(fileTransferServer, fileHash);
+            }
+
+            // Folders can only be received through the file transfer server
+            if (fileRes.isFolder()) {
+                throw new ServerException("The file transfer server is not started");
+            }
+        }
+
+        return fileRes.startServer();
     }
 
     /**
@@ -583,11 +696,20 @@ public class DefaultMessageResponder implements MessageResponder {
 
         if (fileSend != null) {
             msgController.showSystemMessage(user.getNick() + " accepted sending of " + fileName);
+            final boolean sent;
 
-            // Give the server some time to set up the connection first
-            sleeper.sleep(200);
+            // The file transfer server of the user is already running, so there is no need to wait
+            if (port > 0 && port == user.getFileTransferPort()) {
+                sent = fileSend.transfer(controller.getFileTransferConnectionPool(), port, fileHash);
+            }
+
+            else {
+                // Give the server some time to set up the connection first
+                sleeper.sleep(200);
+                sent = fileSend.transfer(port);
+            }
 
-            if (fileSend.transfer(port)) {
+            if (sent) {
                 msgController.showSystemMessage(fileName + " successfully sent to " + user.getNick());
             }
 
@@ -608,10 +730,12 @@ public class DefaultMessageResponder implements MessageResponder {
      * @param operatingSystem The user's operating system.
      * @param privateChatPort The port to use for sending private chat messages to this user.
      * @param tcpChatPort The port to use for sending chat messages to this user using tcp.
+     * @param fileTransferPort The port to use for sending files to this user over a pooled connection.
      */
     @Override
     public void clientInfo(final int userCode, final String client, final long timeSinceLogon,
-                           final String operatingSystem, final int privateChatPort, final int tcpChatPort) {
+                           final String operatingSystem, final int privateChatPort, final int tcpChatPort,
+                           final int fileTransferPort) {
         final User user = controller.getUser(userCode);
 
         if (user != null) {
@@ -620,6 +744,7 @@ public class DefaultMessageResponder implements MessageResponder {
             user.setOperatingSystem(operatingSystem);
             user.setPrivateChatPort(privateChatPort);
             user.setTcpChatPort(tcpChatPort);
+            user.setFileTransferPort(fileTransferPort);
         }
 
         else {
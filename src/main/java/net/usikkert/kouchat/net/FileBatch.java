@@ -0,0 +1,332 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Several files to send to another user at once, like a whole folder.
+ *
+ * <p>All the files are sent as one stream, with a manifest first, and then the contents of each file
+ * right after each other. The other user accepts the whole batch once, and the stream is sent like
+ * a single file. That way a folder with a thousand small files does not need a thousand questions and
+ * a thousand connections. {@link FileBatchWriter} saves the files on the other side.</p>
+ *
+ * <p>The manifest starts with {@link #MAGIC} and the size of the rest of the manifest, both as
+ * <code>int</code>. Then follows the number of files as an <code>int</code>, and the path and size
+ * of each file, as modified UTF-8 and <code>long</code>. Paths are relative to the batch,
+ * and use <code>/</code> between folders.</p>
+ *
+ * @author Christian Ihle
+ */
+public class FileBatch {
+
+    /** The first bytes of the manifest. */
+    protected static final int MAGIC = 0x4b464254;
+
+    private final String name;
+    private final List<Entry> entries;
+    private final long totalSize;
+    private final byte[] manifest;
+
+    /**
+     * Creates a batch with all the files in a folder, and the folders inside.
+     *
+     * @param folder The folder to send.
+     */
+    public FileBatch(final File folder) {
+        Validate.notNull(folder, "Folder to send can not be null");
+
+        this.name = folder.getName();
+        this.entries = new ArrayList<>();
+        addFolder(folder, "");
+
+        this.totalSize = sumSizes(entries);
+        this.manifest = createManifest(entries);
+    }
+
+    /**
+     * Creates a batch with some files. Folders among the files are sent with all their contents.
+     *
+     * @param name The name of the batch, which becomes the name of the folder on the other side.
+     * @param files The files to send.
+     */
+    public FileBatch(final String name, final List<File> files) {
+        Validate.notEmpty(name, "Name can not be empty");
+        Validate.notNull(files, "Files to send can not be null");
+
+        this.name = name;
+        this.entries = new ArrayList<>();
+
+        for (final File file : files) {
+            addFile(file, "");
+        }
+
+        this.totalSize = sumSizes(entries);
+        this.manifest = createManifest(entries);
+    }
+
+    /**
+     * Gets the name of the batch.
+     *
+     * @return The name of the batch.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of files in the batch. Folders are not counted.
+     *
+     * @return The number of files.
+     */
+    public int getFileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the size of all the files in the batch, without the manifest.
+     *
+     * @return The size of the files, in bytes.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Gets the relative paths of the files in the batch, in the order they are sent.
+     *
+     * @return The paths of the files.
+     */
+    public List<String> getPaths() {
+        final List<String> paths = new ArrayList<>();
+
+        for (final Entry entry : entries) {
+            paths.add(entry.path);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Creates a file to send with the whole batch as one stream. The length is the size of the
+     * manifest and all the files together.
+     *
+     * @return The batch as one file to send.
+     */
+    public FileToSend toFileToSend() {
+        return new FileToSend(new FileToSend.InputStreamOpener() {
+            @Override
+            public InputStream open() {
+                return new BatchInputStream();
+            }
+        }, name, manifest.length + totalSize);
+    }
+
+    private void addFolder(final File folder, final String path) {
+        final File[] files = folder.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        // Same order every time, so the manifest matches what's sent
+        Arrays.sort(files);
+
+        for (final File file : files) {
+            addFile(file, path);
+        }
+    }
+
+    private void addFile(final File file, final String path) {
+        final String filePath = path + file.getName();
+
+        if (file.isDirectory()) {
+            addFolder(file, filePath + "/");
+        }
+
+        else if (file.isFile() && file.canRead()) {
+            entries.add(new Entry(filePath, file, file.length()));
+        }
+    }
+
+    private static long sumSizes(final List<Entry> entries) {
+        long sum = 0;
+
+        for (final Entry entry : entries) {
+            sum += entry.size;
+        }
+
+        return sum;
+    }
+
+    private static byte[] createManifest(final List<Entry> entries) {
+        try {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final DataOutputStream contentOutputStream = new DataOutputStream(content);
+            contentOutputStream.writeInt(entries.size());
+
+            for (final Entry entry : entries) {
+                contentOutputStream.writeUTF(entry.path);
+                contentOutputStream.writeLong(entry.size);
+            }
+
+            final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+            final DataOutputStream manifestOutputStream = new DataOutputStream(manifest);
+            manifestOutputStream.writeInt(MAGIC);
+            manifestOutputStream.writeInt(content.size());
+            content.writeTo(manifestOutputStream);
+
+            return manifest.toByteArray();
+        }
+
+        catch (final IOException e) {
+            // Only happens if a path is longer than 65535 bytes
+            throw new IllegalArgumentException("Could not create manifest: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A file in the batch.
+     */
+    private static final class Entry {
+
+        private final String path;
+        private final File file;
+        private final long size;
+
+        private Entry(final String path, final File file, final long size) {
+            this.path = path;
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Reads the manifest, and then each file in turn. A file is only opened when it's time to send it,
+     * and exactly the size from the manifest is read from it.
+     */
+    private final class BatchInputStream extends InputStream {
+
+        private final List<Entry> remainingEntries;
+        private int manifestPosition;
+
+        @Nullable
+        private InputStream currentFile;
+        private String currentPath;
+        private long currentRemaining;
+
+        private BatchInputStream() {
+            remainingEntries = new ArrayList<>(entries);
+            Collections.reverse(remainingEntries);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            final int read = read(single, 0, 1);
+
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (manifestPosition < manifest.length) {
+                final int read = Math.min(length, manifest.length - manifestPosition);
+                System.arraycopy(manifest, manifestPosition, buffer, offset, read);
+                manifestPosition += read;
+
+                return read;
+            }
+
+            while (currentFile == null || currentRemaining == 0) {
+                if (!nextFile()) {
+                    return -1;
+                }
+            }
+
+            final int read = currentFile.read(buffer, offset, (int) Math.min(length, currentRemaining));
+
+            if (read == -1) {
+                throw new IOException("File got smaller while sending: " + currentPath);
+            }
+
+            currentRemaining -= read;
+
+            return read;
+        }
+
+        private boolean nextFile() throws IOException {
+            closeCurrentFile();
+
+            if (remainingEntries.isEmpty()) {
+                return false;
+            }
+
+            final Entry entry = remainingEntries.remove(remainingEntries.size() - 1);
+
+            try {
+                currentFile = new FileInputStream(entry.file);
+            }
+
+            catch (final FileNotFoundException e) {
+                throw new IOException("File disappeared while sending: " + entry.path, e);
+            }
+
+            currentPath = entry.path;
+            currentRemaining = entry.size;
+
+            return true;
+        }
+
+        private void closeCurrentFile() throws IOException {
+            if (currentFile != null) {
+                currentFile.close();
+                currentFile = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeCurrentFile();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Saves the files in a stream from a {@link FileBatch} to a folder.
+ *
+ * <p>The manifest is read first, and then each file is written as the bytes arrive. Paths that would end up
+ * outside the folder are refused.</p>
+ *
+ * @author Christian Ihle
+ */
+public class FileBatchWriter extends OutputStream {
+
+    /** Size of the start of the manifest, with the magic number and the size of the rest. */
+    private static final int MANIFEST_HEADER_SIZE = 8;
+
+    /** Refuse bigger manifests than this, to avoid running out of memory. */
+    private static final int MAX_MANIFEST_SIZE = 16 * 1024 * 1024;
+
+    private final File folder;
+    private final String canonicalFolder;
+
+    /** The manifest, until all of it has arrived. */
+    @Nullable
+    private ByteArrayOutputStream manifest;
+    private int manifestSize;
+
+    private final List<String> paths;
+    private final List<Long> sizes;
+    private int nextFile;
+    private int filesSaved;
+
+    @Nullable
+    private OutputStream currentFile;
+    private long currentRemaining;
+
+    /**
+     * Constructor.
+     *
+     * @param folder The folder to save the files in. Created if it does not exist.
+     * @throws IOException If the folder could not be created.
+     */
+    public FileBatchWriter(final File folder) throws IOException {
+        Validate.notNull(folder, "Folder can not be null");
+
+        this.folder = folder;
+        this.manifest = new ByteArrayOutputStream();
+        this.manifestSize = -1;
+        this.paths = new ArrayList<>();
+        this.sizes = new ArrayList<>();
+
+        createFolder(folder);
+        canonicalFolder = folder.getCanonicalPath() + File.separator;
+    }
+
+    /**
+     * Gets the number of files that are completely saved.
+     *
+     * @return The number of saved files.
+     */
+    public int getFilesSaved() {
+        return filesSaved;
+    }
+
+    /**
+     * Checks if all the files in the manifest have been saved.
+     *
+     * @return If all the files are saved.
+     */
+    public boolean isComplete() {
+        return manifest == null && getFilesSaved() == paths.size();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            final int used;
+
+            if (manifest != null) {
+                used = writeManifest(b, offset, remaining);
+            }
+
+            else {
+                used = writeFile(b, offset, remaining);
+            }
+
+            offset += used;
+            remaining -= used;
+        }
+    }
+
+    private int writeManifest(final byte[] b, final int off, final int len) throws IOException {
+        final int wanted = manifestSize == -1 ? MANIFEST_HEADER_SIZE : MANIFEST_HEADER_SIZE + manifestSize;
+        final int used = Math.min(len, wanted - manifest.size());
+        manifest.write(b, off, used);
+
+        if (manifest.size() == wanted) {
+            final DataInputStream manifestInputStream =
+                    new DataInputStream(new ByteArrayInputStream(manifest.toByteArray()));
+
+            if (manifestSize == -1) {
+                readManifestHeader(manifestInputStream);
+            }
+
+            else {
+                manifestInputStream.skipBytes(MANIFEST_HEADER_SIZE);
+                readManifest(manifestInputStream);
+                manifest = null;
+                openNextFiles();
+            }
+        }
+
+        return used;
+    }
+
+    private void readManifestHeader(final DataInputStream manifestInputStream) throws IOException {
+        if (manifestInputStream.readInt() != FileBatch.MAGIC) {
+            throw new IOException("Not a batch of files");
+        }
+
+        manifestSize = manifestInputStream.readInt();
+
+        if (manifestSize < 4 || manifestSize > MAX_MANIFEST_SIZE) {
+            throw new IOException("Invalid manifest size: " + manifestSize);
+        }
+    }
+
+    private void readManifest(final DataInputStream manifestInputStream) throws IOException {
+        final int fileCount = manifestInputStream.readInt();
+
+        for (int i = 0; i < fileCount; i++) {
+            final String path = manifestInputStream.readUTF();
+            final long size = manifestInputStream.readLong();
+
+            validatePath(path);
+
+            if (size < 0) {
+                throw new IOException("Invalid size of " + path + ": " + size);
+            }
+
+            paths.add(path);
+            sizes.add(size);
+        }
+    }
+
+    private int writeFile(final byte[] b, final int off, final int len) throws IOException {
+        if (currentFile == null) {
+            throw new IOException("More data than the manifest says");
+        }
+
+        final int used = (int) Math.min(len, currentRemaining);
+        currentFile.write(b, off, used);
+        currentRemaining -= used;
+
+        if (currentRemaining == 0) {
+            openNextFiles();
+        }
+
+        return used;
+    }
+
+    /**
+     * Closes the current file, and opens the next. Empty files are created right away,
+     * since no bytes will arrive for them.
+     */
+    private void openNextFiles() throws IOException {
+        closeCurrentFile();
+
+        while (nextFile < paths.size()) {
+            final File file = new File(folder, paths.get(nextFile));
+            createFolder(file.getParentFile());
+            currentFile = new FileOutputStream(file);
+            currentRemaining = sizes.get(nextFile);
+            nextFile++;
+
+            if (currentRemaining > 0) {
+                return;
+            }
+
+            closeCurrentFile();
+        }
+    }
+
+    /**
+     * Makes sure the path is relative, and stays inside the folder.
+     */
+    private void validatePath(final String path) throws IOException {
+        if (path.isEmpty() || path.startsWith("/") || path.contains("\\") || path.contains(":")) {
+            throw new IOException("Invalid path: " + path);
+        }
+
+        for (final String part : path.split("/")) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                throw new IOException("Invalid path: " + path);
+            }
+        }
+
+        if (!new File(folder, path).getCanonicalPath().startsWith(canonicalFolder)) {
+            throw new IOException("Invalid path: " + path);
+        }
+    }
+
+    private void createFolder(final File folderToCreate) throws IOException {
+        if (!folderToCreate.isDirectory() && !folderToCreate.mkdirs()) {
+            throw new IOException("Could not create folder: " + folderToCreate);
+        }
+    }
+
+    private void closeCurrentFile() throws IOException {
+        if (currentFile != null) {
+            currentFile.close();
+            currentFile = null;
+
+            if (currentRemaining == 0) {
+                filesSaved++;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (currentFile != null) {
+            currentFile.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeCurrentFile();
+    }
+}
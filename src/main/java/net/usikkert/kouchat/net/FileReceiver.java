@@ -26,6 +26,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.logging.Level;
@@ -66,6 +67,9 @@ public class FileReceiver implements FileTransfer {
     /** The unique ID of this file transfer. */
     private final int id;
 
+    /** The number of files when receiving a folder, or 0 for a single file. */
+    private final int fileCount;
+
     /** Keeps count of the transfer speed. */
     private final ByteCounter bCounter;
 
@@ -98,9 +102,9 @@ public class FileReceiver implements FileTransfer {
     @Nullable
     private Socket sock;
 
-    /** The output stream to the file. */
+    /** The output stream to the file, or to the folder when receiving several files. */
     @Nullable
-    private FileOutputStream fos;
+    private OutputStream fos;
 
     /** The input stream from the other user. */
     @Nullable
@@ -115,11 +119,25 @@ public class FileReceiver implements FileTransfer {
      * @param id The unique ID of this file transfer.
      */
     public FileReceiver(final User user, final File file, final long size, final int id) {
+        this(user, file, size, id, 0);
+    }
+
+    /**
+     * Constructor. Creates a new file receiver for a folder, with several files sent as a {@link FileBatch}.
+     *
+     * @param user The user which sends the files.
+     * @param folder The folder to save the files in.
+     * @param size The size of the whole batch, in bytes.
+     * @param id The unique ID of this file transfer.
+     * @param fileCount The number of files in the folder, or 0 if this is a single file.
+     */
+    public FileReceiver(final User user, final File folder, final long size, final int id, final int fileCount) {
         this.user = user;
-        this.file = file;
+        this.file = folder;
         this.size = size;
         this.id = id;
-        this.originalFileName = file.getName();
+        this.fileCount = fileCount;
+        this.originalFileName = folder.getName();
 
         bCounter = new ByteCounter();
     }
@@ -161,9 +179,24 @@ public class FileReceiver implements FileTransfer {
         return port;
     }
 
+    /**
+     * Receives the file through the file transfer server instead of starting a server only for this file.
+     * The sender will use a pooled connection to that server. Returns the port of the server.
+     *
+     * @param fileTransferServer The server to receive the file through.
+     * @param fileHash The hash code of the file, as sent by the user.
+     * @return The port which the sender can connect to.
+     */
+    public int useServer(final FileTransferServer fileTransferServer, final int fileHash) {
+        is = fileTransferServer.expectFile(user, fileHash);
+
+        return fileTransferServer.getPort();
+    }
+
     /**
      * Waits for an incoming connection, then receives the
-     * file from the other user.
+     * file from the other user. When using the file transfer server,
+     * the file arrives on a connection that is already open.
      *
      * @return If the file transfer was successful.
      */
@@ -176,9 +209,12 @@ public class FileReceiver implements FileTransfer {
         try {
             if (sSock != null) {
                 sock = sSock.accept();
-                listener.statusTransferring();
-                fos = new FileOutputStream(file);
                 is = sock.getInputStream();
+            }
+
+            if (is != null) {
+                listener.statusTransferring();
+                fos = isFolder() ? new FileBatchWriter(file) : new FileOutputStream(file);
 
                 final byte[] b = new byte[1024];
                 transferred = 0;
@@ -193,6 +229,7 @@ public class FileReceiver implements FileTransfer {
                     transferred += tmpTransferred;
                     percent = (int) ((transferred * 100) / size);
                     bCounter.addBytes(tmpTransferred);
+                    NetworkMetrics.transferBytesReceived(tmpTransferred);
                     transCounter++;
 
                     if (percent > tmpPercent || transCounter >= 250) {
@@ -202,7 +239,7 @@ public class FileReceiver implements FileTransfer {
                     }
                 }
 
-                if (!cancel && transferred == size) {
+                if (!cancel && transferred == size && (!isFolder() || ((FileBatchWriter) fos).isComplete())) {
                     received = true;
                     listener.statusCompleted();
                 }
@@ -362,6 +399,24 @@ public class FileReceiver implements FileTransfer {
         return originalFileName;
     }
 
+    /**
+     * Checks if this is a folder with several files, instead of a single file.
+     *
+     * @return If this is a folder.
+     */
+    public boolean isFolder() {
+        return fileCount > 0;
+    }
+
+    /**
+     * Gets the number of files in the folder.
+     *
+     * @return The number of files, or 0 if this is a single file.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
     /**
      * The other user, which sends a file.
      *
@@ -50,6 +50,9 @@ public class FileSender implements FileTransfer {
     /** The logger. */
     private static final Logger LOG = Logger.getLogger(FileSender.class.getName());
 
+    /** Bytes to read from the file at a time when using a pooled connection. */
+    private static final int POOLED_BUFFER_SIZE = 16 * 1024;
+
     /** The user to send a file to. */
     private final User user;
 
@@ -92,6 +95,10 @@ public class FileSender implements FileTransfer {
     @Nullable
     private Socket sock;
 
+    /** The stream to the other user, when using a pooled connection. */
+    @Nullable
+    private FileTransferConnectionPool.FileTransferOutputStream pooledStream;
+
     /**
      * Constructor. Creates a new file sender.
      *
@@ -154,29 +161,7 @@ public class FileSender implements FileTransfer {
                     is = file.getInputStream();
                     os = sock.getOutputStream();
 
-                    final byte[] b = new byte[1024];
-                    transferred = 0;
-                    percent = 0;
-                    int tmpTransferred = 0;
-                    int tmpPercent = 0;
-                    int transCounter = 0;
-                    bCounter.prepare();
-
-                    while (!cancel && (tmpTransferred = is.read(b)) != -1) {
-                        os.write(b, 0, tmpTransferred);
-                        transferred += tmpTransferred;
-                        percent = (int) ((transferred * 100) / file.length());
-                        bCounter.addBytes(tmpTransferred);
-                        transCounter++;
-
-                        if (percent > tmpPercent || transCounter >= 250) {
-                            transCounter = 0;
-                            tmpPercent = percent;
-                            listener.transferUpdate();
-                        }
-                    }
-
-                    if (!cancel && transferred == file.length()) {
+                    if (copyFile(1024)) {
                         sent = true;
                         listener.statusCompleted();
                     }
@@ -210,6 +195,94 @@ public class FileSender implements FileTransfer {
         return sent;
     }
 
+    /**
+     * Transfers the file to the user over a connection from the pool. Unlike {@link #transfer(int)}
+     * this does not wait for the user to start a server for the file, as the file transfer server
+     * of the user is already running, and the connection may already be open.
+     *
+     * @param connectionPool The pool to get the connection to the user from.
+     * @param port The port of the file transfer server of the user.
+     * @param fileHash The hash code of the file, as accepted by the user.
+     * @return If the file transfer was successful.
+     */
+    public boolean transfer(final FileTransferConnectionPool connectionPool, final int port, final int fileHash) {
+        if (!cancel) {
+            listener.statusConnecting();
+            waiting = false;
+            sent = false;
+
+            try {
+                pooledStream = connectionPool.openFileStream(user, port, fileHash);
+                os = pooledStream;
+
+                if (!cancel) {
+                    listener.statusTransferring();
+                    is = file.getInputStream();
+
+                    if (copyFile(POOLED_BUFFER_SIZE)) {
+                        pooledStream.close();
+                        sent = true;
+                        listener.statusCompleted();
+                    }
+
+                    else {
+                        listener.statusFailed();
+                    }
+                }
+
+                else {
+                    listener.statusFailed();
+                }
+            }
+
+            catch (final IOException e) {
+                LOG.log(Level.SEVERE, e.toString());
+                listener.statusFailed();
+            }
+
+            finally {
+                stopSender();
+                cleanupConnections();
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * Copies the file to the output stream, and updates the progress on the way.
+     *
+     * @param bufferSize The number of bytes to read from the file at a time.
+     * @return If the whole file was copied.
+     * @throws IOException If reading or writing failed.
+     */
+    private boolean copyFile(final int bufferSize) throws IOException {
+        final byte[] b = new byte[bufferSize];
+        transferred = 0;
+        percent = 0;
+        int tmpTransferred = 0;
+        int tmpPercent = 0;
+        int transCounter = 0;
+        bCounter.prepare();
+
+        while (!cancel && (tmpTransferred = is.read(b)) != -1) {
+            os.write(b, 0, tmpTransferred);
+            transferred += tmpTransferred;
+            percent = (int) ((transferred * 100) / file.length());
+            bCounter.addBytes(tmpTransferred);
+            NetworkMetrics.transferBytesSent(tmpTransferred);
+            transCounter++;
+
+            if (percent > tmpPercent || transCounter >= 250) {
+                transCounter = 0;
+                tmpPercent = percent;
+                listener.transferUpdate();
+            }
+        }
+
+        return !cancel && transferred == file.length();
+    }
+
     /**
      * Sets all connections to null.
      */
@@ -217,6 +290,7 @@ public class FileSender implements FileTransfer {
         is = null;
         os = null;
         sock = null;
+        pooledStream = null;
     }
 
     /**
@@ -233,19 +307,32 @@ public class FileSender implements FileTransfer {
             LOG.log(Level.SEVERE, e.toString(), e);
         }
 
+        final FileTransferConnectionPool.FileTransferOutputStream currentPooledStream = pooledStream;
+
+        // Closing a pooled stream means the file is complete, so only close it after a successful copy
+        if (currentPooledStream != null) {
+            currentPooledStream.abort();
+        }
+
+        else {
+            closeOutputStream();
+        }
+
         try {
-            if (os != null) {
-                os.flush();
+            if (sock != null) {
+                sock.close();
             }
         }
 
         catch (final IOException e) {
             LOG.log(Level.SEVERE, e.toString(), e);
         }
+    }
 
+    private void closeOutputStream() {
         try {
             if (os != null) {
-                os.close();
+                os.flush();
             }
         }
 
@@ -254,8 +341,8 @@ public class FileSender implements FileTransfer {
         }
 
         try {
-            if (sock != null) {
-                sock.close();
+            if (os != null) {
+                os.close();
             }
         }
 
@@ -0,0 +1,412 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps connections open to the {@link FileTransferServer} of other users, so files can be sent
+ * without connecting again for each file.
+ *
+ * <p>There is only one connection to each user. Several files can be sent over the same connection at
+ * the same time, as each file is sent in small frames. A connection that has not been used for
+ * {@link #IDLE_TIMEOUT} milliseconds is closed, and opened again the next time it's needed.</p>
+ *
+ * @author Christian Ihle
+ */
+public class FileTransferConnectionPool {
+
+    /** Milliseconds a connection can be unused before it's closed. */
+    protected static final long IDLE_TIMEOUT = 60_000;
+
+    /** Milliseconds to wait for a connection to the other user. */
+    protected static final int CONNECT_TIMEOUT = 5000;
+
+    private static final Logger LOG = Logger.getLogger(FileTransferConnectionPool.class);
+
+    private final User me;
+    private final Map<User, Connection> connections;
+    private final Timer timer;
+
+    /**
+     * Constructor.
+     *
+     * @param settings The settings to use.
+     */
+    public FileTransferConnectionPool(final Settings settings) {
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.me = settings.getMe();
+        this.connections = new WeakHashMap<>();
+        this.timer = new Timer("FileTransferConnectionPoolTimer", true);
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                closeIdleConnections(System.currentTimeMillis());
+            }
+        }, IDLE_TIMEOUT, IDLE_TIMEOUT);
+    }
+
+    /**
+     * Opens a stream for sending a file to the user. Uses the open connection to the user if there is one.
+     *
+     * <p>Closing the stream tells the user that the whole file has been sent, but keeps the connection open.
+     * Use {@link FileTransferOutputStream#abort()} instead if the file was not sent.</p>
+     *
+     * @param user The user to send the file to.
+     * @param port The port of the file transfer server of the user.
+     * @param fileHash The hash code of the file.
+     * @return A stream to write the file to.
+     * @throws IOException If it was not possible to connect to the user.
+     */
+    public FileTransferOutputStream openFileStream(final User user, final int port, final int fileHash)
+            throws IOException {
+        Validate.notNull(user, "User can not be null");
+
+        return new FileTransferOutputStream(getOrCreateConnection(user, port), fileHash);
+    }
+
+    /**
+     * Gets the number of open connections.
+     *
+     * @return The number of open connections.
+     */
+    public synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Closes all the connections. Files being sent will fail.
+     */
+    public void closeAll() {
+        final List<Connection> connectionsToClose;
+
+        synchronized (this) {
+            connectionsToClose = new ArrayList<>(connections.values());
+            connections.clear();
+        }
+
+        for (final Connection connection : connectionsToClose) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes connections that have not been used for a while, and have no files in progress.
+     *
+     * @param now The current time in milliseconds.
+     */
+    protected void closeIdleConnections(final long now) {
+        final List<Connection> connectionsToClose = new ArrayList<>();
+
+        synchronized (this) {
+            for (final Connection connection : connections.values()) {
+                if (connection.isIdle(now)) {
+                    connectionsToClose.add(connection);
+                }
+            }
+
+            connections.values().removeAll(connectionsToClose);
+        }
+
+        for (final Connection connection : connectionsToClose) {
+            LOG.fine("Closing idle connection to %s", connection.ipAddress);
+            connection.close();
+        }
+    }
+
+    private Connection getOrCreateConnection(final User user, final int port) throws IOException {
+        synchronized (this) {
+            final Connection connection = connections.get(user);
+
+            if (connection != null && connection.isUsable(user.getIpAddress(), port)) {
+                connection.fileStarted();
+                return connection;
+            }
+        }
+
+        // Connect without holding the lock, so a slow user does not stop files to the other users
+        final Connection newConnection = new Connection(user.getIpAddress(), port);
+        newConnection.fileStarted();
+        final Connection oldConnection;
+
+        synchronized (this) {
+            oldConnection = connections.put(user, newConnection);
+        }
+
+        if (oldConnection != null) {
+            oldConnection.closeWhenDone();
+        }
+
+        return newConnection;
+    }
+
+    /**
+     * One connection to the file transfer server of a user.
+     */
+    private final class Connection {
+
+        private final String ipAddress;
+        private final int port;
+        private final Socket socket;
+        private final DataOutputStream outputStream;
+
+        private int filesInProgress;
+        private long lastUsed;
+        private boolean closeWhenDone;
+        private volatile boolean closed;
+
+        private Connection(final String ipAddress, final int port) throws IOException {
+            this.ipAddress = ipAddress;
+            this.port = port;
+
+            socket = new Socket();
+            socket.setKeepAlive(true);
+            socket.setTcpNoDelay(true);
+
+            try {
+                socket.connect(new InetSocketAddress(ipAddress, port), CONNECT_TIMEOUT);
+                outputStream = new DataOutputStream(new BufferedOutputStream(
+                        socket.getOutputStream(), FileTransferServer.MAX_DATA_SIZE + 16));
+                outputStream.writeInt(FileTransferServer.MAGIC);
+                outputStream.writeInt(me.getCode());
+                outputStream.flush();
+            }
+
+            catch (final IOException e) {
+                socket.close();
+                throw e;
+            }
+
+            lastUsed = System.currentTimeMillis();
+            LOG.fine("Connected to %s:%s", ipAddress, port);
+        }
+
+        private synchronized boolean isUsable(final String currentIpAddress, final int currentPort) {
+            return !closed && !closeWhenDone && ipAddress.equals(currentIpAddress) && port == currentPort;
+        }
+
+        private synchronized boolean isIdle(final long now) {
+            return closed || filesInProgress == 0 && now - lastUsed > IDLE_TIMEOUT;
+        }
+
+        private synchronized void fileStarted() {
+            filesInProgress++;
+        }
+
+        private void fileDone() {
+            final boolean close;
+
+            synchronized (this) {
+                filesInProgress--;
+                lastUsed = System.currentTimeMillis();
+                close = closeWhenDone && filesInProgress == 0;
+            }
+
+            if (close) {
+                close();
+            }
+        }
+
+        private void closeWhenDone() {
+            final boolean close;
+
+            synchronized (this) {
+                closeWhenDone = true;
+                close = filesInProgress == 0;
+            }
+
+            if (close) {
+                close();
+            }
+        }
+
+        /**
+         * Writes a whole frame at once, so frames from different files don't get mixed up.
+         */
+        private void writeFrame(final byte frameType, final int fileHash, @Nullable final byte[] data,
+                                final int offset, final int length) throws IOException {
+            if (closed) {
+                throw new IOException("Connection to " + ipAddress + " is closed");
+            }
+
+            try {
+                synchronized (outputStream) {
+                    outputStream.writeByte(frameType);
+                    outputStream.writeInt(fileHash);
+
+                    if (frameType == FileTransferServer.FRAME_DATA) {
+                        outputStream.writeInt(length);
+                        outputStream.write(data, offset, length);
+                    }
+
+                    else {
+                        outputStream.flush();
+                    }
+                }
+            }
+
+            catch (final IOException e) {
+                close();
+                throw e;
+            }
+
+            touch();
+        }
+
+        private void flush() throws IOException {
+            try {
+                synchronized (outputStream) {
+                    outputStream.flush();
+                }
+            }
+
+            catch (final IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private synchronized void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private void close() {
+            closed = true;
+
+            synchronized (FileTransferConnectionPool.this) {
+                if (connections.containsValue(this)) {
+                    connections.values().remove(this);
+                }
+            }
+
+            try {
+                socket.close();
+            }
+
+            catch (final IOException e) {
+                LOG.warning(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Stream for sending one file over a pooled connection.
+     */
+    public final class FileTransferOutputStream extends OutputStream {
+
+        private final Connection connection;
+        private final int fileHash;
+        private boolean done;
+
+        private FileTransferOutputStream(final Connection connection, final int fileHash) {
+            this.connection = connection;
+            this.fileHash = fileHash;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (done) {
+                throw new IOException("Stream is closed");
+            }
+
+            int written = 0;
+
+            while (written < len) {
+                final int frameSize = Math.min(len - written, FileTransferServer.MAX_DATA_SIZE);
+                connection.writeFrame(FileTransferServer.FRAME_DATA, fileHash, b, off + written, frameSize);
+                written += frameSize;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!done) {
+                connection.flush();
+            }
+        }
+
+        /**
+         * Tells the user that the whole file has been sent. The connection stays open for the next file.
+         *
+         * @throws IOException If the connection failed.
+         */
+        @Override
+        public void close() throws IOException {
+            finish(FileTransferServer.FRAME_END);
+        }
+
+        /**
+         * Tells the user that the file will not be sent after all. The connection stays open for the next file.
+         */
+        public void abort() {
+            try {
+                finish(FileTransferServer.FRAME_ABORT);
+            }
+
+            catch (final IOException e) {
+                LOG.fine("Failed to abort file: %s", e.toString());
+            }
+        }
+
+        private synchronized void finish(final byte frameType) throws IOException {
+            if (done) {
+                return;
+            }
+
+            done = true;
+
+            try {
+                connection.writeFrame(frameType, fileHash, null, 0, 0);
+            }
+
+            finally {
+                connection.fileDone();
+            }
+        }
+    }
+}
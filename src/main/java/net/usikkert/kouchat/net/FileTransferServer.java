@@ -0,0 +1,501 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.Constants;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Server for receiving files over connections that are kept open between the files.
+ *
+ * <p>The old way of receiving a file is to start a new server for each file, and wait for the sender
+ * to connect. That takes a lot longer than sending a small file. This server is started once, and the
+ * port is sent to the other users in the client information. A {@link FileTransferConnectionPool} on the
+ * other side keeps one connection open to this server, and sends all the files over it, even at the
+ * same time.</p>
+ *
+ * <p>A connection starts with {@link #MAGIC} and the user code of the sender, both as <code>int</code>.
+ * Then follows any number of frames. Each frame starts with the frame type as a <code>byte</code>,
+ * and the hash code of the file as an <code>int</code>:</p>
+ *
+ * <ul>
+ *   <li>{@link #FRAME_DATA}: the number of bytes as an <code>int</code>, and then the bytes. Up to
+ *       {@link #MAX_DATA_SIZE} bytes in each frame.</li>
+ *   <li>{@link #FRAME_END}: the whole file has been sent.</li>
+ *   <li>{@link #FRAME_ABORT}: the sender stopped sending the file.</li>
+ * </ul>
+ *
+ * <p>Files are only received if they have been accepted, with {@link #expectFile(User, int)}.
+ * Frames for other files are skipped.</p>
+ *
+ * @author Christian Ihle
+ */
+public class FileTransferServer implements Runnable {
+
+    /** The first bytes of a connection, to make sure the other side speaks the same protocol. */
+    protected static final int MAGIC = 0x4b464954;
+
+    /** Frame type with part of a file. */
+    protected static final byte FRAME_DATA = 1;
+
+    /** Frame type for the end of a file. */
+    protected static final byte FRAME_END = 2;
+
+    /** Frame type for a file the sender stopped sending. */
+    protected static final byte FRAME_ABORT = 3;
+
+    /** The most bytes of a file in one frame. */
+    protected static final int MAX_DATA_SIZE = 64 * 1024;
+
+    /** The most frames waiting to be saved for one file, before the connection stops reading. */
+    protected static final int MAX_QUEUED_FRAMES = 64;
+
+    /**
+     * Milliseconds to wait for more of a file before giving up.
+     * The same as the server for a single file waits for the sender to connect.
+     */
+    protected static final long READ_TIMEOUT = 15_000;
+
+    /**
+     * Milliseconds to wait for room in the queue of a file, before giving up on that file.
+     * The other files on the same connection wait as well, so this is a lot shorter than {@link #READ_TIMEOUT}.
+     */
+    protected static final long QUEUE_TIMEOUT = 5000;
+
+    private static final int MAX_PORT_ATTEMPTS = 50;
+
+    private static final Logger LOG = Logger.getLogger(FileTransferServer.class);
+
+    /** Marks the end of a file in the queue. */
+    private static final byte[] END = new byte[0];
+
+    /** Marks an aborted file in the queue. */
+    private static final byte[] ABORT = new byte[0];
+
+    private final Controller controller;
+    private final User me;
+
+    /** The accepted files that have not been received yet, by user code and file hash. */
+    private final Map<String, IncomingFile> expectedFiles;
+
+    private final long queueTimeout;
+
+    private volatile boolean connected;
+
+    @Nullable
+    private ServerSocket serverSocket;
+
+    /**
+     * Constructor.
+     *
+     * @param controller The controller, to find the users that connect.
+     * @param settings The settings to use.
+     */
+    public FileTransferServer(final Controller controller, final Settings settings) {
+        Validate.notNull(controller, "Controller can not be null");
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.controller = controller;
+        this.me = settings.getMe();
+        this.expectedFiles = new ConcurrentHashMap<>();
+        this.queueTimeout = QUEUE_TIMEOUT;
+    }
+
+    /**
+     * Starts the server on the first available port from {@link Constants#NETWORK_FILE_TRANSFER_PORT}.
+     * The port is set on <code>me</code>, or 0 if the server could not be started.
+     */
+    public synchronized void startServer() {
+        if (connected) {
+            return;
+        }
+
+        int port = Constants.NETWORK_FILE_TRANSFER_PORT;
+
+        for (int portAttempt = 0; portAttempt < MAX_PORT_ATTEMPTS && !connected; portAttempt++) {
+            try {
+                serverSocket = new ServerSocket(port);
+                connected = true;
+
+                new Thread(this, getClass().getSimpleName()).start();
+
+                me.setFileTransferPort(port);
+                LOG.fine("Connected to port: %s", port);
+            }
+
+            catch (final IOException e) {
+                LOG.fine("%s %s", e.toString(), port);
+                port++;
+            }
+        }
+
+        // Not fatal. Files are received the old way instead.
+        if (!connected) {
+            LOG.warning("No available port for receiving files between %s and %s",
+                        Constants.NETWORK_FILE_TRANSFER_PORT, port - 1);
+            me.setFileTransferPort(0);
+        }
+    }
+
+    /**
+     * Stops the server. Connections that are open are closed by the senders.
+     */
+    public synchronized void stopServer() {
+        if (!connected) {
+            return;
+        }
+
+        connected = false;
+        me.setFileTransferPort(0);
+
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+
+        catch (final IOException e) {
+            LOG.warning(e.toString());
+        }
+    }
+
+    /**
+     * Checks if the server is ready to receive files.
+     *
+     * @return If the server is started.
+     */
+    public boolean isStarted() {
+        return connected;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port, or 0 if the server is not started.
+     */
+    public int getPort() {
+        return me.getFileTransferPort();
+    }
+
+    /**
+     * Gets ready to receive a file the user has asked to send. Must be done before telling the user
+     * that the file was accepted.
+     *
+     * <p>Reading from the stream waits for the file to arrive. The end of the stream is the end of the file.
+     * An {@link IOException} is thrown if the sender aborts the file, nothing arrives for
+     * {@link #READ_TIMEOUT} milliseconds, or the file is not read fast enough to keep up with the
+     * connection for {@link #QUEUE_TIMEOUT} milliseconds. Close the stream when done.</p>
+     *
+     * @param user The user that will send the file.
+     * @param fileHash The hash code of the file.
+     * @return A stream with the contents of the file.
+     */
+    public InputStream expectFile(final User user, final int fileHash) {
+        final IncomingFile incomingFile = new IncomingFile(createKey(user.getCode(), fileHash));
+        expectedFiles.put(incomingFile.key, incomingFile);
+
+        return incomingFile;
+    }
+
+    @Override
+    public void run() {
+        while (connected && serverSocket != null) {
+            try {
+                final Socket socket = serverSocket.accept();
+
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        receiveFiles(socket);
+                    }
+                }, getClass().getSimpleName() + "Connection").start();
+            }
+
+            // Happens when server socket is closed, or network is down
+            catch (final IOException e) {
+                if (connected) {
+                    LOG.warning(e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads frames from the connection until it is closed, and gives them to the files they belong to.
+     *
+     * @param socket The connection to read from.
+     */
+    protected void receiveFiles(final Socket socket) {
+        final Set<IncomingFile> filesInProgress = new HashSet<>();
+
+        try {
+            final DataInputStream inputStream =
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream(), MAX_DATA_SIZE));
+            final User user = identifyUser(socket, inputStream);
+
+            if (user == null) {
+                return;
+            }
+
+            LOG.fine("Receiving files from %s", user.getNick());
+
+            while (true) {
+                final byte frameType = inputStream.readByte();
+                final IncomingFile incomingFile = expectedFiles.get(createKey(user.getCode(), inputStream.readInt()));
+
+                if (frameType == FRAME_DATA) {
+                    final int size = inputStream.readInt();
+
+                    if (size < 0 || size > MAX_DATA_SIZE) {
+                        LOG.warning("Invalid frame size from %s: %s", user.getNick(), size);
+                        return;
+                    }
+
+                    final byte[] data = new byte[size];
+                    inputStream.readFully(data);
+
+                    if (incomingFile != null) {
+                        if (incomingFile.frameArrived(data)) {
+                            filesInProgress.add(incomingFile);
+                        }
+
+                        else {
+                            filesInProgress.remove(incomingFile);
+                        }
+                    }
+                }
+
+                else if (frameType == FRAME_END || frameType == FRAME_ABORT) {
+                    if (incomingFile != null) {
+                        filesInProgress.remove(incomingFile);
+                        expectedFiles.remove(incomingFile.key);
+                        incomingFile.frameArrived(frameType == FRAME_END ? END : ABORT);
+                    }
+                }
+
+                else {
+                    LOG.warning("Invalid frame type from %s: %s", user.getNick(), frameType);
+                    return;
+                }
+            }
+        }
+
+        catch (final EOFException e) {
+            LOG.fine("Connection closed by %s", socket.getInetAddress());
+        }
+
+        catch (final IOException e) {
+            LOG.warning("Failed to receive files from %s: %s", socket.getInetAddress(), e.toString());
+        }
+
+        finally {
+            // The rest of the files will never arrive
+            for (final IncomingFile incomingFile : filesInProgress) {
+                expectedFiles.remove(incomingFile.key);
+                incomingFile.frameArrived(ABORT);
+            }
+
+            closeSocket(socket);
+        }
+    }
+
+    @Nullable
+    private User identifyUser(final Socket socket, final DataInputStream inputStream) throws IOException {
+        final String ipAddress = socket.getInetAddress().getHostAddress();
+
+        if (inputStream.readInt() != MAGIC) {
+            LOG.warning("Unknown protocol from %s", ipAddress);
+            return null;
+        }
+
+        final User user = controller.getUser(inputStream.readInt());
+
+        // Only the user itself can send files from the user
+        if (user == null || !user.hasIpAddress(ipAddress)) {
+            LOG.warning("Unknown user from %s", ipAddress);
+            return null;
+        }
+
+        return user;
+    }
+
+    private void closeSocket(final Socket socket) {
+        try {
+            socket.close();
+        }
+
+        catch (final IOException e) {
+            LOG.warning(e.toString());
+        }
+    }
+
+    private static String createKey(final int userCode, final int fileHash) {
+        return userCode + ":" + fileHash;
+    }
+
+    /**
+     * A file on the way from a user. The connection puts frames in a queue, and the receiver reads them.
+     */
+    private final class IncomingFile extends InputStream {
+
+        private final String key;
+        private final BlockingQueue<byte[]> frames;
+
+        /** The frame being read from. */
+        private byte[] current;
+        private int position;
+
+        private volatile boolean closed;
+        private volatile boolean failed;
+
+        private IncomingFile(final String key) {
+            this.key = key;
+            this.frames = new LinkedBlockingQueue<>(MAX_QUEUED_FRAMES);
+            this.current = new byte[0];
+        }
+
+        /**
+         * Adds a frame to the queue. Waits for the receiver to catch up if the queue is full,
+         * which makes the sender wait as well.
+         *
+         * <p>This is done by the only thread reading from the connection, so the other files on the
+         * connection can't wait for long. If the queue is still full after {@link #queueTimeout}
+         * milliseconds, this file fails, and the rest of it is skipped.</p>
+         *
+         * @param frame The frame to add.
+         * @return If the frame was added. False if the file is closed or failed.
+         */
+        private boolean frameArrived(final byte[] frame) {
+            if (closed || failed) {
+                return false;
+            }
+
+            try {
+                if (frames.offer(frame, queueTimeout, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+
+            catch (final InterruptedException e) {
+                LOG.warning("Interrupted while waiting for the file to be saved");
+            }
+
+            if (!closed) {
+                LOG.warning("Giving up on %s, the file is not saved fast enough", key);
+                failed = true;
+                expectedFiles.remove(key, this);
+                frames.clear();
+            }
+
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            final int read = read(single, 0, 1);
+
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            while (current != END && position == current.length) {
+                current = nextFrame();
+                position = 0;
+            }
+
+            if (current == END) {
+                return -1;
+            }
+
+            final int read = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, read);
+            position += read;
+
+            return read;
+        }
+
+        private byte[] nextFrame() throws IOException {
+            if (closed) {
+                throw new IOException("Closed");
+            }
+
+            if (failed) {
+                throw new IOException("The file was not saved fast enough");
+            }
+
+            final byte[] frame;
+
+            try {
+                frame = frames.poll(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+
+            catch (final InterruptedException e) {
+                throw new IOException("Interrupted while waiting for the file", e);
+            }
+
+            if (frame == null) {
+                throw new IOException("Timed out waiting for the file");
+            }
+
+            if (frame == ABORT) {
+                throw new IOException("The sender aborted the file");
+            }
+
+            return frame;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            expectedFiles.remove(key, this);
+            frames.clear();
+        }
+    }
+}
@@ -22,8 +22,12 @@
 
 package net.usikkert.kouchat.net;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import net.usikkert.kouchat.event.ReceiverListener;
 import net.usikkert.kouchat.misc.Controller;
@@ -35,85 +39,355 @@ import net.usikkert.kouchat.util.Validate;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * Proxy that listens for messages from both multicast and tcp and forwards from only one source at
- * a time (per user) to avoid duplicates.
+ * Proxy that listens for messages from both multicast and tcp, and makes sure each message
+ * is only forwarded once.
+ *
+ * <p>Messages to all users from newer clients have a sequence number in a {@link MessageTrailer}.
+ * Those are forwarded from whichever source they arrive first, and the copy from the other source
+ * is dropped. A {@link SequenceWindow} per user keeps track of what has arrived.</p>
+ *
+ * <p>A gap in the sequence numbers from a user means messages were lost, and the
+ * {@link MessageRepairService} is told to ask for them again. Requests for missing messages
+ * are handed to the repair service too, instead of being forwarded.</p>
+ *
+ * <p>Messages too large for one packet arrive over multicast in fragments. The {@link MessageReassembler}
+ * puts them back together, and the complete message continues like any other message.</p>
+ *
+ * <p>Messages with a sequence number from other users are registered with the {@link TransportPolicy}
+ * before deduplication, to measure how well multicast works for each user. The ip address of every copy
+ * is registered as well, since users with both IPv4 and IPv6 send each message both ways.</p>
+ *
+ * <p>Messages without a sequence number, like private messages and messages from older clients,
+ * are forwarded from only one source at a time per user: tcp if the user has a tcp connection,
+ * and multicast otherwise. Multicast messages are sent to every network interface and protocol family,
+ * so the same message without a sequence number can arrive several times over multicast as well.
+ * A copy that arrives within {@link #REPEAT_WINDOW} milliseconds of the first is dropped.</p>
+ *
+ * <p>This is the first stop for all messages from the network, so the messages are parsed into a
+ * {@link ParsedMessage} here, and the listeners get the parsed message instead of parsing it again.</p>
  *
  * @author Christian Ihle
  */
 public class MessageDeduplicator implements ReceiverListener, TCPReceiverListener {
 
+    /**
+     * Milliseconds a multicast message without a sequence number is remembered, to drop copies of it
+     * from the other network interfaces and protocol families of the user. The copies arrive right
+     * after each other, and this is shorter than {@link MessageRepairService#RETRY_DELAY},
+     * so a request for the same missing messages again is not dropped.
+     */
+    protected static final int REPEAT_WINDOW = 200;
+
     private static final Logger LOG = Logger.getLogger(MessageDeduplicator.class);
 
     private final Controller controller;
-    private final Pattern privateMessagePattern;
+    private final MessageRepairService messageRepairService;
+    private final MessageReassembler messageReassembler;
+    private final TransportPolicy transportPolicy;
+
+    /** The sequence windows of the users. Users that are gone from the user list are cleaned up automatically. */
+    private final Map<User, SequenceWindow> sequenceWindows;
+
+    /** When the recent multicast messages without a sequence number arrived, oldest first. */
+    private final Map<String, Long> recentMessages;
 
     @Nullable
-    private ReceiverListener mainChatListener;
+    private ParsedMessageListener mainChatListener;
 
     @Nullable
-    private ReceiverListener privateChatListener;
+    private ParsedMessageListener privateChatListener;
 
-    public MessageDeduplicator(final Controller controller) {
+    public MessageDeduplicator(final Controller controller, final MessageRepairService messageRepairService,
+                               final TransportPolicy transportPolicy) {
         Validate.notNull(controller, "Controller can not be null");
+        Validate.notNull(messageRepairService, "Message repair service can not be null");
+        Validate.notNull(transportPolicy, "Transport policy can not be null");
 
         this.controller = controller;
-        this.privateMessagePattern = Pattern.compile("^(\\d+)!(PRIVMSG)#.+");
+        this.messageRepairService = messageRepairService;
+        this.messageReassembler = new MessageReassembler();
+        this.transportPolicy = transportPolicy;
+        this.sequenceWindows = new WeakHashMap<>();
+        this.recentMessages = new LinkedHashMap<>();
     }
 
-    public void registerMainChatReceiverListener(final ReceiverListener theListener) {
+    public void registerMainChatReceiverListener(final ParsedMessageListener theListener) {
         this.mainChatListener = theListener;
     }
 
-    public void registerPrivateChatReceiverListener(final ReceiverListener theListener) {
+    public void registerPrivateChatReceiverListener(final ParsedMessageListener theListener) {
         this.privateChatListener = theListener;
     }
 
     @Override
     public void messageArrived(final String message, final String ipAddress) {
-        final User user = parseUserFromMessage(message);
+        final ParsedMessage parsedMessage = parseMessage(message);
+
+        if (parsedMessage == null) {
+            return;
+        }
 
-        if (user == null || !user.isTcpEnabled()) {
-            if (user == null || !user.isMe()) {
-                LOG.fine("Multicast message: " + message);
+        // Fragments are put together only once, and the complete message is checked
+        if (!parsedMessage.hasSequenceNumber() && !parsedMessage.getType().equals(FRAGMENT)
+                && isRepeatedMessage(message, System.currentTimeMillis())) {
+            return;
+        }
+
+        if (parsedMessage.getType().equals(NACK)) {
+            requestArrived(parsedMessage);
+            return;
+        }
+
+        if (parsedMessage.getType().equals(FRAGMENT)) {
+            final String completeMessage = messageReassembler.fragmentArrived(parsedMessage, System.currentTimeMillis());
+
+            if (completeMessage != null) {
+                messageArrived(completeMessage, ipAddress);
             }
 
-            forwardMessageToListener(message, ipAddress);
+            return;
+        }
+
+        final User user = controller.getUser(parsedMessage.getUserCode());
+
+        if (user == null) {
+            LOG.fine("Multicast message: %s", message);
+            forwardMessageToListener(parsedMessage, ipAddress);
+        }
+
+        else if (parsedMessage.hasSequenceNumber()) {
+            // The user can read sequence numbers, so they can be sent over tcp as well
+            user.setSequenceNumbersEnabled(true);
+
+            // Users with both IPv4 and IPv6 send each message both ways
+            user.addIpAddress(ipAddress);
+
+            if (!user.isMe()) {
+                final long now = System.currentTimeMillis();
+                transportPolicy.messageArrived(user, parsedMessage.getSequenceNumber(), true, now);
+                transportPolicy.multicastArrivedFrom(user, ipAddress, parsedMessage.getSequenceNumber(), now);
+            }
+
+            if (isNewMessage(user, parsedMessage)) {
+                if (!user.isMe()) {
+                    LOG.fine("Multicast message: %s", message);
+                    recordTraceStages();
+                }
+
+                forwardMessageToListener(parsedMessage, ipAddress);
+            }
+
+            // The same message from another ip address in the same protocol family,
+            // so the user is on more than one network
+            else {
+                user.addAdditionalIpAddress(ipAddress);
+            }
+        }
+
+        else if (!user.isTcpEnabled()) {
+            if (!user.isMe()) {
+                LOG.fine("Multicast message: %s", message);
+            }
+
+            forwardMessageToListener(parsedMessage, ipAddress);
+        }
+
+        // The same message arrives over tcp
+        else {
+            NetworkMetrics.duplicateDropped();
         }
     }
 
     @Override
     public void messageArrived(final String message, final String ipAddress, final User user) {
-        if (user.isTcpEnabled()) {
-            LOG.fine("TCP message: " + message);
-            forwardMessageToListener(message, ipAddress);
+        final ParsedMessage parsedMessage = parseMessage(message);
+
+        if (parsedMessage == null) {
+            return;
+        }
+
+        if (parsedMessage.hasSequenceNumber()) {
+            transportPolicy.messageArrived(user, parsedMessage.getSequenceNumber(), false, System.currentTimeMillis());
+
+            if (isNewMessage(user, parsedMessage)) {
+                LOG.fine("TCP message: %s", message);
+                recordTraceStages();
+                forwardMessageToListener(parsedMessage, ipAddress);
+            }
+        }
+
+        else if (user.isTcpEnabled()) {
+            LOG.fine("TCP message: %s", message);
+            forwardMessageToListener(parsedMessage, ipAddress);
+        }
+
+        // The same message arrives over multicast
+        else {
+            NetworkMetrics.duplicateDropped();
         }
     }
 
-    private void forwardMessageToListener(final String message, final String ipAddress) {
-        final Matcher privateMessageMatcher = privateMessagePattern.matcher(message);
+    /**
+     * Gets the number of messages from the users in the user list that never arrived.
+     * Only messages with sequence numbers are counted.
+     *
+     * @return The number of missing messages.
+     */
+    public long getMissingMessageCount() {
+        long missing = 0;
+
+        synchronized (sequenceWindows) {
+            for (final SequenceWindow sequenceWindow : sequenceWindows.values()) {
+                missing += sequenceWindow.getMissingCount();
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Gets the number of messages from the users in the user list that were dropped as duplicates.
+     *
+     * @return The number of duplicate messages.
+     */
+    public long getDuplicateMessageCount() {
+        long duplicates = 0;
+
+        synchronized (sequenceWindows) {
+            for (final SequenceWindow sequenceWindow : sequenceWindows.values()) {
+                duplicates += sequenceWindow.getDuplicateCount();
+            }
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Gets the number of messages that are waiting for more fragments to arrive.
+     *
+     * @return The number of incomplete messages.
+     * @see MessageReassembler#getIncompleteMessageCount()
+     */
+    public int getIncompleteMessageCount() {
+        return messageReassembler.getIncompleteMessageCount();
+    }
+
+    /**
+     * Gets the number of messages dropped because some of the fragments never arrived.
+     *
+     * @return The number of dropped messages.
+     * @see MessageReassembler#getDroppedMessageCount()
+     */
+    public long getDroppedMessageCount() {
+        return messageReassembler.getDroppedMessageCount();
+    }
+
+    private void requestArrived(final ParsedMessage parsedMessage) {
+        final int requestedMessages = messageRepairService.requestArrived(parsedMessage);
+
+        if (requestedMessages > 0) {
+            final User user = controller.getUser(parsedMessage.getUserCode());
+
+            // Own messages were lost on the way to the user
+            if (user != null) {
+                transportPolicy.messagesLost(user, requestedMessages);
+            }
+        }
+    }
+
+    /**
+     * Checks if the same multicast message without a sequence number arrived a moment ago,
+     * from another network interface or protocol family.
+     *
+     * @param message The message, with the user code of the sender.
+     * @param now The current time in milliseconds.
+     * @return If the message is a copy that should be dropped.
+     */
+    private boolean isRepeatedMessage(final String message, final long now) {
+        synchronized (recentMessages) {
+            final Iterator<Long> arrivals = recentMessages.values().iterator();
+
+            while (arrivals.hasNext() && now - arrivals.next() > REPEAT_WINDOW) {
+                arrivals.remove();
+            }
+
+            if (recentMessages.containsKey(message)) {
+                NetworkMetrics.duplicateDropped();
+                return true;
+            }
+
+            recentMessages.put(message, now);
+            return false;
+        }
+    }
+
+    private boolean isNewMessage(final User user, final ParsedMessage parsedMessage) {
+        final SequenceWindow sequenceWindow = getSequenceWindow(user);
+        final long highest = sequenceWindow.getHighest();
+        final long sequenceNumber = parsedMessage.getSequenceNumber();
+
+        if (!sequenceWindow.accept(sequenceNumber)) {
+            NetworkMetrics.duplicateDropped();
+            return false;
+        }
+
+        // Own messages are not repaired, there is no one else to ask
+        if (highest != -1 && sequenceNumber > highest + 1 && !user.isMe()) {
+            messageRepairService.messagesMissing(user, sequenceWindow);
+        }
+
+        return true;
+    }
+
+    private SequenceWindow getSequenceWindow(final User user) {
+        synchronized (sequenceWindows) {
+            SequenceWindow sequenceWindow = sequenceWindows.get(user);
+
+            if (sequenceWindow == null) {
+                sequenceWindow = new SequenceWindow();
+                sequenceWindows.put(user, sequenceWindow);
+            }
+
+            return sequenceWindow;
+        }
+    }
+
+    /**
+     * Records that a traced message from another user made it through the network, and was not a duplicate.
+     */
+    private void recordTraceStages() {
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+
+        if (trace != null) {
+            trace.record(MessageTraceStage.NETWORK);
+            trace.record(MessageTraceStage.DEDUPLICATED);
+        }
+    }
 
-        if (privateMessageMatcher.matches()) {
+    private void forwardMessageToListener(final ParsedMessage parsedMessage, final String ipAddress) {
+        if (parsedMessage.isPrivateMessage()) {
             if (privateChatListener != null) {
-                privateChatListener.messageArrived(message, ipAddress);
+                privateChatListener.messageArrived(parsedMessage, ipAddress);
             }
         }
 
         else {
             if (mainChatListener != null) {
-                mainChatListener.messageArrived(message, ipAddress);
+                mainChatListener.messageArrived(parsedMessage, ipAddress);
             }
         }
     }
 
     @Nullable
-    private User parseUserFromMessage(final String message) {
+    private ParsedMessage parseMessage(final String message) {
         try {
-            final int msgCode = Integer.parseInt(message.substring(0, message.indexOf("!")));
-            return controller.getUser(msgCode);
+            return new ParsedMessage(message);
         }
 
+        // Just ignore, someone sent a badly formatted message
         catch (final NumberFormatException | StringIndexOutOfBoundsException e) {
-            LOG.warning("Failed to parse user from message: %s", e.getMessage());
+            LOG.warning("Failed to parse message: %s, message=%s", e.getMessage(), message);
+            NetworkMetrics.parseFailed();
             return null;
         }
     }
@@ -0,0 +1,147 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.usikkert.kouchat.Constants;
+import net.usikkert.kouchat.util.Tools;
+
+/**
+ * Splits messages that are too large for one network packet into several smaller messages, called fragments.
+ *
+ * <p>A fragment has the format <code>code!FRAGMENT#nick:id:index:count:[part]</code>, where the code and nick
+ * are taken from the message being split, <code>id</code> is the same for all the fragments of a message,
+ * and <code>part</code> is the piece of the message in the fragment. The brackets protect whitespace at the ends
+ * of the part from being trimmed by the receiver. Older clients ignore fragments.</p>
+ *
+ * <p>The fragments are put back together by the {@link MessageReassembler}.</p>
+ *
+ * @author Christian Ihle
+ */
+public final class MessageFragmenter {
+
+    /** The most fragments a message can be split into. */
+    public static final int MAX_FRAGMENTS = 32;
+
+    /** The character before the part of the message. */
+    static final char PART_START = '[';
+
+    /** The character after the part of the message. */
+    static final char PART_END = ']';
+
+    private MessageFragmenter() {
+
+    }
+
+    /**
+     * Splits the message into fragments that each fit in a network packet.
+     *
+     * @param message The message to split.
+     * @param fragmentId The id to use for all the fragments of this message.
+     * @return The fragments, in order, or an empty list if the message can't be split.
+     *         That happens if it's not a valid message, or if it needs more than {@link #MAX_FRAGMENTS} fragments.
+     */
+    public static List<String> split(final String message, final int fragmentId) {
+        final int exclamation = message.indexOf('!');
+        final int hash = message.indexOf('#');
+        final int colon = message.indexOf(':');
+
+        if (exclamation <= 0 || hash < exclamation || colon < hash) {
+            return Collections.emptyList();
+        }
+
+        final String header = message.substring(0, exclamation) + "!" + FRAGMENT + "#" +
+                message.substring(hash + 1, colon) + ":" + fragmentId + ":";
+
+        // Room for the largest possible index and count, the separators and the brackets
+        final int maxPartBytes = Constants.NETWORK_PACKET_SIZE - Tools.getBytes(header) - 2 * 2 - 4;
+        final List<String> parts = splitInParts(message, maxPartBytes);
+
+        if (parts.isEmpty() || parts.size() > MAX_FRAGMENTS) {
+            return Collections.emptyList();
+        }
+
+        final List<String> fragments = new ArrayList<>(parts.size());
+
+        for (int i = 0; i < parts.size(); i++) {
+            fragments.add(header + i + ":" + parts.size() + ":" + PART_START + parts.get(i) + PART_END);
+        }
+
+        return fragments;
+    }
+
+    /**
+     * Splits the message in parts of at most <code>maxPartBytes</code> bytes in UTF-8.
+     * Never splits a character in two.
+     */
+    private static List<String> splitInParts(final String message, final int maxPartBytes) {
+        final List<String> parts = new ArrayList<>();
+
+        if (maxPartBytes < 4) {
+            return parts;
+        }
+
+        int partStart = 0;
+        int partBytes = 0;
+        int index = 0;
+
+        while (index < message.length()) {
+            final int codePoint = message.codePointAt(index);
+            final int codePointBytes = getBytes(codePoint);
+
+            if (partBytes + codePointBytes > maxPartBytes) {
+                parts.add(message.substring(partStart, index));
+                partStart = index;
+                partBytes = 0;
+            }
+
+            partBytes += codePointBytes;
+            index += Character.charCount(codePoint);
+        }
+
+        parts.add(message.substring(partStart));
+
+        return parts;
+    }
+
+    private static int getBytes(final int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+
+        else if (codePoint < 0x800) {
+            return 2;
+        }
+
+        else if (codePoint < 0x10000) {
+            return 3;
+        }
+
+        return 4;
+    }
+}
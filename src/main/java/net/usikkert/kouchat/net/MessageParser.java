@@ -56,12 +56,13 @@ import net.usikkert.kouchat.util.Validate;
  *   <li>SENDFILEACCEPT</li>
  *   <li>SENDFILEABORT</li>
  *   <li>SENDFILE</li>
+ *   <li>SENDFOLDER</li>
  *   <li>CLIENT</li>
  * </ul>
  *
  * @author Christian Ihle
  */
-public class MessageParser implements ReceiverListener {
+public class MessageParser implements ReceiverListener, ParsedMessageListener {
 
     /** The logger. */
     private static final Logger LOG = Logger.getLogger(MessageParser.class.getName());
@@ -90,9 +91,7 @@ public class MessageParser implements ReceiverListener {
     }
 
     /**
-     * The parser. Checks what kind of message it is,
-     * and then gives the correct data to the responder for
-     * more processing.
+     * Parses the raw message, and continues with {@link #messageArrived(ParsedMessage, String)}.
      *
      * @param message The raw message to parse.
      * @param ipAddress The IP address of the user who sent the message.
@@ -100,18 +99,39 @@ public class MessageParser implements ReceiverListener {
     @Override
     public void messageArrived(final String message, final String ipAddress) {
         try {
-            final int exclamation = message.indexOf("!");
-            final int hash = message.indexOf("#");
-            final int colon = message.indexOf(":");
+            messageArrived(new ParsedMessage(message), ipAddress);
+        }
 
-            final int msgCode = Integer.parseInt(message.substring(0, exclamation));
-            final String type = message.substring(exclamation + 1, hash);
-            final String msgNick = message.substring(hash + 1, colon);
-            final String msg = message.substring(colon + 1, message.length());
+        // Just ignore, someone sent a badly formatted message
+        catch (final StringIndexOutOfBoundsException | NumberFormatException e) {
+            LOG.log(Level.SEVERE, "Failed to parse message. message=" + message + ", ipAddress=" + ipAddress, e);
+            NetworkMetrics.parseFailed();
+        }
+    }
+
+    /**
+     * The parser. Checks what kind of message it is,
+     * and then gives the correct data to the responder for
+     * more processing.
+     *
+     * @param parsedMessage The message to parse the rest of.
+     * @param ipAddress The IP address of the user who sent the message.
+     */
+    @Override
+    public void messageArrived(final ParsedMessage parsedMessage, final String ipAddress) {
+        final String message = parsedMessage.getMessage();
+
+        try {
+            final int msgCode = parsedMessage.getUserCode();
+            final String type = parsedMessage.getType();
+            final String msgNick = parsedMessage.getNick();
+            final String msg = parsedMessage.getContent();
 
             final User tempme = settings.getMe();
 
             if (msgCode != tempme.getCode() && loggedOn) {
+                responder.userAlive(msgCode);
+
                 if (type.equals(MSG)) {
                     final int leftBracket = msg.indexOf("[");
                     final int rightBracket = msg.indexOf("]");
@@ -130,18 +150,7 @@ public class MessageParser implements ReceiverListener {
                 }
 
                 else if (type.equals(EXPOSING)) {
-                    final User user = new User(msgNick, msgCode);
-                    user.setIpAddress(ipAddress);
-                    user.setAwayMsg(msg);
-
-                    if (msg.length() > 0) {
-                        user.setAway(true);
-                    }
-
-                    user.setLastIdle(System.currentTimeMillis());
-                    user.setLogonTime(System.currentTimeMillis());
-
-                    responder.userExposing(user);
+                    responder.userExposing(msgCode, msgNick, msg, ipAddress);
                 }
 
                 else if (type.equals(LOGOFF)) {
@@ -175,7 +184,7 @@ public class MessageParser implements ReceiverListener {
                 }
 
                 else if (type.equals(GETTOPIC)) {
-                    responder.topicRequested();
+                    responder.topicRequested(msgCode);
                 }
 
                 else if (type.equals(TOPIC)) {
@@ -256,6 +265,27 @@ public class MessageParser implements ReceiverListener {
                     }
                 }
 
+                else if (type.equals(SENDFOLDER)) {
+                    final int leftPara = msg.indexOf("(");
+                    final int rightPara = msg.indexOf(")");
+                    final int fileCode = Integer.parseInt(msg.substring(leftPara + 1, rightPara));
+
+                    if (fileCode == tempme.getCode()) {
+                        final int leftCurly = msg.indexOf("{");
+                        final int rightCurly = msg.indexOf("}");
+                        final int leftBracket = msg.indexOf("[");
+                        final int rightBracket = msg.indexOf("]");
+                        final int lessThan = msg.indexOf("<");
+                        final int greaterThan = msg.indexOf(">");
+                        final long byteSize = Long.parseLong(msg.substring(leftBracket + 1, rightBracket));
+                        final int fileCount = Integer.parseInt(msg.substring(lessThan + 1, greaterThan));
+                        final String folderName = msg.substring(rightCurly + 1, msg.length());
+                        final int fileHash = Integer.parseInt(msg.substring(leftCurly + 1, rightCurly));
+
+                        responder.folderSend(msgCode, byteSize, folderName, msgNick, fileHash, fileCount);
+                    }
+                }
+
                 else if (type.equals(CLIENT)) {
                     final int leftPara = msg.indexOf("(");
                     final int rightPara = msg.indexOf(")");
@@ -294,7 +324,26 @@ public class MessageParser implements ReceiverListener {
                         }
                     }
 
-                    responder.clientInfo(msgCode, client, timeSinceLogon, operatingSystem, privateChatPort, tcpChatPort);
+                    int fileTransferPort = 0;
+
+                    // Added after the tcp chat port. Older clients don't send it, and don't read it.
+                    if (backslash != -1) {
+                        final int firstPipe = msg.indexOf("|", backslash);
+                        final int secondPipe = msg.indexOf("|", firstPipe + 1);
+
+                        if (firstPipe != -1 && secondPipe != -1) {
+                            try {
+                                fileTransferPort = Integer.parseInt(msg.substring(firstPipe + 1, secondPipe));
+                            }
+
+                            catch (final NumberFormatException e) {
+                                LOG.log(Level.WARNING, "Failed to parse file transfer port. message=" + message + ", ipAddress=" + ipAddress, e);
+                            }
+                        }
+                    }
+
+                    responder.clientInfo(msgCode, client, timeSinceLogon, operatingSystem, privateChatPort, tcpChatPort,
+                                         fileTransferPort);
                 }
             }
 
@@ -0,0 +1,214 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Puts fragments from the {@link MessageFragmenter} back together to the original message.
+ *
+ * <p>Fragments can arrive in any order, and some of them may never arrive. Incomplete messages are
+ * dropped after {@link #TIMEOUT} milliseconds, and at most {@link #MAX_INCOMPLETE_MESSAGES} incomplete
+ * messages are kept at the same time, dropping the oldest first, so lost fragments can't fill up the memory.
+ * A message that is dropped can still be repaired by the {@link MessageRepairService}.</p>
+ *
+ * @author Christian Ihle
+ */
+public class MessageReassembler {
+
+    /** Milliseconds to wait for the rest of the fragments of a message. */
+    public static final int TIMEOUT = 5000;
+
+    /** The most incomplete messages to keep at the same time. */
+    public static final int MAX_INCOMPLETE_MESSAGES = 16;
+
+    private static final Logger LOG = Logger.getLogger(MessageReassembler.class);
+
+    /** The incomplete messages, by user code and fragment id, the oldest first. */
+    private final Map<String, IncompleteMessage> incompleteMessages;
+
+    private long droppedMessageCount;
+
+    /**
+     * Constructor.
+     */
+    public MessageReassembler() {
+        incompleteMessages = new LinkedHashMap<>();
+    }
+
+    /**
+     * Registers a fragment that arrived.
+     *
+     * @param fragment The fragment.
+     * @param now The current time, in milliseconds.
+     * @return The complete message, if this was the last missing fragment. Otherwise <code>null</code>.
+     */
+    @Nullable
+    public synchronized String fragmentArrived(final ParsedMessage fragment, final long now) {
+        Validate.notNull(fragment, "Fragment can not be null");
+
+        dropExpiredMessages(now);
+
+        final String content = fragment.getContent();
+        final int fragmentId;
+        final int index;
+        final int count;
+        final String part;
+
+        try {
+            final int firstColon = content.indexOf(':');
+            final int secondColon = content.indexOf(':', firstColon + 1);
+            final int thirdColon = content.indexOf(':', secondColon + 1);
+
+            fragmentId = Integer.parseInt(content.substring(0, firstColon));
+            index = Integer.parseInt(content.substring(firstColon + 1, secondColon));
+            count = Integer.parseInt(content.substring(secondColon + 1, thirdColon));
+            part = content.substring(thirdColon + 1);
+        }
+
+        // Just ignore, someone sent a badly formatted fragment
+        catch (final NumberFormatException | StringIndexOutOfBoundsException e) {
+            LOG.warning("Failed to parse fragment: %s, message=%s", e.getMessage(), fragment.getMessage());
+            return null;
+        }
+
+        if (count < 1 || count > MessageFragmenter.MAX_FRAGMENTS || index < 0 || index >= count || !isValidPart(part)) {
+            LOG.warning("Invalid fragment: %s", fragment.getMessage());
+            return null;
+        }
+
+        final String key = fragment.getUserCode() + ":" + fragmentId;
+        IncompleteMessage incompleteMessage = incompleteMessages.get(key);
+
+        if (incompleteMessage == null) {
+            if (count == 1) {
+                return getText(part);
+            }
+
+            if (incompleteMessages.size() >= MAX_INCOMPLETE_MESSAGES) {
+                dropOldestMessage();
+            }
+
+            incompleteMessage = new IncompleteMessage(count, now);
+            incompleteMessages.put(key, incompleteMessage);
+        }
+
+        else if (incompleteMessage.parts.length != count) {
+            LOG.warning("Fragment count changed from %s to %s: %s",
+                        incompleteMessage.parts.length, count, fragment.getMessage());
+            return null;
+        }
+
+        if (incompleteMessage.parts[index] == null) {
+            incompleteMessage.parts[index] = getText(part);
+            incompleteMessage.received++;
+        }
+
+        if (incompleteMessage.received < count) {
+            return null;
+        }
+
+        incompleteMessages.remove(key);
+
+        final StringBuilder message = new StringBuilder();
+
+        for (final String text : incompleteMessage.parts) {
+            message.append(text);
+        }
+
+        return message.toString();
+    }
+
+    /**
+     * Gets the number of incomplete messages waiting for more fragments.
+     *
+     * @return The number of incomplete messages.
+     */
+    public synchronized int getIncompleteMessageCount() {
+        return incompleteMessages.size();
+    }
+
+    /**
+     * Gets the number of messages dropped because some of the fragments never arrived.
+     *
+     * @return The number of dropped messages.
+     */
+    public synchronized long getDroppedMessageCount() {
+        return droppedMessageCount;
+    }
+
+    private void dropExpiredMessages(final long now) {
+        final Iterator<IncompleteMessage> iterator = incompleteMessages.values().iterator();
+
+        while (iterator.hasNext()) {
+            final IncompleteMessage incompleteMessage = iterator.next();
+
+            // The oldest are first, so the rest have not expired either
+            if (now - incompleteMessage.firstArrival < TIMEOUT) {
+                break;
+            }
+
+            iterator.remove();
+            droppedMessageCount++;
+        }
+    }
+
+    private void dropOldestMessage() {
+        final Iterator<IncompleteMessage> iterator = incompleteMessages.values().iterator();
+        iterator.next();
+        iterator.remove();
+        droppedMessageCount++;
+    }
+
+    private boolean isValidPart(final String part) {
+        return part.length() >= 2
+                && part.charAt(0) == MessageFragmenter.PART_START
+                && part.charAt(part.length() - 1) == MessageFragmenter.PART_END;
+    }
+
+    private String getText(final String part) {
+        return part.substring(1, part.length() - 1);
+    }
+
+    /**
+     * The fragments of a message received so far.
+     */
+    private static class IncompleteMessage {
+
+        private final String[] parts;
+        private final long firstArrival;
+        private int received;
+
+        IncompleteMessage(final int count, final long firstArrival) {
+            this.parts = new String[count];
+            this.firstArrival = firstArrival;
+        }
+    }
+}
@@ -27,14 +27,19 @@ import static net.usikkert.kouchat.net.NetworkUtils.IPTOS_RELIABILITY;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.event.ReceiverListener;
 import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
 
 import org.jetbrains.annotations.Nullable;
@@ -48,7 +53,7 @@ import org.jetbrains.annotations.Nullable;
 public class MessageReceiver implements Runnable {
 
     /** The logger. */
-    private static final Logger LOG = Logger.getLogger(MessageReceiver.class.getName());
+    private static final Logger LOG = Logger.getLogger(MessageReceiver.class);
 
     /** The multicast socket used for receiving messages. */
     @Nullable
@@ -57,6 +62,17 @@ public class MessageReceiver implements Runnable {
     /** The inetaddress object with the multicast ip address to receive messages from. */
     private InetAddress address;
 
+    /** The IPv6 multicast address to also receive messages from, on networks with IPv6. */
+    @Nullable
+    private InetAddress ipv6Address;
+
+    /** The network interface given when connecting, or <code>null</code> if the operating system chose. */
+    @Nullable
+    private NetworkInterface primaryNetworkInterface;
+
+    /** The multicast groups joined on the network interface the socket was connected to. */
+    private List<InetAddress> joinedGroups = Collections.emptyList();
+
     /** The listener getting all the messages received here. */
     private ReceiverListener listener;
 
@@ -69,17 +85,23 @@ public class MessageReceiver implements Runnable {
     /** The port to receive messages on. */
     private final int port;
 
+    /** Extra network interfaces the socket has joined multicast groups on, with the groups joined. */
+    private Map<NetworkInterface, List<InetAddress>> joinedAdditionalGroups = Collections.emptyMap();
+
+    private final NetworkUtils networkUtils = new NetworkUtils();
+
     /**
      * Default constructor.
      *
-     * <p>Initializes the network with the default ip address and port.</p>
+     * <p>Initializes the network with the default ip addresses and port.</p>
      *
      * @see Constants#NETWORK_IP
+     * @see Constants#NETWORK_IPV6
      * @see Constants#NETWORK_CHAT_PORT
      * @param errorHandler The error handler to use.
      */
     public MessageReceiver(final ErrorHandler errorHandler) {
-        this(Constants.NETWORK_IP, Constants.NETWORK_CHAT_PORT, errorHandler);
+        this(Constants.NETWORK_IP, Constants.NETWORK_IPV6, Constants.NETWORK_CHAT_PORT, errorHandler);
     }
 
     /**
@@ -92,7 +114,24 @@ public class MessageReceiver implements Runnable {
      * @param errorHandler The error handler to use.
      */
     public MessageReceiver(final String ipAddress, final int port, final ErrorHandler errorHandler) {
-        LOG.fine("Creating MessageReceiver on " + ipAddress + ":" + port);
+        this(ipAddress, null, port, errorHandler);
+    }
+
+    /**
+     * Alternative constructor.
+     *
+     * <p>Initializes the network with the given ip addresses and port. Messages are received from the
+     * IPv6 address as well, when the network interface has IPv6.</p>
+     *
+     * @param ipAddress Multicast ip address to connect to.
+     * @param ipv6IpAddress IPv6 multicast ip address to also connect to, or <code>null</code> for only IPv4.
+     * @param port Port to connect to.
+     * @param errorHandler The error handler to use.
+     */
+    public MessageReceiver(final String ipAddress, @Nullable final String ipv6IpAddress, final int port,
+                           final ErrorHandler errorHandler) {
+        LOG.fine("Creating MessageReceiver on %s%s:%s",
+                 ipAddress, ipv6IpAddress == null ? "" : " and " + ipv6IpAddress, port);
 
         Validate.notEmpty(ipAddress, "IP address can not be empty");
         Validate.notNull(errorHandler, "Error handler can not be null");
@@ -101,10 +140,14 @@ public class MessageReceiver implements Runnable {
 
         try {
             address = InetAddress.getByName(ipAddress);
+
+            if (ipv6IpAddress != null) {
+                ipv6Address = InetAddress.getByName(ipv6IpAddress);
+            }
         }
 
         catch (final IOException e) {
-            LOG.log(Level.SEVERE, e.toString(), e);
+            LOG.severe(e, e.toString());
 
             errorHandler.showCriticalError("Failed to initialize the network:\n" + e + "\n" +
                     Constants.APP_NAME + " will now shutdown.");
@@ -125,11 +168,21 @@ public class MessageReceiver implements Runnable {
                 if (connected) {
                     mcSocket.receive(packet);
                     final String ip = packet.getAddress().getHostAddress();
-                    final String message = new String(packet.getData(), Constants.MESSAGE_CHARSET).trim();
-                    LOG.log(Level.FINE, "Message arrived from " + ip + ": " + message);
+                    final String message = MessageTrailer.trim(new String(packet.getData(), 0, packet.getLength(),
+                                                                           Constants.MESSAGE_CHARSET));
+                    NetworkMetrics.packetReceived(message);
+                    LOG.fine("Message arrived from %s: %s", ip, message);
 
                     if (listener != null) {
-                        listener.messageArrived(message, ip);
+                        MessageTrace.startReceiving(message);
+
+                        try {
+                            listener.messageArrived(message, ip);
+                        }
+
+                        finally {
+                            MessageTrace.clear();
+                        }
                     }
                 }
             }
@@ -137,11 +190,11 @@ public class MessageReceiver implements Runnable {
             // Happens when socket is closed, or network is down
             catch (final IOException e) {
                 if (connected) {
-                    LOG.log(Level.WARNING, e.toString());
+                    LOG.warning(e.toString());
                 }
 
                 else {
-                    LOG.log(Level.FINE, e.toString());
+                    LOG.fine(e.toString());
                 }
             }
         }
@@ -151,7 +204,7 @@ public class MessageReceiver implements Runnable {
      * Starts the thread that listens for messages.
      */
     private void startThread() {
-        LOG.log(Level.FINE, "Starting.");
+        LOG.fine("Starting.");
         worker = new Thread(this, "MessageReceiverWorker");
         worker.start();
     }
@@ -167,16 +220,41 @@ public class MessageReceiver implements Runnable {
      * @return If connected to the network or not.
      */
     public synchronized boolean startReceiver(@Nullable final NetworkInterface networkInterface) {
-        LOG.log(Level.FINE, "Connecting to " + address.getHostAddress() + ":" + port + " on " + networkInterface);
+        return startReceiver(networkInterface, Collections.<NetworkInterface>emptyList());
+    }
+
+    /**
+     * Connects to the network with the given network interface, or gives
+     * the control to the operating system to choose if <code>null</code>
+     * is given.
+     *
+     * <p>The same socket also joins the multicast group on each of the additional network
+     * interfaces, so messages from all the networks arrive in the one receiver thread.
+     * Messages that arrive more than once are removed later by the {@link MessageDeduplicator}.</p>
+     *
+     * <p>On network interfaces with both IPv4 and IPv6, the socket joins a multicast group for each,
+     * so messages from clients with only one of them arrive too.</p>
+     *
+     * <p>Will also start a thread to continuously receive messages.</p>
+     *
+     * @param networkInterface The network interface to use, or <code>null</code>.
+     * @param additionalInterfaces Other network interfaces to also receive on. Can be empty.
+     * @return If connected to the network or not.
+     */
+    public synchronized boolean startReceiver(@Nullable final NetworkInterface networkInterface,
+                                              final List<NetworkInterface> additionalInterfaces) {
+        Validate.notNull(additionalInterfaces, "Additional network interfaces can not be null");
+        LOG.fine("Connecting to %s:%s on %s%s", address.getHostAddress(), port, networkInterface,
+                 additionalInterfaces.isEmpty() ? "" : " and " + additionalInterfaces.size() + " more");
 
         try {
             if (connected) {
-                LOG.log(Level.FINE, "Already connected.");
+                LOG.fine("Already connected.");
             }
 
             else {
                 if (mcSocket == null) {
-                    mcSocket = new MulticastSocket(port);
+                    mcSocket = createSocket(port);
                 }
 
                 if (networkInterface != null) {
@@ -185,14 +263,16 @@ public class MessageReceiver implements Runnable {
 
                 mcSocket.setTrafficClass(IPTOS_RELIABILITY);
 
-                mcSocket.joinGroup(address);
-                LOG.log(Level.FINE, "Connected to " + mcSocket.getNetworkInterface());
+                primaryNetworkInterface = networkInterface;
+                joinPrimaryGroups();
+                joinAdditionalInterfaces(additionalInterfaces);
+                LOG.fine("Connected to %s with %s", mcSocket.getNetworkInterface(), joinedGroups);
                 connected = true;
             }
         }
 
         catch (final IOException e) {
-            LOG.log(Level.SEVERE, "Could not start receiver: " + e.toString(), e);
+            LOG.severe(e, "Could not start receiver: %s", e);
 
             if (mcSocket != null) {
                 if (!mcSocket.isClosed()) {
@@ -214,10 +294,10 @@ public class MessageReceiver implements Runnable {
      * Disconnects from the network and closes the multicast socket.
      */
     public synchronized void stopReceiver() {
-        LOG.log(Level.FINE, "Disconnecting from " + address.getHostAddress() + ":" + port);
+        LOG.fine("Disconnecting from %s:%s", address.getHostAddress(), port);
 
         if (!connected) {
-            LOG.log(Level.FINE, "Not connected.");
+            LOG.fine("Not connected.");
         }
 
         else {
@@ -225,12 +305,13 @@ public class MessageReceiver implements Runnable {
 
             try {
                 if (!mcSocket.isClosed()) {
-                    mcSocket.leaveGroup(address);
+                    leaveAdditionalInterfaces();
+                    leavePrimaryGroups();
                 }
             }
 
             catch (final IOException e) {
-                LOG.log(Level.WARNING, e.toString());
+                LOG.warning(e.toString());
             }
 
             if (!mcSocket.isClosed()) {
@@ -238,10 +319,177 @@ public class MessageReceiver implements Runnable {
                 mcSocket = null;
             }
 
-            LOG.log(Level.FINE, "Disconnected from " + address.getHostAddress() + ":" + port);
+            joinedGroups = Collections.emptyList();
+            joinedAdditionalGroups = Collections.emptyMap();
+
+            LOG.fine("Disconnected from %s:%s", address.getHostAddress(), port);
+        }
+    }
+
+    /**
+     * Joins the multicast groups to use on the network interface given when connecting.
+     * The first group must work. The others are logged and skipped if they fail, like
+     * the IPv6 group when IPv6 is turned off in the operating system.
+     *
+     * @throws IOException If the first group could not be joined.
+     */
+    private void joinPrimaryGroups() throws IOException {
+        final List<InetAddress> groups = networkUtils.getMulticastGroups(primaryNetworkInterface, address, ipv6Address);
+        final List<InetAddress> joined = new ArrayList<>();
+
+        joinGroup(groups.get(0), primaryNetworkInterface);
+        joined.add(groups.get(0));
+
+        for (final InetAddress group : groups.subList(1, groups.size())) {
+            try {
+                joinGroup(group, primaryNetworkInterface);
+                joined.add(group);
+            }
+
+            catch (final IOException e) {
+                LOG.warning("Could not receive from %s: %s", group.getHostAddress(), e);
+            }
+        }
+
+        joinedGroups = joined;
+    }
+
+    /**
+     * Leaves the multicast groups joined on the network interface given when connecting.
+     *
+     * @throws IOException If the first group could not be left.
+     */
+    private void leavePrimaryGroups() throws IOException {
+        for (final InetAddress group : joinedGroups.subList(1, joinedGroups.size())) {
+            try {
+                leaveGroup(group, primaryNetworkInterface);
+            }
+
+            catch (final IOException e) {
+                LOG.fine("Could not leave %s: %s", group.getHostAddress(), e);
+            }
+        }
+
+        if (!joinedGroups.isEmpty()) {
+            leaveGroup(joinedGroups.get(0), primaryNetworkInterface);
         }
     }
 
+    /**
+     * Joins the multicast groups on each of the additional network interfaces.
+     * A network interface that fails to join is logged and skipped, so one bad network
+     * does not stop the others from working.
+     *
+     * @param additionalInterfaces The network interfaces to join on.
+     */
+    private void joinAdditionalInterfaces(final List<NetworkInterface> additionalInterfaces) {
+        final Map<NetworkInterface, List<InetAddress>> joined = new LinkedHashMap<>();
+
+        for (final NetworkInterface networkInterface : additionalInterfaces) {
+            final List<InetAddress> joinedOnInterface = new ArrayList<>();
+
+            for (final InetAddress group : networkUtils.getMulticastGroups(networkInterface, address, ipv6Address)) {
+                try {
+                    joinGroup(group, networkInterface);
+                    joinedOnInterface.add(group);
+                }
+
+                catch (final IOException e) {
+                    LOG.warning("Could not receive from %s on %s: %s",
+                                group.getHostAddress(), networkInterface.getName(), e);
+                }
+            }
+
+            if (!joinedOnInterface.isEmpty()) {
+                joined.put(networkInterface, joinedOnInterface);
+                LOG.fine("Also connected to %s with %s", networkInterface, joinedOnInterface);
+            }
+        }
+
+        joinedAdditionalGroups = joined;
+    }
+
+    /**
+     * Leaves the multicast groups on the additional network interfaces joined earlier.
+     */
+    private void leaveAdditionalInterfaces() {
+        for (final Map.Entry<NetworkInterface, List<InetAddress>> entry : joinedAdditionalGroups.entrySet()) {
+            for (final InetAddress group : entry.getValue()) {
+                try {
+                    leaveGroup(group, entry.getKey());
+                }
+
+                catch (final IOException e) {
+                    LOG.fine("Could not leave %s: %s", entry.getKey().getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins a multicast group on a network interface, or on the network interface
+     * of the socket if <code>null</code>.
+     *
+     * @param group The multicast group to join.
+     * @param networkInterface The network interface to join on, or <code>null</code>.
+     * @throws IOException If the group could not be joined.
+     */
+    private void joinGroup(final InetAddress group, @Nullable final NetworkInterface networkInterface)
+            throws IOException {
+        if (networkInterface == null) {
+            mcSocket.joinGroup(group);
+        } else {
+            mcSocket.joinGroup(new InetSocketAddress(group, port), networkInterface);
+        }
+    }
+
+    /**
+     * Leaves a multicast group on a network interface, or on the network interface
+     * of the socket if <code>null</code>.
+     *
+     * @param group The multicast group to leave.
+     * @param networkInterface The network interface to leave on, or <code>null</code>.
+     * @throws IOException If the group could not be left.
+     */
+    private void leaveGroup(final InetAddress group, @Nullable final NetworkInterface networkInterface)
+            throws IOException {
+        if (networkInterface == null) {
+            mcSocket.leaveGroup(group);
+        } else {
+            mcSocket.leaveGroup(new InetSocketAddress(group, port), networkInterface);
+        }
+    }
+
+    /**
+     * Gets the multicast groups joined on the network interface given when connecting.
+     *
+     * @return The joined multicast groups.
+     */
+    public synchronized List<InetAddress> getJoinedGroups() {
+        return Collections.unmodifiableList(joinedGroups);
+    }
+
+    /**
+     * Gets the extra network interfaces the receiver joined multicast groups on.
+     *
+     * @return The joined additional network interfaces.
+     */
+    public synchronized List<NetworkInterface> getJoinedAdditionalInterfaces() {
+        return new ArrayList<>(joinedAdditionalGroups.keySet());
+    }
+
+    /**
+     * Creates the multicast socket to receive messages with.
+     * Tests can override this to use a mock socket.
+     *
+     * @param socketPort The port to bind the socket to.
+     * @return A new multicast socket.
+     * @throws IOException If the socket could not be created.
+     */
+    protected MulticastSocket createSocket(final int socketPort) throws IOException {
+        return new MulticastSocket(socketPort);
+    }
+
     /**
      * Registers as the listener to receive all the messages from
      * the network.
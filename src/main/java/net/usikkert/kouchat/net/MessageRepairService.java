@@ -0,0 +1,446 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.tcp.TCPNetworkService;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Repairs gaps in the messages from other users, by asking them to send the missing messages again.
+ *
+ * <p>Multicast is fire and forget, so messages lost on the way are gone. Messages to all users have a
+ * sequence number, and a gap in the sequence numbers from a user means messages were lost. This works
+ * like this:</p>
+ *
+ * <ul>
+ *   <li>The last messages sent to all users are kept in a {@link RetransmitBuffer}.</li>
+ *   <li>A client that sees a gap waits a short random time, to give late messages a chance to arrive,
+ *       and then multicasts a {@link NetworkMessageType#NACK} with the missing sequence numbers.</li>
+ *   <li>Other clients missing the same messages see the request, and leave those numbers out of their own
+ *       request. The missing messages are sent again to everyone, so one request is enough.</li>
+ *   <li>The user that sent the messages multicasts them again, exactly as they were the first time, so the
+ *       sequence numbers make sure they are only shown once. The same message is not sent again more often
+ *       than every {@link #RETRANSMIT_INTERVAL} milliseconds, in case more requests get through.</li>
+ *   <li>Older clients don't read sequence numbers, and would show the messages sent again twice. While any
+ *       of them are in the chat, the messages are only sent over tcp to the user that asked for them.</li>
+ *   <li>A client asks for each missing message up to {@link #MAX_ATTEMPTS} times before giving up on it.</li>
+ * </ul>
+ *
+ * <p>The request has the format <code>code!NACK#nick:userCode:number,number</code>, where
+ * <code>userCode</code> is the user that should send the messages again. Older clients ignore it.</p>
+ *
+ * @author Christian Ihle
+ */
+public class MessageRepairService {
+
+    /**
+     * The shortest random delay, in milliseconds, before asking for missing messages.
+     * Gives messages that are just late a chance to arrive first.
+     */
+    protected static final int REQUEST_MIN_DELAY = 50;
+
+    /** The longest random delay, in milliseconds, before asking for missing messages. */
+    protected static final int REQUEST_MAX_DELAY = 150;
+
+    /** Milliseconds to wait for the missing messages before asking again. */
+    protected static final int RETRY_DELAY = 250;
+
+    /** The number of times to ask for the same missing messages before giving up. */
+    protected static final int MAX_ATTEMPTS = 5;
+
+    /** The most sequence numbers to ask for in one request, to make sure it fits in a network packet. */
+    protected static final int MAX_NUMBERS_PER_REQUEST = 32;
+
+    /** Milliseconds that must pass before the same message is sent again. */
+    protected static final int RETRANSMIT_INTERVAL = 100;
+
+    private static final Logger LOG = Logger.getLogger(MessageRepairService.class);
+
+    private final MessageSender messageSender;
+    private final TCPNetworkService tcpNetworkService;
+    private final Controller controller;
+    private final User me;
+    private final RetransmitBuffer retransmitBuffer;
+    private final Random random;
+    private final Timer timer;
+
+    /** The users with missing messages, by user code. */
+    private final Map<Integer, PendingRequest> pendingRequests;
+
+    /** The highest sequence number given up on, by user code. Messages up to that are not asked for again. */
+    private final Map<Integer, Long> givenUpSequenceNumbers;
+
+    private long requestedMessageCount;
+    private long retransmittedMessageCount;
+
+    /** If the timer has been stopped, and can not be used anymore. */
+    private boolean stopped;
+
+    /**
+     * Constructor.
+     *
+     * @param messageSender The multicast message sender to use for requests and messages sent again.
+     * @param tcpNetworkService The tcp network service to use for messages sent again while older clients
+     *                          are in the chat.
+     * @param controller The controller to use for finding the users.
+     * @param settings The settings to use.
+     */
+    public MessageRepairService(final MessageSender messageSender, final TCPNetworkService tcpNetworkService,
+                                final Controller controller, final Settings settings) {
+        Validate.notNull(messageSender, "Message sender can not be null");
+        Validate.notNull(tcpNetworkService, "TCP network service can not be null");
+        Validate.notNull(controller, "Controller can not be null");
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.messageSender = messageSender;
+        this.tcpNetworkService = tcpNetworkService;
+        this.controller = controller;
+
+        me = settings.getMe();
+        retransmitBuffer = new RetransmitBuffer(SequenceWindow.WINDOW_SIZE);
+        random = new Random();
+        timer = new Timer("MessageRepairTimer", true);
+        pendingRequests = new HashMap<>();
+        givenUpSequenceNumbers = new HashMap<>();
+    }
+
+    /**
+     * Keeps a message sent to all users, in case someone asks for it again.
+     *
+     * @param sequenceNumber The sequence number of the message.
+     * @param message The message, exactly as it was sent.
+     */
+    public void messageSent(final long sequenceNumber, final String message) {
+        retransmitBuffer.add(sequenceNumber, message);
+    }
+
+    /**
+     * Schedules a request for the missing messages from a user, unless one is scheduled already.
+     *
+     * @param user The user with missing messages.
+     * @param sequenceWindow The sequence window of the user, to find the missing messages when it's time to ask.
+     */
+    public void messagesMissing(final User user, final SequenceWindow sequenceWindow) {
+        synchronized (this) {
+            if (pendingRequests.containsKey(user.getCode())) {
+                return;
+            }
+
+            pendingRequests.put(user.getCode(), new PendingRequest(sequenceWindow));
+        }
+
+        schedule(user.getCode(), REQUEST_MIN_DELAY + random.nextInt(REQUEST_MAX_DELAY - REQUEST_MIN_DELAY));
+    }
+
+    /**
+     * Handles a request for missing messages. Sends the messages again if they are from this client,
+     * or notes that another client asked for them so this client doesn't have to.
+     *
+     * @param parsedMessage The request.
+     * @return The number of own messages asked for, or 0 if the request was for messages from another user.
+     */
+    public int requestArrived(final ParsedMessage parsedMessage) {
+        if (parsedMessage.getUserCode() == me.getCode()) {
+            return 0;
+        }
+
+        final String content = parsedMessage.getContent();
+        final int userCode;
+        final List<Long> sequenceNumbers = new ArrayList<>();
+
+        try {
+            final int colon = content.indexOf(':');
+            userCode = Integer.parseInt(content.substring(0, colon));
+
+            for (final String number : content.substring(colon + 1).split(",")) {
+                sequenceNumbers.add(Long.parseLong(number));
+            }
+        }
+
+        // Just ignore, someone sent a badly formatted request
+        catch (final NumberFormatException | StringIndexOutOfBoundsException e) {
+            LOG.warning("Failed to parse request for missing messages: %s, message=%s", e.getMessage(), parsedMessage.getMessage());
+            return 0;
+        }
+
+        if (userCode == me.getCode()) {
+            retransmit(parsedMessage.getUserCode(), sequenceNumbers, System.currentTimeMillis());
+            return sequenceNumbers.size();
+        }
+
+        requestSeen(userCode, sequenceNumbers);
+        return 0;
+    }
+
+    /**
+     * Forgets all requests waiting to be sent, and the messages given up on.
+     * Messages from before the network went down can not be repaired reliably anyway.
+     */
+    public synchronized void reset() {
+        pendingRequests.clear();
+        givenUpSequenceNumbers.clear();
+    }
+
+    /**
+     * Stops the timer. No more requests for missing messages are sent after this.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        timer.cancel();
+    }
+
+    /**
+     * Gets the number of missing messages this client has asked other users to send again.
+     *
+     * @return The number of requested messages.
+     */
+    public synchronized long getRequestedMessageCount() {
+        return requestedMessageCount;
+    }
+
+    /**
+     * Gets the number of messages this client has sent again, because other users missed them.
+     *
+     * @return The number of messages sent again.
+     */
+    public synchronized long getRetransmittedMessageCount() {
+        return retransmittedMessageCount;
+    }
+
+    /**
+     * Sends the requested messages again, if they are still stored and not sent again too recently.
+     * The messages are multicast, unless older clients are in the chat.
+     *
+     * @param requesterCode The unique code of the user that asked for the messages.
+     * @param sequenceNumbers The sequence numbers of the messages to send again.
+     * @param now The current time, in milliseconds.
+     */
+    protected void retransmit(final int requesterCode, final List<Long> sequenceNumbers, final long now) {
+        User requester = null;
+
+        // Older clients would show the messages twice, so only the user that asked gets them
+        if (controller.isUsersWithoutSequenceNumbers()) {
+            requester = controller.getUser(requesterCode);
+
+            if (requester == null || !requester.isTcpEnabled()) {
+                LOG.fine("Not sending messages again to user %s, older clients are in the chat", requesterCode);
+                return;
+            }
+        }
+
+        for (final Long sequenceNumber : sequenceNumbers) {
+            final String message = retransmitBuffer.getMessageToRetransmit(sequenceNumber, now, RETRANSMIT_INTERVAL);
+
+            if (message != null && send(message, requester)) {
+                synchronized (this) {
+                    retransmittedMessageCount++;
+                }
+            }
+        }
+    }
+
+    private boolean send(final String message, @Nullable final User requester) {
+        if (requester == null) {
+            return messageSender.send(message);
+        }
+
+        tcpNetworkService.sendMessageToUser(message, requester);
+        return true;
+    }
+
+    /**
+     * Sends the scheduled request for the messages that are still missing from a user, except the ones
+     * other clients have asked for since last time. Schedules another attempt, or gives up.
+     *
+     * @param userCode The unique code of the user with missing messages.
+     */
+    protected void sendRequest(final int userCode) {
+        final List<Long> toRequest = new ArrayList<>();
+
+        synchronized (this) {
+            final PendingRequest pendingRequest = pendingRequests.get(userCode);
+
+            if (pendingRequest == null) {
+                return;
+            }
+
+            final List<Long> missing = getMissingSequenceNumbers(userCode, pendingRequest.sequenceWindow);
+            pendingRequest.attempts.keySet().retainAll(missing);
+            boolean waitingForMore = false;
+
+            for (final Long sequenceNumber : missing) {
+                final int attempts = pendingRequest.getAttempts(sequenceNumber);
+
+                if (attempts >= MAX_ATTEMPTS) {
+                    giveUp(userCode, sequenceNumber);
+                    continue;
+                }
+
+                waitingForMore = true;
+
+                // Counts as an attempt, since the other request makes the message come for everyone
+                if (pendingRequest.requestedByOthers.contains(sequenceNumber)) {
+                    pendingRequest.attempts.put(sequenceNumber, attempts + 1);
+                }
+
+                else if (toRequest.size() < MAX_NUMBERS_PER_REQUEST) {
+                    pendingRequest.attempts.put(sequenceNumber, attempts + 1);
+                    toRequest.add(sequenceNumber);
+                }
+            }
+
+            pendingRequest.requestedByOthers.clear();
+
+            if (!waitingForMore) {
+                pendingRequests.remove(userCode);
+                return;
+            }
+
+            requestedMessageCount += toRequest.size();
+        }
+
+        if (!toRequest.isEmpty()) {
+            messageSender.send(createRequest(userCode, toRequest));
+        }
+
+        schedule(userCode, RETRY_DELAY);
+    }
+
+    private synchronized void requestSeen(final int userCode, final List<Long> sequenceNumbers) {
+        final PendingRequest pendingRequest = pendingRequests.get(userCode);
+
+        if (pendingRequest != null) {
+            pendingRequest.requestedByOthers.addAll(sequenceNumbers);
+        }
+    }
+
+    /**
+     * Stops asking for the message. Older missing messages have been asked for at least as many times,
+     * so it's enough to remember the highest sequence number given up on.
+     */
+    private void giveUp(final int userCode, final long sequenceNumber) {
+        LOG.fine("Giving up on missing message %s from user %s", sequenceNumber, userCode);
+        final Long givenUp = givenUpSequenceNumbers.get(userCode);
+
+        if (givenUp == null || givenUp < sequenceNumber) {
+            givenUpSequenceNumbers.put(userCode, sequenceNumber);
+        }
+    }
+
+    private List<Long> getMissingSequenceNumbers(final int userCode, final SequenceWindow sequenceWindow) {
+        final List<Long> missing = sequenceWindow.getMissingSequenceNumbers();
+        final Long givenUp = givenUpSequenceNumbers.get(userCode);
+
+        if (givenUp != null) {
+            final List<Long> notGivenUp = new ArrayList<>();
+
+            for (final Long sequenceNumber : missing) {
+                if (sequenceNumber > givenUp) {
+                    notGivenUp.add(sequenceNumber);
+                }
+            }
+
+            return notGivenUp;
+        }
+
+        return missing;
+    }
+
+    private String createRequest(final int userCode, final List<Long> sequenceNumbers) {
+        final StringBuilder request = new StringBuilder();
+
+        request.append(me.getCode()).append('!').append(NACK).append('#').append(me.getNick()).append(':')
+               .append(userCode).append(':');
+
+        for (int i = 0; i < sequenceNumbers.size(); i++) {
+            if (i > 0) {
+                request.append(',');
+            }
+
+            request.append(sequenceNumbers.get(i));
+        }
+
+        return request.toString();
+    }
+
+    private synchronized void schedule(final int userCode, final long delay) {
+        if (stopped) {
+            return;
+        }
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                sendRequest(userCode);
+            }
+        }, delay);
+    }
+
+    /**
+     * The state of the request for missing messages from one user.
+     */
+    private static class PendingRequest {
+
+        private final SequenceWindow sequenceWindow;
+
+        /** Sequence numbers other clients have asked for since the last request from this client. */
+        private final Set<Long> requestedByOthers;
+
+        /** The number of times each missing message has been asked for. */
+        private final Map<Long, Integer> attempts;
+
+        PendingRequest(final SequenceWindow sequenceWindow) {
+            this.sequenceWindow = sequenceWindow;
+            this.requestedByOthers = new HashSet<>();
+            this.attempts = new HashMap<>();
+        }
+
+        private int getAttempts(final Long sequenceNumber) {
+            final Integer count = attempts.get(sequenceNumber);
+
+            if (count == null) {
+                return 0;
+            }
+
+            return count;
+        }
+    }
+}
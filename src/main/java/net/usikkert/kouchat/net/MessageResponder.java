@@ -55,8 +55,10 @@ public interface MessageResponder {
 
     /**
      * A user has requested the get the current topic.
+     *
+     * @param userCode The unique code of the user who requested the topic.
      */
-    void topicRequested();
+    void topicRequested(int userCode);
 
     /**
      * The away status of a user has changed.
@@ -104,9 +106,15 @@ public interface MessageResponder {
     /**
      * A user is notifying that it is available and logged on to the chat.
      *
-     * @param user The unknown user who was exposed.
+     * <p>This comes from every user each time someone asks who is logged on, so the details
+     * are given as they are, and a {@link User} is only created if the user is unknown.</p>
+     *
+     * @param userCode The unique code of the user who was exposed.
+     * @param nick The nick name of the user.
+     * @param awayMsg The away message of the user, or an empty string if not away.
+     * @param ipAddress The IP address of the user.
      */
-    void userExposing(User user);
+    void userExposing(int userCode, String nick, String awayMsg, String ipAddress);
 
     /**
      * A user has requested information about the other clients that are logged
@@ -139,6 +147,14 @@ public interface MessageResponder {
      */
     void userIdle(int userCode, String ipAddress);
 
+    /**
+     * A user sent a message of some kind, which shows that it is still connected
+     * to the network. Unknown users are ignored.
+     *
+     * @param userCode The unique code of the user who sent the message.
+     */
+    void userAlive(int userCode);
+
     /**
      * A user is asking the application user to receive a file.
      *
@@ -150,6 +166,18 @@ public interface MessageResponder {
      */
     void fileSend(int userCode, long byteSize, String fileName, String user, int fileHash);
 
+    /**
+     * A user is asking the application user to receive a folder with several files.
+     *
+     * @param userCode The unique code of the user who wants to send a folder.
+     * @param byteSize The size of the whole batch of files in bytes.
+     * @param folderName The name of the folder.
+     * @param user The nick name of the user.
+     * @param fileHash The hash code of the batch.
+     * @param fileCount The number of files in the folder.
+     */
+    void folderSend(int userCode, long byteSize, String folderName, String user, int fileHash, int fileCount);
+
     /**
      * A user has aborted a file transfer from the application user.
      *
@@ -178,6 +206,8 @@ public interface MessageResponder {
      * @param operatingSystem The user's operating system.
      * @param privateChatPort The port to use for sending private chat messages to this user.
      * @param tcpChatPort The port to use for sending chat messages to this user using tcp.
+     * @param fileTransferPort The port to use for sending files to this user over a pooled connection.
      */
-    void clientInfo(int userCode, String client, long timeSinceLogon, String operatingSystem, int privateChatPort, int tcpChatPort);
+    void clientInfo(int userCode, String client, long timeSinceLogon, String operatingSystem, int privateChatPort,
+                    int tcpChatPort, int fileTransferPort);
 }
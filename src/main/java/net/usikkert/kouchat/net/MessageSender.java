@@ -29,11 +29,14 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
 
 import org.jetbrains.annotations.Nullable;
@@ -46,7 +49,7 @@ import org.jetbrains.annotations.Nullable;
 public class MessageSender {
 
     /** The logger. */
-    private static final Logger LOG = Logger.getLogger(MessageSender.class.getName());
+    private static final Logger LOG = Logger.getLogger(MessageSender.class);
 
     /** The multicast socket used for sending messages. */
     @Nullable
@@ -55,23 +58,43 @@ public class MessageSender {
     /** The inetaddress object with the multicast ip address to send messages to. */
     private InetAddress address;
 
+    /** The IPv6 multicast address to also send messages to, on networks with IPv6. */
+    @Nullable
+    private InetAddress ipv6Address;
+
+    /** The multicast groups to send to on the network interface the socket was connected to. */
+    private List<InetAddress> primaryGroups = Collections.emptyList();
+
     /** If connected to the network or not. */
     private boolean connected;
 
     /** The port to send messages to. */
     private final int port;
 
+    /** The last fragment id used for a message without a sequence number. Counts down from 0. */
+    private int lastUnsequencedFragmentId;
+
+    /** The network interface the socket was connected to. Packets are sent here first. */
+    @Nullable
+    private NetworkInterface primaryNetworkInterface;
+
+    /** Extra network interfaces every packet is also sent on, when using several networks at once, with their groups. */
+    private Map<NetworkInterface, List<InetAddress>> additionalGroups = Collections.emptyMap();
+
+    private final NetworkUtils networkUtils = new NetworkUtils();
+
     /**
      * Default constructor.
      *
-     * <p>Initializes the network with the default ip address and port.</p>
+     * <p>Initializes the network with the default ip addresses and port.</p>
      *
      * @see Constants#NETWORK_IP
+     * @see Constants#NETWORK_IPV6
      * @see Constants#NETWORK_CHAT_PORT
      * @param errorHandler The error handler to use.
      */
     public MessageSender(final ErrorHandler errorHandler) {
-        this(Constants.NETWORK_IP, Constants.NETWORK_CHAT_PORT, errorHandler);
+        this(Constants.NETWORK_IP, Constants.NETWORK_IPV6, Constants.NETWORK_CHAT_PORT, errorHandler);
     }
 
     /**
@@ -84,7 +107,24 @@ public class MessageSender {
      * @param errorHandler The error handler to use.
      */
     public MessageSender(final String ipAddress, final int port, final ErrorHandler errorHandler) {
-        LOG.fine("Creating MessageSender on " + ipAddress + ":" + port);
+        this(ipAddress, null, port, errorHandler);
+    }
+
+    /**
+     * Alternative constructor.
+     *
+     * <p>Initializes the network with the given ip addresses and port. Messages are sent to the
+     * IPv6 address as well, when the network interface has IPv6.</p>
+     *
+     * @param ipAddress Multicast ip address to connect to.
+     * @param ipv6IpAddress IPv6 multicast ip address to also connect to, or <code>null</code> for only IPv4.
+     * @param port Port to connect to.
+     * @param errorHandler The error handler to use.
+     */
+    public MessageSender(final String ipAddress, @Nullable final String ipv6IpAddress, final int port,
+                         final ErrorHandler errorHandler) {
+        LOG.fine("Creating MessageSender on %s%s:%s",
+                 ipAddress, ipv6IpAddress == null ? "" : " and " + ipv6IpAddress, port);
 
         Validate.notEmpty(ipAddress, "IP address can not be empty");
         Validate.notNull(errorHandler, "Error handler can not be null");
@@ -93,10 +133,14 @@ public class MessageSender {
 
         try {
             address = InetAddress.getByName(ipAddress);
+
+            if (ipv6IpAddress != null) {
+                ipv6Address = InetAddress.getByName(ipv6IpAddress);
+            }
         }
 
         catch (final IOException e) {
-            LOG.log(Level.SEVERE, e.toString(), e);
+            LOG.severe(e, e.toString());
 
             errorHandler.showCriticalError("Failed to initialize the network:\n" + e + "\n" +
                     Constants.APP_NAME + " will now shutdown.");
@@ -108,6 +152,9 @@ public class MessageSender {
     /**
      * Sends a multicast packet to other clients over the network.
      *
+     * <p>Messages too large for one packet are split in fragments by the {@link MessageFragmenter},
+     * and sent as several packets.</p>
+     *
      * @param message The message to send in the packet.
      * @return If the message was sent or not.
      * @see Constants#MESSAGE_CHARSET
@@ -120,19 +167,26 @@ public class MessageSender {
                 final int size = encodedMsg.length;
 
                 if (size > Constants.NETWORK_PACKET_SIZE) {
-                    LOG.log(Level.WARNING, "Message was " + size + " bytes, which is too large.\n" +
-                            " The receiver might not get the complete message.\n'" + message + "'");
+                    final List<String> fragments = MessageFragmenter.split(message, getFragmentId(message));
+
+                    if (!fragments.isEmpty()) {
+                        return sendFragments(fragments);
+                    }
+
+                    LOG.warning("Message was %s bytes, which is too large.\n" +
+                                " The receiver might not get the complete message.\n'%s'", size, message);
                 }
 
-                final DatagramPacket packet = new DatagramPacket(encodedMsg, size, address, port);
-                mcSocket.send(packet);
-                LOG.log(Level.FINE, "Sent message: " + message);
+                sendPacket(encodedMsg, size);
+                NetworkMetrics.packetSent(message);
+                MessageTrace.recordStage(MessageTraceStage.SOCKET_SENT);
+                LOG.fine("Sent message: %s", message);
 
                 return true;
             }
 
             catch (final IOException e) {
-                LOG.log(Level.WARNING, "Could not send message: " + message, e);
+                LOG.warning(e, "Could not send message: %s", message);
             }
         }
 
@@ -148,16 +202,38 @@ public class MessageSender {
      * @return If connected to the network or not.
      */
     public synchronized boolean startSender(@Nullable final NetworkInterface networkInterface) {
-        LOG.log(Level.FINE, "Connecting to " + address.getHostAddress() + ":" + port + " on " + networkInterface);
+        return startSender(networkInterface, Collections.<NetworkInterface>emptyList());
+    }
+
+    /**
+     * Connects to the network with the given network interface, or gives
+     * the control to the operating system to choose if <code>null</code>
+     * is given.
+     *
+     * <p>Every packet is also sent on each of the additional network interfaces, so clients
+     * on all the networks this computer is connected to get the messages.</p>
+     *
+     * <p>Network interfaces with both IPv4 and IPv6 get every packet on both, so clients with only
+     * one of them get the messages too. The copies are removed by the {@link MessageDeduplicator}.</p>
+     *
+     * @param networkInterface The network interface to use, or <code>null</code>.
+     * @param additionalInterfaces Other network interfaces to also send on. Can be empty.
+     * @return If connected to the network or not.
+     */
+    public synchronized boolean startSender(@Nullable final NetworkInterface networkInterface,
+                                            final List<NetworkInterface> additionalInterfaces) {
+        Validate.notNull(additionalInterfaces, "Additional network interfaces can not be null");
+        LOG.fine("Connecting to %s:%s on %s%s", address.getHostAddress(), port, networkInterface,
+                 additionalInterfaces.isEmpty() ? "" : " and " + additionalInterfaces.size() + " more");
 
         try {
             if (connected) {
-                LOG.log(Level.FINE, "Already connected.");
+                LOG.fine("Already connected.");
             }
 
             else {
                 if (mcSocket == null) {
-                    mcSocket = new MulticastSocket(port);
+                    mcSocket = createSocket(port);
                 }
 
                 if (networkInterface != null) {
@@ -166,15 +242,29 @@ public class MessageSender {
 
                 mcSocket.setTrafficClass(IPTOS_RELIABILITY);
 
-                mcSocket.joinGroup(address);
+                primaryGroups = networkUtils.getMulticastGroups(networkInterface, address, ipv6Address);
+
+                if (primaryGroups.contains(address)) {
+                    mcSocket.joinGroup(address);
+                }
+
                 mcSocket.setTimeToLive(64);
-                LOG.log(Level.FINE, "Connected to " + mcSocket.getNetworkInterface());
+
+                primaryNetworkInterface = mcSocket.getNetworkInterface();
+                additionalGroups = new LinkedHashMap<>();
+
+                for (final NetworkInterface additionalInterface : additionalInterfaces) {
+                    additionalGroups.put(additionalInterface,
+                            networkUtils.getMulticastGroups(additionalInterface, address, ipv6Address));
+                }
+
+                LOG.fine("Connected to %s with %s", primaryNetworkInterface, primaryGroups);
                 connected = true;
             }
         }
 
         catch (final IOException e) {
-            LOG.log(Level.SEVERE, "Could not start sender: " + e.toString(), e);
+            LOG.severe(e, "Could not start sender: %s", e);
 
             if (mcSocket != null) {
                 if (!mcSocket.isClosed()) {
@@ -192,23 +282,23 @@ public class MessageSender {
      * Disconnects from the network and closes the multicast socket.
      */
     public synchronized void stopSender() {
-        LOG.log(Level.FINE, "Disconnecting from " + address.getHostAddress() + ":" + port);
+        LOG.fine("Disconnecting from %s:%s", address.getHostAddress(), port);
 
         if (!connected) {
-            LOG.log(Level.FINE, "Not connected.");
+            LOG.fine("Not connected.");
         }
 
         else {
             connected = false;
 
             try {
-                if (!mcSocket.isClosed()) {
+                if (!mcSocket.isClosed() && primaryGroups.contains(address)) {
                     mcSocket.leaveGroup(address);
                 }
             }
 
             catch (final IOException e) {
-                LOG.log(Level.WARNING, e.toString());
+                LOG.warning(e.toString());
             }
 
             if (!mcSocket.isClosed()) {
@@ -216,7 +306,124 @@ public class MessageSender {
                 mcSocket = null;
             }
 
-            LOG.log(Level.FINE, "Disconnected from " + address.getHostAddress() + ":" + port);
+            primaryNetworkInterface = null;
+            primaryGroups = Collections.emptyList();
+            additionalGroups = Collections.emptyMap();
+
+            LOG.fine("Disconnected from %s:%s", address.getHostAddress(), port);
         }
     }
+
+    /**
+     * Gets the id to use for the fragments of a message. Messages with a sequence number use that, so
+     * the receiver can combine fragments from the first time it was sent with fragments from when it was
+     * sent again after someone asked. Other messages use negative numbers, so they never get the same id.
+     *
+     * @param message The message to get the fragment id for.
+     * @return The fragment id.
+     */
+    private int getFragmentId(final String message) {
+        final long sequenceNumber = MessageTrailer.getSequenceNumber(message);
+
+        if (sequenceNumber != MessageTrailer.NO_SEQUENCE_NUMBER) {
+            return (int) (sequenceNumber & Integer.MAX_VALUE);
+        }
+
+        lastUnsequencedFragmentId--;
+
+        if (lastUnsequencedFragmentId == Integer.MIN_VALUE) {
+            lastUnsequencedFragmentId = -1;
+        }
+
+        return lastUnsequencedFragmentId;
+    }
+
+    /**
+     * Sends the fragments of a large message, one packet each.
+     *
+     * @param fragments The fragments to send.
+     * @return If all the fragments were sent.
+     * @throws IOException If a fragment could not be sent.
+     */
+    private boolean sendFragments(final List<String> fragments) throws IOException {
+        for (final String fragment : fragments) {
+            final byte[] encodedFragment = fragment.getBytes(Constants.MESSAGE_CHARSET);
+            sendPacket(encodedFragment, encodedFragment.length);
+            NetworkMetrics.packetSent(fragment);
+        }
+
+        LOG.fine("Sent message in %s fragments", fragments.size());
+        MessageTrace.recordStage(MessageTraceStage.SOCKET_SENT);
+
+        return true;
+    }
+
+    /**
+     * Sends a packet to each multicast group on the network interface the socket is connected to,
+     * and then on each of the additional network interfaces. The packet counts as sent if the first
+     * send works. Failing to send to one of the other groups or network interfaces is only logged.
+     *
+     * <p>Users on the same networks get a copy from each group. The {@link MessageDeduplicator}
+     * drops the extra copies, also of messages without a sequence number.</p>
+     *
+     * @param data The data to send in the packet.
+     * @param length The number of bytes of the data to send.
+     * @throws IOException If the packet could not be sent to the first group on the main network interface.
+     */
+    private void sendPacket(final byte[] data, final int length) throws IOException {
+        if (!additionalGroups.isEmpty() && primaryNetworkInterface != null) {
+            mcSocket.setNetworkInterface(primaryNetworkInterface);
+        }
+
+        mcSocket.send(new DatagramPacket(data, length, primaryGroups.get(0), port));
+
+        for (int i = 1; i < primaryGroups.size(); i++) {
+            sendToGroup(data, length, primaryGroups.get(i));
+        }
+
+        for (final Map.Entry<NetworkInterface, List<InetAddress>> entry : additionalGroups.entrySet()) {
+            try {
+                mcSocket.setNetworkInterface(entry.getKey());
+            }
+
+            catch (final IOException e) {
+                LOG.warning("Could not send packet on %s: %s", entry.getKey().getName(), e);
+                continue;
+            }
+
+            for (final InetAddress group : entry.getValue()) {
+                sendToGroup(data, length, group);
+            }
+        }
+    }
+
+    /**
+     * Sends a packet to the multicast group on the current network interface of the socket,
+     * and logs a warning if it fails.
+     *
+     * @param data The data to send in the packet.
+     * @param length The number of bytes of the data to send.
+     * @param group The multicast group to send to.
+     */
+    private void sendToGroup(final byte[] data, final int length, final InetAddress group) {
+        try {
+            mcSocket.send(new DatagramPacket(data, length, group, port));
+        }
+
+        catch (final IOException e) {
+            LOG.warning("Could not send packet to %s: %s", group.getHostAddress(), e);
+        }
+    }
+
+    /**
+     * Creates the multicast socket to send messages with.
+     * Tests can override this to wrap the socket, for instance to simulate a network that loses packets.
+     *
+     * @param socketPort The port to bind the socket to.
+     * @return A new multicast socket.
+     * @throws IOException If the socket could not be created.
+     */
+    protected MulticastSocket createSocket(final int socketPort) throws IOException {
+        return new MulticastSocket(socketPort);
+    }
 }
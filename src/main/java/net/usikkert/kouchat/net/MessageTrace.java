@@ -0,0 +1,222 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.usikkert.kouchat.util.LatencyHistogram;
+import net.usikkert.kouchat.util.Metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Measures where the time goes from a user sends a chat message until the other users see it.
+ *
+ * <p>Only a sample of the chat messages are traced, one of every {@link #getSampleRate()}, to keep the cost
+ * down. The sending client adds the time the message was sent to the {@link MessageTrailer} of those messages.
+ * The receiving client starts a trace of its own when a message with a trace time arrives, and records how
+ * long it took to reach each {@link MessageTraceStage} in the shared {@link Metrics}.</p>
+ *
+ * <p>The time recorded for each stage is the time since the trace started on the same client, so the stages
+ * can be compared without depending on the clock of another client. The exception is
+ * {@link MessageTraceStage#NETWORK}, which compares the trace time with the local clock, and is only
+ * correct if the clocks of the clients are in sync.</p>
+ *
+ * <p>The trace follows the message on the thread that handles it. Code that hands the message to another
+ * thread must bring the trace along, using {@link #getCurrentTrace()} and {@link #resume(MessageTrace)}.</p>
+ *
+ * @author Christian Ihle
+ */
+public final class MessageTrace {
+
+    /** Traces one of this many chat messages by default. */
+    public static final int DEFAULT_SAMPLE_RATE = 20;
+
+    /** The trace of the message the current thread is working on. */
+    private static final ThreadLocal<MessageTrace> CURRENT_TRACE = new ThreadLocal<>();
+
+    /** One histogram for each stage, in the same order as the stages. */
+    private static final LatencyHistogram[] HISTOGRAMS = createHistograms();
+
+    /** Number of chat messages sent, to choose which ones to trace. */
+    private static final AtomicLong SENT_MESSAGES = new AtomicLong();
+
+    private static volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
+    /** When the message was sent, in milliseconds since 1970, from the clock of the sending client. */
+    private final long traceTime;
+
+    /** When the trace started on this client, in milliseconds since 1970. */
+    private final long startTime;
+
+    /** When the trace started on this client, from {@link System#nanoTime()}. */
+    private final long startNanos;
+
+    private MessageTrace(final long traceTime, final long startTime, final long startNanos) {
+        this.traceTime = traceTime;
+        this.startTime = startTime;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Starts a trace on the current thread, if it's time to trace a sent chat message.
+     * Call {@link #clear()} when the message is sent.
+     */
+    public static void startSending() {
+        final int rate = sampleRate;
+
+        if (rate > 0 && SENT_MESSAGES.incrementAndGet() % rate == 0) {
+            final long now = System.currentTimeMillis();
+            CURRENT_TRACE.set(new MessageTrace(now, now, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Starts a trace on the current thread, if the message that arrived has a trace time.
+     * Call {@link #clear()} when the thread is done with the message.
+     *
+     * @param message The message that arrived, with the trailer.
+     */
+    public static void startReceiving(final String message) {
+        final long traceTime = MessageTrailer.getTraceTime(message);
+
+        if (traceTime != MessageTrailer.NO_TRACE_TIME) {
+            CURRENT_TRACE.set(new MessageTrace(traceTime, System.currentTimeMillis(), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Gets the trace of the message the current thread is working on.
+     *
+     * @return The trace, or <code>null</code> if the message is not traced.
+     */
+    @Nullable
+    public static MessageTrace getCurrentTrace() {
+        return CURRENT_TRACE.get();
+    }
+
+    /**
+     * Continues a trace on the current thread, after the message was handed over from another thread.
+     * Call {@link #clear()} when the thread is done with the message.
+     *
+     * @param trace The trace from {@link #getCurrentTrace()} on the other thread. Can be <code>null</code>.
+     */
+    public static void resume(@Nullable final MessageTrace trace) {
+        if (trace != null) {
+            CURRENT_TRACE.set(trace);
+        }
+    }
+
+    /**
+     * Stops tracing on the current thread.
+     */
+    public static void clear() {
+        CURRENT_TRACE.remove();
+    }
+
+    /**
+     * Records the stage, if the message the current thread is working on is traced.
+     *
+     * @param stage The stage the message has reached.
+     */
+    public static void recordStage(final MessageTraceStage stage) {
+        final MessageTrace trace = CURRENT_TRACE.get();
+
+        if (trace != null) {
+            trace.record(stage);
+        }
+    }
+
+    /**
+     * Gets how often chat messages are traced.
+     *
+     * @return One of this many chat messages are traced, or 0 if tracing is off.
+     */
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets how often chat messages are traced.
+     *
+     * @param sampleRate Trace one of this many chat messages. Use 0 to stop tracing.
+     */
+    public static void setSampleRate(final int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Sample rate can not be negative");
+        }
+
+        MessageTrace.sampleRate = sampleRate;
+    }
+
+    /**
+     * Gets the histogram with the times recorded for the stage.
+     *
+     * @param stage The stage to get the histogram for.
+     * @return The histogram.
+     */
+    public static LatencyHistogram getHistogram(final MessageTraceStage stage) {
+        return HISTOGRAMS[stage.ordinal()];
+    }
+
+    /**
+     * Records the time it took for the message to reach the stage.
+     *
+     * @param stage The stage the message has reached.
+     */
+    public void record(final MessageTraceStage stage) {
+        if (stage == MessageTraceStage.NETWORK) {
+            final long networkTime = startTime - traceTime;
+
+            // The clocks are not in sync, so there is nothing useful to record
+            if (networkTime >= 0) {
+                getHistogram(stage).record(networkTime * 1_000_000L);
+            }
+        }
+
+        else {
+            getHistogram(stage).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Gets when the message was sent, from the clock of the sending client.
+     *
+     * @return The trace time, in milliseconds since 1970.
+     */
+    public long getTraceTime() {
+        return traceTime;
+    }
+
+    private static LatencyHistogram[] createHistograms() {
+        final MessageTraceStage[] stages = MessageTraceStage.values();
+        final LatencyHistogram[] histograms = new LatencyHistogram[stages.length];
+
+        for (final MessageTraceStage stage : stages) {
+            histograms[stage.ordinal()] = Metrics.getSharedMetrics().getHistogram(
+                    "kouchat_message_trace_seconds", "stage", stage.getLabel());
+        }
+
+        return histograms;
+    }
+}
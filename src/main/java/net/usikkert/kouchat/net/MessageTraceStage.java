@@ -0,0 +1,68 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+/**
+ * The stages a traced chat message goes through, on the way from one user to another.
+ *
+ * @author Christian Ihle
+ * @see MessageTrace
+ */
+public enum MessageTraceStage {
+
+    /** The message was sent as a multicast packet. Measured on the sending client. */
+    SOCKET_SENT("socket_sent"),
+
+    /** The message arrived from the network. Measured from the time in the message, so clocks must be in sync. */
+    NETWORK("network"),
+
+    /** The message was parsed, and was not a duplicate. */
+    DEDUPLICATED("deduplicated"),
+
+    /** The message was checked by the {@link AsyncMessageResponderWrapper}. */
+    RESPONDER_WRAPPER("responder_wrapper"),
+
+    /** The message arrived at the {@link DefaultMessageResponder}. */
+    RESPONDER("responder"),
+
+    /** The message was given to the user interface to show. */
+    SHOWN("shown"),
+
+    /** The message was inserted in the chat area of the Swing user interface, on the event dispatch thread. */
+    DISPLAYED("displayed");
+
+    private final String label;
+
+    MessageTraceStage(final String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the stage, as used in the metrics.
+     *
+     * @return The name of the stage.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,286 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import net.usikkert.kouchat.Constants;
+import net.usikkert.kouchat.util.Tools;
+
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Extra information about a network message, added to the end of the message.
+ *
+ * <p>The trailer only uses control characters between <code>\u0001</code> and <code>\u001d</code>.
+ * Clients that don't know about the trailer remove these when they trim the message, so they can still
+ * read messages with a trailer over multicast and private chat. Over tcp the trailer must only be sent
+ * to users that have shown they can read it, since tcp messages are not trimmed.</p>
+ *
+ * <p>The format is a start character, followed by fields. Each field is a field character,
+ * followed by a number written with one character per hex digit.</p>
+ *
+ * <p>The sequence number is always the first field. Every client numbers the messages it sends to all
+ * users, so the receiver can recognize the same message arriving over both multicast and tcp,
+ * and notice messages that never arrive.</p>
+ *
+ * <p>A few chat messages also have a trace time field, with the time the message was sent.
+ * See {@link MessageTrace}.</p>
+ *
+ * @author Christian Ihle
+ */
+public final class MessageTrailer {
+
+    /** Sequence number to use for messages without one. */
+    public static final long NO_SEQUENCE_NUMBER = -1;
+
+    /** Marks the start of the trailer. */
+    static final char START = '\u001e';
+
+    /** Trace time to use for messages without one. */
+    public static final long NO_TRACE_TIME = -1;
+
+    /** Marks the sequence number field. */
+    static final char SEQUENCE_NUMBER = '\u0011';
+
+    /** Marks the trace time field. */
+    static final char TRACE_TIME = '\u0012';
+
+    /** The character for hex digit 0. Digits 0 to f use the 16 characters from here. */
+    private static final char FIRST_DIGIT = '\u0001';
+
+    /** The last character that can be used in the trailer. */
+    private static final char LAST_CHARACTER = '\u001d';
+
+    /** Max number of bytes in a trailer: start, field, and 16 hex digits. */
+    private static final int MAX_TRAILER_BYTES = 18;
+
+    /** Max number of bytes in an extra field: field, and 16 hex digits. */
+    private static final int MAX_FIELD_BYTES = 17;
+
+    private MessageTrailer() {
+
+    }
+
+    /**
+     * Adds a trailer with the sequence number to the message, unless {@link #shouldAddTrailer(String)} says no.
+     *
+     * @param message The message to add the sequence number to.
+     * @param sequenceNumber The sequence number to add. Must be 0 or higher.
+     * @return The message with the trailer, or the original message if the trailer would make it too large
+     *         for a network packet.
+     */
+    public static String addSequenceNumber(@NonNls final String message, final long sequenceNumber) {
+        if (!shouldAddTrailer(message)) {
+            return message;
+        }
+
+        final StringBuilder builder = new StringBuilder(message.length() + MAX_TRAILER_BYTES);
+        builder.append(message).append(START).append(SEQUENCE_NUMBER);
+        appendNumber(builder, sequenceNumber);
+
+        return builder.toString();
+    }
+
+    /**
+     * Gets the sequence number from the trailer of the message.
+     *
+     * @param message The message with or without a trailer.
+     * @return The sequence number, or {@link #NO_SEQUENCE_NUMBER} if the message doesn't have one.
+     */
+    public static long getSequenceNumber(final String message) {
+        return getField(message, SEQUENCE_NUMBER);
+    }
+
+    /**
+     * Adds the trace time field to the trailer of the message. Only messages that already have
+     * a trailer get the field, and only if there is room for it in a network packet.
+     *
+     * @param message The message with a trailer.
+     * @param traceTime The time the message was sent, in milliseconds since 1970.
+     * @return The message with the trace time, or the original message if it could not be added.
+     */
+    public static String addTraceTime(@NonNls final String message, final long traceTime) {
+        if (findTrailer(message) == -1 || !hasRoomFor(message, MAX_FIELD_BYTES)) {
+            return message;
+        }
+
+        final StringBuilder builder = new StringBuilder(message.length() + MAX_FIELD_BYTES);
+        builder.append(message).append(TRACE_TIME);
+        appendNumber(builder, traceTime);
+
+        return builder.toString();
+    }
+
+    /**
+     * Gets the trace time from the trailer of the message.
+     *
+     * @param message The message with or without a trailer.
+     * @return The trace time, or {@link #NO_TRACE_TIME} if the message doesn't have one.
+     */
+    public static long getTraceTime(final String message) {
+        return getField(message, TRACE_TIME);
+    }
+
+    /**
+     * Removes the trailer from the message, if it has one.
+     *
+     * @param message The message with or without a trailer.
+     * @return The message without the trailer.
+     */
+    public static String removeTrailer(final String message) {
+        final int start = findTrailer(message);
+
+        if (start == -1) {
+            return message;
+        }
+
+        return message.substring(0, start);
+    }
+
+    /**
+     * Removes whitespace from the start and end of the message, like {@link String#trim()},
+     * but keeps the trailer.
+     *
+     * @param message The message with or without a trailer.
+     * @return The trimmed message, with the trailer if it had one.
+     */
+    public static String trim(final String message) {
+        final int start = findTrailer(message);
+
+        if (start == -1) {
+            return message.trim();
+        }
+
+        return message.substring(0, start).trim() + message.substring(start);
+    }
+
+    /**
+     * Checks if a trailer should be added to the message. Messages that fit in a network packet only without
+     * the trailer are sent without it, so older clients still get the complete message. Messages too large for
+     * a network packet are split in fragments anyway, so they can always have a trailer.
+     *
+     * @param message The message to check.
+     * @return If a trailer should be added.
+     */
+    public static boolean shouldAddTrailer(final String message) {
+        return hasRoomFor(message, MAX_TRAILER_BYTES);
+    }
+
+    /**
+     * Checks if the extra bytes can be added to the message, without making an older client miss the end of it.
+     *
+     * @param message The message to check.
+     * @param extraBytes The number of bytes to add.
+     * @return If the message still fits in a network packet, or if it would be split in fragments anyway.
+     */
+    private static boolean hasRoomFor(final String message, final int extraBytes) {
+        // A character is never more than 3 bytes in UTF-8, so most messages can skip the exact count
+        if (message.length() * 3 + extraBytes <= Constants.NETWORK_PACKET_SIZE) {
+            return true;
+        }
+
+        final int bytes = Tools.getBytes(message);
+
+        return bytes + extraBytes <= Constants.NETWORK_PACKET_SIZE || bytes > Constants.NETWORK_PACKET_SIZE;
+    }
+
+    /**
+     * Finds the number in a field of the trailer. Each field is a field character followed by 1 to 16 digits.
+     *
+     * @param message The message with or without a trailer.
+     * @param field The character that marks the field.
+     * @return The number, or -1 if the field is missing or the trailer is invalid.
+     */
+    private static long getField(final String message, final char field) {
+        final int start = findTrailer(message);
+
+        if (start == -1) {
+            return -1;
+        }
+
+        int position = start + 1;
+
+        while (position < message.length()) {
+            final char fieldCharacter = message.charAt(position);
+
+            if (isDigit(fieldCharacter)) {
+                return -1;
+            }
+
+            long number = 0;
+            int digits = 0;
+            position++;
+
+            while (position < message.length() && isDigit(message.charAt(position))) {
+                number = (number << 4) | (message.charAt(position) - FIRST_DIGIT);
+                digits++;
+                position++;
+            }
+
+            if (digits == 0 || digits > 16) {
+                return -1;
+            }
+
+            if (fieldCharacter == field) {
+                return number;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isDigit(final char character) {
+        return character >= FIRST_DIGIT && character < FIRST_DIGIT + 16;
+    }
+
+    /**
+     * Finds where the trailer starts.
+     *
+     * @param message The message with or without a trailer.
+     * @return The position of the start character, or -1 if the message doesn't have a trailer.
+     */
+    private static int findTrailer(final String message) {
+        final int start = message.lastIndexOf(START);
+
+        if (start == -1) {
+            return -1;
+        }
+
+        for (int i = start + 1; i < message.length(); i++) {
+            final char character = message.charAt(i);
+
+            if (character < FIRST_DIGIT || character > LAST_CHARACTER) {
+                return -1;
+            }
+        }
+
+        return start;
+    }
+
+    private static void appendNumber(final StringBuilder builder, final long number) {
+        final String hex = Long.toHexString(number);
+
+        for (int i = 0; i < hex.length(); i++) {
+            builder.append((char) (FIRST_DIGIT + Character.digit(hex.charAt(i), 16)));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Watches for changes to the network configuration of the operating system, and asks
+ * the {@link ConnectionWorker} to check the network right away when something changes.
+ *
+ * <p>This makes it possible to react to changes like plugging in a cable or switching
+ * to another wireless network within a second, instead of waiting for the next time
+ * the connection worker polls the network.</p>
+ *
+ * <p>Only Linux is supported. The state of the network is read from the routing table
+ * and addresses in <code>/proc/net</code>, and the operational state of each network interface
+ * in <code>/sys/class/net</code>, every {@link #CHECK_INTERVAL} milliseconds. The files are cheap to read.
+ * They can't be watched for changes, as procfs and sysfs don't send any file system events, so added
+ * and removed network interfaces are found by listing the interfaces each time as well.
+ * Other operating systems rely on the polling in the connection worker.</p>
+ *
+ * @author Christian Ihle
+ */
+public class NetworkChangeWatcher implements Runnable {
+
+    /** How often to check the network state for changes, in milliseconds. */
+    public static final long CHECK_INTERVAL = 500;
+
+    private static final Logger LOG = Logger.getLogger(NetworkChangeWatcher.class);
+
+    @NonNls
+    private static final String PROC_NET_DIRECTORY = "/proc/net";
+
+    @NonNls
+    private static final String INTERFACE_DIRECTORY = "/sys/class/net";
+
+    private final ConnectionWorker connectionWorker;
+    private final File routeFile;
+    private final File ipv6AddressFile;
+    private final File interfaceDirectory;
+    private final long checkInterval;
+
+    /** Indicates whether the thread should run or not. */
+    private volatile boolean run;
+
+    /** The working thread. */
+    @Nullable
+    private Thread watcher;
+
+    /** The network state the last time it was checked. */
+    private String lastNetworkState;
+
+    /**
+     * Constructor.
+     *
+     * @param connectionWorker The connection worker to notify about network changes.
+     */
+    public NetworkChangeWatcher(final ConnectionWorker connectionWorker) {
+        this(connectionWorker, new File(PROC_NET_DIRECTORY), new File(INTERFACE_DIRECTORY), CHECK_INTERVAL);
+    }
+
+    /**
+     * Constructor for reading the network state from other locations.
+     *
+     * @param connectionWorker The connection worker to notify about network changes.
+     * @param procNetDirectory Directory with the <code>route</code> and <code>if_inet6</code> files.
+     * @param interfaceDirectory Directory with one sub-directory for each network interface.
+     * @param checkInterval How often to check the network state for changes, in milliseconds.
+     */
+    NetworkChangeWatcher(final ConnectionWorker connectionWorker, final File procNetDirectory,
+                         final File interfaceDirectory, final long checkInterval) {
+        Validate.notNull(connectionWorker, "Connection worker can not be null");
+        Validate.notNull(procNetDirectory, "Proc net directory can not be null");
+        Validate.notNull(interfaceDirectory, "Interface directory can not be null");
+
+        this.connectionWorker = connectionWorker;
+        this.interfaceDirectory = interfaceDirectory;
+        this.checkInterval = checkInterval;
+
+        routeFile = new File(procNetDirectory, "route");
+        ipv6AddressFile = new File(procNetDirectory, "if_inet6");
+    }
+
+    /**
+     * Checks if the network state can be read on this operating system.
+     *
+     * @return If network changes can be watched.
+     */
+    public boolean isSupported() {
+        return routeFile.canRead() && interfaceDirectory.isDirectory();
+    }
+
+    /**
+     * Starts watching for network changes in a background thread, if supported.
+     */
+    public synchronized void start() {
+        if (watcher != null) {
+            return;
+        }
+
+        if (!isSupported()) {
+            LOG.fine("Watching for network changes is not supported. Polling only.");
+            return;
+        }
+
+        run = true;
+        lastNetworkState = readNetworkState();
+
+        watcher = new Thread(this, "NetworkChangeWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching for network changes.
+     */
+    public synchronized void stop() {
+        run = false;
+
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Checks if the thread is watching for network changes.
+     *
+     * @return If the thread is alive.
+     */
+    public synchronized boolean isAlive() {
+        return watcher != null && watcher.isAlive();
+    }
+
+    /**
+     * Checks the network state every check interval until stopped.
+     */
+    @Override
+    public void run() {
+        LOG.fine("Watching for network changes");
+
+        while (run) {
+            try {
+                Thread.sleep(checkInterval);
+            }
+
+            // Interrupted from stop()
+            catch (final InterruptedException e) {
+                break;
+            }
+
+            final String networkState = readNetworkState();
+
+            if (run && !networkState.equals(lastNetworkState)) {
+                lastNetworkState = networkState;
+                LOG.fine("Network change detected - checking network");
+                connectionWorker.checkNetwork();
+            }
+        }
+
+        LOG.fine("Stopped watching for network changes");
+    }
+
+    /**
+     * Reads the routing table, the ipv6 addresses and the operational state of all network interfaces.
+     * Any change to the network configuration that matters to the connection worker changes
+     * the returned string.
+     *
+     * @return The current network state.
+     */
+    String readNetworkState() {
+        final StringBuilder networkState = new StringBuilder();
+
+        networkState.append(readFile(routeFile));
+        networkState.append(readFile(ipv6AddressFile));
+
+        final String[] interfaceNames = interfaceDirectory.list();
+
+        if (interfaceNames != null) {
+            Arrays.sort(interfaceNames);
+
+            for (final String interfaceName : interfaceNames) {
+                final File operationalStateFile = new File(new File(interfaceDirectory, interfaceName), "operstate");
+
+                networkState.append(interfaceName)
+                            .append(':')
+                            .append(readFile(operationalStateFile))
+                            .append('\n');
+            }
+        }
+
+        return networkState.toString();
+    }
+
+    private String readFile(final File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        }
+
+        // Missing file, or no state for the network interface
+        catch (final IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,105 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The differences between two {@link NetworkSnapshot}s.
+ *
+ * <p>Network interfaces are identified by name.</p>
+ *
+ * @author Christian Ihle
+ */
+public class NetworkChanges {
+
+    private final List<String> added;
+    private final List<String> removed;
+    private final List<String> addressChanged;
+
+    /**
+     * Constructor.
+     *
+     * @param added Names of network interfaces that were added.
+     * @param removed Names of network interfaces that were removed.
+     * @param addressChanged Names of network interfaces that got different addresses.
+     */
+    public NetworkChanges(final List<String> added, final List<String> removed, final List<String> addressChanged) {
+        this.added = Collections.unmodifiableList(new ArrayList<>(added));
+        this.removed = Collections.unmodifiableList(new ArrayList<>(removed));
+        this.addressChanged = Collections.unmodifiableList(new ArrayList<>(addressChanged));
+    }
+
+    /**
+     * Creates an instance without any changes.
+     *
+     * @return No changes.
+     */
+    public static NetworkChanges none() {
+        final List<String> noNames = Collections.emptyList();
+        return new NetworkChanges(noNames, noNames, noNames);
+    }
+
+    /**
+     * Gets the names of the network interfaces that were added.
+     *
+     * @return The added network interfaces.
+     */
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the names of the network interfaces that were removed.
+     *
+     * @return The removed network interfaces.
+     */
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the names of the network interfaces that are still there, but with different addresses.
+     *
+     * @return The network interfaces with changed addresses.
+     */
+    public List<String> getAddressChanged() {
+        return addressChanged;
+    }
+
+    /**
+     * Checks if there are no changes at all.
+     *
+     * @return If nothing changed.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && addressChanged.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added + ", removed=" + removed + ", addressChanged=" + addressChanged;
+    }
+}
@@ -0,0 +1,169 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import net.usikkert.kouchat.util.Logger;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cache of the network interfaces available on this computer.
+ *
+ * <p>Enumerating network interfaces is a slow native call on hosts with many interfaces,
+ * like with Docker or VPNs. The inventory takes a {@link NetworkSnapshot} the first time it's needed,
+ * and everyone reads from that snapshot until {@link #refresh()} is called. The {@link ConnectionWorker}
+ * refreshes the inventory each time it checks the network, which happens right away when
+ * the network changes, and regularly otherwise.</p>
+ *
+ * <p>The network interfaces belong to the computer, and not to any specific part of the application,
+ * so the same inventory is shared by all instances of {@link NetworkUtils}.</p>
+ *
+ * @author Christian Ihle
+ */
+public class NetworkInventory {
+
+    private static final Logger LOG = Logger.getLogger(NetworkInventory.class);
+
+    private static final NetworkInventory SHARED_INVENTORY = new NetworkInventory();
+
+    private final NetworkUtils networkUtils;
+
+    @Nullable
+    private volatile NetworkSnapshot snapshot;
+
+    private volatile NetworkChanges lastChanges;
+
+    /**
+     * Constructor.
+     */
+    NetworkInventory() {
+        networkUtils = new NetworkUtils(this);
+        lastChanges = NetworkChanges.none();
+    }
+
+    /**
+     * Gets the inventory shared by the whole application.
+     *
+     * @return The shared inventory.
+     */
+    public static NetworkInventory getSharedInventory() {
+        return SHARED_INVENTORY;
+    }
+
+    /**
+     * Gets the current snapshot of the network interfaces. A snapshot is taken
+     * if this is the first time.
+     *
+     * @return The current snapshot.
+     */
+    public NetworkSnapshot getSnapshot() {
+        final NetworkSnapshot currentSnapshot = snapshot;
+
+        if (currentSnapshot != null) {
+            return currentSnapshot;
+        }
+
+        refresh();
+        return snapshot;
+    }
+
+    /**
+     * Takes a new snapshot of the network interfaces, and finds what changed since the last snapshot.
+     *
+     * @return The changes since the last snapshot.
+     */
+    public synchronized NetworkChanges refresh() {
+        final NetworkSnapshot previousSnapshot = snapshot;
+        final NetworkSnapshot newSnapshot = takeSnapshot();
+
+        final NetworkChanges changes =
+                newSnapshot.changesSince(previousSnapshot != null ? previousSnapshot : NetworkSnapshot.empty());
+
+        if (!changes.isEmpty()) {
+            LOG.fine("Network interfaces changed: %s", changes);
+            lastChanges = changes;
+        }
+
+        snapshot = newSnapshot;
+
+        return changes;
+    }
+
+    /**
+     * Gets the changes found the last time a refresh found any changes.
+     *
+     * @return The last changes to the network interfaces.
+     */
+    public NetworkChanges getLastChanges() {
+        return lastChanges;
+    }
+
+    private NetworkSnapshot takeSnapshot() {
+        final List<NetworkInterface> networkInterfaces = loadNetworkInterfaces();
+        final List<NetworkInterface> usableNetworkInterfaces = new ArrayList<>();
+        final List<NetworkInterface> usableIPv6OnlyNetworkInterfaces = new ArrayList<>();
+
+        for (final NetworkInterface networkInterface : networkInterfaces) {
+            if (networkUtils.isUsable(networkInterface)) {
+                if (networkUtils.hasIPv4Address(networkInterface)) {
+                    usableNetworkInterfaces.add(networkInterface);
+                } else {
+                    usableIPv6OnlyNetworkInterfaces.add(networkInterface);
+                }
+            }
+        }
+
+        // Most clients only have IPv4, so prefer network interfaces where those can be reached
+        usableNetworkInterfaces.addAll(usableIPv6OnlyNetworkInterfaces);
+
+        return new NetworkSnapshot(networkInterfaces, usableNetworkInterfaces, System.currentTimeMillis());
+    }
+
+    /**
+     * Asks the operating system for all the network interfaces.
+     *
+     * @return All the network interfaces, or an empty list if the operation fails.
+     */
+    List<NetworkInterface> loadNetworkInterfaces() {
+        try {
+            final Enumeration<NetworkInterface> networkInterfaces = NetworkInterface.getNetworkInterfaces();
+
+            if (networkInterfaces != null) {
+                return Collections.list(networkInterfaces);
+            }
+        }
+
+        catch (final SocketException e) {
+            LOG.warning("Failed to get network interfaces: %s", e);
+        }
+
+        return Collections.emptyList();
+    }
+}
@@ -46,6 +46,9 @@ public interface NetworkMessageType {
     String SENDFILEACCEPT = "SENDFILEACCEPT";
     String SENDFILEABORT = "SENDFILEABORT";
     String SENDFILE = "SENDFILE";
+    String SENDFOLDER = "SENDFOLDER";
     String CLIENT = "CLIENT";
     String PRIVMSG = "PRIVMSG";
+    String NACK = "NACK";
+    String FRAGMENT = "FRAGMENT";
 }
@@ -309,6 +309,34 @@ public class NetworkMessages {
         }
     }
 
+    /**
+     * Sends a message to notify another user that you want to send a folder with several files.
+     * Only users with a file transfer server understand this message.
+     *
+     * <p>Note: the network will be checked, and the user notified if this fails!</p>
+     *
+     * @param user The user asked to receive a folder.
+     * @param fileBatch The files to send.
+     * @throws CommandException If the message was not sent successfully.
+     */
+    public void sendFolder(final User user, final FileBatch fileBatch) throws CommandException {
+        final FileToSend file = fileBatch.toFileToSend();
+
+        final String msg = createMessage(SENDFOLDER) +
+                "(" + user.getCode() + ")" +
+                "[" + file.length() + "]" +
+                "<" + fileBatch.getFileCount() + ">" +
+                "{" + file.hashCode() + "}" +
+                file.getName();
+
+        final boolean sent = networkService.sendMessageToAllUsers(msg);
+
+        if (!sent) {
+            checkNetwork();
+            notifyUser("Failed to send folder to " + user.getNick() + ": " + file.getName());
+        }
+    }
+
     /**
      * Sends a message with extra client information:
      *
@@ -318,6 +346,7 @@ public class NetworkMessages {
      *   <li>Operating system.</li>
      *   <li>Port to connect to for private chat.</li>
      *   <li>Port to connect to for tcp chat.</li>
+     *   <li>Port to connect to for sending files.</li>
      * </ul>
      */
     public void sendClient() {
@@ -326,7 +355,8 @@ public class NetworkMessages {
                 "[" + (System.currentTimeMillis() - me.getLogonTime()) + "]" +
                 "{" + me.getOperatingSystem() + "}" +
                 "<" + me.getPrivateChatPort() + ">" +
-                "/" + me.getTcpChatPort() + "\\";
+                "/" + me.getTcpChatPort() + "\\" +
+                "|" + me.getFileTransferPort() + "|";
 
         networkService.sendMessageToAllUsers(msg);
     }
@@ -0,0 +1,206 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import net.usikkert.kouchat.util.MetricCounter;
+import net.usikkert.kouchat.util.Metrics;
+
+/**
+ * Counts what happens on the network, in the shared {@link Metrics}.
+ *
+ * <p>Packets are counted per type of message. The counters are created up front,
+ * and the type is found without creating any new strings, so counting a packet costs
+ * about the same as a few string comparisons.</p>
+ *
+ * @author Christian Ihle
+ */
+public final class NetworkMetrics {
+
+    /** The label value used for packets with a type that is not in {@link NetworkMessageType}. */
+    static final String OTHER_TYPE = "OTHER";
+
+    /** All the known message types, in the same order as the counters. */
+    private static final String[] TYPES = {
+            NetworkMessageType.MSG, NetworkMessageType.LOGON, NetworkMessageType.EXPOSING,
+            NetworkMessageType.LOGOFF, NetworkMessageType.AWAY, NetworkMessageType.BACK,
+            NetworkMessageType.EXPOSE, NetworkMessageType.NICKCRASH, NetworkMessageType.WRITING,
+            NetworkMessageType.STOPPEDWRITING, NetworkMessageType.GETTOPIC, NetworkMessageType.TOPIC,
+            NetworkMessageType.NICK, NetworkMessageType.IDLE, NetworkMessageType.SENDFILEACCEPT,
+            NetworkMessageType.SENDFILEABORT, NetworkMessageType.SENDFILE, NetworkMessageType.SENDFOLDER,
+            NetworkMessageType.CLIENT, NetworkMessageType.PRIVMSG, NetworkMessageType.NACK,
+            NetworkMessageType.FRAGMENT
+    };
+
+    private static final Metrics METRICS = Metrics.getSharedMetrics();
+
+    private static final MetricCounter[] PACKETS_OUT = createTypeCounters("kouchat_packets_out_total");
+    private static final MetricCounter[] PACKETS_IN = createTypeCounters("kouchat_packets_in_total");
+
+    private static final MetricCounter PARSE_FAILURES = METRICS.getCounter("kouchat_parse_failures_total");
+    private static final MetricCounter DUPLICATES_DROPPED = METRICS.getCounter("kouchat_duplicates_dropped_total");
+    private static final MetricCounter TCP_CONNECTS_OUT =
+            METRICS.getCounter("kouchat_tcp_connects_total", "direction", "out");
+    private static final MetricCounter TCP_CONNECTS_IN =
+            METRICS.getCounter("kouchat_tcp_connects_total", "direction", "in");
+    private static final MetricCounter TCP_RECONNECTS = METRICS.getCounter("kouchat_tcp_reconnects_total");
+    private static final MetricCounter TCP_WRITE_STALLS = METRICS.getCounter("kouchat_tcp_write_stalls_total");
+    private static final MetricCounter NETWORK_RECONNECTS = METRICS.getCounter("kouchat_network_reconnects_total");
+    private static final MetricCounter TRANSFER_BYTES_SENT =
+            METRICS.getCounter("kouchat_transfer_bytes_total", "direction", "sent");
+    private static final MetricCounter TRANSFER_BYTES_RECEIVED =
+            METRICS.getCounter("kouchat_transfer_bytes_total", "direction", "received");
+
+    private NetworkMetrics() {
+
+    }
+
+    /**
+     * Counts a packet sent to the network.
+     *
+     * @param message The message in the packet.
+     */
+    public static void packetSent(final String message) {
+        PACKETS_OUT[getTypeIndex(message)].increment();
+    }
+
+    /**
+     * Counts a packet that arrived from the network.
+     *
+     * @param message The message in the packet.
+     */
+    public static void packetReceived(final String message) {
+        PACKETS_IN[getTypeIndex(message)].increment();
+    }
+
+    /**
+     * Counts a message that could not be parsed.
+     */
+    public static void parseFailed() {
+        PARSE_FAILURES.increment();
+    }
+
+    /**
+     * Counts a message that was dropped because it already arrived another way.
+     */
+    public static void duplicateDropped() {
+        DUPLICATES_DROPPED.increment();
+    }
+
+    /**
+     * Counts a tcp connection to another user.
+     *
+     * @param outgoing If this client opened the connection, or the other user did.
+     */
+    public static void tcpConnected(final boolean outgoing) {
+        if (outgoing) {
+            TCP_CONNECTS_OUT.increment();
+        }
+
+        else {
+            TCP_CONNECTS_IN.increment();
+        }
+    }
+
+    /**
+     * Counts an attempt to get back a lost tcp connection.
+     */
+    public static void tcpReconnecting() {
+        TCP_RECONNECTS.increment();
+    }
+
+    /**
+     * Counts a message that took too long to write to a tcp connection.
+     */
+    public static void tcpWriteStalled() {
+        TCP_WRITE_STALLS.increment();
+    }
+
+    /**
+     * Counts a reconnect to the network, like when the network interface changes.
+     */
+    public static void networkReconnected() {
+        NETWORK_RECONNECTS.increment();
+    }
+
+    /**
+     * Counts bytes sent in a file transfer.
+     *
+     * @param bytes The number of bytes.
+     */
+    public static void transferBytesSent(final long bytes) {
+        TRANSFER_BYTES_SENT.add(bytes);
+    }
+
+    /**
+     * Counts bytes received in a file transfer.
+     *
+     * @param bytes The number of bytes.
+     */
+    public static void transferBytesReceived(final long bytes) {
+        TRANSFER_BYTES_RECEIVED.add(bytes);
+    }
+
+    /**
+     * Finds the type of the message, by looking at the text between <code>!</code> and <code>#</code>.
+     *
+     * @param message The message to find the type of.
+     * @return The index of the type in {@link #TYPES}, or the index after the last type if it's unknown.
+     */
+    static int getTypeIndex(final String message) {
+        final int typeStart = message.indexOf('!') + 1;
+
+        if (typeStart > 0) {
+            for (int i = 0; i < TYPES.length; i++) {
+                final String type = TYPES[i];
+                final int typeEnd = typeStart + type.length();
+
+                if (message.startsWith(type, typeStart) && message.length() > typeEnd
+                        && message.charAt(typeEnd) == '#') {
+                    return i;
+                }
+            }
+        }
+
+        return TYPES.length;
+    }
+
+    /**
+     * Gets the name of the type at the index from {@link #getTypeIndex(String)}.
+     *
+     * @param index The index of the type.
+     * @return The name of the type.
+     */
+    static String getTypeName(final int index) {
+        return index < TYPES.length ? TYPES[index] : OTHER_TYPE;
+    }
+
+    private static MetricCounter[] createTypeCounters(final String name) {
+        final MetricCounter[] counters = new MetricCounter[TYPES.length + 1];
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = METRICS.getCounter(name, "type", getTypeName(i));
+        }
+
+        return counters;
+    }
+}
@@ -23,15 +23,20 @@
 package net.usikkert.kouchat.net;
 
 import java.net.NetworkInterface;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import net.usikkert.kouchat.event.NetworkConnectionListener;
-import net.usikkert.kouchat.event.ReceiverListener;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.net.tcp.TCPNetworkService;
 import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.MetricGauge;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.Validate;
 
 /**
@@ -62,12 +67,33 @@ public class NetworkService implements NetworkConnectionListener {
     /** The network service for tcp connections. */
     private final TCPNetworkService tcpNetworkService;
 
+    /** Asks for missing messages again, and sends messages others have missed. */
+    private final MessageRepairService messageRepairService;
+
+    /** Chooses if messages to all users are sent by multicast, over tcp, or both. */
+    private final TransportPolicy transportPolicy;
+
     /** Proxy for deduplicating multicast and tcp messages. */
     private final MessageDeduplicator messageDeduplicator;
 
+    /** Server for receiving files over connections that are kept open. */
+    private final FileTransferServer fileTransferServer;
+
+    /** Pool of connections for sending files. */
+    private final FileTransferConnectionPool fileTransferConnectionPool;
+
     /** If private chat should be enabled. */
     private final boolean privateChatEnabled;
 
+    /** When the last message was successfully sent to all users, in milliseconds. */
+    private volatile long lastMessageSentTime;
+
+    /** The sequence number of the last message sent to all users. */
+    private final AtomicLong sequenceNumber;
+
+    /** The gauges registered in the shared {@link Metrics}, so they can be removed again. */
+    private final Map<String, MetricGauge> gauges = new LinkedHashMap<>();
+
     /**
      * Constructor.
      *
@@ -83,12 +109,17 @@ public class NetworkService implements NetworkConnectionListener {
         LOG.fine("Initializing network");
 
         privateChatEnabled = !settings.isNoPrivateChat();
+        sequenceNumber = new AtomicLong(-1);
 
         messageReceiver = new MessageReceiver(errorHandler);
         messageSender = new MessageSender(errorHandler);
         connectionWorker = new ConnectionWorker(settings, errorHandler);
         tcpNetworkService = new TCPNetworkService(controller, settings, errorHandler);
-        messageDeduplicator = new MessageDeduplicator(controller);
+        messageRepairService = new MessageRepairService(messageSender, tcpNetworkService, controller, settings);
+        transportPolicy = new TransportPolicy(settings);
+        messageDeduplicator = new MessageDeduplicator(controller, messageRepairService, transportPolicy);
+        fileTransferServer = new FileTransferServer(controller, settings);
+        fileTransferConnectionPool = new FileTransferConnectionPool(settings);
 
         if (privateChatEnabled) {
             udpReceiver = new UDPReceiver(settings, errorHandler);
@@ -102,6 +133,96 @@ public class NetworkService implements NetworkConnectionListener {
         }
 
         connectionWorker.registerNetworkConnectionListener(this);
+        registerGauges();
+    }
+
+    /**
+     * Registers gauges in the shared {@link Metrics} for the numbers the network services keep track of.
+     */
+    private void registerGauges() {
+        registerGauge("kouchat_messages_requested_again", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageRepairService.getRequestedMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_messages_sent_again", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageRepairService.getRetransmittedMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_messages_missing", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageDeduplicator.getMissingMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_messages_duplicate", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageDeduplicator.getDuplicateMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_fragmented_messages_incomplete", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageDeduplicator.getIncompleteMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_fragmented_messages_dropped", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return messageDeduplicator.getDroppedMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_messages_skipped{transport=\"tcp\"}", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return transportPolicy.getSkippedTcpMessageCount();
+            }
+        });
+
+        registerGauge("kouchat_messages_skipped{transport=\"multicast\"}", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return transportPolicy.getSkippedMulticastMessageCount();
+            }
+        });
+    }
+
+    private void registerGauge(final String name, final MetricGauge gauge) {
+        gauges.put(name, gauge);
+        Metrics.getSharedMetrics().registerGauge(name, gauge);
+    }
+
+    /**
+     * Stops the timers of the network services, and removes the gauges from the shared {@link Metrics}
+     * so they don't keep reading from this network service. Used when the application shuts down.
+     */
+    public void shutdown() {
+        messageRepairService.stop();
+        removeGauges();
+    }
+
+    private void removeGauges() {
+        for (final Map.Entry<String, MetricGauge> gauge : gauges.entrySet()) {
+            Metrics.getSharedMetrics().removeGauge(gauge.getKey(), gauge.getValue());
+        }
+    }
+
+    /**
+     * Starts looking for the network interface to use in the background,
+     * so it's ready when {@link #connect()} is called.
+     */
+    public void prepareNetwork() {
+        connectionWorker.probeNetwork();
     }
 
     /**
@@ -118,6 +239,33 @@ public class NetworkService implements NetworkConnectionListener {
         connectionWorker.stop();
     }
 
+    /**
+     * Gets the policy that chooses how messages to all users are sent.
+     *
+     * @return The transport policy.
+     */
+    public TransportPolicy getTransportPolicy() {
+        return transportPolicy;
+    }
+
+    /**
+     * Gets the server for receiving files over connections that are kept open.
+     *
+     * @return The file transfer server.
+     */
+    public FileTransferServer getFileTransferServer() {
+        return fileTransferServer;
+    }
+
+    /**
+     * Gets the pool of connections for sending files.
+     *
+     * @return The file transfer connection pool.
+     */
+    public FileTransferConnectionPool getFileTransferConnectionPool() {
+        return fileTransferConnectionPool;
+    }
+
     /**
      * Gets the connection worker.
      *
@@ -159,7 +307,7 @@ public class NetworkService implements NetworkConnectionListener {
      *
      * @param listener The listener to register.
      */
-    public void registerMainChatMessageReceiverListener(final ReceiverListener listener) {
+    public void registerMainChatMessageReceiverListener(final ParsedMessageListener listener) {
         messageDeduplicator.registerMainChatReceiverListener(listener);
         messageReceiver.registerReceiverListener(messageDeduplicator);
         tcpNetworkService.registerReceiverListener(messageDeduplicator);
@@ -170,7 +318,7 @@ public class NetworkService implements NetworkConnectionListener {
      *
      * @param listener The listener to register.
      */
-    public void registerPrivateChatReceiverListener(final ReceiverListener listener) {
+    public void registerPrivateChatReceiverListener(final ParsedMessageListener listener) {
         if (privateChatEnabled) {
             messageDeduplicator.registerPrivateChatReceiverListener(listener);
             udpReceiver.registerReceiverListener(messageDeduplicator);
@@ -184,8 +332,52 @@ public class NetworkService implements NetworkConnectionListener {
      * @return If the message was sent or not.
      */
     public boolean sendMessageToAllUsers(final String message) {
-        tcpNetworkService.sendMessageToAll(message);
-        return messageSender.send(message);
+        final String sequencedMessage;
+        final boolean hasSequenceNumber = MessageTrailer.shouldAddTrailer(message);
+
+        // Sequence numbers are only used for messages with a trailer, so gaps always mean lost messages
+        if (hasSequenceNumber) {
+            final long nextSequenceNumber = sequenceNumber.incrementAndGet();
+
+            // The same sequence number on both copies lets the receiver drop the one that arrives last
+            sequencedMessage = MessageTrailer.addSequenceNumber(message, nextSequenceNumber);
+            messageRepairService.messageSent(nextSequenceNumber, sequencedMessage);
+        }
+
+        else {
+            sequencedMessage = message;
+        }
+
+        // Added after the message is stored for repair, so messages sent again don't count as traced
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+        final String tracedMessage =
+                trace == null ? sequencedMessage : MessageTrailer.addTraceTime(sequencedMessage, trace.getTraceTime());
+
+        tcpNetworkService.sendMessageToAll(tracedMessage, transportPolicy);
+        final boolean sent;
+
+        if (transportPolicy.isMulticastNeeded(tracedMessage, hasSequenceNumber)
+                || !tcpNetworkService.isConnectedToAllUsers()) {
+            sent = messageSender.send(tracedMessage);
+        } else {
+            transportPolicy.multicastSkipped();
+            sent = true;
+        }
+
+        if (sent) {
+            lastMessageSentTime = System.currentTimeMillis();
+        }
+
+        return sent;
+    }
+
+    /**
+     * Gets when the last message was successfully sent to all users.
+     *
+     * @return The time in milliseconds, or 0 if no messages have been sent.
+     */
+    public long getLastMessageSentTime() {
+        return lastMessageSentTime;
     }
 
     /**
@@ -229,6 +421,10 @@ public class NetworkService implements NetworkConnectionListener {
         messageSender.stopSender();
         messageReceiver.stopReceiver();
         tcpNetworkService.stopService();
+        fileTransferServer.stopServer();
+        fileTransferConnectionPool.closeAll();
+        messageRepairService.reset();
+        transportPolicy.reset();
     }
 
     @Override
@@ -249,8 +445,10 @@ public class NetworkService implements NetworkConnectionListener {
         }
 
         final NetworkInterface currentNetworkInterface = connectionWorker.getCurrentNetworkInterface();
-        messageSender.startSender(currentNetworkInterface);
-        messageReceiver.startReceiver(currentNetworkInterface);
+        final List<NetworkInterface> additionalNetworkInterfaces = connectionWorker.getAdditionalNetworkInterfaces();
+        messageSender.startSender(currentNetworkInterface, additionalNetworkInterfaces);
+        messageReceiver.startReceiver(currentNetworkInterface, additionalNetworkInterfaces);
         tcpNetworkService.startService();
+        fileTransferServer.startServer();
     }
 }
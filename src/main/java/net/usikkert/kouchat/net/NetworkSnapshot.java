@@ -0,0 +1,196 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable snapshot of the network interfaces available at one point in time.
+ *
+ * <p>Enumerating the network interfaces is slow on hosts with many interfaces, so a snapshot
+ * is taken once and shared until the network changes. See {@link NetworkInventory}.</p>
+ *
+ * @author Christian Ihle
+ */
+public class NetworkSnapshot {
+
+    private final List<NetworkInterface> networkInterfaces;
+    private final List<NetworkInterface> usableNetworkInterfaces;
+    private final Map<String, Set<InetAddress>> addresses;
+    private final long time;
+
+    /**
+     * Constructor.
+     *
+     * @param networkInterfaces All the network interfaces, in the order from the operating system.
+     * @param usableNetworkInterfaces The network interfaces that are usable for chatting.
+     * @param time When the snapshot was taken, in milliseconds.
+     */
+    public NetworkSnapshot(final List<NetworkInterface> networkInterfaces,
+                           final List<NetworkInterface> usableNetworkInterfaces, final long time) {
+        Validate.notNull(networkInterfaces, "Network interfaces can not be null");
+        Validate.notNull(usableNetworkInterfaces, "Usable network interfaces can not be null");
+
+        this.networkInterfaces = Collections.unmodifiableList(new ArrayList<>(networkInterfaces));
+        this.usableNetworkInterfaces = Collections.unmodifiableList(new ArrayList<>(usableNetworkInterfaces));
+        this.time = time;
+
+        addresses = new LinkedHashMap<>();
+
+        for (final NetworkInterface networkInterface : networkInterfaces) {
+            addresses.put(networkInterface.getName(),
+                          new LinkedHashSet<>(Collections.list(networkInterface.getInetAddresses())));
+        }
+    }
+
+    /**
+     * Creates a snapshot without any network interfaces.
+     *
+     * @return An empty snapshot.
+     */
+    public static NetworkSnapshot empty() {
+        final List<NetworkInterface> noNetworkInterfaces = Collections.emptyList();
+        return new NetworkSnapshot(noNetworkInterfaces, noNetworkInterfaces, 0);
+    }
+
+    /**
+     * Gets all the network interfaces, in the order from the operating system.
+     *
+     * @return All the network interfaces.
+     */
+    public List<NetworkInterface> getNetworkInterfaces() {
+        return networkInterfaces;
+    }
+
+    /**
+     * Gets the network interfaces that were usable when the snapshot was taken.
+     *
+     * @return The usable network interfaces.
+     * @see NetworkUtils#isUsable(NetworkInterface)
+     */
+    public List<NetworkInterface> getUsableNetworkInterfaces() {
+        return usableNetworkInterfaces;
+    }
+
+    /**
+     * Gets the first network interface that was usable when the snapshot was taken.
+     *
+     * @return The first usable network interface, or <code>null</code> if there were none.
+     */
+    @Nullable
+    public NetworkInterface getFirstUsableNetworkInterface() {
+        if (usableNetworkInterfaces.isEmpty()) {
+            return null;
+        }
+
+        return usableNetworkInterfaces.get(0);
+    }
+
+    /**
+     * Gets the network interface with the specified name.
+     *
+     * @param name The name of the network interface.
+     * @return The network interface, or <code>null</code> if not found.
+     */
+    @Nullable
+    public NetworkInterface getNetworkInterface(@Nullable final String name) {
+        for (final NetworkInterface networkInterface : networkInterfaces) {
+            if (networkInterface.getName().equals(name)) {
+                return networkInterface;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the network interface that has the specified address.
+     *
+     * @param address The address to look for.
+     * @return The network interface with the address, or <code>null</code> if not found.
+     */
+    @Nullable
+    public NetworkInterface getNetworkInterface(@Nullable final InetAddress address) {
+        for (final NetworkInterface networkInterface : networkInterfaces) {
+            if (addresses.get(networkInterface.getName()).contains(address)) {
+                return networkInterface;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets when the snapshot was taken.
+     *
+     * @return The time of the snapshot, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Finds the network interfaces that were added, removed, or got different addresses
+     * since the previous snapshot.
+     *
+     * @param previous The snapshot to compare with.
+     * @return The changes from the previous snapshot to this snapshot.
+     */
+    public NetworkChanges changesSince(final NetworkSnapshot previous) {
+        Validate.notNull(previous, "Previous snapshot can not be null");
+
+        final List<String> added = new ArrayList<>();
+        final List<String> removed = new ArrayList<>();
+        final List<String> addressChanged = new ArrayList<>();
+
+        for (final Map.Entry<String, Set<InetAddress>> current : addresses.entrySet()) {
+            final Set<InetAddress> previousAddresses = previous.addresses.get(current.getKey());
+
+            if (previousAddresses == null) {
+                added.add(current.getKey());
+            } else if (!previousAddresses.equals(current.getValue())) {
+                addressChanged.add(current.getKey());
+            }
+        }
+
+        for (final String previousName : previous.addresses.keySet()) {
+            if (!addresses.containsKey(previousName)) {
+                removed.add(previousName);
+            }
+        }
+
+        return new NetworkChanges(added, removed, addressChanged);
+    }
+}
@@ -23,11 +23,13 @@
 package net.usikkert.kouchat.net;
 
 import java.net.Inet4Address;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.logging.Level;
@@ -38,6 +40,9 @@ import org.jetbrains.annotations.Nullable;
 /**
  * Class containing utility methods for network operations.
  *
+ * <p>The methods that look up network interfaces read from the {@link NetworkInventory},
+ * instead of asking the operating system every time.</p>
+ *
  * @author Christian Ihle
  */
 public class NetworkUtils {
@@ -48,6 +53,24 @@ public class NetworkUtils {
     /** Traffic class: IPTOS_RELIABILITY (0x04) - optimize for reliability. */
     public static final int IPTOS_RELIABILITY = 0x04;
 
+    private final NetworkInventory networkInventory;
+
+    /**
+     * Constructor. Uses the network inventory shared by the whole application.
+     */
+    public NetworkUtils() {
+        this(NetworkInventory.getSharedInventory());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param networkInventory The network inventory to look up network interfaces in.
+     */
+    NetworkUtils(final NetworkInventory networkInventory) {
+        this.networkInventory = networkInventory;
+    }
+
     /**
      * Checks if the network interface is up, and usable.
      *
@@ -60,7 +83,7 @@ public class NetworkUtils {
      *   <li>Is not a point to point device, like a modem.</li>
      *   <li>Is not virtual, like <code>eth0:1</code>.</li>
      *   <li>Is not a virtual machine network interface (vmnet).</li>
-     *   <li>Has an IPv4 address.</li>
+     *   <li>Has an IPv4 address, or an IPv6 address that is not link-local.</li>
      * </ul>
      *
      * @param netif The network interface to check.
@@ -76,7 +99,7 @@ public class NetworkUtils {
                     !netif.isVirtual() && netif.supportsMulticast() &&
                     !netif.getName().toLowerCase().contains("vmnet") &&
                     !netif.getDisplayName().toLowerCase().contains("vmnet") &&
-                    hasIPv4Address(netif);
+                    (hasIPv4Address(netif) || hasIPv6Address(netif));
         }
 
         catch (final SocketException e) {
@@ -108,6 +131,66 @@ public class NetworkUtils {
         return false;
     }
 
+    /**
+     * Checks if the network interface has an IPv6-address that can be used for chatting.
+     *
+     * <p>Link-local addresses are not counted, since almost every network interface gets one
+     * automatically, including the ones for virtual machines and containers.</p>
+     *
+     * @param netif The network interface to check.
+     * @return If a usable IPv6-address was found or not.
+     */
+    public boolean hasIPv6Address(@Nullable final NetworkInterface netif) {
+        if (netif == null) {
+            return false;
+        }
+
+        final Enumeration<InetAddress> inetAddresses = netif.getInetAddresses();
+
+        while (inetAddresses.hasMoreElements()) {
+            final InetAddress inetAddress = inetAddresses.nextElement();
+
+            if (inetAddress instanceof Inet6Address && !inetAddress.isLinkLocalAddress() &&
+                    !inetAddress.isLoopbackAddress() && !inetAddress.isAnyLocalAddress()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the multicast groups to use on the network interface. The IPv4 group is used when the network
+     * interface has an IPv4 address, and the IPv6 group when it has an IPv6 address. With both, both groups
+     * are used, so clients with only one of them can still chat. The IPv4 group is always first when it's used.
+     *
+     * <p>Only the IPv4 group is used when the operating system chooses the network interface,
+     * or the network interface has none of the addresses.</p>
+     *
+     * @param netif The network interface to use, or <code>null</code> to let the operating system choose.
+     * @param ipv4Group The IPv4 multicast group.
+     * @param ipv6Group The IPv6 multicast group, or <code>null</code> to only use IPv4.
+     * @return The multicast groups to use. Never empty.
+     */
+    public List<InetAddress> getMulticastGroups(@Nullable final NetworkInterface netif, final InetAddress ipv4Group,
+                                                @Nullable final InetAddress ipv6Group) {
+        final List<InetAddress> groups = new ArrayList<>();
+
+        if (netif == null || hasIPv4Address(netif)) {
+            groups.add(ipv4Group);
+        }
+
+        if (netif != null && ipv6Group != null && hasIPv6Address(netif)) {
+            groups.add(ipv6Group);
+        }
+
+        if (groups.isEmpty()) {
+            groups.add(ipv4Group);
+        }
+
+        return groups;
+    }
+
     /**
      * Constructs a string with the information found on a {@link NetworkInterface}.
      *
@@ -128,7 +211,8 @@ public class NetworkUtils {
                     "Is virtual: " + netif.isVirtual() + "\n" +
                     "Supports multicast: " + netif.supportsMulticast() + "\n" +
                     "MAC address: " + getMacAddress(netif) + "\n" +
-                    "IP addresses: " + getIPv4Addresses(netif);
+                    "IP addresses: " + getIPv4Addresses(netif) + "\n" +
+                    "IPv6 addresses: " + getIPv6Addresses(netif);
         }
 
         catch (final SocketException e) {
@@ -161,6 +245,30 @@ public class NetworkUtils {
         return ipAddress;
     }
 
+    /**
+     * Returns a list of the IPv6-addresses on the network interface in string format.
+     *
+     * @param netif The network interface to get the IPv6-addresses from.
+     * @return All the IPv6-addresses on the network interface.
+     */
+    public String getIPv6Addresses(@Nullable final NetworkInterface netif) {
+        if (netif == null) {
+            return "";
+        }
+
+        String ipAddress = "";
+        final Enumeration<InetAddress> inetAddresses = netif.getInetAddresses();
+
+        while (inetAddresses.hasMoreElements()) {
+            final InetAddress inetAddress = inetAddresses.nextElement();
+            if (inetAddress instanceof Inet6Address) {
+                ipAddress += inetAddress.getHostAddress() + " ";
+            }
+        }
+
+        return ipAddress;
+    }
+
     /**
      * Returns a list of the IPv4-addresses on the network interface in string format.
      *
@@ -211,7 +319,7 @@ public class NetworkUtils {
     }
 
     /**
-     * Fetches all the network interfaces again, and returns the one
+     * Finds the network interface in the latest snapshot of the network interfaces
      * which is the same as the original network interface.
      *
      * <p>This is useful to make sure the network interface information
@@ -227,20 +335,7 @@ public class NetworkUtils {
             return null;
         }
 
-        final Enumeration<NetworkInterface> networkInterfaces = getNetworkInterfaces();
-
-        if (networkInterfaces == null) {
-            return null;
-        }
-
-        while (networkInterfaces.hasMoreElements()) {
-            final NetworkInterface netif = networkInterfaces.nextElement();
-            if (sameNetworkInterface(origNetIf, netif)) {
-                return netif;
-            }
-        }
-
-        return null;
+        return networkInventory.getSnapshot().getNetworkInterface(origNetIf.getName());
     }
 
     /**
@@ -264,72 +359,45 @@ public class NetworkUtils {
     }
 
     /**
-     * Iterates through a list of available network interfaces, and returns
-     * the first that is usable. Returns <code>null</code> if no usable
-     * interface is found.
+     * Returns the first of the available network interfaces that is usable.
+     * Returns <code>null</code> if no usable interface is found.
      *
      * @return The first usable network interface, or <code>null</code>.
      * @see #isUsable(NetworkInterface)
      */
     @Nullable
     public NetworkInterface findFirstUsableNetworkInterface() {
-        final Enumeration<NetworkInterface> networkInterfaces = getNetworkInterfaces();
-
-        if (networkInterfaces == null) {
-            return null;
-        }
-
-        while (networkInterfaces.hasMoreElements()) {
-            final NetworkInterface netif = networkInterfaces.nextElement();
-            if (isUsable(netif)) {
-                return netif;
-            }
-        }
-
-        return null;
+        return networkInventory.getSnapshot().getFirstUsableNetworkInterface();
     }
 
     /**
      * Gets all the available network interfaces. Returns <code>null</code>
-     * if the operation fails, or no interfaces are available.
+     * if no interfaces are available.
      *
      * @return All network interfaces, or <code>null</code>.
      */
     @Nullable
     public Enumeration<NetworkInterface> getNetworkInterfaces() {
-        Enumeration<NetworkInterface> networkInterfaces = null;
-
-        try {
-            networkInterfaces = NetworkInterface.getNetworkInterfaces();
-        }
+        final List<NetworkInterface> networkInterfaces = networkInventory.getSnapshot().getNetworkInterfaces();
 
-        catch (final SocketException e) {
-            LOG.log(Level.WARNING, e.toString());
+        if (networkInterfaces.isEmpty()) {
+            return null;
         }
 
-        return networkInterfaces;
+        return Collections.enumeration(networkInterfaces);
     }
 
     /**
-     * Iterates through a list of available network interfaces, and returns all that are usable.
+     * Returns all the available network interfaces that are usable.
      *
      * @return All the usable network interfaces.
      * @see #isUsable(NetworkInterface)
      */
     public List<NetworkInterfaceInfo> getUsableNetworkInterfaces() {
         final List<NetworkInterfaceInfo> usableNetworkInterfaces = new ArrayList<>();
-        final Enumeration<NetworkInterface> allNetworkInterfaces = getNetworkInterfaces();
 
-        if (allNetworkInterfaces == null) {
-            return usableNetworkInterfaces;
-        }
-
-        while (allNetworkInterfaces.hasMoreElements()) {
-            final NetworkInterface netif = allNetworkInterfaces.nextElement();
-
-            if (isUsable(netif)) {
-                usableNetworkInterfaces.add(new NetworkInterfaceInfo(netif));
-            }
+        for (final NetworkInterface netif : networkInventory.getSnapshot().getUsableNetworkInterfaces()) {
+            usableNetworkInterfaces.add(new NetworkInterfaceInfo(netif));
         }
 
         return usableNetworkInterfaces;
@@ -366,13 +434,22 @@ public class NetworkUtils {
             return null;
         }
 
-        try {
-            return NetworkInterface.getByName(name);
-        }
+        return networkInventory.getSnapshot().getNetworkInterface(name);
+    }
 
-        catch (final SocketException e) {
-            LOG.log(Level.WARNING, e.toString());
+    /**
+     * Gets the network interface with the requested address. Returns <code>null</code> if no
+     * interface is found with that address.
+     *
+     * @param address The address of the network interface to return.
+     * @return The requested network interface, or <code>null</code>.
+     */
+    @Nullable
+    public NetworkInterface getNetworkInterfaceByAddress(@Nullable final InetAddress address) {
+        if (address == null) {
             return null;
         }
+
+        return networkInventory.getSnapshot().getNetworkInterface(address);
     }
 }
@@ -24,7 +24,6 @@ package net.usikkert.kouchat.net;
 
 import java.net.InetAddress;
 import java.net.NetworkInterface;
-import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +57,8 @@ public class OperatingSystemNetworkInfo {
     /** The application user. **/
     private final User me;
 
+    private final NetworkUtils networkUtils = new NetworkUtils();
+
     /**
      * Default constructor.
      *
@@ -150,17 +151,13 @@ public class OperatingSystemNetworkInfo {
 
         try {
             final InetAddress osAddress = InetAddress.getByName(listener.getIpAddress());
-            return NetworkInterface.getByInetAddress(osAddress);
+            return networkUtils.getNetworkInterfaceByAddress(osAddress);
         }
 
         catch (final UnknownHostException e) {
             LOG.log(Level.SEVERE, e.toString(), e);
         }
 
-        catch (final SocketException e) {
-            LOG.log(Level.SEVERE, e.toString(), e);
-        }
-
         return null;
     }
 
@@ -0,0 +1,147 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * A message from the network, with the parts that every message has already parsed out.
+ *
+ * <p>All messages start like this: <code>code!TYPE#nick:content</code>, and might end with
+ * a {@link MessageTrailer}. The message is parsed once when it arrives, and the result is given
+ * to everyone who needs to look at it, instead of each of them parsing the same message again.</p>
+ *
+ * @author Christian Ihle
+ */
+public class ParsedMessage {
+
+    private final String message;
+    private final int userCode;
+    private final String type;
+    private final String nick;
+    private final String content;
+    private final long sequenceNumber;
+
+    /**
+     * Parses the message.
+     *
+     * @param rawMessage The raw message from the network.
+     * @throws StringIndexOutOfBoundsException If the message is missing any of the parts.
+     * @throws NumberFormatException If the user code is not a number.
+     */
+    public ParsedMessage(final String rawMessage) {
+        Validate.notNull(rawMessage, "Message can not be null");
+
+        final String message = MessageTrailer.removeTrailer(rawMessage);
+
+        final int exclamation = message.indexOf("!");
+        final int hash = message.indexOf("#");
+        final int colon = message.indexOf(":");
+
+        this.message = message;
+        this.userCode = Integer.parseInt(message.substring(0, exclamation));
+        this.type = message.substring(exclamation + 1, hash);
+        this.nick = message.substring(hash + 1, colon);
+        this.content = message.substring(colon + 1, message.length());
+        this.sequenceNumber = MessageTrailer.getSequenceNumber(rawMessage);
+    }
+
+    /**
+     * Gets the message, as it arrived from the network, but without the trailer.
+     *
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the unique code of the user that sent the message.
+     *
+     * @return The user code.
+     */
+    public int getUserCode() {
+        return userCode;
+    }
+
+    /**
+     * Gets the type of message, as found in {@link NetworkMessageType}.
+     *
+     * @return The message type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the nick name of the user that sent the message.
+     *
+     * @return The nick name.
+     */
+    public String getNick() {
+        return nick;
+    }
+
+    /**
+     * Gets the rest of the message, after the nick name. The format depends on the type of message.
+     *
+     * @return The content of the message.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Gets the sequence number of the message, from the trailer.
+     *
+     * @return The sequence number, or {@link MessageTrailer#NO_SEQUENCE_NUMBER} if the message doesn't have one.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Checks if the message has a sequence number.
+     *
+     * @return If the message has a sequence number.
+     */
+    public boolean hasSequenceNumber() {
+        return sequenceNumber != MessageTrailer.NO_SEQUENCE_NUMBER;
+    }
+
+    /**
+     * Checks if this is a private message, which is handled separately from the main chat.
+     *
+     * @return If this is a private message.
+     */
+    public boolean isPrivateMessage() {
+        return type.equals(PRIVMSG);
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -0,0 +1,177 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+/**
+ * Measures how well multicast works between this client and one other user.
+ *
+ * <p>Two things are measured, both as moving averages:</p>
+ *
+ * <ul>
+ *   <li>The loss rate. Every message to all users is multicast, so a gap in the sequence numbers of the
+ *       multicast messages from the user means the multicast packets were lost on the way here. Requests from
+ *       the user to send own messages again also count as lost messages, on the way there.</li>
+ *   <li>The lag. How many milliseconds after the tcp copy of a message the multicast copy arrives.
+ *       0 if the multicast copy arrives first.</li>
+ * </ul>
+ *
+ * <p>Multicast and tcp are assumed to be about as good in both directions, so the loss and lag of the
+ * messages from the user are used to decide how to send messages to the user.</p>
+ *
+ * @author Christian Ihle
+ */
+public class PeerTransportStats {
+
+    /** How much each new sample counts in the moving averages. */
+    protected static final double SAMPLE_WEIGHT = 1.0 / 64;
+
+    /** When the last tcp messages arrived, by sequence number, to measure the lag of the multicast copy. */
+    private final long[] tcpSequenceNumbers;
+    private final long[] tcpArrivalTimes;
+
+    /** The highest sequence number that has arrived by multicast, or -1 if none yet. */
+    private long highestMulticast;
+
+    private double lossRate;
+    private double lag;
+    private long sampleCount;
+
+    /** The transport chosen last time, kept until the measurements change enough to choose another. */
+    private boolean multicastOnly;
+
+    /**
+     * Constructor.
+     */
+    public PeerTransportStats() {
+        tcpSequenceNumbers = new long[SequenceWindow.WINDOW_SIZE];
+        tcpArrivalTimes = new long[SequenceWindow.WINDOW_SIZE];
+        highestMulticast = -1;
+    }
+
+    /**
+     * Registers a message from the user that arrived by multicast.
+     *
+     * @param sequenceNumber The sequence number of the message.
+     * @param now The current time, in milliseconds.
+     */
+    public synchronized void multicastArrived(final long sequenceNumber, final long now) {
+        final int index = (int) (sequenceNumber % SequenceWindow.WINDOW_SIZE);
+
+        if (tcpSequenceNumbers[index] == sequenceNumber && tcpArrivalTimes[index] > 0) {
+            addLagSample(now - tcpArrivalTimes[index]);
+            tcpArrivalTimes[index] = 0;
+        }
+
+        else {
+            addLagSample(0);
+        }
+
+        // Older messages are sent again on request, or late. They were counted when the gap was found.
+        if (sequenceNumber <= highestMulticast) {
+            return;
+        }
+
+        if (highestMulticast != -1) {
+            final long lost = Math.min(sequenceNumber - highestMulticast - 1, SequenceWindow.WINDOW_SIZE);
+
+            for (int i = 0; i < lost; i++) {
+                addLossSample(1);
+            }
+        }
+
+        highestMulticast = sequenceNumber;
+        addLossSample(0);
+    }
+
+    /**
+     * Registers a message from the user that arrived over tcp.
+     *
+     * @param sequenceNumber The sequence number of the message.
+     * @param now The current time, in milliseconds.
+     */
+    public synchronized void tcpArrived(final long sequenceNumber, final long now) {
+        // Only the first copy counts. The multicast copy could already be here.
+        if (sequenceNumber <= highestMulticast) {
+            return;
+        }
+
+        final int index = (int) (sequenceNumber % SequenceWindow.WINDOW_SIZE);
+        tcpSequenceNumbers[index] = sequenceNumber;
+        tcpArrivalTimes[index] = now;
+    }
+
+    /**
+     * Registers own messages the user asked to have sent again, because they got lost on the way.
+     *
+     * @param count The number of messages.
+     */
+    public synchronized void messagesLost(final int count) {
+        for (int i = 0; i < count; i++) {
+            addLossSample(1);
+        }
+    }
+
+    /**
+     * Gets the moving average of the share of multicast messages that were lost.
+     *
+     * @return The loss rate, from 0 to 1.
+     */
+    public synchronized double getLossRate() {
+        return lossRate;
+    }
+
+    /**
+     * Gets the moving average of how late the multicast messages arrive compared to the tcp messages.
+     *
+     * @return The lag, in milliseconds.
+     */
+    public synchronized double getLag() {
+        return lag;
+    }
+
+    /**
+     * Gets the number of messages measured, both arrived and lost.
+     *
+     * @return The number of samples.
+     */
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized boolean isMulticastOnly() {
+        return multicastOnly;
+    }
+
+    public synchronized void setMulticastOnly(final boolean multicastOnly) {
+        this.multicastOnly = multicastOnly;
+    }
+
+    private void addLossSample(final int lost) {
+        lossRate += (lost - lossRate) * SAMPLE_WEIGHT;
+        sampleCount++;
+    }
+
+    private void addLagSample(final long milliseconds) {
+        lag += (Math.max(0, milliseconds) - lag) * SAMPLE_WEIGHT;
+    }
+}
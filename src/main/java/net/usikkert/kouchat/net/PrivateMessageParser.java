@@ -44,7 +44,7 @@ import net.usikkert.kouchat.util.Validate;
  *
  * @author Christian Ihle
  */
-public class PrivateMessageParser implements ReceiverListener {
+public class PrivateMessageParser implements ReceiverListener, ParsedMessageListener {
 
     /** The logger. */
     private static final Logger LOG = Logger.getLogger(PrivateMessageParser.class.getName());
@@ -67,22 +67,37 @@ public class PrivateMessageParser implements ReceiverListener {
     }
 
     /**
-     * Parses raw udp messages from the network, and gives
-     * the result to the message responder.
+     * Parses raw udp messages from the network, and continues with
+     * {@link #messageArrived(ParsedMessage, String)}.
      *
      * {@inheritDoc}
      */
     @Override
     public void messageArrived(final String message, final String ipAddress) {
         try {
-            final int exclamation = message.indexOf("!");
-            final int hash = message.indexOf("#");
-            final int colon = message.indexOf(":");
+            messageArrived(new ParsedMessage(message), ipAddress);
+        }
+
+        // Just ignore, someone sent a badly formatted message
+        catch (final StringIndexOutOfBoundsException | NumberFormatException e) {
+            LOG.log(Level.SEVERE, "Failed to parse message. message=" + message + ", ipAddress=" + ipAddress, e);
+        }
+    }
 
-            final int fromCode = Integer.parseInt(message.substring(0, exclamation));
+    /**
+     * Parses the rest of the private message, and gives
+     * the result to the message responder.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageArrived(final ParsedMessage parsedMessage, final String ipAddress) {
+        final String message = parsedMessage.getMessage();
 
-            final String type = message.substring(exclamation + 1, hash);
-            final String msg = message.substring(colon + 1, message.length());
+        try {
+            final int fromCode = parsedMessage.getUserCode();
+            final String type = parsedMessage.getType();
+            final String msg = parsedMessage.getContent();
 
             final int leftPara = msg.indexOf("(");
             final int rightPara = msg.indexOf(")");
@@ -0,0 +1,112 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the last messages sent to all users, so they can be sent again if someone missed them.
+ *
+ * <p>The messages are stored by sequence number in a ring, so a new message replaces the one sent
+ * {@link #getSize()} messages earlier. There is no point in keeping more messages than a
+ * {@link SequenceWindow} remembers, since older messages would be dropped by the receiver anyway.</p>
+ *
+ * @author Christian Ihle
+ */
+public class RetransmitBuffer {
+
+    private final long[] sequenceNumbers;
+    private final String[] messages;
+
+    /** When each message was last sent again, or 0 if never. */
+    private final long[] retransmitTimes;
+
+    /**
+     * Constructor.
+     *
+     * @param size The number of messages to keep.
+     */
+    public RetransmitBuffer(final int size) {
+        sequenceNumbers = new long[size];
+        messages = new String[size];
+        retransmitTimes = new long[size];
+    }
+
+    /**
+     * Stores a message that was just sent, replacing the oldest message.
+     *
+     * @param sequenceNumber The sequence number of the message.
+     * @param message The message, with the trailer, exactly as it was sent.
+     */
+    public synchronized void add(final long sequenceNumber, final String message) {
+        final int index = getIndex(sequenceNumber);
+
+        sequenceNumbers[index] = sequenceNumber;
+        messages[index] = message;
+        retransmitTimes[index] = 0;
+    }
+
+    /**
+     * Gets a message to send again, unless it was sent again very recently.
+     * When several users miss the same message, only the first request within
+     * the interval gets an answer, since the answer goes to everyone.
+     *
+     * @param sequenceNumber The sequence number of the message to send again.
+     * @param now The current time, in milliseconds.
+     * @param minInterval Milliseconds that must pass before the same message is sent again.
+     * @return The message, or <code>null</code> if it's no longer stored or was sent again too recently.
+     */
+    @Nullable
+    public synchronized String getMessageToRetransmit(final long sequenceNumber, final long now,
+                                                      final long minInterval) {
+        if (sequenceNumber < 0) {
+            return null;
+        }
+
+        final int index = getIndex(sequenceNumber);
+
+        if (messages[index] == null || sequenceNumbers[index] != sequenceNumber) {
+            return null;
+        }
+
+        if (retransmitTimes[index] > 0 && now - retransmitTimes[index] < minInterval) {
+            return null;
+        }
+
+        retransmitTimes[index] = now;
+        return messages[index];
+    }
+
+    /**
+     * Gets the number of messages that are kept.
+     *
+     * @return The size of the buffer.
+     */
+    public int getSize() {
+        return messages.length;
+    }
+
+    private int getIndex(final long sequenceNumber) {
+        return (int) (sequenceNumber % messages.length);
+    }
+}
@@ -0,0 +1,186 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of which sequence numbers have been received from one user,
+ * to find duplicate and missing messages.
+ *
+ * <p>Remembers the highest sequence number received, and uses a bitmap for the
+ * {@link #WINDOW_SIZE} sequence numbers before that. A message with a sequence number
+ * older than the window is handled as a duplicate, since there is no way to tell.
+ * A sequence number that leaves the window without being received is counted as missing.</p>
+ *
+ * @author Christian Ihle
+ */
+public class SequenceWindow {
+
+    /** Number of sequence numbers before the highest one that are remembered. */
+    public static final int WINDOW_SIZE = 64;
+
+    /** The highest sequence number received, or -1 if none yet. */
+    private long highest = -1;
+
+    /**
+     * One bit for each of the sequence numbers before the highest.
+     * Bit 0 is <code>highest - 1</code>. A bit is set if that number has been received.
+     */
+    private long received;
+
+    private long missingCount;
+    private long duplicateCount;
+
+    /**
+     * Registers a sequence number, and checks if it's the first time it's seen.
+     *
+     * @param sequenceNumber The sequence number of the message that arrived.
+     * @return If this is a new message. False if it's a duplicate, or too old to tell.
+     */
+    public synchronized boolean accept(final long sequenceNumber) {
+        if (highest == -1) {
+            highest = sequenceNumber;
+            received = -1L; // Messages before the first one are not missing, they were sent before we arrived
+            return true;
+        }
+
+        if (sequenceNumber > highest) {
+            slideTo(sequenceNumber);
+            return true;
+        }
+
+        if (sequenceNumber == highest) {
+            duplicateCount++;
+            return false;
+        }
+
+        final long distance = highest - sequenceNumber;
+
+        if (distance > WINDOW_SIZE) {
+            duplicateCount++;
+            return false;
+        }
+
+        final long bit = 1L << (distance - 1);
+
+        if ((received & bit) != 0) {
+            duplicateCount++;
+            return false;
+        }
+
+        received |= bit;
+        return true;
+    }
+
+    /**
+     * Gets the number of sequence numbers that left the window without being received.
+     *
+     * @return The number of missing messages.
+     */
+    public synchronized long getMissingCount() {
+        return missingCount;
+    }
+
+    /**
+     * Gets the number of messages that were rejected as duplicates.
+     *
+     * @return The number of duplicate messages.
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Checks if a sequence number before the highest one has been received.
+     *
+     * @param sequenceNumber The sequence number to check.
+     * @return If it has been received. False if it's not received yet, or outside the window.
+     */
+    public synchronized boolean isReceived(final long sequenceNumber) {
+        if (highest == -1 || sequenceNumber > highest) {
+            return false;
+        }
+
+        if (sequenceNumber == highest) {
+            return true;
+        }
+
+        final long distance = highest - sequenceNumber;
+
+        return distance <= WINDOW_SIZE && (received & (1L << (distance - 1))) != 0;
+    }
+
+    /**
+     * Gets the sequence numbers before the highest one that have not been received yet.
+     *
+     * @return The missing sequence numbers still inside the window, the oldest first.
+     */
+    public synchronized List<Long> getMissingSequenceNumbers() {
+        final List<Long> missing = new ArrayList<>();
+
+        if (highest == -1) {
+            return missing;
+        }
+
+        for (int distance = WINDOW_SIZE; distance > 0; distance--) {
+            if ((received & (1L << (distance - 1))) == 0) {
+                missing.add(highest - distance);
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Gets the highest sequence number received.
+     *
+     * @return The highest sequence number, or -1 if none have been received.
+     */
+    public synchronized long getHighest() {
+        return highest;
+    }
+
+    private void slideTo(final long sequenceNumber) {
+        final long shift = sequenceNumber - highest;
+
+        if (shift > WINDOW_SIZE) {
+            // Everything in the window leaves, and the numbers between the window and the new one were never seen
+            missingCount += WINDOW_SIZE - Long.bitCount(received) + (shift - 1 - WINDOW_SIZE);
+            received = 0;
+        }
+
+        else {
+            // The bits shifted out of the window are the oldest ones
+            final long leaving = shift == WINDOW_SIZE ? received : received >>> (WINDOW_SIZE - shift);
+            missingCount += shift - Long.bitCount(leaving);
+
+            // The old highest becomes bit shift - 1, and the numbers between are not received
+            received = shift == WINDOW_SIZE ? 0 : received << shift;
+            received |= 1L << (shift - 1);
+        }
+
+        highest = sequenceNumber;
+    }
+}
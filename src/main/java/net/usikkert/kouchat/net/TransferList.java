@@ -186,6 +186,22 @@ public class TransferList {
         return fileReceiver;
     }
 
+    /**
+     * Adds a new file receiver for a folder with several files to the list.
+     *
+     * @param user The user which sends the files.
+     * @param folder The folder to save the files in.
+     * @param size The size of the whole batch, in bytes.
+     * @param fileCount The number of files in the folder.
+     * @return The new file receiver.
+     */
+    public FileReceiver addFolderReceiver(final User user, final File folder, final long size, final int fileCount) {
+        final FileReceiver fileReceiver = new FileReceiver(user, folder, size, ++fileTransferIdCounter, fileCount);
+        receivers.add(fileReceiver);
+
+        return fileReceiver;
+    }
+
     /**
      * Removes a file receiver from the list.
      *
@@ -0,0 +1,358 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.settings.TransportMode;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * Chooses how to send messages to all users: by multicast, over tcp, or both.
+ *
+ * <p>Sending both ways makes sure messages arrive even if multicast is unreliable, but every message
+ * crosses the network once for each user with a tcp connection, plus once for the multicast packet.
+ * The receivers throw away the copy that arrives last.</p>
+ *
+ * <p>The choice is made by the {@link TransportMode} in the settings:</p>
+ *
+ * <ul>
+ *   <li>{@link TransportMode#AUTO}: the multicast packet is always sent, and tcp is skipped for users where
+ *       multicast works well, measured with {@link PeerTransportStats}. Multicast has to lose less than
+ *       {@link #GOOD_LOSS_RATE} of the messages, and be at most {@link #GOOD_LAG} milliseconds behind tcp,
+ *       for tcp to be skipped. Tcp is used again if the loss rate goes above {@link #BAD_LOSS_RATE} or the
+ *       lag above {@link #BAD_LAG}.</li>
+ *   <li>{@link TransportMode#BOTH}: always sends both ways.</li>
+ *   <li>{@link TransportMode#MULTICAST_ONLY}: skips tcp for all users that can ask for lost messages.</li>
+ *   <li>{@link TransportMode#TCP_ONLY}: skips the multicast packet when every user has a tcp connection.
+ *       Messages that are needed for finding new users are always multicast.</li>
+ * </ul>
+ *
+ * <p>Tcp is never skipped for users without support for sequence numbers, or for messages without a sequence
+ * number, since those users and messages can't be repaired if the multicast packet gets lost.</p>
+ *
+ * <p>Users with both IPv4 and IPv6 send every multicast packet both ways. The loss is measured for each of
+ * the user's ip addresses, and tcp, private chat and file transfers use the ip address with the lowest loss.
+ * The other ip address has to lose at least {@link #PATH_SWITCH_MARGIN} less to be chosen instead.</p>
+ *
+ * @author Christian Ihle
+ */
+public class TransportPolicy {
+
+    private static final Logger LOG = Logger.getLogger(TransportPolicy.class);
+
+    /** The number of messages to measure before choosing multicast only for a user. */
+    protected static final int MIN_SAMPLES = 100;
+
+    /** The highest loss rate where multicast only is chosen. */
+    protected static final double GOOD_LOSS_RATE = 0.01;
+
+    /** The loss rate where tcp is used again. */
+    protected static final double BAD_LOSS_RATE = 0.05;
+
+    /** The most milliseconds multicast can be behind tcp for multicast only to be chosen. */
+    protected static final double GOOD_LAG = 100;
+
+    /** Milliseconds behind tcp where tcp is used again. */
+    protected static final double BAD_LAG = 500;
+
+    /** The number of messages to measure from each ip address of a user before choosing between them. */
+    protected static final int MIN_PATH_SAMPLES = 50;
+
+    /** How much lower the loss rate from the other ip address of a user must be for it to be used instead. */
+    protected static final double PATH_SWITCH_MARGIN = 0.02;
+
+    private final Settings settings;
+
+    /** The measurements of each user. Users that are gone from the user list are cleaned up automatically. */
+    private final Map<User, PeerTransportStats> peerStats;
+
+    /** The measurements of each ip address of each user, for users with both IPv4 and IPv6. */
+    private final Map<User, Map<String, PeerTransportStats>> pathStats;
+
+    private long skippedTcpMessageCount;
+    private long skippedMulticastMessageCount;
+
+    /**
+     * Constructor.
+     *
+     * @param settings The settings to use.
+     */
+    public TransportPolicy(final Settings settings) {
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.settings = settings;
+        this.peerStats = new WeakHashMap<>();
+        this.pathStats = new WeakHashMap<>();
+    }
+
+    /**
+     * Registers a message with a sequence number from another user.
+     *
+     * @param user The user that sent the message.
+     * @param sequenceNumber The sequence number of the message.
+     * @param multicast If the message arrived by multicast, or over tcp.
+     * @param now The current time, in milliseconds.
+     */
+    public void messageArrived(final User user, final long sequenceNumber, final boolean multicast, final long now) {
+        final PeerTransportStats stats = getPeerStats(user);
+
+        if (multicast) {
+            stats.multicastArrived(sequenceNumber, now);
+        } else {
+            stats.tcpArrived(sequenceNumber, now);
+        }
+    }
+
+    /**
+     * Registers which ip address of the user a multicast message arrived from, to measure the loss from
+     * each of them. Every copy counts, not just the first. Chooses the ip address with the lowest loss as
+     * the one to use when connecting to the user, if the user has both IPv4 and IPv6.
+     *
+     * @param user The user that sent the message.
+     * @param ipAddress The ip address the message arrived from.
+     * @param sequenceNumber The sequence number of the message.
+     * @param now The current time, in milliseconds.
+     */
+    public void multicastArrivedFrom(final User user, final String ipAddress, final long sequenceNumber,
+                                     final long now) {
+        if (!user.hasIpAddress(ipAddress)) {
+            return;
+        }
+
+        final List<String> ipAddresses = user.getIpAddresses();
+        final PeerTransportStats currentStats;
+        final PeerTransportStats otherStats;
+
+        synchronized (pathStats) {
+            Map<String, PeerTransportStats> userPathStats = pathStats.get(user);
+
+            if (userPathStats == null) {
+                userPathStats = new HashMap<>(4);
+                pathStats.put(user, userPathStats);
+            }
+
+            // Forget ip addresses the user doesn't have anymore
+            userPathStats.keySet().retainAll(ipAddresses);
+
+            PeerTransportStats stats = userPathStats.get(ipAddress);
+
+            if (stats == null) {
+                stats = new PeerTransportStats();
+                userPathStats.put(ipAddress, stats);
+            }
+
+            stats.multicastArrived(sequenceNumber, now);
+
+            if (ipAddresses.size() < 2) {
+                return;
+            }
+
+            currentStats = userPathStats.get(ipAddresses.get(0));
+            otherStats = userPathStats.get(ipAddresses.get(1));
+        }
+
+        if (currentStats == null || otherStats == null || currentStats.getSampleCount() < MIN_PATH_SAMPLES ||
+                otherStats.getSampleCount() < MIN_PATH_SAMPLES) {
+            return;
+        }
+
+        if (otherStats.getLossRate() + PATH_SWITCH_MARGIN < currentStats.getLossRate()) {
+            LOG.fine("Using %s instead of %s for %s, loss %.3f vs %.3f", ipAddresses.get(1), ipAddresses.get(0),
+                     user.getNick(), otherStats.getLossRate(), currentStats.getLossRate());
+            user.setIpAddress(ipAddresses.get(1));
+        }
+    }
+
+    /**
+     * Registers own messages the user asked to have sent again.
+     *
+     * @param user The user that asked.
+     * @param count The number of messages the user asked for.
+     */
+    public void messagesLost(final User user, final int count) {
+        getPeerStats(user).messagesLost(count);
+    }
+
+    /**
+     * Chooses how to send messages with a sequence number to the user.
+     *
+     * @param user The user to send to.
+     * @return How to send to the user. Never {@link TransportMode#AUTO}.
+     */
+    public TransportMode getTransport(final User user) {
+        final TransportMode transportMode = settings.getTransportMode();
+
+        if (transportMode == TransportMode.TCP_ONLY || transportMode == TransportMode.BOTH) {
+            return transportMode;
+        }
+
+        if (!user.isSequenceNumbersEnabled()) {
+            return TransportMode.BOTH;
+        }
+
+        if (transportMode == TransportMode.MULTICAST_ONLY) {
+            return TransportMode.MULTICAST_ONLY;
+        }
+
+        return chooseAutomatically(getPeerStats(user));
+    }
+
+    /**
+     * Checks if the message should be sent to the user over tcp. Counts the skipped messages.
+     *
+     * @param user The user to send to.
+     * @param hasSequenceNumber If the message has a sequence number.
+     * @return If the message should be sent over tcp.
+     */
+    public boolean shouldSendTcp(final User user, final boolean hasSequenceNumber) {
+        if (!hasSequenceNumber || getTransport(user) != TransportMode.MULTICAST_ONLY) {
+            return true;
+        }
+
+        synchronized (this) {
+            skippedTcpMessageCount++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the message has to be sent by multicast, even if every user has a tcp connection.
+     *
+     * @param message The message to send.
+     * @param hasSequenceNumber If the message has a sequence number.
+     * @return If the message has to be multicast.
+     */
+    public boolean isMulticastNeeded(final String message, final boolean hasSequenceNumber) {
+        return settings.getTransportMode() != TransportMode.TCP_ONLY || !hasSequenceNumber
+                || isNeededForFindingUsers(message);
+    }
+
+    /**
+     * Counts a message that was only sent over tcp.
+     */
+    public synchronized void multicastSkipped() {
+        skippedMulticastMessageCount++;
+    }
+
+    /**
+     * Describes the measurements and the chosen transport of every user measured.
+     *
+     * @return One line for each user.
+     */
+    public List<String> describeUsers() {
+        final List<String> descriptions = new ArrayList<>();
+
+        synchronized (peerStats) {
+            for (final Map.Entry<User, PeerTransportStats> entry : peerStats.entrySet()) {
+                final User user = entry.getKey();
+                final PeerTransportStats stats = entry.getValue();
+
+                descriptions.add(String.format(Locale.ROOT, "%s (%d): %s, loss=%.1f%%, lag=%.0f ms, samples=%d",
+                        user.getNick(), user.getCode(), getTransport(user),
+                        stats.getLossRate() * 100, stats.getLag(), stats.getSampleCount()));
+            }
+        }
+
+        return descriptions;
+    }
+
+    /**
+     * Forgets the measurements. The network is not the same after it goes down.
+     */
+    public void reset() {
+        synchronized (peerStats) {
+            peerStats.clear();
+        }
+
+        synchronized (pathStats) {
+            pathStats.clear();
+        }
+    }
+
+    public synchronized long getSkippedTcpMessageCount() {
+        return skippedTcpMessageCount;
+    }
+
+    public synchronized long getSkippedMulticastMessageCount() {
+        return skippedMulticastMessageCount;
+    }
+
+    private TransportMode chooseAutomatically(final PeerTransportStats stats) {
+        final double lossRate = stats.getLossRate();
+        final double lag = stats.getLag();
+
+        if (stats.isMulticastOnly()) {
+            if (lossRate > BAD_LOSS_RATE || lag > BAD_LAG) {
+                stats.setMulticastOnly(false);
+            }
+        }
+
+        else if (stats.getSampleCount() >= MIN_SAMPLES && lossRate < GOOD_LOSS_RATE && lag <= GOOD_LAG) {
+            stats.setMulticastOnly(true);
+        }
+
+        return stats.isMulticastOnly() ? TransportMode.MULTICAST_ONLY : TransportMode.BOTH;
+    }
+
+    /**
+     * New users find the others by multicast, and don't have a tcp connection yet.
+     */
+    private boolean isNeededForFindingUsers(final String message) {
+        final int typeStart = message.indexOf('!') + 1;
+        final int typeEnd = message.indexOf('#', typeStart);
+
+        if (typeStart == 0 || typeEnd == -1) {
+            return true;
+        }
+
+        final String type = message.substring(typeStart, typeEnd);
+
+        return type.equals(LOGON) || type.equals(LOGOFF) || type.equals(EXPOSE) || type.equals(EXPOSING)
+                || type.equals(NICKCRASH) || type.equals(GETTOPIC);
+    }
+
+    private PeerTransportStats getPeerStats(final User user) {
+        synchronized (peerStats) {
+            PeerTransportStats stats = peerStats.get(user);
+
+            if (stats == null) {
+                stats = new PeerTransportStats();
+                peerStats.put(user, stats);
+            }
+
+            return stats;
+        }
+    }
+}
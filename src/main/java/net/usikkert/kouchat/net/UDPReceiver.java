@@ -27,14 +27,13 @@ import static net.usikkert.kouchat.net.NetworkUtils.IPTOS_RELIABILITY;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.event.ReceiverListener;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
 
 /**
@@ -46,7 +45,7 @@ import net.usikkert.kouchat.util.Validate;
 public class UDPReceiver implements Runnable {
 
     /** The logger. */
-    private static final Logger LOG = Logger.getLogger(UDPReceiver.class.getName());
+    private static final Logger LOG = Logger.getLogger(UDPReceiver.class);
 
     /** The datagram socket used for receiving messages. */
     private DatagramSocket udpSocket;
@@ -89,8 +88,10 @@ public class UDPReceiver implements Runnable {
 
                 udpSocket.receive(packet);
                 final String ip = packet.getAddress().getHostAddress();
-                final String message = new String(packet.getData(), Constants.MESSAGE_CHARSET).trim();
-                LOG.log(Level.FINE, "Message arrived from " + ip + ": " + message);
+                final String message = MessageTrailer.trim(new String(packet.getData(), 0, packet.getLength(),
+                                                                       Constants.MESSAGE_CHARSET));
+                NetworkMetrics.packetReceived(message);
+                LOG.fine("Message arrived from %s: %s", ip, message);
 
                 if (listener != null) {
                     listener.messageArrived(message, ip);
@@ -100,11 +101,11 @@ public class UDPReceiver implements Runnable {
             // Happens when socket is closed, or network is down
             catch (final IOException e) {
                 if (connected) {
-                    LOG.log(Level.WARNING, e.toString());
+                    LOG.warning(e.toString());
                 }
 
                 else {
-                    LOG.log(Level.FINE, e.toString());
+                    LOG.fine(e.toString());
                 }
             }
         }
@@ -116,10 +117,10 @@ public class UDPReceiver implements Runnable {
      * tried instead.
      */
     public void startReceiver() {
-        LOG.log(Level.FINE, "Connecting...");
+        LOG.fine("Connecting...");
 
         if (connected) {
-            LOG.log(Level.FINE, "Already connected.");
+            LOG.fine("Already connected.");
         }
 
         else {
@@ -138,11 +139,11 @@ public class UDPReceiver implements Runnable {
                     worker.start();
 
                     me.setPrivateChatPort(port);
-                    LOG.log(Level.FINE, "Connected to port " + port);
+                    LOG.fine("Connected to port %s", port);
                 }
 
                 catch (final IOException e) {
-                    LOG.log(Level.SEVERE, e.toString() + " " + port);
+                    LOG.severe("%s %s", e, port);
 
                     counter++;
                     port++;
@@ -156,7 +157,7 @@ public class UDPReceiver implements Runnable {
                         " and " + (port - 1) + "." +
                         "\n\nYou will not be able to receive private messages!";
 
-                LOG.log(Level.SEVERE, error);
+                LOG.severe(error);
                 errorHandler.showError(error);
             }
         }
@@ -166,10 +167,10 @@ public class UDPReceiver implements Runnable {
      * Closes the UDP socket, and stops the thread.
      */
     public void stopReceiver() {
-        LOG.log(Level.FINE, "Disconnecting...");
+        LOG.fine("Disconnecting...");
 
         if (!connected) {
-            LOG.log(Level.FINE, "Not connected.");
+            LOG.fine("Not connected.");
         }
 
         else {
@@ -179,7 +180,7 @@ public class UDPReceiver implements Runnable {
                 udpSocket.close();
             }
 
-            LOG.log(Level.FINE, "Disconnected.");
+            LOG.fine("Disconnected.");
         }
     }
 
@@ -28,11 +28,10 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
 
 /**
@@ -44,7 +43,7 @@ import net.usikkert.kouchat.util.Validate;
 public class UDPSender {
 
     /** The logger. */
-    private static final Logger LOG = Logger.getLogger(UDPSender.class.getName());
+    private static final Logger LOG = Logger.getLogger(UDPSender.class);
 
     /** The datagram socket used for sending messages. */
     private DatagramSocket udpSocket;
@@ -82,19 +81,20 @@ public class UDPSender {
                 final int size = encodedMsg.length;
 
                 if (size > Constants.NETWORK_PACKET_SIZE) {
-                    LOG.log(Level.WARNING, "Message was " + size + " bytes, which is too large.\n" +
-                            " The receiver might not get the complete message.\n'" + message + "'");
+                    LOG.warning("Message was %s bytes, which is too large.\n" +
+                                " The receiver might not get the complete message.\n'%s'", size, message);
                 }
 
                 final DatagramPacket packet = new DatagramPacket(encodedMsg, size, address, port);
                 udpSocket.send(packet);
-                LOG.log(Level.FINE, "Sent message: " + message + " to " + ip + ":" + port);
+                NetworkMetrics.packetSent(message);
+                LOG.fine("Sent message: %s to %s:%s", message, ip, port);
 
                 return true;
             }
 
             catch (final IOException e) {
-                LOG.log(Level.SEVERE, "Could not send message: " + message, e);
+                LOG.severe(e, "Could not send message: %s", message);
             }
         }
 
@@ -105,10 +105,10 @@ public class UDPSender {
      * Creates a new UDP socket.
      */
     public void startSender() {
-        LOG.log(Level.FINE, "Connecting...");
+        LOG.fine("Connecting...");
 
         if (connected) {
-            LOG.log(Level.FINE, "Already connected.");
+            LOG.fine("Already connected.");
         }
 
         else {
@@ -117,11 +117,11 @@ public class UDPSender {
                 udpSocket.setTrafficClass(IPTOS_RELIABILITY);
 
                 connected = true;
-                LOG.log(Level.FINE, "Connected.");
+                LOG.fine("Connected.");
             }
 
             catch (final IOException e) {
-                LOG.log(Level.SEVERE, e.toString(), e);
+                LOG.severe(e, e.toString());
                 errorHandler.showError("Failed to initialize network:\n" + e +
                         "\n\nYou will not be able to send private messages!");
             }
@@ -132,10 +132,10 @@ public class UDPSender {
      * Closes the UDP socket.
      */
     public void stopSender() {
-        LOG.log(Level.FINE, "Disconnecting...");
+        LOG.fine("Disconnecting...");
 
         if (!connected) {
-            LOG.log(Level.FINE, "Not connected.");
+            LOG.fine("Not connected.");
         }
 
         else {
@@ -145,7 +145,7 @@ public class UDPSender {
                 udpSocket.close();
             }
 
-            LOG.log(Level.FINE, "Disconnected.");
+            LOG.fine("Disconnected.");
         }
     }
 }
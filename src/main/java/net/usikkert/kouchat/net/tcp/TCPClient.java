@@ -23,10 +23,15 @@
 package net.usikkert.kouchat.net.tcp;
 
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import net.usikkert.kouchat.net.MessageTrace;
+import net.usikkert.kouchat.net.NetworkMetrics;
 import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
 
@@ -35,29 +40,47 @@ import org.jetbrains.annotations.Nullable;
 /**
  * Client for communicating over a tcp socket.
  *
+ * <p>Messages are sent from a separate writer thread, through a queue, so sending never blocks
+ * the caller even if the other side is slow to read. If the queue fills up, or a write has been blocked
+ * for more than {@link #WRITE_TIMEOUT} milliseconds, the other side is considered dead and the client
+ * is disconnected.</p>
+ *
  * @author Christian Ihle
  */
 public class TCPClient implements Runnable {
 
+    /** The most messages that can wait to be sent before the other side is considered dead. */
+    protected static final int MAX_QUEUED_MESSAGES = 1000;
+
+    /** Milliseconds a write can be blocked before the other side is considered dead. */
+    protected static final long WRITE_TIMEOUT = 10_000;
+
     private static final Logger LOG = Logger.getLogger(TCPClient.class);
 
     private final Socket socket;
 
+    /** Messages waiting to be written, encoded like {@link java.io.DataOutputStream#writeUTF(String)}. */
+    private final BlockingQueue<byte[]> sendQueue;
+
     @Nullable
     private DataInputStream inputStream;
 
     @Nullable
-    private DataOutputStream outputStream; // TODO how is this outside of Java?
+    private OutputStream outputStream; // TODO how is this outside of Java?
+
+    /** When the current write started, or 0 if not writing. */
+    private volatile long writeStarted;
 
     @Nullable
     private TCPClientListener clientListener;
 
-    private boolean connected;
-    private boolean disconnecting;
+    private volatile boolean connected;
+    private volatile boolean disconnecting;
 
     public TCPClient(final Socket socket) {
         Validate.notNull(socket, "Socket can not be null");
         this.socket = socket;
+        this.sendQueue = new LinkedBlockingQueue<>(MAX_QUEUED_MESSAGES);
     }
 
     @Override
@@ -68,7 +91,15 @@ public class TCPClient implements Runnable {
                 LOG.fine("Message arrived from %s: %s", getIPAddress(), message);
 
                 if (clientListener != null) {
-                    clientListener.messageArrived(message, this);
+                    MessageTrace.startReceiving(message);
+
+                    try {
+                        clientListener.messageArrived(message, this);
+                    }
+
+                    finally {
+                        MessageTrace.clear();
+                    }
                 }
             }
         }
@@ -84,13 +115,60 @@ public class TCPClient implements Runnable {
     }
 
     public void send(final String message) {
+        try {
+            send(TCPMessage.encode(message));
+        }
+
+        catch (final IOException e) {
+            LOG.severe(e, "Failed to encode message: %s", message);
+        }
+    }
+
+    /**
+     * Puts an encoded message in the queue to be sent by the writer thread.
+     *
+     * @param encodedMessage The message, encoded like {@link java.io.DataOutputStream#writeUTF(String)}.
+     *                       Can be shared with other clients, so it's never changed.
+     */
+    public void send(final byte[] encodedMessage) {
         if (!connected || outputStream == null) {
             return;
         }
 
+        final long started = writeStarted;
+
+        if (started > 0 && System.currentTimeMillis() - started > WRITE_TIMEOUT) {
+            LOG.warning("Write to %s has been blocked for more than %s ms. Disconnecting.", getIPAddress(), WRITE_TIMEOUT);
+            NetworkMetrics.tcpWriteStalled();
+            disconnect();
+        }
+
+        else if (!sendQueue.offer(encodedMessage)) {
+            LOG.warning("Too many messages waiting to be sent to %s. Disconnecting.", getIPAddress());
+            NetworkMetrics.tcpWriteStalled();
+            disconnect();
+        }
+    }
+
+    /**
+     * Writes the messages in the queue, until disconnected.
+     */
+    private void writeMessages() {
         try {
-            outputStream.writeUTF(message);
-            LOG.fine("Sent message: %s", message);
+            while (connected) {
+                final byte[] encodedMessage = sendQueue.poll(1, TimeUnit.SECONDS);
+
+                if (encodedMessage == null || outputStream == null) {
+                    continue;
+                }
+
+                writeStarted = System.currentTimeMillis();
+                outputStream.write(encodedMessage);
+                outputStream.flush();
+                writeStarted = 0;
+
+                LOG.fine("Sent message to %s: %s bytes", getIPAddress(), encodedMessage.length);
+            }
         }
 
         catch (final IOException e) {
@@ -101,18 +179,31 @@ public class TCPClient implements Runnable {
                 clientListener.disconnected(this);
             }
         }
+
+        catch (final InterruptedException e) {
+            LOG.warning("Interrupted while waiting for messages to send to %s", getIPAddress());
+        }
+
+        sendQueue.clear();
     }
 
     public boolean connect() {
         try {
             inputStream = new DataInputStream(socket.getInputStream());
-            outputStream = new DataOutputStream(socket.getOutputStream());
+            outputStream = socket.getOutputStream();
 
             LOG.fine("Connected to %s:%s", getIPAddress(), socket.getPort());
 
             connected = true;
             new Thread(this, getClass().getSimpleName()).start();
 
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeMessages();
+                }
+            }, getClass().getSimpleName() + "Writer").start();
+
             return true;
         }
 
@@ -23,13 +23,17 @@
 package net.usikkert.kouchat.net.tcp;
 
 import java.net.Socket;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.misc.UserList;
+import net.usikkert.kouchat.net.MessageTrailer;
+import net.usikkert.kouchat.net.NetworkMetrics;
+import net.usikkert.kouchat.net.TransportPolicy;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Tools;
@@ -63,7 +67,7 @@ public class TCPConnectionHandler implements TCPConnectionListener, TCPReceiverL
         this.controller = controller;
         this.settings = settings;
         this.executorService = Executors.newCachedThreadPool();
-        this.userClients = new HashMap<>();
+        this.userClients = new ConcurrentHashMap<>();
 
         new Thread(this, TCPConnectionHandler.class.getSimpleName()).start();
     }
@@ -156,7 +160,7 @@ public class TCPConnectionHandler implements TCPConnectionListener, TCPReceiverL
         userClients.clear();
     }
 
-    private void addClient(final User user, final TCPClient client) {
+    private synchronized void addClient(final User user, final TCPClient client) {
         final TCPUserClient userClient = userClients.get(user);
 
         if (userClient == null) {
@@ -166,10 +170,42 @@ public class TCPConnectionHandler implements TCPConnectionListener, TCPReceiverL
         }
     }
 
-    public void sendMessageToAll(final String message) {
-        for (final TCPUserClient userClient : userClients.values()) {
-            userClient.send(message);
+    /**
+     * Sends the message to all users with a tcp connection, except the users the transport policy says
+     * should only get the multicast packet. The message is encoded once and shared, and each user has
+     * a writer thread of its own, so this doesn't wait for any of them.
+     *
+     * @param message The message to send.
+     * @param transportPolicy The policy that chooses which users the message is sent to over tcp.
+     */
+    public void sendMessageToAll(final String message, final TransportPolicy transportPolicy) {
+        final TCPMessage tcpMessage = new TCPMessage(message);
+        final boolean hasSequenceNumber = MessageTrailer.getSequenceNumber(message) != MessageTrailer.NO_SEQUENCE_NUMBER;
+
+        for (final Map.Entry<User, TCPUserClient> entry : userClients.entrySet()) {
+            if (transportPolicy.shouldSendTcp(entry.getKey(), hasSequenceNumber)) {
+                entry.getValue().send(tcpMessage);
+            }
+        }
+    }
+
+    /**
+     * Checks if every other user in the user list has a tcp connection.
+     *
+     * @return If all the users are connected.
+     */
+    public boolean isConnectedToAllUsers() {
+        final UserList userList = controller.getUserList();
+
+        for (int i = 0; i < userList.size(); i++) {
+            final User user = userList.get(i);
+
+            if (user != null && !user.isMe() && !userAddedAndConnected(user)) {
+                return false;
+            }
         }
+
+        return true;
     }
 
     public void sendMessageToUser(final String message, final User user) {
@@ -206,12 +242,14 @@ public class TCPConnectionHandler implements TCPConnectionListener, TCPReceiverL
                 continue;
             }
 
-            for (final User user : userClients.keySet()) {
-                final TCPUserClient userClient = userClients.get(user);
+            for (final Map.Entry<User, TCPUserClient> entry : userClients.entrySet()) {
+                final User user = entry.getKey();
+                final TCPUserClient userClient = entry.getValue();
                 final int clientCount = userClient.getClientCount();
 
                 if (clientCount == 0) {
                     LOG.warning("User %s has lost all tcp connections. Trying to reconnect.", user.getNick());
+                    NetworkMetrics.tcpReconnecting();
                     userAdded(user);
                 } else if (clientCount > 1) {
                     LOG.warning("User %s has too many (%d) tcp connections. Trying to close.",
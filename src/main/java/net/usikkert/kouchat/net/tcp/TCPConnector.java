@@ -29,6 +29,7 @@ import java.net.Socket;
 import java.net.SocketAddress;
 
 import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.NetworkMetrics;
 import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Sleeper;
 import net.usikkert.kouchat.util.Validate;
@@ -72,6 +73,7 @@ public class TCPConnector {
             final SocketAddress address = new InetSocketAddress(InetAddress.getByName(user.getIpAddress()), user.getTcpChatPort());
             socket.connect(address, SOCKET_CONNECT_TIMEOUT);
             LOG.fine("Connected to: %s@%s:%s", user.getNick(), socket.getInetAddress().getHostAddress(), socket.getPort());
+            NetworkMetrics.tcpConnected(true);
 
             return socket;
         }
@@ -0,0 +1,117 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net.tcp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import net.usikkert.kouchat.net.MessageTrailer;
+import net.usikkert.kouchat.util.Validate;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A message to send over tcp, encoded only once no matter how many users it's sent to.
+ *
+ * <p>The message is encoded the same way as {@link DataOutputStream#writeUTF(String)}, which is what the
+ * receiver reads. Users that can't read the {@link MessageTrailer} need the message without it, so there
+ * are two versions, each encoded the first time it's needed.</p>
+ *
+ * <p>The encoded bytes are shared between all the users the message is sent to, and must never be changed.</p>
+ *
+ * @author Christian Ihle
+ */
+public class TCPMessage {
+
+    private final String message;
+
+    @Nullable
+    private byte[] withTrailer;
+
+    @Nullable
+    private byte[] withoutTrailer;
+
+    /**
+     * Constructor.
+     *
+     * @param message The message to send.
+     */
+    public TCPMessage(final String message) {
+        Validate.notNull(message, "Message can not be null");
+
+        this.message = message;
+    }
+
+    /**
+     * Gets the message.
+     *
+     * @return The message, with the trailer if it has one.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the message encoded for sending over tcp.
+     *
+     * @param includeTrailer If the trailer should be included, or removed.
+     * @return The encoded message. Must not be changed.
+     * @throws IOException If the message is too large to encode.
+     */
+    synchronized byte[] getBytes(final boolean includeTrailer) throws IOException {
+        if (includeTrailer) {
+            if (withTrailer == null) {
+                withTrailer = encode(message);
+            }
+
+            return withTrailer;
+        }
+
+        if (withoutTrailer == null) {
+            withoutTrailer = encode(MessageTrailer.removeTrailer(message));
+        }
+
+        return withoutTrailer;
+    }
+
+    /**
+     * Encodes the message the same way as {@link DataOutputStream#writeUTF(String)}.
+     *
+     * @param message The message to encode.
+     * @return The encoded message.
+     * @throws IOException If the message is too large to encode.
+     */
+    static byte[] encode(final String message) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length() + 16);
+        final DataOutputStream dataOutputStream = new DataOutputStream(bytes);
+        dataOutputStream.writeUTF(message);
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return message;
+    }
+}
@@ -26,6 +26,7 @@ import net.usikkert.kouchat.event.UserListListener;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.TransportPolicy;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.util.Validate;
 
@@ -77,8 +78,12 @@ public class TCPNetworkService implements UserListListener {
         tcpConnectionHandler.userRemoved(user);
     }
 
-    public void sendMessageToAll(final String message) {
-        tcpConnectionHandler.sendMessageToAll(message);
+    public void sendMessageToAll(final String message, final TransportPolicy transportPolicy) {
+        tcpConnectionHandler.sendMessageToAll(message, transportPolicy);
+    }
+
+    public boolean isConnectedToAllUsers() {
+        return tcpConnectionHandler.isConnectedToAllUsers();
     }
 
     public void sendMessageToUser(final String message, final User user) {
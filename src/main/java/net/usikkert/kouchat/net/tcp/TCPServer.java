@@ -24,10 +24,12 @@ package net.usikkert.kouchat.net.tcp;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.net.Socket;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.NetworkMetrics;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.util.Logger;
 import net.usikkert.kouchat.util.Validate;
@@ -69,7 +71,9 @@ public class TCPServer implements Runnable {
     public void run() {
         while (connected && serverSocket != null) {
             try {
-                tcpConnectionListener.socketAdded(serverSocket.accept());
+                final Socket socket = serverSocket.accept();
+                NetworkMetrics.tcpConnected(false);
+                tcpConnectionListener.socketAdded(socket);
             }
 
             // Happens when server socket is closed, or network is down
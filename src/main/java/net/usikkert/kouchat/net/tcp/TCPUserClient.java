@@ -22,8 +22,9 @@
 
 package net.usikkert.kouchat.net.tcp;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.util.Logger;
@@ -49,7 +50,7 @@ public class TCPUserClient implements TCPClientListener {
         Validate.notNull(user, "User can not be null");
         Validate.notNull(listener, "TCP message listener can not be null");
 
-        this.clients = new ArrayList<>();
+        this.clients = new CopyOnWriteArrayList<>();
         this.user = user;
         this.listener = listener;
 
@@ -109,9 +110,31 @@ public class TCPUserClient implements TCPClientListener {
     }
 
     public void send(final String message) {
+        send(new TCPMessage(message));
+    }
+
+    /**
+     * Sends the message using the first client that is not disconnecting. Only puts the message
+     * in the queue of the client, so this never waits for the network.
+     *
+     * @param message The message to send.
+     */
+    public void send(final TCPMessage message) {
+        final byte[] encodedMessage;
+
+        try {
+            // Older clients don't trim tcp messages, so they would show the trailer as part of the message
+            encodedMessage = message.getBytes(user.isSequenceNumbersEnabled());
+        }
+
+        catch (final IOException e) {
+            LOG.severe(e, "Failed to encode message: %s", message);
+            return;
+        }
+
         for (final TCPClient client : clients) {
             if (!client.isDisconnecting()) {
-                client.send(message);
+                client.send(encodedMessage);
                 return;
             }
         }
@@ -91,7 +91,7 @@ public class TCPUserIdentifier implements TCPClientListener {
 
         final User user = userFromMessage();
 
-        if (user != null && !user.getIpAddress().equals(client.getIPAddress())) {
+        if (user != null && !user.hasIpAddress(client.getIPAddress())) {
             LOG.warning("Unexpected client ip connected. user=%s, userIP=%s, clientIP=%s",
                         user.getNick(), user.getIpAddress(), client.getIPAddress());
             return null;
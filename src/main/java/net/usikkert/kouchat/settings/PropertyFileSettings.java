@@ -41,7 +41,9 @@ public enum PropertyFileSettings {
     LOOK_AND_FEEL("lookAndFeel"),
     NETWORK_INTERFACE("networkInterface"),
     SOUND("sound"),
-    SMILEYS("smileys");
+    SMILEYS("smileys"),
+    TRANSPORT_MODE("transportMode"),
+    MULTI_INTERFACE("multiInterface");
 
     private final String key;
 
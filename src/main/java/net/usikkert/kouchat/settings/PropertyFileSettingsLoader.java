@@ -74,6 +74,8 @@ public class PropertyFileSettingsLoader {
             setNetworkInterface(settings, fileContents);
             setSound(settings, fileContents);
             setSmileys(settings, fileContents);
+            setTransportMode(settings, fileContents);
+            setMultiInterface(settings, fileContents);
         }
 
         catch (final FileNotFoundException e) {
@@ -154,4 +156,24 @@ public class PropertyFileSettingsLoader {
             settings.setSmileys(Boolean.valueOf(fileContents.getProperty(SMILEYS.getKey())));
         }
     }
+
+    private void setTransportMode(final Settings settings, final Properties fileContents) {
+        final String transportMode = fileContents.getProperty(TRANSPORT_MODE.getKey());
+
+        // Defaults to AUTO
+        if (transportMode != null) {
+            try {
+                settings.setTransportMode(TransportMode.valueOf(transportMode));
+            }
+
+            catch (final IllegalArgumentException e) {
+                LOG.log(Level.WARNING, "Could not read setting for transportMode...");
+            }
+        }
+    }
+
+    private void setMultiInterface(final Settings settings, final Properties fileContents) {
+        // Defaults to false
+        settings.setMultiInterface(Boolean.valueOf(fileContents.getProperty(MULTI_INTERFACE.getKey())));
+    }
 }
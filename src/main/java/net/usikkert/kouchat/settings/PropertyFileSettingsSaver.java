@@ -84,6 +84,8 @@ public class PropertyFileSettingsSaver implements SettingsSaver {
         properties.put(BALLOONS.getKey(), String.valueOf(settings.isBalloons()));
         properties.put(SYSTEM_TRAY.getKey(), String.valueOf(settings.isSystemTray()));
         properties.put(NETWORK_INTERFACE.getKey(), Tools.emptyIfNull(settings.getNetworkInterface()));
+        properties.put(TRANSPORT_MODE.getKey(), settings.getTransportMode().name());
+        properties.put(MULTI_INTERFACE.getKey(), String.valueOf(settings.isMultiInterface()));
 
         try {
             ioTools.createFolder(Constants.APP_FOLDER);
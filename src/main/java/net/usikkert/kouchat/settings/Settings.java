@@ -29,6 +29,7 @@ import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.event.SettingsListener;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.util.Tools;
+import net.usikkert.kouchat.util.Validate;
 
 import org.jetbrains.annotations.NonNls;
 
@@ -77,6 +78,12 @@ public class Settings {
     /** Name of the network interface to use, or <code>null</code> to choose automatically. */
     private String networkInterface;
 
+    /** How messages to all users are sent over the network. */
+    private TransportMode transportMode;
+
+    /** If all usable network interfaces should be used at the same time, instead of just one. */
+    private boolean multiInterface;
+
     // Settings from startup arguments
 
     /** If private chat is disabled. */
@@ -107,6 +114,7 @@ public class Settings {
         smileys = true;
         systemTray = true;
         lookAndFeel = "";
+        transportMode = TransportMode.AUTO;
     }
 
     /**
@@ -410,4 +418,42 @@ public class Settings {
     public void setNetworkInterface(final String networkInterface) {
         this.networkInterface = networkInterface;
     }
+
+    /**
+     * Gets how messages to all users are sent over the network.
+     *
+     * @return The transport mode.
+     */
+    public TransportMode getTransportMode() {
+        return transportMode;
+    }
+
+    /**
+     * Sets how messages to all users are sent over the network. Used from the next message.
+     *
+     * @param transportMode The transport mode.
+     */
+    public void setTransportMode(final TransportMode transportMode) {
+        Validate.notNull(transportMode, "Transport mode can not be null");
+        this.transportMode = transportMode;
+    }
+
+    /**
+     * Checks if all usable network interfaces should be used at the same time, instead of just one.
+     *
+     * @return If multiple network interfaces should be used.
+     */
+    public boolean isMultiInterface() {
+        return multiInterface;
+    }
+
+    /**
+     * Sets if all usable network interfaces should be used at the same time, instead of just one.
+     * Used from the next time the network is checked.
+     *
+     * @param multiInterface If multiple network interfaces should be used.
+     */
+    public void setMultiInterface(final boolean multiInterface) {
+        this.multiInterface = multiInterface;
+    }
 }
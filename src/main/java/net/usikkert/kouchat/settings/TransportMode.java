@@ -0,0 +1,43 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.settings;
+
+/**
+ * How messages to all users are sent over the network.
+ *
+ * @author Christian Ihle
+ */
+public enum TransportMode {
+
+    /** Chooses per user, based on how well multicast works to that user. */
+    AUTO,
+
+    /** Sends both a multicast packet and over tcp to every user. */
+    BOTH,
+
+    /** Only sends multicast packets, to users that can ask for lost messages again. */
+    MULTICAST_ONLY,
+
+    /** Only sends over tcp, as long as every user has a tcp connection. */
+    TCP_ONLY
+}
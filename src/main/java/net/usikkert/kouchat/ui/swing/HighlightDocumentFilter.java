@@ -0,0 +1,520 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.ui.swing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.ImageIcon;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DocumentFilter;
+import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.AhoCorasickMatcher;
+import net.usikkert.kouchat.util.Validate;
+
+/**
+ * This document filter highlights both urls and smileys added to a {@link StyledDocument}.
+ *
+ * <p>Everything is found in a single pass over the text, using one automaton for all the smiley codes
+ * and url prefixes. All the highlighting is then applied to the document in one batch, in a single
+ * task on the event dispatch thread.</p>
+ *
+ * <p>Urls follow the same rules as in {@link URLDocumentFilter}. Smileys must have whitespace
+ * on both sides, or be at the start or end of the text.</p>
+ *
+ * @author Christian Ihle
+ */
+public class HighlightDocumentFilter extends DocumentFilter {
+
+    /** Prefix to look for to detect urls with full protocol. */
+    private static final String PROTOCOL = "://";
+
+    /** Prefix to look for to detect www urls. */
+    private static final String WWW = " www";
+
+    /** Prefix to look for to detect ftp urls. */
+    private static final String FTP = " ftp";
+
+    /** Sorts highlights by their position in the text. */
+    private static final Comparator<Highlight> POSITION_COMPARATOR = new Comparator<Highlight>() {
+        @Override
+        public int compare(final Highlight highlight1, final Highlight highlight2) {
+            return Integer.compare(highlight1.startPosition, highlight2.startPosition);
+        }
+    };
+
+    private final UITools uiTools = new UITools();
+
+    /**
+     * Regex for the beginning of: <code>protocol://host</code>.
+     * Uses reluctant quantifiers to find the shortest valid url.
+     */
+    private final Pattern protPattern;
+
+    /** Regex for the beginning of: <code>www.host.name</code>. */
+    private final Pattern wwwPattern;
+
+    /** Regex for the beginning of: <code>ftp.host.name</code>. */
+    private final Pattern ftpPattern;
+
+    /** Automaton matching both the smiley codes and the url prefixes. */
+    private final AhoCorasickMatcher matcher;
+
+    /** The icons for each keyword in the matcher, or <code>null</code> for the url prefixes. */
+    private final ImageIcon[] smileyIcons;
+
+    /**
+     * If this document filter is the only document filter used.
+     * This must be true if it is, or the text will not be visible.
+     * If this is not the only filter, then this must be false, or
+     * the same text will be shown several times.
+     */
+    private final boolean standAlone;
+
+    /** The settings. */
+    private final Settings settings;
+
+    /**
+     * Constructor. Builds the automaton from the available smileys and the url prefixes.
+     *
+     * @param standAlone If this is the only document filter used.
+     * @param imageLoader The image loader.
+     * @param settings The settings to use.
+     */
+    public HighlightDocumentFilter(final boolean standAlone, final ImageLoader imageLoader, final Settings settings) {
+        Validate.notNull(imageLoader, "Image loader can not be null");
+        Validate.notNull(settings, "Settings can not be null");
+
+        this.standAlone = standAlone;
+        this.settings = settings;
+
+        // Same as in URLDocumentFilter, without the trailing .+ which is checked separately
+        protPattern = Pattern.compile("\\w{2,}://\\w+?\\S+?");
+        wwwPattern = Pattern.compile("www\\.\\w+?\\S+?\\.\\S+?");
+        ftpPattern = Pattern.compile("ftp\\.\\w+?\\S+?\\.\\S+?");
+
+        final SmileyMap smileyMap = new SmileyMap(imageLoader);
+        final List<String> keywords = new ArrayList<>();
+        keywords.add(PROTOCOL);
+        keywords.add(WWW);
+        keywords.add(FTP);
+        keywords.addAll(smileyMap.getTextSmileys());
+
+        matcher = new AhoCorasickMatcher(keywords);
+        smileyIcons = new ImageIcon[keywords.size()];
+
+        for (int i = 0; i < keywords.size(); i++) {
+            smileyIcons[i] = smileyMap.getSmiley(keywords.get(i));
+        }
+    }
+
+    /**
+     * Checks if the text contains any urls or smileys. Urls are underlined and saved in an attribute,
+     * while smileys are replaced with the corresponding image if smileys are enabled in the settings.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertString(final FilterBypass fb, final int offset, final String text, final AttributeSet attr)
+            throws BadLocationException {
+        if (standAlone) {
+            super.insertString(fb, offset, text, attr);
+        }
+
+        final boolean smileys = settings.isSmileys();
+
+        // Make a copy now, or else it could change if another message comes
+        final AttributeSet attrCopy = attr.copyAttributes();
+
+        // Do this in the background so the text wont lag
+        uiTools.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                final List<Highlight> highlights = findHighlights(text, smileys);
+                final StyledDocument doc = (StyledDocument) fb.getDocument();
+
+                for (final Highlight highlight : highlights) {
+                    final MutableAttributeSet highlightAttr = (MutableAttributeSet) attrCopy.copyAttributes();
+                    highlight.addAttributes(highlightAttr);
+                    doc.setCharacterAttributes(offset + highlight.startPosition, highlight.getLength(),
+                                               highlightAttr, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds all the urls, and optionally the smileys, in the text.
+     *
+     * @param text The text to search. Expected to end with a newline.
+     * @param smileys If smileys should be included.
+     * @return The urls and smileys found, sorted by position.
+     */
+    protected List<Highlight> findHighlights(final String text, final boolean smileys) {
+        final CandidateCollector collector = new CandidateCollector(text, smileys);
+        matcher.findAll(text, collector);
+
+        final List<Highlight> highlights = new ArrayList<>();
+        addUrls(text, collector.urlCandidates, highlights);
+        addSmileys(collector.smileyCandidates, highlights);
+        Collections.sort(highlights, POSITION_COMPARATOR);
+
+        return highlights;
+    }
+
+    /**
+     * Adds the valid urls among the candidates to the list of highlights, skipping urls
+     * that overlap earlier urls. The url stops at the first space or newline.
+     *
+     * @param text The text the candidates were found in.
+     * @param candidates The url candidates, sorted by the start position of the url.
+     * @param highlights The list to add the urls to.
+     */
+    private void addUrls(final String text, final List<Highlight> candidates, final List<Highlight> highlights) {
+        int offset = 0;
+
+        for (final Highlight candidate : candidates) {
+            if (candidate.detectedPosition < offset) {
+                continue;
+            }
+
+            final int startPos = candidate.startPosition;
+            final int stopPos = findUrlStop(text, startPos);
+
+            highlights.add(new Highlight(startPos, stopPos, candidate.detectedPosition, text.substring(startPos, stopPos)));
+            offset = stopPos;
+        }
+    }
+
+    /**
+     * Adds the smiley candidates to the list of highlights, skipping smileys that overlap
+     * earlier smileys.
+     *
+     * @param candidates The smiley candidates, sorted by position.
+     * @param highlights The list to add the smileys to.
+     */
+    private void addSmileys(final List<Highlight> candidates, final List<Highlight> highlights) {
+        int offset = 0;
+
+        for (final Highlight candidate : candidates) {
+            if (candidate.startPosition < offset) {
+                continue;
+            }
+
+            highlights.add(candidate);
+            offset = candidate.stopPosition;
+        }
+    }
+
+    /**
+     * Finds the position where the url starting at <code>startPos</code> stops.
+     *
+     * @param text The text containing the url.
+     * @param startPos The start position of the url.
+     * @return The position of the first space or newline after the url.
+     */
+    private int findUrlStop(final String text, final int startPos) {
+        for (int i = startPos; i < text.length(); i++) {
+            final char character = text.charAt(i);
+
+            if (character == ' ' || character == '\n') {
+                return i;
+            }
+        }
+
+        return text.length();
+    }
+
+    /**
+     * Checks if the text at the start position matches the pattern,
+     * and is followed by at least one more character before the final newline.
+     *
+     * @param pattern The pattern to use.
+     * @param text The text to check.
+     * @param startPos Where in the text the url starts.
+     * @return If there is a valid url at the start position.
+     */
+    private boolean isValidUrl(final Pattern pattern, final String text, final int startPos) {
+        final int endPos = text.length() - 1;
+
+        if (startPos >= endPos) {
+            return false;
+        }
+
+        final Matcher urlMatcher = pattern.matcher(text);
+        urlMatcher.region(startPos, endPos);
+
+        return urlMatcher.lookingAt() && urlMatcher.end() < endPos;
+    }
+
+    /**
+     * Checks if the smiley is surrounded by some sort of whitespace.
+     * The start and the end of the text count as whitespace.
+     *
+     * @param text The text where the smiley is found.
+     * @param startPos The position of the first character in the smiley.
+     * @param stopPos The position after the last character in the smiley.
+     * @return If the smiley is surrounded by whitespace.
+     */
+    private boolean smileyHasWhitespace(final String text, final int startPos, final int stopPos) {
+        final int leftIndex = startPos - 1;
+
+        if (leftIndex > 0 && !Character.isWhitespace(text.charAt(leftIndex))) {
+            return false;
+        }
+
+        return stopPos >= text.length() || Character.isWhitespace(text.charAt(stopPos));
+    }
+
+    /**
+     * Collects the urls and smileys found by the automaton, after checking that they are valid.
+     */
+    private final class CandidateCollector implements AhoCorasickMatcher.MatchListener {
+
+        /** The text being scanned. */
+        private final String text;
+
+        /** If smileys should be collected. */
+        private final boolean smileys;
+
+        /** Valid urls, in the order they were found. */
+        private final List<Highlight> urlCandidates = new ArrayList<>();
+
+        /** Smileys with whitespace around them, in the order they were found. */
+        private final List<Highlight> smileyCandidates = new ArrayList<>();
+
+        /** The position after the last space seen in the text, to find where a protocol url starts. */
+        private int wordStart;
+
+        /** The position in the text that has been checked for spaces. */
+        private int checkedPosition;
+
+        /**
+         * Constructor.
+         *
+         * @param text The text being scanned.
+         * @param smileys If smileys should be collected.
+         */
+        private CandidateCollector(final String text, final boolean smileys) {
+            this.text = text;
+            this.smileys = smileys;
+        }
+
+        @Override
+        public void keywordFound(final int keywordIndex, final int startPosition, final int stopPosition) {
+            final ImageIcon icon = smileyIcons[keywordIndex];
+
+            if (icon != null) {
+                if (smileys && smileyHasWhitespace(text, startPosition, stopPosition)) {
+                    smileyCandidates.add(new Highlight(startPosition, stopPosition, icon));
+                }
+            }
+
+            else {
+                final String keyword = matcher.getKeyword(keywordIndex);
+
+                if (keyword.equals(PROTOCOL)) {
+                    final int protStart = findWordStart(startPosition);
+
+                    if (isValidUrl(protPattern, text, protStart)) {
+                        addUrlCandidate(new Highlight(protStart, startPosition));
+                    }
+                }
+
+                else if (keyword.equals(WWW)) {
+                    if (isValidUrl(wwwPattern, text, startPosition + 1)) {
+                        addUrlCandidate(new Highlight(startPosition + 1, startPosition));
+                    }
+                }
+
+                else if (isValidUrl(ftpPattern, text, startPosition + 1)) {
+                    addUrlCandidate(new Highlight(startPosition + 1, startPosition));
+                }
+            }
+        }
+
+        /**
+         * Adds the url candidate, keeping the list sorted by start position.
+         *
+         * @param candidate The url candidate to add.
+         */
+        private void addUrlCandidate(final Highlight candidate) {
+            int index = urlCandidates.size();
+
+            while (index > 0 && urlCandidates.get(index - 1).startPosition > candidate.startPosition) {
+                index--;
+            }
+
+            urlCandidates.add(index, candidate);
+        }
+
+        /**
+         * Finds the position after the last space before the position, continuing
+         * from where the previous search stopped, so each character is only checked once.
+         *
+         * @param position The position to search backwards from.
+         * @return The start of the word containing the position.
+         */
+        private int findWordStart(final int position) {
+            for (; checkedPosition < position; checkedPosition++) {
+                if (text.charAt(checkedPosition) == ' ') {
+                    wordStart = checkedPosition + 1;
+                }
+            }
+
+            return wordStart;
+        }
+    }
+
+    /**
+     * A part of the text to highlight, either as a url or a smiley.
+     */
+    protected static final class Highlight {
+
+        /** The position of the first character to highlight. */
+        private final int startPosition;
+
+        /** The position after the last character to highlight. */
+        private final int stopPosition;
+
+        /** Where the url prefix was detected, used to skip overlapping urls. */
+        private final int detectedPosition;
+
+        /** The url, or <code>null</code> if this is a smiley. */
+        private final String url;
+
+        /** The smiley icon, or <code>null</code> if this is a url. */
+        private final ImageIcon icon;
+
+        /**
+         * Constructor for a url candidate, before the stop position is known.
+         *
+         * @param startPosition The position of the first character in the url.
+         * @param detectedPosition Where the url prefix was detected.
+         */
+        private Highlight(final int startPosition, final int detectedPosition) {
+            this(startPosition, startPosition, detectedPosition, null);
+        }
+
+        /**
+         * Constructor for a url.
+         *
+         * @param startPosition The position of the first character in the url.
+         * @param stopPosition The position after the last character in the url.
+         * @param detectedPosition Where the url prefix was detected.
+         * @param url The url.
+         */
+        private Highlight(final int startPosition, final int stopPosition, final int detectedPosition, final String url) {
+            this.startPosition = startPosition;
+            this.stopPosition = stopPosition;
+            this.detectedPosition = detectedPosition;
+            this.url = url;
+            this.icon = null;
+        }
+
+        /**
+         * Constructor for a smiley.
+         *
+         * @param startPosition The position of the first character in the smiley.
+         * @param stopPosition The position after the last character in the smiley.
+         * @param icon The smiley icon.
+         */
+        private Highlight(final int startPosition, final int stopPosition, final ImageIcon icon) {
+            this.startPosition = startPosition;
+            this.stopPosition = stopPosition;
+            this.detectedPosition = startPosition;
+            this.url = null;
+            this.icon = icon;
+        }
+
+        /**
+         * Adds the attributes for this highlight to the attribute set.
+         *
+         * @param attr The attribute set to add to.
+         */
+        private void addAttributes(final MutableAttributeSet attr) {
+            if (icon != null) {
+                StyleConstants.setIcon(attr, icon);
+            }
+
+            else {
+                StyleConstants.setUnderline(attr, true);
+                attr.addAttribute(URLDocumentFilter.URL_ATTRIBUTE, url);
+            }
+        }
+
+        /**
+         * Gets the position of the first character to highlight.
+         *
+         * @return The start position.
+         */
+        public int getStartPosition() {
+            return startPosition;
+        }
+
+        /**
+         * Gets the number of characters to highlight.
+         *
+         * @return The length.
+         */
+        public int getLength() {
+            return stopPosition - startPosition;
+        }
+
+        /**
+         * Gets the url.
+         *
+         * @return The url, or <code>null</code> if this is a smiley.
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Gets the smiley icon.
+         *
+         * @return The icon, or <code>null</code> if this is a url.
+         */
+        public ImageIcon getIcon() {
+            return icon;
+        }
+
+        @Override
+        public String toString() {
+            if (icon != null) {
+                return "smiley [" + startPosition + "," + stopPosition + "]";
+            }
+
+            return url + " [" + startPosition + "," + stopPosition + "]";
+        }
+    }
+}
@@ -38,6 +38,9 @@ import net.usikkert.kouchat.util.Validate;
 /**
  * Loads, validates and gives access to all the images used in the application.
  *
+ * <p>All the images are located and validated up front, but the icons are not created
+ * before they are asked for the first time.</p>
+ *
  * <p>Note: if any of the images fails to load the application will exit.</p>
  *
  * @author Christian Ihle
@@ -53,94 +56,94 @@ public class ImageLoader {
     private final ResourceLoader resourceLoader;
 
     /** The smile image icon. */
-    private final ImageIcon smileIcon;
+    private final LazyImageIcon smileIcon;
 
     /** The sad image icon. */
-    private final ImageIcon sadIcon;
+    private final LazyImageIcon sadIcon;
 
     /** The tongue image icon. */
-    private final ImageIcon tongueIcon;
+    private final LazyImageIcon tongueIcon;
 
     /** The teeth image icon. */
-    private final ImageIcon teethIcon;
+    private final LazyImageIcon teethIcon;
 
     /** The wink image icon. */
-    private final ImageIcon winkIcon;
+    private final LazyImageIcon winkIcon;
 
     /** The omg image icon. */
-    private final ImageIcon omgIcon;
+    private final LazyImageIcon omgIcon;
 
     /** The angry image icon. */
-    private final ImageIcon angryIcon;
+    private final LazyImageIcon angryIcon;
 
     /** The confused image icon. */
-    private final ImageIcon confusedIcon;
+    private final LazyImageIcon confusedIcon;
 
     /** The cry image icon. */
-    private final ImageIcon cryIcon;
+    private final LazyImageIcon cryIcon;
 
     /** The embarrassed image icon. */
-    private final ImageIcon embarrassedIcon;
+    private final LazyImageIcon embarrassedIcon;
 
     /** The shade image icon. */
-    private final ImageIcon shadeIcon;
+    private final LazyImageIcon shadeIcon;
 
     /** The normal kou image icon in 16x16px. */
-    private final ImageIcon kouNormal16Icon;
+    private final LazyImageIcon kouNormal16Icon;
 
     /** The normal kou image icon in 20x20px. */
-    private final ImageIcon kouNormal20Icon;
+    private final LazyImageIcon kouNormal20Icon;
 
     /** The normal kou image icon in 24x24px. */
-    private final ImageIcon kouNormal24Icon;
+    private final LazyImageIcon kouNormal24Icon;
 
     /** The normal kou image icon in 32x32px. */
-    private final ImageIcon kouNormal32Icon;
+    private final LazyImageIcon kouNormal32Icon;
 
     /** The normal activity kou image icon in 16x16px. */
-    private final ImageIcon kouNormalActivity16Icon;
+    private final LazyImageIcon kouNormalActivity16Icon;
 
     /** The normal activity kou image icon in 20x20px. */
-    private final ImageIcon kouNormalActivity20Icon;
+    private final LazyImageIcon kouNormalActivity20Icon;
 
     /** The normal activity kou image icon in 24x24px. */
-    private final ImageIcon kouNormalActivity24Icon;
+    private final LazyImageIcon kouNormalActivity24Icon;
 
     /** The normal activity kou image icon in 32x32px. */
-    private final ImageIcon kouNormalActivity32Icon;
+    private final LazyImageIcon kouNormalActivity32Icon;
 
     /** The away kou image icon in 16x16px. */
-    private final ImageIcon kouAway16Icon;
+    private final LazyImageIcon kouAway16Icon;
 
     /** The away kou image icon in 20x20px. */
-    private final ImageIcon kouAway20Icon;
+    private final LazyImageIcon kouAway20Icon;
 
     /** The away kou image icon in 24x24px. */
-    private final ImageIcon kouAway24Icon;
+    private final LazyImageIcon kouAway24Icon;
 
     /** The away kou image icon in 32x32px. */
-    private final ImageIcon kouAway32Icon;
+    private final LazyImageIcon kouAway32Icon;
 
     /** The away activity kou image icon in 16x16px. */
-    private final ImageIcon kouAwayActivity16Icon;
+    private final LazyImageIcon kouAwayActivity16Icon;
 
     /** The away activity kou image icon in 20x20px. */
-    private final ImageIcon kouAwayActivity20Icon;
+    private final LazyImageIcon kouAwayActivity20Icon;
 
     /** The away activity kou image icon in 24x24px. */
-    private final ImageIcon kouAwayActivity24Icon;
+    private final LazyImageIcon kouAwayActivity24Icon;
 
     /** The away activity kou image icon in 32x32px. */
-    private final ImageIcon kouAwayActivity32Icon;
+    private final LazyImageIcon kouAwayActivity32Icon;
 
     /** The envelope image icon. */
-    private final ImageIcon envelopeIcon;
+    private final LazyImageIcon envelopeIcon;
 
     /** The dot image icon. */
-    private final ImageIcon dotIcon;
+    private final LazyImageIcon dotIcon;
 
     /**
-     * Constructor. Loads and validates the images.
+     * Constructor. Locates and validates the images.
      *
      * @param errorHandler The error handler to use to show messages if image loading fails.
      * @param swingMessages The swing messages to use in errors.
@@ -197,41 +200,41 @@ public class ImageLoader {
 
         validate();
 
-        // Create icons from the resources
-        smileIcon = new ImageIcon(smileURL);
-        sadIcon = new ImageIcon(sadURL);
-        tongueIcon = new ImageIcon(tongueURL);
-        teethIcon = new ImageIcon(teethURL);
-        winkIcon = new ImageIcon(winkURL);
-        omgIcon = new ImageIcon(omgURL);
-        angryIcon = new ImageIcon(angryURL);
-        confusedIcon = new ImageIcon(confusedURL);
-        cryIcon = new ImageIcon(cryURL);
-        embarrassedIcon = new ImageIcon(embarrassedURL);
-        shadeIcon = new ImageIcon(shadeURL);
+        // Icons are created on first use, to avoid decoding all the images before the window is shown
+        smileIcon = new LazyImageIcon(smileURL);
+        sadIcon = new LazyImageIcon(sadURL);
+        tongueIcon = new LazyImageIcon(tongueURL);
+        teethIcon = new LazyImageIcon(teethURL);
+        winkIcon = new LazyImageIcon(winkURL);
+        omgIcon = new LazyImageIcon(omgURL);
+        angryIcon = new LazyImageIcon(angryURL);
+        confusedIcon = new LazyImageIcon(confusedURL);
+        cryIcon = new LazyImageIcon(cryURL);
+        embarrassedIcon = new LazyImageIcon(embarrassedURL);
+        shadeIcon = new LazyImageIcon(shadeURL);
 
-        kouNormal16Icon = new ImageIcon(kouNorm16URL);
-        kouNormal20Icon = new ImageIcon(kouNorm20URL);
-        kouNormal24Icon = new ImageIcon(kouNorm24URL);
-        kouNormal32Icon = new ImageIcon(kouNorm32URL);
+        kouNormal16Icon = new LazyImageIcon(kouNorm16URL);
+        kouNormal20Icon = new LazyImageIcon(kouNorm20URL);
+        kouNormal24Icon = new LazyImageIcon(kouNorm24URL);
+        kouNormal32Icon = new LazyImageIcon(kouNorm32URL);
 
-        kouNormalActivity16Icon = new ImageIcon(kouNormAct16URL);
-        kouNormalActivity20Icon = new ImageIcon(kouNormAct20URL);
-        kouNormalActivity24Icon = new ImageIcon(kouNormAct24URL);
-        kouNormalActivity32Icon = new ImageIcon(kouNormAct32URL);
+        kouNormalActivity16Icon = new LazyImageIcon(kouNormAct16URL);
+        kouNormalActivity20Icon = new LazyImageIcon(kouNormAct20URL);
+        kouNormalActivity24Icon = new LazyImageIcon(kouNormAct24URL);
+        kouNormalActivity32Icon = new LazyImageIcon(kouNormAct32URL);
 
-        kouAway16Icon = new ImageIcon(kouAway16URL);
-        kouAway20Icon = new ImageIcon(kouAway20URL);
-        kouAway24Icon = new ImageIcon(kouAway24URL);
-        kouAway32Icon = new ImageIcon(kouAway32URL);
+        kouAway16Icon = new LazyImageIcon(kouAway16URL);
+        kouAway20Icon = new LazyImageIcon(kouAway20URL);
+        kouAway24Icon = new LazyImageIcon(kouAway24URL);
+        kouAway32Icon = new LazyImageIcon(kouAway32URL);
 
-        kouAwayActivity16Icon = new ImageIcon(kouAwayAct16URL);
-        kouAwayActivity20Icon = new ImageIcon(kouAwayAct20URL);
-        kouAwayActivity24Icon = new ImageIcon(kouAwayAct24URL);
-        kouAwayActivity32Icon = new ImageIcon(kouAwayAct32URL);
+        kouAwayActivity16Icon = new LazyImageIcon(kouAwayAct16URL);
+        kouAwayActivity20Icon = new LazyImageIcon(kouAwayAct20URL);
+        kouAwayActivity24Icon = new LazyImageIcon(kouAwayAct24URL);
+        kouAwayActivity32Icon = new LazyImageIcon(kouAwayAct32URL);
 
-        envelopeIcon = new ImageIcon(envelopeURL);
-        dotIcon = new ImageIcon(dotURL);
+        envelopeIcon = new LazyImageIcon(envelopeURL);
+        dotIcon = new LazyImageIcon(dotURL);
     }
 
     /**
@@ -273,7 +276,7 @@ public class ImageLoader {
      * @return The smileIcon.
      */
     public ImageIcon getSmileIcon() {
-        return smileIcon;
+        return smileIcon.get();
     }
 
     /**
@@ -282,7 +285,7 @@ public class ImageLoader {
      * @return The sadIcon.
      */
     public ImageIcon getSadIcon() {
-        return sadIcon;
+        return sadIcon.get();
     }
 
     /**
@@ -291,7 +294,7 @@ public class ImageLoader {
      * @return The tongueIcon.
      */
     public ImageIcon getTongueIcon() {
-        return tongueIcon;
+        return tongueIcon.get();
     }
 
     /**
@@ -300,7 +303,7 @@ public class ImageLoader {
      * @return The teethIcon.
      */
     public ImageIcon getTeethIcon() {
-        return teethIcon;
+        return teethIcon.get();
     }
 
     /**
@@ -309,7 +312,7 @@ public class ImageLoader {
      * @return The winkIcon.
      */
     public ImageIcon getWinkIcon() {
-        return winkIcon;
+        return winkIcon.get();
     }
 
     /**
@@ -318,7 +321,7 @@ public class ImageLoader {
      * @return The omgIcon.
      */
     public ImageIcon getOmgIcon() {
-        return omgIcon;
+        return omgIcon.get();
     }
 
     /**
@@ -327,7 +330,7 @@ public class ImageLoader {
      * @return The angryIcon.
      */
     public ImageIcon getAngryIcon() {
-        return angryIcon;
+        return angryIcon.get();
     }
 
     /**
@@ -336,7 +339,7 @@ public class ImageLoader {
      * @return The confusedIcon.
      */
     public ImageIcon getConfusedIcon() {
-        return confusedIcon;
+        return confusedIcon.get();
     }
 
     /**
@@ -345,7 +348,7 @@ public class ImageLoader {
      * @return The cryIcon.
      */
     public ImageIcon getCryIcon() {
-        return cryIcon;
+        return cryIcon.get();
     }
 
     /**
@@ -354,7 +357,7 @@ public class ImageLoader {
      * @return The embarrassedIcon.
      */
     public ImageIcon getEmbarrassedIcon() {
-        return embarrassedIcon;
+        return embarrassedIcon.get();
     }
 
     /**
@@ -363,7 +366,7 @@ public class ImageLoader {
      * @return The shadeIcon.
      */
     public ImageIcon getShadeIcon() {
-        return shadeIcon;
+        return shadeIcon.get();
     }
 
     /**
@@ -372,7 +375,7 @@ public class ImageLoader {
      * @return The kouNormal16Icon.
      */
     public ImageIcon getKouNormal16Icon() {
-        return kouNormal16Icon;
+        return kouNormal16Icon.get();
     }
 
     /**
@@ -381,7 +384,7 @@ public class ImageLoader {
      * @return The kouNormal20Icon.
      */
     public ImageIcon getKouNormal20Icon() {
-        return kouNormal20Icon;
+        return kouNormal20Icon.get();
     }
 
     /**
@@ -390,7 +393,7 @@ public class ImageLoader {
      * @return The kouNormal24Icon.
      */
     public ImageIcon getKouNormal24Icon() {
-        return kouNormal24Icon;
+        return kouNormal24Icon.get();
     }
 
     /**
@@ -399,7 +402,7 @@ public class ImageLoader {
      * @return The kouNormal32Icon.
      */
     public ImageIcon getKouNormal32Icon() {
-        return kouNormal32Icon;
+        return kouNormal32Icon.get();
     }
 
     /**
@@ -408,7 +411,7 @@ public class ImageLoader {
      * @return The kouNormalActivity16Icon.
      */
     public ImageIcon getKouNormalActivity16Icon() {
-        return kouNormalActivity16Icon;
+        return kouNormalActivity16Icon.get();
     }
 
     /**
@@ -417,7 +420,7 @@ public class ImageLoader {
      * @return The kouNormalActivity20Icon.
      */
     public ImageIcon getKouNormalActivity20Icon() {
-        return kouNormalActivity20Icon;
+        return kouNormalActivity20Icon.get();
     }
 
     /**
@@ -426,7 +429,7 @@ public class ImageLoader {
      * @return The kouNormalActivity24Icon.
      */
     public ImageIcon getKouNormalActivity24Icon() {
-        return kouNormalActivity24Icon;
+        return kouNormalActivity24Icon.get();
     }
 
     /**
@@ -435,7 +438,7 @@ public class ImageLoader {
      * @return The kouNormalActivity32Icon.
      */
     public ImageIcon getKouNormalActivity32Icon() {
-        return kouNormalActivity32Icon;
+        return kouNormalActivity32Icon.get();
     }
 
     /**
@@ -444,7 +447,7 @@ public class ImageLoader {
      * @return The kouAway16Icon.
      */
     public ImageIcon getKouAway16Icon() {
-        return kouAway16Icon;
+        return kouAway16Icon.get();
     }
 
     /**
@@ -453,7 +456,7 @@ public class ImageLoader {
      * @return The kouAway20Icon.
      */
     public ImageIcon getKouAway20Icon() {
-        return kouAway20Icon;
+        return kouAway20Icon.get();
     }
 
     /**
@@ -462,7 +465,7 @@ public class ImageLoader {
      * @return The kouAway24Icon.
      */
     public ImageIcon getKouAway24Icon() {
-        return kouAway24Icon;
+        return kouAway24Icon.get();
     }
 
     /**
@@ -471,7 +474,7 @@ public class ImageLoader {
      * @return The kouAway32Icon.
      */
     public ImageIcon getKouAway32Icon() {
-        return kouAway32Icon;
+        return kouAway32Icon.get();
     }
 
     /**
@@ -480,7 +483,7 @@ public class ImageLoader {
      * @return The kouAwayActivity16Icon.
      */
     public ImageIcon getKouAwayActivity16Icon() {
-        return kouAwayActivity16Icon;
+        return kouAwayActivity16Icon.get();
     }
 
     /**
@@ -489,7 +492,7 @@ public class ImageLoader {
      * @return The kouAwayActivity20Icon.
      */
     public ImageIcon getKouAwayActivity20Icon() {
-        return kouAwayActivity20Icon;
+        return kouAwayActivity20Icon.get();
     }
 
     /**
@@ -498,7 +501,7 @@ public class ImageLoader {
      * @return The kouAwayActivity24Icon.
      */
     public ImageIcon getKouAwayActivity24Icon() {
-        return kouAwayActivity24Icon;
+        return kouAwayActivity24Icon.get();
     }
 
     /**
@@ -507,7 +510,7 @@ public class ImageLoader {
      * @return The kouAwayActivity32Icon.
      */
     public ImageIcon getKouAwayActivity32Icon() {
-        return kouAwayActivity32Icon;
+        return kouAwayActivity32Icon.get();
     }
 
     /**
@@ -516,7 +519,7 @@ public class ImageLoader {
      * @return The envelopeIcon.
      */
     public ImageIcon getEnvelopeIcon() {
-        return envelopeIcon;
+        return envelopeIcon.get();
     }
 
     /**
@@ -525,6 +528,33 @@ public class ImageLoader {
      * @return The dotIcon.
      */
     public ImageIcon getDotIcon() {
-        return dotIcon;
+        return dotIcon.get();
+    }
+
+    /**
+     * Holds the location of an image, and creates the icon the first time it's needed.
+     */
+    private static final class LazyImageIcon {
+
+        private final URL url;
+
+        private ImageIcon icon;
+
+        private LazyImageIcon(final URL url) {
+            this.url = url;
+        }
+
+        /**
+         * Gets the icon, and creates it if this is the first time.
+         *
+         * @return The icon.
+         */
+        public synchronized ImageIcon get() {
+            if (icon == null) {
+                icon = new ImageIcon(url);
+            }
+
+            return icon;
+        }
     }
 }
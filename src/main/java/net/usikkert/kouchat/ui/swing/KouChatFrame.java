@@ -139,6 +139,7 @@ public class KouChatFrame extends JFrame implements WindowListener, FocusListene
         compHandler.setMenuBar(menuBar);
 
         mediator = new SwingMediator(compHandler, imageLoader, settings, swingMessages, coreMessages, errorHandler);
+        mediator.prepareNetwork();
 
         buttonP.setMediator(mediator);
         sideP.setMediator(mediator);
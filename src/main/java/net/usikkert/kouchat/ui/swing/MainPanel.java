@@ -55,9 +55,13 @@ import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.autocomplete.AutoCompleter;
 import net.usikkert.kouchat.misc.CommandHistory;
 import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.net.MessageTrace;
+import net.usikkert.kouchat.net.MessageTraceStage;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.ui.ChatWindow;
 import net.usikkert.kouchat.ui.swing.messages.SwingMessages;
+import net.usikkert.kouchat.util.LatencyHistogram;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.Validate;
 
 /**
@@ -73,6 +77,10 @@ public class MainPanel extends JPanel implements ActionListener, CaretListener,
 
     private static final Logger LOG = Logger.getLogger(MainPanel.class.getName());
 
+    /** The time from a message is added until it's shown in the chat area, including the wait for the EDT. */
+    private static final LatencyHistogram APPEND_LATENCY =
+            Metrics.getSharedMetrics().getHistogram("kouchat_chat_append_seconds");
+
     private final JScrollPane chatSP;
     private final JTextPane chatTP;
     private final MutableAttributeSet chatAttr;
@@ -116,11 +124,8 @@ public class MainPanel extends JPanel implements ActionListener, CaretListener,
         chatTP.addMouseListener(urlML);
         chatTP.addMouseMotionListener(urlML);
 
-        final DocumentFilterList documentFilterList = new DocumentFilterList();
-        documentFilterList.addDocumentFilter(new URLDocumentFilter(false));
-        documentFilterList.addDocumentFilter(new SmileyDocumentFilter(false, imageLoader, settings));
         final AbstractDocument doc = (AbstractDocument) chatDoc;
-        doc.setDocumentFilter(documentFilterList);
+        doc.setDocumentFilter(new HighlightDocumentFilter(true, imageLoader, settings));
 
         msgTF = new JTextField();
         msgTF.addActionListener(this);
@@ -132,7 +137,7 @@ public class MainPanel extends JPanel implements ActionListener, CaretListener,
                 new HashSet<AWTKeyStroke>());
 
         final AbstractDocument msgDoc = (AbstractDocument) msgTF.getDocument();
-        msgDoc.setDocumentFilter(new SizeDocumentFilter(Constants.MESSAGE_MAX_BYTES));
+        msgDoc.setDocumentFilter(new SizeDocumentFilter(Constants.CHAT_MESSAGE_MAX_BYTES));
 
         add(chatSP, BorderLayout.CENTER);
         add(sideP, BorderLayout.EAST);
@@ -171,6 +176,9 @@ public class MainPanel extends JPanel implements ActionListener, CaretListener,
      */
     @Override
     public void appendToChat(final String message, final int color) {
+        final long appendStarted = System.nanoTime();
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -178,6 +186,11 @@ public class MainPanel extends JPanel implements ActionListener, CaretListener,
                     StyleConstants.setForeground(chatAttr, new Color(color));
                     chatDoc.insertString(chatDoc.getLength(), message + "\n", chatAttr);
                     chatTP.setCaretPosition(chatDoc.getLength());
+                    APPEND_LATENCY.record(System.nanoTime() - appendStarted);
+
+                    if (trace != null) {
+                        trace.record(MessageTraceStage.DISPLAYED);
+                    }
                 }
 
                 catch (final BadLocationException e) {
@@ -60,6 +60,12 @@ public interface Mediator {
      */
     void setTopic();
 
+    /**
+     * Starts looking for the network to use in the background, while the rest
+     * of the user interface is created.
+     */
+    void prepareNetwork();
+
     /**
      * Logs on to the network.
      */
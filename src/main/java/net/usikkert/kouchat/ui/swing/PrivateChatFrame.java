@@ -147,11 +147,8 @@ public class PrivateChatFrame extends JFrame implements ActionListener, KeyListe
         chatTP.addMouseListener(urlML);
         chatTP.addMouseMotionListener(urlML);
 
-        final DocumentFilterList documentFilterList = new DocumentFilterList();
-        documentFilterList.addDocumentFilter(new URLDocumentFilter(false));
-        documentFilterList.addDocumentFilter(new SmileyDocumentFilter(false, imageLoader, settings));
         final AbstractDocument doc = (AbstractDocument) chatDoc;
-        doc.setDocumentFilter(documentFilterList);
+        doc.setDocumentFilter(new HighlightDocumentFilter(true, imageLoader, settings));
 
         msgTF = new JTextField();
         msgTF.addActionListener(this);
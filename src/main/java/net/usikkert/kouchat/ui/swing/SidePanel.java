@@ -120,6 +120,7 @@ public class SidePanel extends JPanel implements ActionListener, MouseListener,
         userL.addMouseListener(this);
         userL.setTransferHandler(fileTransferHandler);
         userL.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        userL.setPrototypeCellValue(createPrototypeUser());
         final JScrollPane userSP = new JScrollPane(userL);
 
         add(userSP, BorderLayout.CENTER);
@@ -145,6 +146,23 @@ public class SidePanel extends JPanel implements ActionListener, MouseListener,
         me = settings.getMe();
     }
 
+    /**
+     * Creates a user with the widest possible row in the user list.
+     *
+     * <p>Used as the prototype cell value, so all the rows get the same fixed size.
+     * Without a fixed size the list has to render every single row to calculate its size
+     * each time a user changes, and not just the visible rows.</p>
+     *
+     * @return A user to use as prototype.
+     */
+    private User createPrototypeUser() {
+        final User prototypeUser = new User("WWWWWWWWWW", 0);
+        prototypeUser.setMe(true);
+        prototypeUser.setWriting(true);
+
+        return prototypeUser;
+    }
+
     /**
      * Sets the mediator.
      *
@@ -23,6 +23,7 @@
 package net.usikkert.kouchat.ui.swing;
 
 import java.io.File;
+import java.util.Arrays;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
@@ -39,6 +40,7 @@ import net.usikkert.kouchat.misc.SoundBeeper;
 import net.usikkert.kouchat.misc.Topic;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.misc.UserList;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileSender;
 import net.usikkert.kouchat.net.FileToSend;
@@ -228,6 +230,14 @@ public class SwingMediator implements Mediator, UserInterface {
         mainP.getMsgTF().requestFocusInWindow();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void prepareNetwork() {
+        controller.prepareNetwork();
+    }
+
     /**
      * Logs on to the network and activates jmx beans.
      */
@@ -383,6 +393,8 @@ public class SwingMediator implements Mediator, UserInterface {
 
         else {
             final JFileChooser chooser = uiTools.createFileChooser(swingMessages.getMessage("swing.sendFile.chooseFileDialog.title"));
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            chooser.setMultiSelectionEnabled(true);
 
             if (selectedFile != null && selectedFile.exists()) {
                 chooser.setSelectedFile(selectedFile);
@@ -391,17 +403,32 @@ public class SwingMediator implements Mediator, UserInterface {
             final int returnVal = chooser.showOpenDialog(null);
 
             if (returnVal == JFileChooser.APPROVE_OPTION) {
-                final File file = chooser.getSelectedFile().getAbsoluteFile();
+                final File[] selectedFiles = chooser.getSelectedFiles();
 
-                if (file.exists() && file.isFile()) {
-                    try {
-                        cmdParser.sendFile(user, new FileToSend(file));
+                try {
+                    // Several files are sent together, in a folder named after the folder they are in
+                    if (selectedFiles != null && selectedFiles.length > 1) {
+                        final File parent = selectedFiles[0].getAbsoluteFile().getParentFile();
+                        final String name = parent != null && !parent.getName().isEmpty() ? parent.getName() : "files";
+                        cmdParser.sendFolder(user, new FileBatch(name, Arrays.asList(selectedFiles)));
                     }
 
-                    catch (final CommandException e) {
-                        uiTools.showWarningMessage(e.getMessage(), swingMessages.getMessage("swing.sendFile.warningPopup.generalError.title"));
+                    else {
+                        final File file = chooser.getSelectedFile().getAbsoluteFile();
+
+                        if (file.exists() && file.isFile()) {
+                            cmdParser.sendFile(user, new FileToSend(file));
+                        }
+
+                        else if (file.isDirectory()) {
+                            cmdParser.sendFolder(user, new FileBatch(file));
+                        }
                     }
                 }
+
+                catch (final CommandException e) {
+                    uiTools.showWarningMessage(e.getMessage(), swingMessages.getMessage("swing.sendFile.warningPopup.generalError.title"));
+                }
             }
         }
     }
@@ -289,7 +289,7 @@ public class TransferDialog extends JDialog implements FileTransferListener, Act
             mediator.transferCancelled(this);
         } else if (event.getSource() == openB) {
             final FileReceiver fileReceiver = (FileReceiver) fileTransfer;
-            final File folder = fileReceiver.getFile().getParentFile();
+            final File folder = fileReceiver.isFolder() ? fileReceiver.getFile() : fileReceiver.getFile().getParentFile();
             uiTools.open(folder, settings, errorHandler, swingMessages);
         }
     }
@@ -26,6 +26,9 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.Insets;
+import java.awt.Rectangle;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +60,9 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
     /** Max size of the vertical insets in the list element border. */
     private static final int MAX_VERT_SIZE = 3;
 
+    /** Max number of nick names to keep formatted text for. */
+    private static final int MAX_CACHED_NICKS = 1024;
+
     /** The envelope icon object. */
     private final ImageIcon envelope;
 
@@ -71,6 +77,21 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
 
     private final SwingMessages swingMessages;
 
+    /** Text and tool tip for users that are writing, by nick name. */
+    private final Map<String, String[]> writingTextCache;
+
+    /** Tool tip for users that are away, by nick name. */
+    private final Map<String, String> awayToolTipCache;
+
+    /** The list font the plain and bold fonts are derived from. */
+    private Font listFont;
+
+    /** Plain version of the list font. */
+    private Font plainFont;
+
+    /** Bold version of the list font. */
+    private Font boldFont;
+
     /**
      * Default constructor.
      *
@@ -83,6 +104,9 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
 
         this.swingMessages = swingMessages;
 
+        writingTextCache = new BoundedCache<>();
+        awayToolTipCache = new BoundedCache<>();
+
         envelope = imageLoader.getEnvelopeIcon();
         dot = imageLoader.getDotIcon();
 
@@ -136,10 +160,12 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
         final User user = (User) value;
 
         if (user != null) {
+            updateFonts(list.getFont());
+
             if (user.isMe()) {
-                setFont(list.getFont().deriveFont(Font.BOLD));
+                setFont(boldFont);
             } else {
-                setFont(list.getFont().deriveFont(Font.PLAIN));
+                setFont(plainFont);
             }
 
             if (user.isAway()) {
@@ -152,18 +178,21 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
                 setIcon(dot);
             }
 
+            final String nick = user.getNick();
+
             if (user.isWriting()) {
-                setText(swingMessages.getMessage("swing.userList.userWriting.text", user.getNick()));
-                setToolTipText(swingMessages.getMessage("swing.userList.userWriting.tooltip", user.getNick()));
+                final String[] writingText = getWritingText(nick);
+                setText(writingText[0]);
+                updateToolTipText(writingText[1]);
             }
 
             else {
-                setText(user.getNick());
+                setText(nick);
 
                 if (user.isAway()) {
-                    setToolTipText(swingMessages.getMessage("swing.userList.userAway.tooltip", user.getNick()));
+                    updateToolTipText(getAwayToolTip(nick));
                 } else {
-                    setToolTipText(user.getNick());
+                    updateToolTipText(nick);
                 }
             }
         }
@@ -178,6 +207,71 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
         return this;
     }
 
+    /**
+     * Derives new plain and bold fonts if the list font has changed since last time.
+     *
+     * @param font The current list font.
+     */
+    private void updateFonts(final Font font) {
+        if (font != listFont) {
+            listFont = font;
+            plainFont = font.deriveFont(Font.PLAIN);
+            boldFont = font.deriveFont(Font.BOLD);
+        }
+    }
+
+    /**
+     * Gets the text and tool tip to show for a user that is writing.
+     * The messages are only formatted the first time for each nick name.
+     *
+     * @param nick The nick name of the user.
+     * @return An array with the text, and the tool tip.
+     */
+    private String[] getWritingText(final String nick) {
+        String[] writingText = writingTextCache.get(nick);
+
+        if (writingText == null) {
+            writingText = new String[] {
+                    swingMessages.getMessage("swing.userList.userWriting.text", nick),
+                    swingMessages.getMessage("swing.userList.userWriting.tooltip", nick)
+            };
+
+            writingTextCache.put(nick, writingText);
+        }
+
+        return writingText;
+    }
+
+    /**
+     * Gets the tool tip to show for a user that is away.
+     * The message is only formatted the first time for each nick name.
+     *
+     * @param nick The nick name of the user.
+     * @return The tool tip.
+     */
+    private String getAwayToolTip(final String nick) {
+        String awayToolTip = awayToolTipCache.get(nick);
+
+        if (awayToolTip == null) {
+            awayToolTip = swingMessages.getMessage("swing.userList.userAway.tooltip", nick);
+            awayToolTipCache.put(nick, awayToolTip);
+        }
+
+        return awayToolTip;
+    }
+
+    /**
+     * Sets the tool tip, but only if it's different from the current tool tip,
+     * as setting it registers the component with the tool tip manager again.
+     *
+     * @param toolTipText The tool tip to set.
+     */
+    private void updateToolTipText(final String toolTipText) {
+        if (!toolTipText.equals(getToolTipText())) {
+            setToolTipText(toolTipText);
+        }
+    }
+
     /**
      * Copied from {@link javax.swing.DefaultListCellRenderer#isOpaque()}
      * to fix the gray background with some look and feels like GTK+ and Nimbus.
@@ -202,4 +296,79 @@ public class UserListCellRenderer extends JLabel implements ListCellRenderer {
 
         return !colorMatch && super.isOpaque();
     }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     * The renderer is only used for painting, so it never needs to be validated.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void validate() {
+
+    }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidate() {
+
+    }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void repaint() {
+
+    }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void revalidate() {
+
+    }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void repaint(final long tm, final int x, final int y, final int width, final int height) {
+
+    }
+
+    /**
+     * Overridden for performance reasons, like in {@link javax.swing.DefaultListCellRenderer}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void repaint(final Rectangle r) {
+
+    }
+
+    /**
+     * A map that forgets the oldest entries when it gets too big,
+     * so nick names of users that are long gone don't stay around forever.
+     *
+     * @param <V> The type of value to cache.
+     */
+    private static final class BoundedCache<V> extends LinkedHashMap<String, V> {
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > MAX_CACHED_NICKS;
+        }
+    }
 }
@@ -22,24 +22,53 @@
 
 package net.usikkert.kouchat.ui.swing;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.swing.AbstractListModel;
-import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import net.usikkert.kouchat.event.UserListListener;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.misc.UserList;
 
 /**
- * This is the list model for the user list. It's just a facade above
- * the real list containing the users, so it can deliver events on changes.
+ * This is the list model for the user list. It keeps a snapshot of the real list
+ * containing the users, so it can deliver events on changes.
+ *
+ * <p>Changes to the real list are not sent to the ui one by one. They are collected, and
+ * applied together at most once per frame. The new snapshot is then compared to the previous one,
+ * and only the rows that actually moved or changed are sent as events. With many users online,
+ * a burst of changes like users starting and stopping writing results in a single repaint
+ * of the affected rows.</p>
  *
  * @author Christian Ihle
  */
 public class UserListModel extends AbstractListModel implements UserListListener {
 
+    /** Number of milliseconds to collect changes before updating the ui. */
+    private static final int FRAME_DELAY = 40;
+
     /** The real list of users. */
     private final UserList userList;
 
+    /** Starts the update of the snapshot when the frame delay is over. */
+    private final Timer frameTimer;
+
+    /** Users that have changed since the last update, and need to be repainted. */
+    private final Set<User> changedUsers;
+
+    /** The users as shown in the ui. Only used from the event dispatch thread. */
+    private List<User> snapshot;
+
+    /** If users have been added or removed since the last update. */
+    private boolean structureChanged;
+
     /**
      * Constructor. Adds this list model as a listener for events
      * from the real user list.
@@ -48,6 +77,18 @@ public class UserListModel extends AbstractListModel implements UserListListener
      */
     public UserListModel(final UserList userList) {
         this.userList = userList;
+
+        changedUsers = new HashSet<>();
+        snapshot = copyUserList();
+
+        frameTimer = new Timer(FRAME_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                updateSnapshot();
+            }
+        });
+
+        frameTimer.setRepeats(false);
         userList.addUserListListener(this);
     }
 
@@ -58,7 +99,11 @@ public class UserListModel extends AbstractListModel implements UserListListener
      */
     @Override
     public User getElementAt(final int index) {
-        return userList.get(index);
+        if (index < snapshot.size()) {
+            return snapshot.get(index);
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -68,51 +113,162 @@ public class UserListModel extends AbstractListModel implements UserListListener
      */
     @Override
     public int getSize() {
-        return userList.size();
+        return snapshot.size();
     }
 
     /**
-     * Sends a fireIntervalAdded() event.
+     * Registers that a user has been added, to be shown in the next update.
      *
      * {@inheritDoc}
      */
     @Override
     public void userAdded(final int pos, final User user) {
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                fireIntervalAdded(this, pos, pos);
-            }
-        });
+        synchronized (changedUsers) {
+            structureChanged = true;
+        }
+
+        scheduleUpdate();
     }
 
     /**
-     * Sends a fireContentsChanged() event.
+     * Registers that a user has changed, to be repainted in the next update.
      *
      * {@inheritDoc}
      */
     @Override
     public void userChanged(final int pos, final User user) {
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                fireContentsChanged(this, pos, pos);
-            }
-        });
+        synchronized (changedUsers) {
+            changedUsers.add(user);
+
+            // The user could have moved, if the nick name changed
+            structureChanged = true;
+        }
+
+        scheduleUpdate();
     }
 
     /**
-     * Sends a fireIntervalRemoved() event.
+     * Registers that a user has been removed, to be removed in the next update.
      *
      * {@inheritDoc}
      */
     @Override
     public void userRemoved(final int pos, final User user) {
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                fireIntervalRemoved(this, pos, pos);
+        synchronized (changedUsers) {
+            structureChanged = true;
+        }
+
+        scheduleUpdate();
+    }
+
+    /**
+     * Starts the frame timer, unless an update is already waiting.
+     */
+    private void scheduleUpdate() {
+        if (!frameTimer.isRunning()) {
+            frameTimer.start();
+        }
+    }
+
+    /**
+     * Compares the real user list with the snapshot, and fires events for the rows that differ.
+     *
+     * <p>The rows before and after the part of the list that differs are left alone,
+     * so a single added or removed user gives a single added or removed event, and
+     * the selection in the list stays on the same user. Users that only changed
+     * their state are repainted in place.</p>
+     *
+     * <p>Must be called on the event dispatch thread.</p>
+     */
+    protected void updateSnapshot() {
+        final Set<User> changed;
+        final boolean compareStructure;
+
+        synchronized (changedUsers) {
+            changed = new HashSet<>(changedUsers);
+            compareStructure = structureChanged;
+            changedUsers.clear();
+            structureChanged = false;
+        }
+
+        final List<User> oldSnapshot = snapshot;
+        final List<User> newSnapshot;
+
+        if (compareStructure) {
+            newSnapshot = copyUserList();
+        } else {
+            newSnapshot = oldSnapshot;
+        }
+
+        final int oldSize = oldSnapshot.size();
+        final int newSize = newSnapshot.size();
+
+        int prefix = 0;
+
+        while (prefix < oldSize && prefix < newSize && oldSnapshot.get(prefix) == newSnapshot.get(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+
+        while (suffix < oldSize - prefix && suffix < newSize - prefix &&
+                oldSnapshot.get(oldSize - 1 - suffix) == newSnapshot.get(newSize - 1 - suffix)) {
+            suffix++;
+        }
+
+        final int oldChangedCount = oldSize - prefix - suffix;
+        final int newChangedCount = newSize - prefix - suffix;
+
+        snapshot = newSnapshot;
+
+        if (oldChangedCount > newChangedCount) {
+            fireIntervalRemoved(this, prefix + newChangedCount, prefix + oldChangedCount - 1);
+        } else if (newChangedCount > oldChangedCount) {
+            fireIntervalAdded(this, prefix + oldChangedCount, prefix + newChangedCount - 1);
+        }
+
+        int firstChanged = -1;
+        int lastChanged = -1;
+
+        if (Math.min(oldChangedCount, newChangedCount) > 0) {
+            firstChanged = prefix;
+            lastChanged = prefix + Math.min(oldChangedCount, newChangedCount) - 1;
+        }
+
+        if (!changed.isEmpty()) {
+            for (int index = 0; index < newSize; index++) {
+                if (changed.contains(newSnapshot.get(index))) {
+                    if (firstChanged == -1 || index < firstChanged) {
+                        firstChanged = index;
+                    }
+
+                    lastChanged = Math.max(lastChanged, index);
+                }
             }
-        });
+        }
+
+        if (firstChanged != -1) {
+            fireContentsChanged(this, firstChanged, lastChanged);
+        }
+    }
+
+    /**
+     * Creates a copy of the real user list.
+     *
+     * @return The copy.
+     */
+    private List<User> copyUserList() {
+        final int size = userList.size();
+        final List<User> copy = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            final User user = userList.get(i);
+
+            if (user != null) {
+                copy.add(user);
+            }
+        }
+
+        return Collections.unmodifiableList(copy);
     }
 }
@@ -0,0 +1,274 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds all occurrences of a fixed set of keywords in a text in a single pass,
+ * using the Aho-Corasick algorithm.
+ *
+ * <p>The automaton is built once in the constructor, and can be shared between threads
+ * since it's never modified after that. Matching is linear in the length of the text,
+ * regardless of the number of keywords.</p>
+ *
+ * @author Christian Ihle
+ */
+public class AhoCorasickMatcher {
+
+    /** The root of the keyword trie. */
+    private final Node root;
+
+    /** The keywords to match, indexed by their id. */
+    private final String[] keywords;
+
+    /**
+     * Constructor. Builds the automaton for the keywords.
+     *
+     * @param keywords The keywords to find in texts. The order decides the keyword index.
+     */
+    public AhoCorasickMatcher(final Collection<String> keywords) {
+        Validate.notNull(keywords, "Keywords can not be null");
+
+        this.keywords = keywords.toArray(new String[keywords.size()]);
+        root = new Node();
+
+        for (int i = 0; i < this.keywords.length; i++) {
+            Validate.notEmpty(this.keywords[i], "Keyword can not be empty");
+            addKeyword(this.keywords[i], i);
+        }
+
+        buildFailureLinks();
+    }
+
+    /**
+     * Scans through the text once, and notifies the listener about every keyword found,
+     * in the order of where the keywords end in the text.
+     *
+     * @param text The text to scan.
+     * @param listener The listener to notify about matches.
+     */
+    public void findAll(final String text, final MatchListener listener) {
+        Validate.notNull(text, "Text can not be null");
+        Validate.notNull(listener, "Listener can not be null");
+
+        Node state = root;
+
+        for (int position = 0; position < text.length(); position++) {
+            final char character = text.charAt(position);
+
+            while (state != root && state.getChild(character) == null) {
+                state = state.failure;
+            }
+
+            final Node next = state.getChild(character);
+
+            if (next != null) {
+                state = next;
+            }
+
+            for (Node output = state; output != root; output = output.output) {
+                if (output.keywordIndex != -1) {
+                    final String keyword = keywords[output.keywordIndex];
+                    listener.keywordFound(output.keywordIndex, position - keyword.length() + 1, position + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the keyword with the specified index.
+     *
+     * @param keywordIndex The index of the keyword, as given to the constructor.
+     * @return The keyword.
+     */
+    public String getKeyword(final int keywordIndex) {
+        return keywords[keywordIndex];
+    }
+
+    /**
+     * Adds the keyword to the trie, creating new nodes where necessary.
+     *
+     * @param keyword The keyword to add.
+     * @param keywordIndex The index of the keyword.
+     */
+    private void addKeyword(final String keyword, final int keywordIndex) {
+        Node node = root;
+
+        for (int i = 0; i < keyword.length(); i++) {
+            final char character = keyword.charAt(i);
+            Node child = node.getChild(character);
+
+            if (child == null) {
+                child = node.addChild(character);
+            }
+
+            node = child;
+        }
+
+        node.keywordIndex = keywordIndex;
+    }
+
+    /**
+     * Does a breadth first walk through the trie to set the failure link of every node
+     * to the longest proper suffix that is also in the trie, and the output link to the
+     * closest suffix that ends a keyword.
+     */
+    private void buildFailureLinks() {
+        final Queue<Node> queue = new LinkedList<>();
+        root.failure = root;
+        root.output = root;
+
+        for (final Node child : root.getChildren()) {
+            child.failure = root;
+            child.output = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            final Node node = queue.remove();
+
+            for (int i = 0; i < node.childCount; i++) {
+                final char character = node.childKeys[i];
+                final Node child = node.children[i];
+                Node failure = node.failure;
+
+                while (failure != root && failure.getChild(character) == null) {
+                    failure = failure.failure;
+                }
+
+                final Node failureChild = failure.getChild(character);
+
+                if (failureChild != null && failureChild != child) {
+                    child.failure = failureChild;
+                } else {
+                    child.failure = root;
+                }
+
+                if (child.failure.keywordIndex != -1) {
+                    child.output = child.failure;
+                } else {
+                    child.output = child.failure.output;
+                }
+
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Listener for keywords found by {@link AhoCorasickMatcher#findAll(String, MatchListener)}.
+     */
+    public interface MatchListener {
+
+        /**
+         * A keyword was found in the text.
+         *
+         * @param keywordIndex The index of the keyword found.
+         * @param startPosition The position of the first character of the keyword in the text.
+         * @param stopPosition The position after the last character of the keyword in the text.
+         */
+        void keywordFound(int keywordIndex, int startPosition, int stopPosition);
+    }
+
+    /**
+     * A node in the keyword trie. The children are kept in small arrays,
+     * since most nodes only have a few of them.
+     */
+    private static final class Node {
+
+        /** The characters leading to each child, in the same order as the children. */
+        private char[] childKeys = new char[2];
+
+        /** The children of this node. */
+        private Node[] children = new Node[2];
+
+        /** Number of children in use. */
+        private int childCount;
+
+        /** The index of the keyword ending in this node, or -1 if none. */
+        private int keywordIndex = -1;
+
+        /** The node to continue from when no child matches the next character. */
+        private Node failure;
+
+        /** The closest node through the failure links that ends a keyword. */
+        private Node output;
+
+        /**
+         * Gets the child for the character.
+         *
+         * @param character The character to find the child for.
+         * @return The child, or <code>null</code> if there is none.
+         */
+        private Node getChild(final char character) {
+            for (int i = 0; i < childCount; i++) {
+                if (childKeys[i] == character) {
+                    return children[i];
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Adds a new child for the character.
+         *
+         * @param character The character leading to the new child.
+         * @return The new child.
+         */
+        private Node addChild(final char character) {
+            if (childCount == children.length) {
+                childKeys = Arrays.copyOf(childKeys, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+
+            final Node child = new Node();
+            childKeys[childCount] = character;
+            children[childCount] = child;
+            childCount++;
+
+            return child;
+        }
+
+        /**
+         * Gets the children in use.
+         *
+         * @return A new list with the children.
+         */
+        private List<Node> getChildren() {
+            final List<Node> list = new ArrayList<>(childCount);
+
+            for (int i = 0; i < childCount; i++) {
+                list.add(children[i]);
+            }
+
+            return list;
+        }
+    }
+}
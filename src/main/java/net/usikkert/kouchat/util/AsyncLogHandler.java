@@ -0,0 +1,300 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A log handler that writes the log records to another handler in a background thread,
+ * so the threads doing the logging don't have to wait for the console or a file.
+ *
+ * <p>The records are kept in a buffer with room for a limited number of records.
+ * If the buffer is full, then records below <code>INFO</code> are dropped, while records at
+ * <code>INFO</code> and above take the place of the oldest record in the buffer.
+ * Dropped records are counted in the metrics, and a warning is written when there is room again.</p>
+ *
+ * <p>The background thread writes the records in batches, and flushes the other handler after each batch
+ * instead of after every record.</p>
+ *
+ * @author Christian Ihle
+ */
+public class AsyncLogHandler extends Handler implements Runnable {
+
+    /** The default number of records the buffer has room for. */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** The maximum number of records to write before flushing. */
+    static final int MAX_BATCH_SIZE = 256;
+
+    /** How long to wait for the background thread to finish writing when closing. */
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> buffer;
+    private final Metrics metrics;
+    private final MetricGauge queueDepthGauge;
+    private final AtomicLong droppedRecordCount;
+
+    /** Makes sure only one thread at a time writes to the target, so the records keep their order. */
+    private final Object writeLock;
+
+    /** The number of dropped records the last warning was written for. Guarded by the write lock. */
+    private long reportedDroppedRecordCount;
+
+    @Nullable
+    private Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param target The handler to write the log records to.
+     * @param capacity The number of records the buffer has room for.
+     * @param metrics The metrics to count dropped records in, and show the size of the buffer in.
+     */
+    public AsyncLogHandler(final Handler target, final int capacity, final Metrics metrics) {
+        Validate.notNull(target, "Target handler can not be null");
+        Validate.notNull(metrics, "Metrics can not be null");
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+
+        this.target = target;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.metrics = metrics;
+        this.droppedRecordCount = new AtomicLong();
+        this.writeLock = new Object();
+
+        setLevel(Level.ALL);
+
+        queueDepthGauge = new MetricGauge() {
+            @Override
+            public long getValue() {
+                return buffer.size();
+            }
+        };
+
+        metrics.registerGauge("kouchat_log_queue_depth", queueDepthGauge);
+    }
+
+    /**
+     * Starts the background thread that writes the log records.
+     */
+    public synchronized void start() {
+        if (writer != null || closed) {
+            return;
+        }
+
+        writer = new Thread(this, "AsyncLogHandler");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds the log record to the buffer, for the background thread to write.
+     *
+     * <p>Records from {@link java.util.logging.Logger} find the class and method that logged them from the
+     * stack trace of the current thread, so that is done here before the record is given to another thread.</p>
+     *
+     * @param record The log record to write.
+     */
+    @Override
+    public void publish(@Nullable final LogRecord record) {
+        if (closed || record == null || !isLoggable(record)) {
+            return;
+        }
+
+        if (!(record instanceof Logger.CallerLogRecord)) {
+            record.getSourceClassName();
+        }
+
+        if (buffer.offer(record)) {
+            return;
+        }
+
+        if (record.getLevel().intValue() < Level.INFO.intValue()) {
+            countDroppedRecord(record);
+            return;
+        }
+
+        while (!buffer.offer(record)) {
+            final LogRecord oldestRecord = buffer.poll();
+
+            if (oldestRecord != null) {
+                countDroppedRecord(oldestRecord);
+            }
+        }
+    }
+
+    /**
+     * Writes all the records in the buffer to the target handler right away, and flushes it.
+     */
+    @Override
+    public void flush() {
+        final List<LogRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        synchronized (writeLock) {
+            while (buffer.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                writeBatch(batch);
+            }
+
+            reportDroppedRecords();
+            target.flush();
+        }
+    }
+
+    /**
+     * Stops the background thread, writes the records still in the buffer, and closes the target handler.
+     */
+    @Override
+    public void close() {
+        final Thread writerToStop;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            writerToStop = writer;
+            writer = null;
+        }
+
+        if (writerToStop != null) {
+            writerToStop.interrupt();
+
+            try {
+                writerToStop.join(CLOSE_TIMEOUT_MS);
+            }
+
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+        target.close();
+        metrics.removeGauge("kouchat_log_queue_depth", queueDepthGauge);
+    }
+
+    /**
+     * Waits for log records in the buffer, and writes them in batches until closed.
+     */
+    @Override
+    public void run() {
+        final List<LogRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (!closed) {
+            try {
+                final LogRecord firstRecord = buffer.poll(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+                if (firstRecord == null) {
+                    continue;
+                }
+
+                batch.add(firstRecord);
+                buffer.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                synchronized (writeLock) {
+                    writeBatch(batch);
+                    reportDroppedRecords();
+                    target.flush();
+                }
+            }
+
+            catch (final InterruptedException e) {
+                // Closing, so the rest of the buffer is written by close()
+                break;
+            }
+
+            catch (final RuntimeException e) {
+                batch.clear();
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of log records that were dropped because the buffer was full.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecordCount.get();
+    }
+
+    /**
+     * Gets the number of log records waiting in the buffer.
+     *
+     * @return The number of records in the buffer.
+     */
+    public int getBufferedRecordCount() {
+        return buffer.size();
+    }
+
+    private void writeBatch(final List<LogRecord> batch) {
+        for (final LogRecord record : batch) {
+            target.publish(record);
+        }
+
+        batch.clear();
+    }
+
+    private void countDroppedRecord(final LogRecord record) {
+        droppedRecordCount.incrementAndGet();
+        metrics.getCounter("kouchat_log_records_dropped_total", "level", record.getLevel().getName()).increment();
+    }
+
+    /**
+     * Writes a warning about records that were dropped since the last warning, if any.
+     */
+    private void reportDroppedRecords() {
+        final long currentDroppedRecordCount = droppedRecordCount.get();
+        final long newlyDroppedRecordCount = currentDroppedRecordCount - reportedDroppedRecordCount;
+
+        if (newlyDroppedRecordCount > 0) {
+            reportedDroppedRecordCount = currentDroppedRecordCount;
+
+            final LogRecord warning = new LogRecord(Level.WARNING,
+                    "Dropped " + newlyDroppedRecordCount + " log records because the log buffer was full");
+            warning.setLoggerName(AsyncLogHandler.class.getName());
+            warning.setSourceClassName(AsyncLogHandler.class.getName());
+            warning.setSourceMethodName("publish");
+
+            target.publish(warning);
+        }
+    }
+}
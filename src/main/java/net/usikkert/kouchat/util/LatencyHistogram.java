@@ -0,0 +1,172 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how long something takes, like the time from a message is received until it's shown in the chat.
+ *
+ * <p>Works like a very small HDR histogram. The durations are counted in buckets, where each power of two
+ * is split in {@link #SUB_BUCKETS} buckets of equal size. That keeps the percentiles within 25% of the real
+ * value, from nanoseconds to hours, with a fixed number of buckets.</p>
+ *
+ * <p>Can be updated from any thread without locking, so it's cheap enough to use for every message.</p>
+ *
+ * @author Christian Ihle
+ * @see Metrics
+ */
+public class LatencyHistogram {
+
+    /** Number of bits used for the buckets inside each power of two. */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    /** Number of buckets inside each power of two. */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Enough buckets for every positive long. */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration. Negative durations are recorded as 0.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+
+        buckets.incrementAndGet(getBucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMax = max.get();
+
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return The number of durations.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of all the recorded durations.
+     *
+     * @return The sum, in nanoseconds.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Gets the longest recorded duration.
+     *
+     * @return The longest duration, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the duration that the given share of the recorded durations are shorter than, or equal to.
+     * The answer is the highest value of the bucket the percentile is in, but never more than the max.
+     *
+     * @param percentile The share of the durations, from 0 to 1. Like 0.99 for the 99th percentile.
+     * @return The duration, in nanoseconds. 0 if nothing is recorded.
+     */
+    public long getPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long wanted = Math.max(1, (long) Math.ceil(percentile * total));
+        long counted = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counted += snapshot[i];
+
+            if (counted >= wanted) {
+                return Math.min(getBucketHighestValue(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Finds the bucket to count the value in. Values below {@link #SUB_BUCKETS} get a bucket each.
+     * Larger values use the position of the highest bit, and the bits right after it.
+     *
+     * @param value The value to count.
+     * @return The index of the bucket.
+     */
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the highest value that is counted in the bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The highest value in the bucket.
+     */
+    static long getBucketHighestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int highestBit = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        final int shift = highestBit - SUB_BUCKET_BITS;
+        final long lowestValue = (long) (SUB_BUCKETS + subBucket) << shift;
+
+        return lowestValue + (1L << shift) - 1;
+    }
+}
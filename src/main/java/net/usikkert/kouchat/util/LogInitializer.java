@@ -23,9 +23,11 @@
 package net.usikkert.kouchat.util;
 
 import java.util.logging.ConsoleHandler;
+import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
 
 /**
  * This class initializes log settings for the application.
@@ -33,6 +35,9 @@ import java.util.logging.Logger;
  * <p>The default level for output to the console is <code>INFO</code>,
  * but any level can be set using the <code>java.util.logging</code> JMX MBean.</p>
  *
+ * <p>The console is written to by an {@link AsyncLogHandler} in the background,
+ * so debug logging does not slow down the network threads.</p>
+ *
  * @author Christian Ihle
  */
 public class LogInitializer {
@@ -70,21 +75,28 @@ public class LogInitializer {
     }
 
     /**
-     * Enable logging of all levels with the console handler.
+     * Replaces the console handler with an asynchronous handler that logs all levels to the console.
      *
      * <br /><br />
      *
-     * This is important, because the console handler level is
+     * Logging all levels is important, because the console handler level is
      * set to <code>INFO</code> by default, which overrides the normal
      * logger level. So changing the logger level with the JMX MBean has no effect
      * without this change.
      */
     public void initHandlers() {
-        final Handler[] handlers = Logger.getLogger("").getHandlers();
+        final Logger rootLogger = Logger.getLogger("");
+        final Handler[] handlers = rootLogger.getHandlers();
 
         for (final Handler handler : handlers) {
             if (handler instanceof ConsoleHandler) {
-                handler.setLevel(Level.ALL);
+                final ConsoleStreamHandler consoleStreamHandler = new ConsoleStreamHandler(handler.getFormatter());
+                final AsyncLogHandler asyncLogHandler = new AsyncLogHandler(
+                        consoleStreamHandler, AsyncLogHandler.DEFAULT_CAPACITY, Metrics.getSharedMetrics());
+
+                rootLogger.removeHandler(handler);
+                rootLogger.addHandler(asyncLogHandler);
+                asyncLogHandler.start();
                 break;
             }
         }
@@ -97,4 +109,24 @@ public class LogInitializer {
         final Logger mainLogger = Logger.getLogger(MAIN_PACKAGE);
         mainLogger.setLevel(Level.ALL);
     }
+
+    /**
+     * Writes to the console like {@link ConsoleHandler}, but without flushing after every record,
+     * since {@link AsyncLogHandler} flushes after each batch of records.
+     */
+    private static class ConsoleStreamHandler extends StreamHandler {
+
+        ConsoleStreamHandler(final Formatter formatter) {
+            super(System.err, formatter);
+            setLevel(Level.ALL);
+        }
+
+        /**
+         * Flushes, but does not close {@link System#err}.
+         */
+        @Override
+        public void close() {
+            flush();
+        }
+    }
 }
@@ -32,20 +32,51 @@ import org.jetbrains.annotations.Nullable;
  * A wrapper around {@link java.util.logging.Logger} to provide more convenient methods for logging,
  * including message parameters.
  *
+ * <p>Nothing is done for messages with a level that is not logged. The message parameters are only formatted
+ * into the message when it's logged, and {@link #fine(String, Object)} and friends avoid creating an array for
+ * the parameters, so <code>LOG.fine("Message arrived: %s", message)</code> is cheap enough for the network threads
+ * when debug logging is off. Use {@link #isFineEnabled()} if the parameters are expensive to get.</p>
+ *
+ * <p>Fine and info messages get the class the logger was created for as the source class, without a source method,
+ * so debug logging is cheap when it's on as well. Warnings and errors also get the method that logged them.</p>
+ *
  * @author Christian Ihle
  */
 public final class Logger {
 
-    private static final int CALLING_METHOD_INDEX = 2; // Index in the stack trace to find calling method
+    private static final Object[] NO_PARAMETERS = new Object[0];
 
     private final java.util.logging.Logger logger;
+    private final String className;
 
     public static Logger getLogger(final Class<?> clazz) {
-        return new Logger(java.util.logging.Logger.getLogger(clazz.getName()));
+        return new Logger(java.util.logging.Logger.getLogger(clazz.getName()), clazz.getName());
     }
 
-    private Logger(final java.util.logging.Logger logger) {
+    private Logger(final java.util.logging.Logger logger, final String className) {
         this.logger = logger;
+        this.className = className;
+    }
+
+    public void fine(@NonNls final String message) {
+        if (logger.isLoggable(Level.FINE)) {
+            log(Level.FINE, message, NO_PARAMETERS, null);
+        }
+    }
+
+    public void fine(@NonNls final String message,
+                     @NonNls final Object messageParameter) {
+        if (logger.isLoggable(Level.FINE)) {
+            log(Level.FINE, message, new Object[] {messageParameter}, null);
+        }
+    }
+
+    public void fine(@NonNls final String message,
+                     @NonNls final Object messageParameter1,
+                     @NonNls final Object messageParameter2) {
+        if (logger.isLoggable(Level.FINE)) {
+            log(Level.FINE, message, new Object[] {messageParameter1, messageParameter2}, null);
+        }
     }
 
     public void fine(@NonNls final String message,
@@ -53,6 +84,16 @@ public final class Logger {
         log(Level.FINE, message, messageParameters, null);
     }
 
+    /**
+     * Checks if messages with level fine are logged. Only needed when the message parameters
+     * are expensive to get, since the other methods check this anyway.
+     *
+     * @return If fine messages are logged.
+     */
+    public boolean isFineEnabled() {
+        return logger.isLoggable(Level.FINE);
+    }
+
     public void info(@NonNls final String message,
                      @NonNls final Object... messageParameters) {
         log(Level.INFO, message, messageParameters, null);
@@ -63,6 +104,12 @@ public final class Logger {
         log(Level.WARNING, message, messageParameters, null);
     }
 
+    public void warning(final Throwable throwable,
+                        @NonNls final String message,
+                        @NonNls final Object... messageParameters) {
+        log(Level.WARNING, message, messageParameters, throwable);
+    }
+
     public void severe(@NonNls final String message,
                        @NonNls final Object... messageParameters) {
         log(Level.SEVERE, message, messageParameters, null);
@@ -79,18 +126,26 @@ public final class Logger {
      * have this class and method as "caller". The log manager is allowed to use optimized private APIs,
      * so this method might be slower, but logging is usually for warnings and debugging,
      * so it should not have an impact on performance during normal usage.
+     *
+     * <p>Taking a stack trace to find the caller is too slow for debug logging on the network threads,
+     * so below {@link Level#WARNING} the caller is just the class of this logger. For warnings and errors
+     * the caller is found from a stack trace, but the stack trace is only turned into
+     * {@link StackTraceElement}s if a handler actually asks for the caller.</p>
      */
     private void log(final Level level, final String message, final Object[] messageParameters,
                      final Throwable throwable) {
         if (logger.isLoggable(level)) {
             final String formattedMessage = getFormattedMessageOrNull(message, messageParameters);
-            final LogRecord logRecord = new LogRecord(level, formattedMessage);
+            final LogRecord logRecord;
 
-            final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
-            final StackTraceElement stackTraceElement = stackTrace[CALLING_METHOD_INDEX];
+            if (level.intValue() >= Level.WARNING.intValue()) {
+                logRecord = new CallerLogRecord(level, formattedMessage, new Throwable());
+            }
 
-            logRecord.setSourceMethodName(stackTraceElement.getMethodName());
-            logRecord.setSourceClassName(stackTraceElement.getClassName());
+            else {
+                logRecord = new LogRecord(level, formattedMessage);
+                logRecord.setSourceClassName(className);
+            }
 
             logRecord.setThrown(throwable);
 
@@ -106,4 +161,72 @@ public final class Logger {
 
         return String.format(message, messageParameters);
     }
+
+    /**
+     * A log record that finds the class and method that logged it the first time they are needed,
+     * using a stack trace from when the record was created.
+     */
+    static final class CallerLogRecord extends LogRecord {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Stack trace from where the record was created, or <code>null</code> when the caller is found. */
+        @Nullable
+        private transient Throwable callerStackTrace;
+
+        @Nullable
+        private String callerClassName;
+
+        @Nullable
+        private String callerMethodName;
+
+        CallerLogRecord(final Level level, @Nullable final String message, final Throwable callerStackTrace) {
+            super(level, message);
+
+            this.callerStackTrace = callerStackTrace;
+        }
+
+        @Override
+        public synchronized String getSourceClassName() {
+            findCaller();
+            return callerClassName;
+        }
+
+        @Override
+        public synchronized void setSourceClassName(final String sourceClassName) {
+            findCaller();
+            callerClassName = sourceClassName;
+        }
+
+        @Override
+        public synchronized String getSourceMethodName() {
+            findCaller();
+            return callerMethodName;
+        }
+
+        @Override
+        public synchronized void setSourceMethodName(final String sourceMethodName) {
+            findCaller();
+            callerMethodName = sourceMethodName;
+        }
+
+        /**
+         * The caller is the first method in the stack trace that is not in this logger.
+         */
+        private void findCaller() {
+            if (callerStackTrace == null) {
+                return;
+            }
+
+            for (final StackTraceElement stackTraceElement : callerStackTrace.getStackTrace()) {
+                if (!stackTraceElement.getClassName().equals(Logger.class.getName())) {
+                    callerClassName = stackTraceElement.getClassName();
+                    callerMethodName = stackTraceElement.getMethodName();
+                    break;
+                }
+            }
+
+            callerStackTrace = null;
+        }
+    }
 }
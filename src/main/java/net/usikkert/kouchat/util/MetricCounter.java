@@ -0,0 +1,63 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that only goes up, like the number of packets sent.
+ *
+ * <p>Can be updated from any thread without locking, so it's cheap enough to use for every message.</p>
+ *
+ * @author Christian Ihle
+ * @see Metrics
+ */
+public class MetricCounter {
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /**
+     * Adds to the counter.
+     *
+     * @param amount The amount to add.
+     */
+    public void add(final long amount) {
+        count.addAndGet(amount);
+    }
+
+    /**
+     * Gets the current count.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+}
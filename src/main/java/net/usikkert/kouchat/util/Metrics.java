@@ -0,0 +1,245 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Keeps the counters, histograms and gauges that measure what the application is doing,
+ * and writes them out as text in the Prometheus format.
+ *
+ * <p>There is one shared instance, so the parts of the application that measure something can
+ * look up their metrics without anyone passing the registry around. The metrics should be looked up
+ * once and kept in a field, since the lookup is a map lookup. Updating the metrics is lock-free.</p>
+ *
+ * <p>Metric names follow the Prometheus conventions, like <code>kouchat_packets_out_total</code>
+ * for counters and <code>kouchat_chat_append_seconds</code> for histograms. A name can have labels,
+ * like <code>kouchat_packets_out_total{type="MSG"}</code>.</p>
+ *
+ * @author Christian Ihle
+ */
+public class Metrics {
+
+    /** The percentiles included in the text for each histogram. */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final Metrics SHARED_METRICS = new Metrics();
+
+    private final ConcurrentMap<String, MetricCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, MetricGauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the metrics shared by the whole application.
+     *
+     * @return The shared metrics.
+     */
+    public static Metrics getSharedMetrics() {
+        return SHARED_METRICS;
+    }
+
+    /**
+     * Gets the counter with the given name, and creates it the first time.
+     *
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public MetricCounter getCounter(@NonNls final String name) {
+        Validate.notEmpty(name, "Name can not be empty");
+
+        final MetricCounter counter = counters.get(name);
+
+        if (counter != null) {
+            return counter;
+        }
+
+        final MetricCounter newCounter = new MetricCounter();
+        final MetricCounter existingCounter = counters.putIfAbsent(name, newCounter);
+
+        return existingCounter != null ? existingCounter : newCounter;
+    }
+
+    /**
+     * Gets the counter with the given name and label, and creates it the first time.
+     *
+     * @param name The name of the counter.
+     * @param labelName The name of the label, like <code>type</code>.
+     * @param labelValue The value of the label, like <code>MSG</code>.
+     * @return The counter.
+     */
+    public MetricCounter getCounter(@NonNls final String name, @NonNls final String labelName,
+                                    final String labelValue) {
+        return getCounter(withLabel(name, labelName, labelValue));
+    }
+
+    /**
+     * Gets the histogram with the given name, and creates it the first time.
+     *
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    public LatencyHistogram getHistogram(@NonNls final String name) {
+        Validate.notEmpty(name, "Name can not be empty");
+
+        final LatencyHistogram histogram = histograms.get(name);
+
+        if (histogram != null) {
+            return histogram;
+        }
+
+        final LatencyHistogram newHistogram = new LatencyHistogram();
+        final LatencyHistogram existingHistogram = histograms.putIfAbsent(name, newHistogram);
+
+        return existingHistogram != null ? existingHistogram : newHistogram;
+    }
+
+    /**
+     * Gets the histogram with the given name and label, and creates it the first time.
+     *
+     * @param name The name of the histogram.
+     * @param labelName The name of the label, like <code>stage</code>.
+     * @param labelValue The value of the label.
+     * @return The histogram.
+     */
+    public LatencyHistogram getHistogram(@NonNls final String name, @NonNls final String labelName,
+                                         final String labelValue) {
+        return getHistogram(withLabel(name, labelName, labelValue));
+    }
+
+    /**
+     * Registers a gauge to read when the metrics are written out.
+     * Replaces any gauge already registered with the same name.
+     *
+     * @param name The name of the gauge.
+     * @param gauge The gauge.
+     */
+    public void registerGauge(@NonNls final String name, final MetricGauge gauge) {
+        Validate.notEmpty(name, "Name can not be empty");
+        Validate.notNull(gauge, "Gauge can not be null");
+
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Removes a gauge, if it's still the one registered with the name.
+     * A gauge registered later with the same name is left alone.
+     *
+     * @param name The name of the gauge.
+     * @param gauge The gauge to remove.
+     */
+    public void removeGauge(@NonNls final String name, final MetricGauge gauge) {
+        gauges.remove(name, gauge);
+    }
+
+    /**
+     * Writes all the metrics as text in the Prometheus format, sorted by name.
+     * Histograms are written as summaries, with percentiles in seconds.
+     *
+     * @return The metrics as text.
+     */
+    public String toPrometheusText() {
+        final StringBuilder text = new StringBuilder();
+
+        String previousName = null;
+
+        for (final Map.Entry<String, MetricCounter> counter : new TreeMap<>(counters).entrySet()) {
+            previousName = appendType(text, counter.getKey(), "counter", previousName);
+            text.append(counter.getKey()).append(' ').append(counter.getValue().getCount()).append('\n');
+        }
+
+        for (final Map.Entry<String, MetricGauge> gauge : new TreeMap<>(gauges).entrySet()) {
+            previousName = appendType(text, gauge.getKey(), "gauge", previousName);
+            text.append(gauge.getKey()).append(' ').append(gauge.getValue().getValue()).append('\n');
+        }
+
+        for (final Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            final String name = entry.getKey();
+            final LatencyHistogram histogram = entry.getValue();
+            previousName = appendType(text, name, "summary", previousName);
+
+            for (final double percentile : PERCENTILES) {
+                text.append(withLabel(name, "quantile", String.valueOf(percentile))).append(' ')
+                    .append(toSeconds(histogram.getPercentile(percentile))).append('\n');
+            }
+
+            text.append(withSuffix(name, "_sum")).append(' ').append(toSeconds(histogram.getSum())).append('\n');
+            text.append(withSuffix(name, "_count")).append(' ').append(histogram.getCount()).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Adds a <code># TYPE</code> line before the first metric with a new name.
+     *
+     * @return The name of the metric, without labels.
+     */
+    private String appendType(final StringBuilder text, final String name, final String type,
+                              final String previousName) {
+        final String baseName = getBaseName(name);
+
+        if (!baseName.equals(previousName)) {
+            text.append("# TYPE ").append(baseName).append(' ').append(type).append('\n');
+        }
+
+        return baseName;
+    }
+
+    private static String getBaseName(final String name) {
+        final int labelStart = name.indexOf('{');
+        return labelStart == -1 ? name : name.substring(0, labelStart);
+    }
+
+    /**
+     * Adds a label to the name, next to any labels already there.
+     */
+    private static String withLabel(final String name, final String labelName, final String labelValue) {
+        final String label = labelName + "=\"" + labelValue + "\"";
+
+        if (name.endsWith("}")) {
+            return name.substring(0, name.length() - 1) + "," + label + "}";
+        }
+
+        return name + "{" + label + "}";
+    }
+
+    /**
+     * Adds a suffix to the name, before any labels.
+     */
+    private static String withSuffix(final String name, final String suffix) {
+        final String baseName = getBaseName(name);
+        return baseName + suffix + name.substring(baseName.length());
+    }
+
+    private static String toSeconds(final long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / NANOS_PER_SECOND);
+    }
+}
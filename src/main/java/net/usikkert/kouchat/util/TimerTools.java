@@ -45,4 +45,20 @@ public class TimerTools {
         final Timer delayedLogonTimer = new Timer(name);
         delayedLogonTimer.schedule(timerTask, delay);
     }
+
+    /**
+     * Schedules a specified repeating timer task with the specified delay, period and name.
+     *
+     * <p>The timer runs as a daemon thread, so the timer task must cancel itself when it's done.</p>
+     *
+     * @param name Name of the timer task thread.
+     * @param timerTask The timer task to execute.
+     * @param delay Number of milliseconds to wait before executing the timer task the first time.
+     * @param period Number of milliseconds to wait between each execution of the timer task.
+     */
+    public void scheduleRepeatingTimerTask(@NonNls final String name, final TimerTask timerTask,
+                                           final long delay, final long period) {
+        final Timer repeatingTimer = new Timer(name, true);
+        repeatingTimer.schedule(timerTask, delay, period);
+    }
 }
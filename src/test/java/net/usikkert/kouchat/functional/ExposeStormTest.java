@@ -0,0 +1,145 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.functional;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.usikkert.kouchat.event.ReceiverListener;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.net.MessageReceiver;
+import net.usikkert.kouchat.testclient.TestClient;
+import net.usikkert.kouchat.util.Tools;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Simulation of several clients on the local network, to measure how many answers
+ * a new client gets when it asks everyone to identify and send the topic.
+ *
+ * <p>Uses real multicast, so it's not run as part of the build.</p>
+ *
+ * @author Christian Ihle
+ */
+@Ignore
+@SuppressWarnings("HardCodedStringLiteral")
+public class ExposeStormTest {
+
+    private static final int NUMBER_OF_CLIENTS = 10;
+
+    private TestClient[] clients;
+    private TestClient newClient;
+    private MessageReceiver messageReceiver;
+    private MessageCounter messageCounter;
+
+    @Before
+    public void setUp() {
+        clients = new TestClient[NUMBER_OF_CLIENTS];
+
+        for (int i = 0; i < NUMBER_OF_CLIENTS; i++) {
+            clients[i] = new TestClient("Client" + i, 1000 + i);
+
+            if (i == 0) {
+                clients[i].setInitialTopic("Storm", System.currentTimeMillis());
+            }
+
+            clients[i].logon();
+        }
+
+        // Let the logon of the existing clients settle before measuring
+        Tools.sleep(3000);
+
+        messageCounter = new MessageCounter();
+        messageReceiver = new MessageReceiver(new ErrorHandler());
+        messageReceiver.registerReceiverListener(messageCounter);
+        messageReceiver.startReceiver(null);
+    }
+
+    @After
+    public void tearDown() {
+        messageReceiver.stopReceiver();
+
+        if (newClient != null) {
+            newClient.logoff();
+        }
+
+        for (final TestClient client : clients) {
+            client.logoff();
+        }
+    }
+
+    @Test
+    public void newClientShouldGetAnswerFromEachClientAndFewTopicAnswers() {
+        newClient = new TestClient("NewClient", 2000);
+        newClient.logon();
+
+        Tools.sleep(3000);
+
+        System.out.println("Messages seen after logon of new client with " + NUMBER_OF_CLIENTS +
+                                   " other clients: " + messageCounter.getCounts());
+        System.out.println("Users found by new client: " + (newClient.getNumberOfUsers() - 1) +
+                                   " of " + NUMBER_OF_CLIENTS);
+
+        // Packets can still be lost when every client runs in the same JVM, so only check the limits
+        assertTrue(messageCounter.getCount("EXPOSING") >= NUMBER_OF_CLIENTS);
+        assertTrue(messageCounter.getCount("TOPIC") <= 2);
+    }
+
+    /**
+     * Counts the messages seen on the network, by message type.
+     */
+    private static class MessageCounter implements ReceiverListener {
+
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        @Override
+        public synchronized void messageArrived(final String message, final String ipAddress) {
+            final int exclamation = message.indexOf("!");
+            final int hash = message.indexOf("#");
+
+            if (exclamation != -1 && hash > exclamation) {
+                final String type = message.substring(exclamation + 1, hash);
+                counts.put(type, getCount(type) + 1);
+            }
+        }
+
+        public synchronized int getCount(final String type) {
+            final Integer count = counts.get(type);
+
+            if (count == null) {
+                return 0;
+            }
+
+            return count;
+        }
+
+        public synchronized Map<String, Integer> getCounts() {
+            return new HashMap<>(counts);
+        }
+    }
+}
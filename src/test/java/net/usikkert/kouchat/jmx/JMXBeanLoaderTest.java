@@ -31,6 +31,7 @@ import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.net.ConnectionWorker;
+import net.usikkert.kouchat.net.TransportPolicy;
 import net.usikkert.kouchat.settings.Settings;
 
 import org.junit.Before;
@@ -48,6 +49,7 @@ public class JMXBeanLoaderTest {
     public ExpectedException expectedException = ExpectedException.none();
     private Controller controller;
     private ConnectionWorker connectionWorker;
+    private TransportPolicy transportPolicy;
     private Settings settings;
     private ErrorHandler errorHandler;
 
@@ -55,6 +57,7 @@ public class JMXBeanLoaderTest {
     public void setUp() {
         controller = mock(Controller.class);
         connectionWorker = mock(ConnectionWorker.class);
+        transportPolicy = mock(TransportPolicy.class);
         settings = mock(Settings.class);
         errorHandler = mock(ErrorHandler.class);
     }
@@ -64,7 +67,7 @@ public class JMXBeanLoaderTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("Controller can not be null");
 
-        new JMXBeanLoader(null, connectionWorker, settings, errorHandler);
+        new JMXBeanLoader(null, connectionWorker, transportPolicy, settings, errorHandler);
     }
 
     @Test
@@ -72,7 +75,15 @@ public class JMXBeanLoaderTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("ConnectionWorker can not be null");
 
-        new JMXBeanLoader(controller, null, settings, errorHandler);
+        new JMXBeanLoader(controller, null, transportPolicy, settings, errorHandler);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTransportPolicyIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Transport policy can not be null");
+
+        new JMXBeanLoader(controller, connectionWorker, null, settings, errorHandler);
     }
 
     @Test
@@ -80,7 +91,7 @@ public class JMXBeanLoaderTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("Settings can not be null");
 
-        new JMXBeanLoader(controller, connectionWorker, null, errorHandler);
+        new JMXBeanLoader(controller, connectionWorker, transportPolicy, null, errorHandler);
     }
 
     @Test
@@ -88,20 +99,23 @@ public class JMXBeanLoaderTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("Error handler can not be null");
 
-        new JMXBeanLoader(controller, connectionWorker, settings, null);
+        new JMXBeanLoader(controller, connectionWorker, transportPolicy, settings, null);
     }
 
     @Test
-    public void getJMXBeansShouldIncludeThreeBeans() {
-        final JMXBeanLoader beanLoader = new JMXBeanLoader(controller, connectionWorker, settings, errorHandler);
+    public void getJMXBeansShouldIncludeFiveBeans() {
+        final JMXBeanLoader beanLoader =
+                new JMXBeanLoader(controller, connectionWorker, transportPolicy, settings, errorHandler);
 
         final List<JMXBean> jmxBeans = beanLoader.getJMXBeans();
         assertNotNull(jmxBeans);
 
-        assertEquals(3, jmxBeans.size());
+        assertEquals(5, jmxBeans.size());
         assertTrue(containsBeanOfType(jmxBeans, NetworkInformation.class));
         assertTrue(containsBeanOfType(jmxBeans, ControllerInformation.class));
         assertTrue(containsBeanOfType(jmxBeans, GeneralInformation.class));
+        assertTrue(containsBeanOfType(jmxBeans, TransportInformation.class));
+        assertTrue(containsBeanOfType(jmxBeans, Statistics.class));
     }
 
     private boolean containsBeanOfType(final List<JMXBean> jmxBeans, final Class<?> theClass) {
@@ -0,0 +1,83 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.jmx;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.net.MessageTrace;
+import net.usikkert.kouchat.util.Metrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link Statistics}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class StatisticsTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void constructorShouldThrowExceptionIfMetricsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Metrics can not be null");
+
+        new Statistics(null);
+    }
+
+    @Test
+    public void showStatisticsShouldReturnOneLinePerValue() {
+        final Metrics metrics = new Metrics();
+        metrics.getCounter("kouchat_test_total").add(2);
+
+        final String[] statistics = new Statistics(metrics).showStatistics();
+
+        assertArrayEquals(new String[] {"# TYPE kouchat_test_total counter", "kouchat_test_total 2"}, statistics);
+    }
+
+    @Test
+    public void setMessageTraceSampleRateShouldChangeTheSampleRate() {
+        final Statistics statistics = new Statistics(new Metrics());
+
+        try {
+            statistics.setMessageTraceSampleRate(5);
+
+            assertEquals(5, statistics.getMessageTraceSampleRate());
+            assertEquals(5, MessageTrace.getSampleRate());
+        }
+
+        finally {
+            MessageTrace.setSampleRate(MessageTrace.DEFAULT_SAMPLE_RATE);
+        }
+    }
+
+    @Test
+    public void getBeanNameShouldReturnStatistics() {
+        assertEquals("Statistics", new Statistics(new Metrics()).getBeanName());
+    }
+}
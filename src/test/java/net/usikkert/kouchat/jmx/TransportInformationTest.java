@@ -0,0 +1,137 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.jmx;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.net.TransportPolicy;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.settings.TransportMode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link TransportInformation}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class TransportInformationTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private TransportInformation transportInformation;
+    private TransportPolicy transportPolicy;
+    private Settings settings;
+
+    @Before
+    public void setUp() {
+        transportPolicy = mock(TransportPolicy.class);
+        settings = new Settings();
+
+        transportInformation = new TransportInformation(transportPolicy, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTransportPolicyIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Transport policy can not be null");
+
+        new TransportInformation(null, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Settings can not be null");
+
+        new TransportInformation(transportPolicy, null);
+    }
+
+    @Test
+    public void getTransportModeShouldReturnModeFromSettings() {
+        assertEquals("AUTO", transportInformation.getTransportMode());
+
+        settings.setTransportMode(TransportMode.BOTH);
+
+        assertEquals("BOTH", transportInformation.getTransportMode());
+    }
+
+    @Test
+    public void setTransportModeShouldChangeSettingsAndIgnoreCase() {
+        transportInformation.setTransportMode(" tcp_only ");
+
+        assertEquals(TransportMode.TCP_ONLY, settings.getTransportMode());
+    }
+
+    @Test
+    public void setTransportModeShouldThrowExceptionIfModeIsUnknown() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        transportInformation.setTransportMode("SMOKE_SIGNALS");
+    }
+
+    @Test
+    public void setTransportModeShouldThrowExceptionIfModeIsEmpty() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Transport mode can not be empty");
+
+        transportInformation.setTransportMode(" ");
+    }
+
+    @Test
+    public void showUserTransportsShouldReturnDescriptionOfEachUser() {
+        when(transportPolicy.describeUsers()).thenReturn(Arrays.asList("User 1", "User 2"));
+
+        assertArrayEquals(new String[]{"User 1", "User 2"}, transportInformation.showUserTransports());
+    }
+
+    @Test
+    public void showUserTransportsShouldSayWhenThereAreNoUsers() {
+        when(transportPolicy.describeUsers()).thenReturn(Collections.<String>emptyList());
+
+        assertArrayEquals(new String[]{"No users measured."}, transportInformation.showUserTransports());
+    }
+
+    @Test
+    public void skippedMessageCountsShouldComeFromTransportPolicy() {
+        when(transportPolicy.getSkippedTcpMessageCount()).thenReturn(10L);
+        when(transportPolicy.getSkippedMulticastMessageCount()).thenReturn(20L);
+
+        assertEquals(10, transportInformation.getSkippedTcpMessageCount());
+        assertEquals(20, transportInformation.getSkippedMulticastMessageCount());
+    }
+
+    @Test
+    public void getBeanNameShouldBeTransport() {
+        assertEquals("Transport", transportInformation.getBeanName());
+    }
+}
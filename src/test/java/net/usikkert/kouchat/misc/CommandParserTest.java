@@ -33,6 +33,7 @@ import java.util.Locale;
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.message.CoreMessages;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileSender;
 import net.usikkert.kouchat.net.FileToSend;
@@ -40,6 +41,7 @@ import net.usikkert.kouchat.net.TransferList;
 import net.usikkert.kouchat.settings.Settings;
 import net.usikkert.kouchat.ui.UserInterface;
 import net.usikkert.kouchat.util.DateTools;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.TestUtils;
 
 import org.joda.time.DateTime;
@@ -697,7 +699,8 @@ public class CommandParserTest {
                         "/quit - quit from the chat\n" +
                         "/receive <nick> <id> - accept a file transfer request from a user\n" +
                         "/reject <nick> <id> - reject a file transfer request from a user\n" +
-                        "/send <nick> <file> - send a file to a user\n" +
+                        "/send <nick> <file> - send a file or folder to a user\n" +
+                        "/stats - show statistics about messages, connections and file transfers\n" +
                         "/topic <optional new topic> - prints the current topic, or changes the topic\n" +
                         "/transfers - shows a list of all file transfers and their status\n" +
                         "/users - show the user list\n" +
@@ -865,17 +868,32 @@ public class CommandParserTest {
     }
 
     @Test
-    public void sendShouldReturnIfFileIsDirectory() throws CommandException {
-        setupSomeOne();
+    public void sendShouldSendFolderIfFileIsDirectory() throws CommandException {
+        final User someOne = setupSomeOne();
+        doNothing().when(parser).sendFolder(any(User.class), any(FileBatch.class));
 
-        final File directory = new File("target");
+        final File directory = new File("src/test/resources");
         assertTrue(directory.exists());
         assertFalse(directory.isFile());
 
-        parser.parse("/send SomeOne target");
+        parser.parse("/send SomeOne src/test/resources");
 
-        verify(messageController).showSystemMessage("/send - no such file 'target'");
+        final ArgumentCaptor<FileBatch> fileBatchCaptor = ArgumentCaptor.forClass(FileBatch.class);
+        verify(messageController, never()).showSystemMessage(anyString());
         verify(parser, never()).sendFile(any(User.class), any(FileToSend.class));
+        verify(parser).sendFolder(eq(someOne), fileBatchCaptor.capture());
+        assertEquals("resources", fileBatchCaptor.getValue().getName());
+        assertTrue(fileBatchCaptor.getValue().getPaths().contains("test-messages.properties"));
+    }
+
+    @Test
+    public void sendShouldShowSystemMessageIfSendFolderFails() throws CommandException {
+        setupSomeOne();
+        doThrow(new CommandException("Stop that folder")).when(parser).sendFolder(any(User.class), any(FileBatch.class));
+
+        parser.parse("/send SomeOne src/test/resources");
+
+        verify(messageController).showSystemMessage("Stop that folder");
     }
 
     @Test
@@ -1229,6 +1247,25 @@ public class CommandParserTest {
                                                             "  #4 image4.png [504.00KB] (14%, 84.00KB/s) from Kelly");
     }
 
+    /*
+     * /stats
+     */
+
+    @Test
+    public void statsShouldShowSystemMessageWithTheSharedMetrics() {
+        Metrics.getSharedMetrics().getCounter("kouchat_command_parser_test_total").add(3);
+
+        parser.parse("/stats");
+
+        final ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(messageController).showSystemMessage(captor.capture());
+
+        final String message = captor.getValue();
+        assertTrue(message.startsWith("Statistics:\n# TYPE "));
+        assertTrue(message.contains("\nkouchat_command_parser_test_total 3\n"));
+        assertFalse(message.endsWith("\n"));
+    }
+
     /*
      * /quit
      */
@@ -33,6 +33,7 @@ import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.message.CoreMessages;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileSender;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileToSend;
 import net.usikkert.kouchat.net.NetworkMessages;
 import net.usikkert.kouchat.net.NetworkService;
@@ -43,6 +44,7 @@ import net.usikkert.kouchat.ui.PrivateChatWindow;
 import net.usikkert.kouchat.ui.UserInterface;
 import net.usikkert.kouchat.util.DateTestUtils;
 import net.usikkert.kouchat.util.DateTools;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.TestUtils;
 import net.usikkert.kouchat.util.TimerTools;
 
@@ -69,6 +71,8 @@ public class ControllerTest {
     private NetworkService networkService;
     private IdleThread idleThread;
     private DayTimer dayTimer;
+    private WritingController writingController;
+    private ResponseController responseController;
     private TransferList transferList;
     private MessageController messageController;
     private UserInterface ui;
@@ -108,6 +112,8 @@ public class ControllerTest {
 
         idleThread = TestUtils.setFieldValueWithMock(controller, "idleThread", IdleThread.class);
         dayTimer = TestUtils.setFieldValueWithMock(controller, "dayTimer", DayTimer.class);
+        writingController = TestUtils.setFieldValueWithMock(controller, "writingController", WritingController.class);
+        responseController = TestUtils.setFieldValueWithMock(controller, "responseController", ResponseController.class);
 
         final UserListController userListController =
                 TestUtils.getFieldValue(controller, UserListController.class, "userListController");
@@ -168,30 +174,42 @@ public class ControllerTest {
 
         // Not writing - nothing happens
         controller.updateMeWriting(false);
-        verifyZeroInteractions(networkMessages);
+        verifyZeroInteractions(writingController);
         assertFalse(me.isWriting());
 
         // Wrote something - notify others and update me
         controller.updateMeWriting(true);
-        verify(networkMessages).sendWritingMessage();
+        verify(writingController).meWritingChanged(true);
         assertTrue(me.isWriting());
 
         // Continues to write - nothing happens
         controller.updateMeWriting(true);
-        verifyNoMoreInteractions(networkMessages);
+        verifyNoMoreInteractions(writingController);
         assertTrue(me.isWriting());
 
         // Stopped writing - notify others and update me
         controller.updateMeWriting(false);
-        verify(networkMessages).sendStoppedWritingMessage();
+        verify(writingController).meWritingChanged(false);
         assertFalse(me.isWriting());
 
         // Still not writing - nothing happens
         controller.updateMeWriting(false);
-        verifyNoMoreInteractions(networkMessages);
+        verifyNoMoreInteractions(writingController);
         assertFalse(me.isWriting());
     }
 
+    @Test
+    public void changeWritingShouldLeaveOtherUsersToWritingController() {
+        userList.add(otherUser);
+
+        controller.changeWriting(otherUser.getCode(), true);
+
+        verify(writingController).userWritingChanged(otherUser.getCode(), true);
+        verifyZeroInteractions(networkMessages);
+        assertFalse(otherUser.isWriting());
+        assertFalse(controller.isWrote());
+    }
+
     @Test
     public void sendFileShouldThrowExceptionIfUserIsNull() throws CommandException {
         expectedException.expect(IllegalArgumentException.class);
@@ -282,6 +300,51 @@ public class ControllerTest {
         verify(networkMessages).sendFile(user, file);
     }
 
+    @Test
+    public void sendFolderShouldThrowExceptionIfThereAreNoFiles() throws CommandException {
+        expectedException.expect(CommandException.class);
+        expectedException.expectMessage("You can not send a folder without any files");
+
+        when(networkService.isNetworkUp()).thenReturn(true);
+        controller.getChatState().setLoggedOn(true);
+
+        final FileBatch fileBatch = mock(FileBatch.class);
+        when(fileBatch.getName()).thenReturn("folder");
+
+        controller.sendFolder(mock(User.class), fileBatch);
+    }
+
+    @Test
+    public void sendFolderShouldThrowExceptionIfUserHasNoFileTransferServer() throws CommandException {
+        expectedException.expect(CommandException.class);
+        expectedException.expectMessage("You can not send a folder to a user with a client that does not support it");
+
+        when(networkService.isNetworkUp()).thenReturn(true);
+        controller.getChatState().setLoggedOn(true);
+
+        final FileBatch fileBatch = mock(FileBatch.class);
+        when(fileBatch.getName()).thenReturn("folder");
+        when(fileBatch.getFileCount()).thenReturn(5);
+
+        controller.sendFolder(new User("Test", 124), fileBatch);
+    }
+
+    @Test
+    public void sendFolderShouldSendFolderIfEverythingValidatedOK() throws CommandException {
+        when(networkService.isNetworkUp()).thenReturn(true);
+        controller.getChatState().setLoggedOn(true);
+
+        final FileBatch fileBatch = mock(FileBatch.class);
+        when(fileBatch.getName()).thenReturn("folder");
+        when(fileBatch.getFileCount()).thenReturn(5);
+        final User user = new User("Test", 124);
+        user.setFileTransferPort(40756);
+
+        controller.sendFolder(user, fileBatch);
+
+        verify(networkMessages).sendFolder(user, fileBatch);
+    }
+
     @Test
     public void beforeNetworkCameUpShouldDoNothing() {
         controller.beforeNetworkCameUp();
@@ -304,9 +367,49 @@ public class ControllerTest {
 
         verify(idleThread).stopThread();
         verify(dayTimer).stopTimer();
+        verify(writingController).stop();
+        verify(responseController).stop();
         verify(messageController).shutdown();
     }
 
+    @Test
+    public void shutdownShouldRemoveTheGaugesFromTheSharedMetrics() {
+        assertTrue(Metrics.getSharedMetrics().toPrometheusText().contains("kouchat_users "));
+
+        controller.shutdown();
+
+        verify(networkService).shutdown();
+        assertFalse(Metrics.getSharedMetrics().toPrometheusText().contains("kouchat_users "));
+    }
+
+    @Test
+    public void askUsersToIdentifyShouldUseResponseController() {
+        controller.askUsersToIdentify();
+
+        verify(responseController).askUsersToIdentify();
+    }
+
+    @Test
+    public void exposeRequestedShouldUseResponseController() {
+        controller.exposeRequested();
+
+        verify(responseController).exposeRequested();
+    }
+
+    @Test
+    public void topicRequestedShouldUseResponseController() {
+        controller.topicRequested(100);
+
+        verify(responseController).topicRequested(100);
+    }
+
+    @Test
+    public void topicAnsweredShouldUseResponseController() {
+        controller.topicAnswered(1000);
+
+        verify(responseController).topicAnswered(1000);
+    }
+
     @Test
     public void removeUserShouldRemoveUserAndSetOffline() {
         final User user = new User("User1", 124);
@@ -321,6 +424,16 @@ public class ControllerTest {
         assertFalse(user.isOnline());
     }
 
+    @Test
+    public void removeUserShouldMakeWritingControllerForgetTheUser() {
+        final User user = new User("User1", 124);
+        userList.add(user);
+
+        controller.removeUser(user, "Bla bla");
+
+        verify(writingController).userRemoved(124);
+    }
+
     @Test
     public void removeUserShouldCancelFileTransfers() {
         final User user = new User("User1", 124);
@@ -500,6 +613,16 @@ public class ControllerTest {
         verify(dateTools).currentDateToString("EEEE, d MMMM yyyy");
     }
 
+    @Test
+    public void startShouldMarkUserInterfaceStartedStartupPhase() {
+        assertTrue(controller.getStartupTimer().getPhaseTime(StartupTimer.CONTROLLER_CREATED) >= 0);
+        assertEquals(-1, controller.getStartupTimer().getPhaseTime(StartupTimer.UI_STARTED));
+
+        controller.start();
+
+        assertTrue(controller.getStartupTimer().getPhaseTime(StartupTimer.UI_STARTED) >= 0);
+    }
+
     @Test
     public void changeAwayStatusShouldThrowExceptionIfMeAndNotLoggedOn() throws CommandException {
         expectedException.expect(CommandException.class);
@@ -674,13 +797,62 @@ public class ControllerTest {
     @Test
     public void sendChatMessageShouldThrowExceptionIfMessageIsTooLong() throws CommandException {
         expectedException.expect(CommandException.class);
-        expectedException.expectMessage("You can not send a chat message with more than 450 bytes");
+        expectedException.expectMessage("You can not send a chat message with more than 8000 bytes");
+
+        doReturn(true).when(controller).isConnected();
+
+        controller.sendChatMessage(createStringOfSize(8001));
+    }
+
+    @Test
+    public void sendChatMessageShouldSendMessagesTooLargeForOneNetworkPacket() throws CommandException {
+        doReturn(true).when(controller).isConnected();
+        final String message = createStringOfSize(8000);
+
+        controller.sendChatMessage(message);
+
+        verify(networkMessages).sendChatMessage(message);
+    }
+
+    @Test
+    public void sendChatMessageShouldSendMessagesTooLargeForOneNetworkPacketWhenAllUsersCanReadFragments()
+            throws CommandException {
+        doReturn(true).when(controller).isConnected();
+        otherUser.setSequenceNumbersEnabled(true);
+        userList.add(otherUser);
+        final String message = createStringOfSize(8000);
+
+        controller.sendChatMessage(message);
+
+        verify(networkMessages).sendChatMessage(message);
+    }
+
+    @Test
+    public void sendChatMessageShouldThrowExceptionIfMessageIsTooLargeForOneNetworkPacketAndOldClientsAreInTheChat()
+            throws CommandException {
+        expectedException.expect(CommandException.class);
+        expectedException.expectMessage(
+                "You can not send a chat message with more than 450 bytes while users with older clients are in the chat");
 
         doReturn(true).when(controller).isConnected();
+        assertFalse(otherUser.isSequenceNumbersEnabled());
+        userList.add(otherUser);
 
         controller.sendChatMessage(createStringOfSize(451));
     }
 
+    @Test
+    public void sendChatMessageShouldSendMessagesThatFitInOneNetworkPacketWhenOldClientsAreInTheChat()
+            throws CommandException {
+        doReturn(true).when(controller).isConnected();
+        userList.add(otherUser);
+        final String message = createStringOfSize(450);
+
+        controller.sendChatMessage(message);
+
+        verify(networkMessages).sendChatMessage(message);
+    }
+
     @Test
     public void sendChatMessageShouldSendMessageUsingNetworkMessages() throws CommandException {
         doReturn(true).when(controller).isConnected();
@@ -847,7 +1019,24 @@ public class ControllerTest {
 
         controller.networkCameUp(true);
 
-        verify(timerTools).scheduleTimerTask(eq("DelayedLogonTimer"), any(DelayedLogonTask.class), eq(1500L));
+        verify(timerTools).scheduleRepeatingTimerTask(eq("DelayedLogonTimer"), any(DelayedLogonTask.class),
+                                                      eq(100L), eq(100L));
+    }
+
+    @Test
+    public void networkCameUpShouldMarkNetworkUpStartupPhaseIfNotLoggedOn() {
+        assertEquals(-1, controller.getStartupTimer().getPhaseTime(StartupTimer.NETWORK_UP));
+
+        controller.networkCameUp(true);
+
+        assertTrue(controller.getStartupTimer().getPhaseTime(StartupTimer.NETWORK_UP) >= 0);
+    }
+
+    @Test
+    public void prepareNetworkShouldUseNetworkService() {
+        controller.prepareNetwork();
+
+        verify(networkService).prepareNetwork();
     }
 
     @Test
@@ -856,12 +1045,11 @@ public class ControllerTest {
 
         controller.networkCameUp(true);
 
-        final InOrder inOrder = inOrder(networkMessages);
+        final InOrder inOrder = inOrder(networkMessages, responseController);
 
         inOrder.verify(networkMessages).sendLogonMessage();
         inOrder.verify(networkMessages).sendClient();
-        inOrder.verify(networkMessages).sendExposeMessage();
-        inOrder.verify(networkMessages).sendGetTopicMessage();
+        inOrder.verify(responseController).askUsersToIdentify();
     }
 
     @Test
@@ -25,9 +25,12 @@ package net.usikkert.kouchat.misc;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Timer;
+
 import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.net.NetworkService;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -46,13 +49,22 @@ public class DelayedLogonTaskTest {
 
     private NetworkService networkService;
     private ChatState chatState;
+    private StartupTimer startupTimer;
+    private Timer timer;
 
     @Before
     public void setUp() {
         networkService = mock(NetworkService.class);
-        chatState = new ChatState();
+        chatState = mock(ChatState.class);
+        startupTimer = mock(StartupTimer.class);
+        timer = new Timer(true);
+
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer);
+    }
 
-        logonTask = new DelayedLogonTask(networkService, chatState);
+    @After
+    public void tearDown() {
+        timer.cancel();
     }
 
     @Test
@@ -60,7 +72,7 @@ public class DelayedLogonTaskTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("NetworkService can not be null");
 
-        new DelayedLogonTask(null, chatState);
+        new DelayedLogonTask(null, chatState, startupTimer);
     }
 
     @Test
@@ -68,26 +80,128 @@ public class DelayedLogonTaskTest {
         expectedException.expect(IllegalArgumentException.class);
         expectedException.expectMessage("ChatState can not be null");
 
-        new DelayedLogonTask(networkService, null);
+        new DelayedLogonTask(networkService, null, startupTimer);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfStartupTimerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("StartupTimer can not be null");
+
+        new DelayedLogonTask(networkService, chatState, null);
+    }
+
+    @Test
+    public void runShouldNotCompleteLogonOrStopIfNotLoggedOn() {
+        when(networkService.isNetworkUp()).thenReturn(true);
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+
+        verify(chatState, never()).setLogonCompleted(anyBoolean());
+        assertTrue(logonTask.cancel()); // Was still scheduled
+    }
+
+    @Test
+    public void runShouldNotCompleteLogonOrStopIfLoggedOnButLogonActivityIsRecent() {
+        when(networkService.isNetworkUp()).thenReturn(true);
+        when(chatState.isLoggedOn()).thenReturn(true);
+        when(chatState.getLastLogonActivity()).thenReturn(System.currentTimeMillis());
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+
+        verify(chatState, never()).setLogonCompleted(anyBoolean());
+        assertTrue(logonTask.cancel());
+    }
+
+    @Test
+    public void runShouldCompleteLogonAndStopIfLoggedOnAndNoLogonActivityDuringQuietPeriod() {
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer, System.currentTimeMillis() - 710);
+        when(networkService.isNetworkUp()).thenReturn(true);
+        when(chatState.isLoggedOn()).thenReturn(true);
+        when(chatState.getLastLogonActivity()).thenReturn(System.currentTimeMillis() - 310);
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+
+        verify(chatState).setLogonCompleted(true);
+        verify(startupTimer).markPhase(StartupTimer.LOGON_COMPLETED);
+        assertFalse(logonTask.cancel()); // Was already cancelled
+    }
+
+    @Test
+    public void runShouldNotCompleteLogonOrStopBeforeAllTheAnswersToTheRequestToIdentifyCanHaveArrived() {
+        final long now = System.currentTimeMillis();
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer, now - 450);
+        when(networkService.isNetworkUp()).thenReturn(true);
+        when(chatState.isLoggedOn()).thenReturn(true);
+        when(chatState.getLastLogonActivity()).thenReturn(now - 400); // Quiet since the first answer
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+
+        verify(chatState, never()).setLogonCompleted(anyBoolean());
+        assertTrue(logonTask.cancel());
+    }
+
+    @Test
+    public void runShouldWaitForQuietPeriodAfterLateAnswerToTheRequestToIdentify() {
+        final long now = System.currentTimeMillis();
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer, now - 710);
+        when(networkService.isNetworkUp()).thenReturn(true);
+        when(chatState.isLoggedOn()).thenReturn(true);
+        when(chatState.getLastLogonActivity()).thenReturn(now - 260); // Answer arrived after 450 ms
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+        verify(chatState, never()).setLogonCompleted(anyBoolean());
+
+        when(chatState.getLastLogonActivity()).thenReturn(now - 310);
+        logonTask.run();
+        verify(chatState).setLogonCompleted(true);
+        assertFalse(logonTask.cancel());
     }
 
     @Test
-    public void runShouldDoNothingIfNetworkIsDown() {
+    public void runShouldCompleteLogonAndStopAfterMaxDelayEvenIfNotLoggedOn() {
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer, System.currentTimeMillis() - 1500);
+        when(networkService.isNetworkUp()).thenReturn(true);
+        timer.schedule(logonTask, 100000);
+
+        logonTask.run();
+
+        verify(chatState).setLogonCompleted(true);
+        verify(startupTimer).markPhase(StartupTimer.LOGON_COMPLETED);
+        assertFalse(logonTask.cancel());
+    }
+
+    @Test
+    public void runShouldStopWithoutCompletingLogonIfNetworkIsDownAfterMaxDelay() {
+        logonTask = new DelayedLogonTask(networkService, chatState, startupTimer, System.currentTimeMillis() - 1500);
         assertFalse(networkService.isNetworkUp());
-        assertFalse(chatState.isLogonCompleted());
+        timer.schedule(logonTask, 100000);
 
         logonTask.run();
 
-        assertFalse(chatState.isLogonCompleted());
+        verify(chatState, never()).setLogonCompleted(anyBoolean());
+        verifyZeroInteractions(startupTimer);
+        assertFalse(logonTask.cancel());
     }
 
     @Test
-    public void runShouldSetLogonCompletedIfNetworkIsUp() {
+    public void runShouldCompleteLogonWithRealChatStateWhenQuietPeriodHasPassed() throws InterruptedException {
+        final ChatState realChatState = new ChatState();
+        logonTask = new DelayedLogonTask(networkService, realChatState, startupTimer,
+                                         System.currentTimeMillis() - DelayedLogonTask.ANSWER_PERIOD);
         when(networkService.isNetworkUp()).thenReturn(true);
-        assertFalse(chatState.isLogonCompleted());
 
+        realChatState.setLoggedOn(true);
         logonTask.run();
+        assertFalse(realChatState.isLogonCompleted());
 
-        assertTrue(chatState.isLogonCompleted());
+        Thread.sleep(DelayedLogonTask.QUIET_PERIOD + 10);
+        logonTask.run();
+        assertTrue(realChatState.isLogonCompleted());
     }
 }
@@ -0,0 +1,153 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Random;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link HeartbeatPolicy}.
+ *
+ * @author Christian Ihle
+ */
+public class HeartbeatPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private HeartbeatPolicy heartbeatPolicy;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = mock(Random.class);
+        when(random.nextDouble()).thenReturn(0.5);
+
+        heartbeatPolicy = new HeartbeatPolicy(random);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfRandomIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Random can not be null");
+
+        new HeartbeatPolicy(null);
+    }
+
+    @Test
+    public void getBaseIdleIntervalShouldUseIdleTimeOnSmallNetworks() {
+        assertEquals(15000, heartbeatPolicy.getBaseIdleInterval(0));
+        assertEquals(15000, heartbeatPolicy.getBaseIdleInterval(1));
+        assertEquals(15000, heartbeatPolicy.getBaseIdleInterval(10));
+    }
+
+    @Test
+    public void getBaseIdleIntervalShouldGrowWithNumberOfUsers() {
+        assertEquals(16500, heartbeatPolicy.getBaseIdleInterval(11));
+        assertEquals(30000, heartbeatPolicy.getBaseIdleInterval(20));
+        assertEquals(39000, heartbeatPolicy.getBaseIdleInterval(26));
+    }
+
+    @Test
+    public void getBaseIdleIntervalShouldNotGrowAboveMaxIdleTime() {
+        assertEquals(40000, heartbeatPolicy.getBaseIdleInterval(27));
+        assertEquals(40000, heartbeatPolicy.getBaseIdleInterval(1000));
+    }
+
+    @Test
+    public void getIdleIntervalShouldNotAddJitterWhenRandomIsInTheMiddle() {
+        assertEquals(15000, heartbeatPolicy.getIdleInterval(5));
+    }
+
+    @Test
+    public void getIdleIntervalShouldSubtractUpToTwentyPercent() {
+        when(random.nextDouble()).thenReturn(0.0);
+
+        assertEquals(12000, heartbeatPolicy.getIdleInterval(5));
+        assertEquals(32000, heartbeatPolicy.getIdleInterval(100));
+    }
+
+    @Test
+    public void getIdleIntervalShouldAddUpToTwentyPercent() {
+        when(random.nextDouble()).thenReturn(1.0);
+
+        assertEquals(18000, heartbeatPolicy.getIdleInterval(5));
+        assertEquals(48000, heartbeatPolicy.getIdleInterval(100));
+    }
+
+    @Test
+    public void getIdleIntervalShouldAlwaysStayBelowTheTimeoutOfOlderClients() {
+        final HeartbeatPolicy policy = new HeartbeatPolicy();
+
+        for (int i = 0; i < 1000; i++) {
+            final long interval = policy.getIdleInterval(i);
+
+            assertTrue(interval >= 12000);
+            assertTrue(interval + HeartbeatPolicy.MAX_SILENCE < HeartbeatPolicy.TIMEOUT);
+        }
+    }
+
+    @Test
+    public void getTimeoutShouldUseDefaultTimeoutOnSmallNetworks() {
+        assertEquals(120000, heartbeatPolicy.getTimeout(0));
+        assertEquals(120000, heartbeatPolicy.getTimeout(10));
+        assertEquals(120000, heartbeatPolicy.getTimeout(20));
+    }
+
+    @Test
+    public void getTimeoutShouldAllowThreeMissedIdleMessagesOnLargeNetworks() {
+        assertEquals(129600, heartbeatPolicy.getTimeout(24));
+        assertEquals(144000, heartbeatPolicy.getTimeout(100));
+    }
+
+    @Test
+    public void shouldSendIdleMessageWhenNothingHasBeenSentBefore() {
+        assertTrue(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 0, 0));
+    }
+
+    @Test
+    public void shouldSendIdleMessageWhenNoMessagesHaveBeenSentDuringTheInterval() {
+        assertTrue(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 85000, 85000));
+        assertTrue(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 70000, 80000));
+    }
+
+    @Test
+    public void shouldNotSendIdleMessageWhenOtherMessagesHaveBeenSentDuringTheInterval() {
+        assertFalse(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 70000, 85001));
+        assertFalse(heartbeatPolicy.shouldSendIdleMessage(100, 100000, 50000, 70000));
+    }
+
+    @Test
+    public void shouldSendIdleMessageWhenMaxSilenceIsReachedEvenIfOtherMessagesHaveBeenSent() {
+        assertTrue(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 40000, 99000));
+        assertFalse(heartbeatPolicy.shouldSendIdleMessage(5, 100000, 40001, 99000));
+    }
+}
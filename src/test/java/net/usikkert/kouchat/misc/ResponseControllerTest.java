@@ -0,0 +1,303 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.net.NetworkMessages;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Test of {@link ResponseController}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class ResponseControllerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ResponseController responseController;
+
+    private NetworkMessages networkMessages;
+    private UserListController userListController;
+    private Topic topic;
+    private Settings settings;
+
+    @Before
+    public void setUp() {
+        networkMessages = mock(NetworkMessages.class);
+        topic = new Topic("Topic", "Niles", 2000);
+
+        settings = new Settings();
+        TestUtils.setFieldValue(settings.getMe(), "code", 500);
+
+        userListController = new UserListController(settings);
+        userListController.getUserList().add(new User("User1", 600));
+        userListController.getUserList().add(new User("User2", 700));
+
+        responseController = new ResponseController(userListController, networkMessages, topic, settings);
+
+        // Makes sure nothing is sent by the timer during the tests
+        responseController.stop();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfUserListControllerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("User list controller can not be null");
+
+        new ResponseController(null, networkMessages, topic, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfNetworkMessagesIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Network messages can not be null");
+
+        new ResponseController(userListController, null, topic, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTopicIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Topic can not be null");
+
+        new ResponseController(userListController, networkMessages, null, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Settings can not be null");
+
+        new ResponseController(userListController, networkMessages, topic, null);
+    }
+
+    @Test
+    public void exposeRequestedShouldNotSendAnythingRightAway() {
+        responseController.exposeRequested();
+
+        verifyZeroInteractions(networkMessages);
+    }
+
+    @Test
+    public void sendExposingShouldSendExposingAndClientInfo() {
+        responseController.exposeRequested();
+        responseController.sendExposing();
+
+        final InOrder inOrder = inOrder(networkMessages);
+        inOrder.verify(networkMessages).sendExposingMessage();
+        inOrder.verify(networkMessages).sendClient();
+        verifyNoMoreInteractions(networkMessages);
+    }
+
+    @Test
+    public void exposeRequestedShouldOnlyScheduleOneAnswerForSeveralRequests() {
+        responseController.exposeRequested();
+        responseController.exposeRequested();
+        responseController.exposeRequested();
+
+        assertTrue(TestUtils.getFieldValue(responseController, Boolean.class, "exposingScheduled"));
+
+        responseController.sendExposing();
+
+        verify(networkMessages, times(1)).sendExposingMessage();
+        assertFalse(TestUtils.getFieldValue(responseController, Boolean.class, "exposingScheduled"));
+    }
+
+    @Test
+    public void topicRequestedShouldAnswerRightAwayWhenElected() {
+        responseController.topicRequested(600);
+
+        verify(networkMessages).sendTopicRequestedMessage(topic);
+        assertFalse(TestUtils.getFieldValue(responseController, Boolean.class, "topicScheduled"));
+    }
+
+    @Test
+    public void topicRequestedShouldWaitForExposingWhenElectedAndExposingIsScheduled() {
+        responseController.exposeRequested();
+        responseController.topicRequested(600);
+
+        verifyZeroInteractions(networkMessages);
+
+        responseController.sendExposing();
+
+        final InOrder inOrder = inOrder(networkMessages);
+        inOrder.verify(networkMessages).sendExposingMessage();
+        inOrder.verify(networkMessages).sendClient();
+        inOrder.verify(networkMessages).sendTopicRequestedMessage(topic);
+        verifyNoMoreInteractions(networkMessages);
+    }
+
+    @Test
+    public void sendExposingShouldOnlySendTopicOnceAfterTopicRequest() {
+        responseController.exposeRequested();
+        responseController.topicRequested(600);
+        responseController.sendExposing();
+
+        responseController.exposeRequested();
+        responseController.sendExposing();
+
+        verify(networkMessages, times(2)).sendExposingMessage();
+        verify(networkMessages, times(1)).sendTopicRequestedMessage(topic);
+    }
+
+    @Test
+    public void topicRequestedShouldScheduleAnswerWhenNotElected() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        responseController.topicRequested(600);
+
+        verifyZeroInteractions(networkMessages);
+        assertTrue(TestUtils.getFieldValue(responseController, Boolean.class, "topicScheduled"));
+    }
+
+    @Test
+    public void isElectedToAnswerTopicShouldIgnoreTheUserAsking() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        assertTrue(responseController.isElectedToAnswerTopic(100));
+        assertFalse(responseController.isElectedToAnswerTopic(600));
+    }
+
+    @Test
+    public void isElectedToAnswerTopicShouldNotLetUsersLogOffWhileLooking() {
+        // Removes the last user right after getting the size, unless the caller holds the lock on the list
+        final SortedUserList userList = new SortedUserList() {
+            @Override
+            public int size() {
+                final int size = super.size();
+
+                if (!Thread.holdsLock(this) && size > 0) {
+                    remove(get(size - 1));
+                }
+
+                return size;
+            }
+        };
+
+        userList.add(new User("User1", 600));
+        userList.add(new User("User2", 700));
+
+        final UserListController mockUserListController = mock(UserListController.class);
+        when(mockUserListController.getUserList()).thenReturn(userList);
+
+        final ResponseController lockingResponseController =
+                new ResponseController(mockUserListController, networkMessages, topic, settings);
+        lockingResponseController.stop();
+
+        assertTrue(lockingResponseController.isElectedToAnswerTopic(100));
+
+        synchronized (userList) {
+            assertEquals(2, userList.size());
+        }
+    }
+
+    @Test
+    public void isElectedToAnswerTopicShouldBeTrueWhenAlone() {
+        final UserListController emptyUserListController = new UserListController(settings);
+        final ResponseController aloneResponseController =
+                new ResponseController(emptyUserListController, networkMessages, topic, settings);
+        aloneResponseController.stop();
+
+        assertTrue(aloneResponseController.isElectedToAnswerTopic(100));
+    }
+
+    @Test
+    public void sendTopicShouldSendTopicIfNoOneElseAnswered() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        responseController.topicRequested(600);
+        responseController.sendTopic();
+
+        verify(networkMessages).sendTopicRequestedMessage(topic);
+        assertFalse(TestUtils.getFieldValue(responseController, Boolean.class, "topicScheduled"));
+    }
+
+    @Test
+    public void sendTopicShouldNotSendTopicIfSomeoneElseAnsweredWithTheSameTopic() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        responseController.topicRequested(600);
+        responseController.topicAnswered(2000);
+        responseController.sendTopic();
+
+        verifyZeroInteractions(networkMessages);
+    }
+
+    @Test
+    public void sendTopicShouldSendTopicIfSomeoneElseAnsweredWithAnOlderTopic() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        responseController.topicRequested(600);
+        responseController.topicAnswered(1000);
+        responseController.sendTopic();
+
+        verify(networkMessages).sendTopicRequestedMessage(topic);
+    }
+
+    @Test
+    public void topicAnsweredShouldBeIgnoredWhenNoAnswerIsScheduled() {
+        userListController.getUserList().add(new User("User3", 100));
+
+        responseController.topicAnswered(2000);
+        responseController.topicRequested(600);
+        responseController.sendTopic();
+
+        verify(networkMessages).sendTopicRequestedMessage(topic);
+    }
+
+    @Test
+    public void askUsersToIdentifyShouldSendExposeAndGetTopic() {
+        responseController.askUsersToIdentify(10000);
+
+        final InOrder inOrder = inOrder(networkMessages);
+        inOrder.verify(networkMessages).sendExposeMessage();
+        inOrder.verify(networkMessages).sendGetTopicMessage();
+    }
+
+    @Test
+    public void askUsersToIdentifyShouldNotAskAgainWithinTheInterval() {
+        responseController.askUsersToIdentify(10000);
+        responseController.askUsersToIdentify(10500);
+        responseController.askUsersToIdentify(10999);
+
+        verify(networkMessages, times(1)).sendExposeMessage();
+        verify(networkMessages, times(1)).sendGetTopicMessage();
+
+        responseController.askUsersToIdentify(11000);
+
+        verify(networkMessages, times(2)).sendExposeMessage();
+        verify(networkMessages, times(2)).sendGetTopicMessage();
+    }
+}
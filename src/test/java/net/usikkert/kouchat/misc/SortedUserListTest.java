@@ -312,6 +312,34 @@ public class SortedUserListTest {
         assertTrue(listeners3.contains(listener2));
     }
 
+    @Test
+    public void setShouldBeSafeWhileAnotherThreadIsAddingUsers() throws InterruptedException {
+        userList.add(niles);
+
+        final Thread adder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 10; i < 2010; i++) {
+                    userList.add(new User("User" + i, i));
+                }
+            }
+        });
+
+        adder.start();
+
+        while (adder.isAlive()) {
+            synchronized (userList) {
+                final int index = userList.indexOf(niles);
+                userList.set(index, niles);
+            }
+        }
+
+        adder.join();
+
+        assertEquals(2001, userList.size());
+        assertTrue(userList.indexOf(niles) >= 0);
+    }
+
     private void addAllUsers() {
         userList.add(niles);
         userList.add(john);
@@ -0,0 +1,143 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link StartupTimer}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class StartupTimerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private StartupTimer startupTimer;
+    private long startTime;
+
+    @Before
+    public void setUp() {
+        startTime = System.currentTimeMillis() - 1000;
+        startupTimer = new StartupTimer(startTime);
+    }
+
+    @Test
+    public void markPhaseShouldThrowExceptionIfPhaseIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Phase can not be empty");
+
+        startupTimer.markPhase(null);
+    }
+
+    @Test
+    public void markPhaseShouldThrowExceptionIfPhaseIsEmpty() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Phase can not be empty");
+
+        startupTimer.markPhase(" ");
+    }
+
+    @Test
+    public void getPhaseTimeShouldReturnMinusOneIfPhaseIsNotReached() {
+        assertEquals(-1, startupTimer.getPhaseTime(StartupTimer.NETWORK_UP));
+    }
+
+    @Test
+    public void markPhaseShouldRecordTimeSinceStart() {
+        startupTimer.markPhase(StartupTimer.NETWORK_UP);
+
+        final long phaseTime = startupTimer.getPhaseTime(StartupTimer.NETWORK_UP);
+        assertTrue(phaseTime >= 1000);
+        assertTrue(phaseTime <= System.currentTimeMillis() - startTime);
+    }
+
+    @Test
+    public void markPhaseShouldOnlyRecordTheFirstTimeAPhaseIsReached() throws InterruptedException {
+        startupTimer.markPhase(StartupTimer.NETWORK_UP);
+        final long firstTime = startupTimer.getPhaseTime(StartupTimer.NETWORK_UP);
+
+        Thread.sleep(20);
+        startupTimer.markPhase(StartupTimer.NETWORK_UP);
+
+        assertEquals(firstTime, startupTimer.getPhaseTime(StartupTimer.NETWORK_UP));
+        assertEquals(1, startupTimer.getPhaseTimes().size());
+    }
+
+    @Test
+    public void getPhaseTimesShouldReturnPhasesInTheOrderTheyWereReached() {
+        startupTimer.markPhase(StartupTimer.UI_STARTED);
+        startupTimer.markPhase(StartupTimer.CONTROLLER_CREATED);
+        startupTimer.markPhase(StartupTimer.LOGON_COMPLETED);
+
+        final Map<String, Long> phaseTimes = startupTimer.getPhaseTimes();
+
+        assertEquals(Arrays.asList(StartupTimer.UI_STARTED, StartupTimer.CONTROLLER_CREATED,
+                                   StartupTimer.LOGON_COMPLETED),
+                     Arrays.asList(phaseTimes.keySet().toArray()));
+    }
+
+    @Test
+    public void getPhaseTimesShouldReturnCopy() {
+        startupTimer.getPhaseTimes().put(StartupTimer.NETWORK_UP, 5L);
+
+        assertTrue(startupTimer.getPhaseTimes().isEmpty());
+    }
+
+    @Test
+    public void getReportShouldBeEmptyIfNoPhasesAreReached() {
+        assertEquals("", startupTimer.getReport());
+    }
+
+    @Test
+    public void getReportShouldHaveOneLineForEachPhase() {
+        startupTimer.markPhase(StartupTimer.CONTROLLER_CREATED);
+        startupTimer.markPhase(StartupTimer.NETWORK_UP);
+
+        final String[] lines = startupTimer.getReport().split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("Controller created: \\d+ ms"));
+        assertTrue(lines[1].matches("Network up: \\d+ ms"));
+    }
+
+    @Test
+    public void defaultConstructorShouldMeasureFromStartOfVirtualMachine() {
+        final StartupTimer vmStartupTimer = new StartupTimer();
+
+        vmStartupTimer.markPhase(StartupTimer.CONTROLLER_CREATED);
+
+        assertTrue(vmStartupTimer.getPhaseTime(StartupTimer.CONTROLLER_CREATED) > 0);
+    }
+}
@@ -24,6 +24,8 @@ package net.usikkert.kouchat.misc;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 /**
@@ -63,4 +65,113 @@ public class UserTest {
         assertFalse(test1.equals(null));
         assertFalse(test1.equals("No user"));
     }
+
+    @Test
+    public void setIpAddressShouldKeepTheIpAddressFromTheOtherProtocolFamily() {
+        final User user = new User("Test", 123);
+
+        user.setIpAddress("192.168.1.2");
+        user.setIpAddress("2001:db8:0:0:0:0:0:2");
+
+        assertEquals("2001:db8:0:0:0:0:0:2", user.getIpAddress());
+        assertEquals(Arrays.asList("2001:db8:0:0:0:0:0:2", "192.168.1.2"), user.getIpAddresses());
+
+        user.setIpAddress("192.168.1.2");
+
+        assertEquals(Arrays.asList("192.168.1.2", "2001:db8:0:0:0:0:0:2"), user.getIpAddresses());
+    }
+
+    @Test
+    public void setIpAddressShouldReplaceTheIpAddressFromTheSameProtocolFamily() {
+        final User user = new User("Test", 123);
+
+        user.setIpAddress("192.168.1.2");
+        user.setIpAddress("192.168.1.3");
+
+        assertEquals(Arrays.asList("192.168.1.3"), user.getIpAddresses());
+        assertFalse(user.hasIpAddress("192.168.1.2"));
+    }
+
+    @Test
+    public void addIpAddressShouldOnlyAddTheFirstIpAddressFromTheOtherProtocolFamily() {
+        final User user = new User("Test", 123);
+
+        assertTrue(user.addIpAddress("192.168.1.2"));
+        assertFalse(user.addIpAddress("192.168.1.3"));
+        assertTrue(user.addIpAddress("2001:db8:0:0:0:0:0:2"));
+        assertFalse(user.addIpAddress("2001:db8:0:0:0:0:0:3"));
+
+        assertEquals("192.168.1.2", user.getIpAddress());
+        assertEquals(Arrays.asList("192.168.1.2", "2001:db8:0:0:0:0:0:2"), user.getIpAddresses());
+    }
+
+    @Test
+    public void updateIpAddressShouldReturnTheReplacedIpAddressFromTheSameProtocolFamily() {
+        final User user = new User("Test", 123);
+        user.setIpAddress("192.168.1.2");
+
+        assertNull(user.updateIpAddress("192.168.1.2"));
+        assertNull(user.updateIpAddress("2001:db8:0:0:0:0:0:2"));
+        assertEquals("2001:db8:0:0:0:0:0:2", user.updateIpAddress("2001:db8:0:0:0:0:0:3"));
+        assertEquals("192.168.1.2", user.updateIpAddress("192.168.1.3"));
+
+        assertEquals("192.168.1.3", user.getIpAddress());
+        assertEquals(Arrays.asList("192.168.1.3", "2001:db8:0:0:0:0:0:3"), user.getIpAddresses());
+    }
+
+    @Test
+    public void setClientAndOperatingSystemShouldShareTheTextBetweenUsers() {
+        final User user1 = new User("Test1", 123);
+        final User user2 = new User("Test2", 124);
+
+        user1.setClient(new String("KouChat v1.5.0 Swing"));
+        user2.setClient(new String("KouChat v1.5.0 Swing"));
+        user1.setOperatingSystem(new String("Linux"));
+        user2.setOperatingSystem(new String("Linux"));
+
+        assertEquals("KouChat v1.5.0 Swing", user1.getClient());
+        assertSame(user1.getClient(), user2.getClient());
+        assertEquals("Linux", user1.getOperatingSystem());
+        assertSame(user1.getOperatingSystem(), user2.getOperatingSystem());
+    }
+
+    @Test
+    public void updateIpAddressShouldNotReplaceTheIpAddressWithAnAdditionalIpAddress() {
+        final User user = new User("Test", 123);
+        user.setIpAddress("192.168.1.2");
+        user.addAdditionalIpAddress("10.0.0.2");
+
+        assertNull(user.updateIpAddress("10.0.0.2"));
+        assertNull(user.updateIpAddress("192.168.1.2"));
+        assertNull(user.updateIpAddress("10.0.0.2"));
+
+        assertEquals("192.168.1.2", user.getIpAddress());
+        assertEquals(Arrays.asList("192.168.1.2"), user.getIpAddresses());
+    }
+
+    @Test
+    public void addAdditionalIpAddressShouldIgnoreKnownIpAddresses() {
+        final User user = new User("Test", 123);
+        user.setIpAddress("192.168.1.2");
+
+        user.addAdditionalIpAddress("192.168.1.2");
+        assertFalse(user.hasAdditionalIpAddress("192.168.1.2"));
+
+        user.addAdditionalIpAddress("10.0.0.2");
+        assertTrue(user.hasAdditionalIpAddress("10.0.0.2"));
+        assertFalse(user.hasIpAddress("10.0.0.2"));
+    }
+
+    @Test
+    public void resetShouldForgetAllIpAddresses() {
+        final User user = new User("Test", 123);
+        user.setIpAddress("192.168.1.2");
+        user.addIpAddress("2001:db8:0:0:0:0:0:2");
+        user.addAdditionalIpAddress("10.0.0.2");
+
+        user.reset();
+
+        assertEquals(Arrays.asList("<unknown>"), user.getIpAddresses());
+        assertFalse(user.hasAdditionalIpAddress("10.0.0.2"));
+    }
 }
@@ -0,0 +1,300 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.misc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Map;
+import java.util.Set;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.net.NetworkMessages;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link WritingController}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class WritingControllerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private WritingController writingController;
+
+    private NetworkMessages networkMessages;
+    private UserListController userListController;
+    private User user;
+
+    @Before
+    public void setUp() {
+        networkMessages = mock(NetworkMessages.class);
+        userListController = new UserListController(new Settings());
+
+        user = new User("User", 124);
+        userListController.getUserList().add(user);
+
+        writingController = createWritingController(userListController);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfUserListControllerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("User list controller can not be null");
+
+        new WritingController(null, networkMessages);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfNetworkMessagesIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Network messages can not be null");
+
+        new WritingController(userListController, null);
+    }
+
+    @Test
+    public void meWritingChangedShouldSendWritingMessageRightAway() {
+        writingController.meWritingChanged(true, 10000);
+
+        verify(networkMessages).sendWritingMessage();
+        verifyNoMoreInteractions(networkMessages);
+    }
+
+    @Test
+    public void meWritingChangedShouldWaitBeforeSendingStoppedWritingMessage() {
+        writingController.meWritingChanged(true, 10000);
+        writingController.meWritingChanged(false, 11000);
+        writingController.announce(12000);
+
+        verify(networkMessages).sendWritingMessage();
+        verifyNoMoreInteractions(networkMessages);
+
+        writingController.announce(11000 + WritingController.STOP_DELAY);
+
+        verify(networkMessages).sendStoppedWritingMessage();
+    }
+
+    @Test
+    public void meWritingChangedShouldNotSendAnythingWhenWritingAgainBeforeStopDelay() {
+        writingController.meWritingChanged(true, 10000);
+        writingController.meWritingChanged(false, 11000);
+        writingController.meWritingChanged(true, 12000);
+        writingController.announce(20000);
+
+        verify(networkMessages, times(1)).sendWritingMessage();
+        verifyNoMoreInteractions(networkMessages);
+    }
+
+    @Test
+    public void meWritingChangedShouldRespectMinimumIntervalBetweenMessages() {
+        writingController.meWritingChanged(true, 10000);
+        writingController.meWritingChanged(false, 10100);
+        writingController.announce(10100 + WritingController.STOP_DELAY);
+        verify(networkMessages).sendStoppedWritingMessage();
+
+        writingController.meWritingChanged(true, 12200);
+        verify(networkMessages, times(1)).sendWritingMessage();
+
+        writingController.announce(12100 + WritingController.MIN_INTERVAL);
+        verify(networkMessages, times(2)).sendWritingMessage();
+    }
+
+    @Test
+    public void announceShouldRepeatWritingMessageWhileWriting() {
+        writingController.meWritingChanged(true, 10000);
+        writingController.announce(10000 + WritingController.REFRESH_INTERVAL - 1);
+
+        verify(networkMessages, times(1)).sendWritingMessage();
+
+        writingController.announce(10000 + WritingController.REFRESH_INTERVAL);
+
+        verify(networkMessages, times(2)).sendWritingMessage();
+    }
+
+    @Test
+    public void resetShouldForgetWritingStateWithoutSendingMessages() {
+        writingController.meWritingChanged(true, 10000);
+        writingController.reset();
+        writingController.announce(10000 + WritingController.REFRESH_INTERVAL);
+
+        verify(networkMessages, times(1)).sendWritingMessage();
+        verifyNoMoreInteractions(networkMessages);
+    }
+
+    @Test
+    public void userWritingChangedShouldNotUpdateUserListBeforeFlush() {
+        writingController.userWritingChanged(124, true, 10000);
+
+        assertFalse(user.isWriting());
+
+        writingController.flushChanges();
+
+        assertTrue(user.isWriting());
+    }
+
+    @Test
+    public void flushChangesShouldOnlyUseLastStateOfEachUser() {
+        final UserListController spyController = spy(userListController);
+        final WritingController controller = createWritingController(spyController);
+
+        controller.userWritingChanged(124, true, 10000);
+        controller.userWritingChanged(124, false, 10010);
+        controller.userWritingChanged(124, true, 10020);
+        controller.flushChanges();
+
+        assertTrue(user.isWriting());
+        verify(spyController, times(1)).changeWriting(124, true);
+    }
+
+    @Test
+    public void flushChangesShouldIgnoreChangesThatDoNotChangeTheState() {
+        final UserListController spyController = spy(userListController);
+        final WritingController controller = createWritingController(spyController);
+
+        controller.userWritingChanged(124, false, 10000);
+        controller.flushChanges();
+
+        verify(spyController, never()).changeWriting(anyInt(), anyBoolean());
+    }
+
+    @Test
+    public void flushChangesShouldIgnoreUnknownUsers() {
+        writingController.userWritingChanged(999, true, 10000);
+        writingController.flushChanges();
+
+        assertFalse(user.isWriting());
+    }
+
+    @Test
+    public void flushChangesShouldContinueWithNextUserWhenUpdateFails() {
+        final User user2 = new User("User2", 125);
+        userListController.getUserList().add(user2);
+
+        final UserListController spyController = spy(userListController);
+        doThrow(new IllegalStateException("Don't panic")).when(spyController).changeWriting(124, true);
+        final WritingController controller = createWritingController(spyController);
+
+        controller.userWritingChanged(124, true, 10000);
+        controller.userWritingChanged(125, true, 10000);
+        controller.flushChanges();
+
+        assertFalse(user.isWriting());
+        assertTrue(user2.isWriting());
+    }
+
+    @Test
+    public void expireWritingNoticesShouldSetUserAsNotWritingWhenNoticeIsTooOld() {
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.userWritingChanged(124, true, 30000);
+        writingController.flushChanges();
+        assertTrue(user.isWriting());
+
+        writingController.expireWritingNotices(30000 + WritingController.EXPIRY_TIME);
+        assertTrue(user.isWriting());
+
+        writingController.expireWritingNotices(30001 + WritingController.EXPIRY_TIME);
+        assertFalse(user.isWriting());
+    }
+
+    @Test
+    public void expireWritingNoticesShouldNotExpireUserThatNeverRepeatedTheNotice() {
+        // Older clients only send the writing notice once
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.flushChanges();
+
+        writingController.expireWritingNotices(10000 + 10 * WritingController.EXPIRY_TIME);
+
+        assertTrue(user.isWriting());
+    }
+
+    @Test
+    public void expireWritingNoticesShouldRememberThatUserRepeatsTheNoticeNextTimeTheUserWrites() {
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.userWritingChanged(124, true, 30000);
+        writingController.userWritingChanged(124, false, 35000);
+        writingController.userWritingChanged(124, true, 40000);
+        writingController.flushChanges();
+
+        writingController.expireWritingNotices(40001 + WritingController.EXPIRY_TIME);
+
+        assertFalse(user.isWriting());
+    }
+
+    @Test
+    public void expireWritingNoticesShouldUseLatestRepeatedNotice() {
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.userWritingChanged(124, true, 30000);
+        writingController.flushChanges();
+
+        writingController.expireWritingNotices(10001 + WritingController.EXPIRY_TIME);
+
+        assertTrue(user.isWriting());
+    }
+
+    @Test
+    public void userRemovedShouldForgetTheNoticesFromTheUser() {
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.userWritingChanged(124, true, 30000);
+        writingController.userWritingChanged(124, false, 35000);
+        writingController.userWritingChanged(124, true, 40000);
+
+        writingController.userRemoved(124);
+
+        assertTrue(TestUtils.getFieldValue(writingController, Map.class, "lastWritingNotices").isEmpty());
+        assertTrue(TestUtils.getFieldValue(writingController, Set.class, "refreshingUsers").isEmpty());
+        assertTrue(TestUtils.getFieldValue(writingController, Map.class, "pendingChanges").isEmpty());
+    }
+
+    @Test
+    public void userRemovedShouldNotLetNoticesExpireWhenUserComesBackWithOlderClient() {
+        writingController.userWritingChanged(124, true, 10000);
+        writingController.userWritingChanged(124, true, 30000);
+        writingController.userRemoved(124);
+
+        writingController.userWritingChanged(124, true, 40000);
+        writingController.flushChanges();
+        writingController.expireWritingNotices(40001 + WritingController.EXPIRY_TIME);
+
+        assertTrue(user.isWriting());
+    }
+
+    /**
+     * Creates a writing controller with the timer stopped, so the tests control the time,
+     * and scheduled tasks don't run in parallel.
+     */
+    private WritingController createWritingController(final UserListController controller) {
+        final WritingController newWritingController = new WritingController(controller, networkMessages);
+        newWritingController.stop();
+
+        return newWritingController;
+    }
+}
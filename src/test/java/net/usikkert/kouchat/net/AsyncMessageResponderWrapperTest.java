@@ -147,9 +147,9 @@ public class AsyncMessageResponderWrapperTest {
 
     @Test
     public void topicRequestedShouldPassThrough() {
-        wrapper.topicRequested();
+        wrapper.topicRequested(100);
 
-        verify(messageResponder).topicRequested();
+        verify(messageResponder).topicRequested(100);
     }
 
     @Test
@@ -224,11 +224,9 @@ public class AsyncMessageResponderWrapperTest {
 
     @Test
     public void userExposingShouldPassThrough() {
-        final User user = new User("User", 123);
-
-        wrapper.userExposing(user);
+        wrapper.userExposing(123, "User", "", "192.168.1.2");
 
-        verify(messageResponder).userExposing(user);
+        verify(messageResponder).userExposing(123, "User", "", "192.168.1.2");
     }
 
     @Test
@@ -272,6 +270,16 @@ public class AsyncMessageResponderWrapperTest {
         verify(messageResponder, never()).userIdle(anyInt(), anyString());
     }
 
+    @Test
+    public void userAliveShouldPassThroughWithoutAskingUserToIdentify() {
+        when(controller.isNewUser(100)).thenReturn(true);
+
+        wrapper.userAlive(100);
+
+        verify(wrapper, never()).askUserToIdentify(anyInt());
+        verify(messageResponder).userAlive(100);
+    }
+
     @Test
     public void fileSendShouldAskUserToIdentifyIfNewUser() {
         when(controller.isNewUser(100)).thenReturn(true);
@@ -306,6 +314,29 @@ public class AsyncMessageResponderWrapperTest {
         verify(messageResponder).fileSend(100, 3000, "fileName", "user", 98765);
     }
 
+    @Test
+    public void folderSendShouldAskUserToIdentifyIfNewUser() {
+        when(controller.isNewUser(100)).thenReturn(true);
+
+        wrapper.folderSend(100, 3000, "folderName", "user", 98765, 12);
+
+        verify(wrapper).askUserToIdentify(100);
+    }
+
+    @Test
+    public void folderSendShouldWaitForUserToIdentifyAndPassThroughUsingExecutor() {
+        wrapper.folderSend(100, 3000, "folderName", "user", 98765, 12);
+
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        verifyZeroInteractions(messageResponder);
+        verify(executorService).execute(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        verify(wrapper).waitForUserToIdentify(100);
+        verify(messageResponder).folderSend(100, 3000, "folderName", "user", 98765, 12);
+    }
+
     @Test
     public void fileSendAbortedShouldPassThrough() {
         wrapper.fileSendAborted(100, "fileName", 98765);
@@ -330,10 +361,10 @@ public class AsyncMessageResponderWrapperTest {
     @Test
     public void clientInfoShouldPassThrough() {
         wrapper.clientInfo(100, "client", 70000, "os",
-                           4500, 6000);
+                           4500, 6000, 7000);
 
         verify(messageResponder).clientInfo(100, "client", 70000, "os",
-                                            4500, 6000);
+                                            4500, 6000, 7000);
     }
 
     @Test
@@ -341,8 +372,7 @@ public class AsyncMessageResponderWrapperTest {
         wrapper.askUserToIdentify(100);
 
         verify(waitingList).addWaitingUser(100);
-        verify(controller).sendExposeMessage();
-        verify(controller).sendGetTopicMessage();
+        verify(controller).askUsersToIdentify();
     }
 
     @Test
@@ -28,6 +28,7 @@ import static org.mockito.Mockito.*;
 import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.message.CoreMessages;
 import net.usikkert.kouchat.misc.ChatState;
+import net.usikkert.kouchat.misc.CommandException;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.MessageController;
 import net.usikkert.kouchat.misc.SortedUserList;
@@ -42,6 +43,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 /**
  * Test of {@link DefaultMessageResponder}.
@@ -279,6 +281,7 @@ public class DefaultMessageResponderTest {
 
         verify(messageController).showSystemMessage("Topic is: See ya! (set by Harry at 13:45:05, 22. Aug. 13)");
         verify(userInterface).showTopic();
+        verify(chatState).registerLogonActivity();
         verifyTopic(topic, "See ya!", "Harry", time);
     }
 
@@ -293,6 +296,7 @@ public class DefaultMessageResponderTest {
 
         verify(messageController).showSystemMessage("Harry changed the topic to: See ya!");
         verify(userInterface).showTopic();
+        verify(chatState, never()).registerLogonActivity();
         verifyTopic(topic, "See ya!", "Harry", time);
     }
 
@@ -318,6 +322,41 @@ public class DefaultMessageResponderTest {
         verifyTopic(topic, "Old topic", "Niles", 2000);
     }
 
+    @Test
+    public void topicChangedShouldRegisterTopicAnswerAfterUpdatingTopic() {
+        final Topic topic = new Topic();
+        when(controller.getTopic()).thenReturn(topic);
+
+        responder.topicChanged(300, "See ya!", "Harry", 1000);
+
+        final InOrder inOrder = inOrder(controller);
+        inOrder.verify(controller).getTopic();
+        inOrder.verify(controller).topicAnswered(1000);
+        verifyTopic(topic, "See ya!", "Harry", 1000);
+    }
+
+    @Test
+    public void topicChangedShouldRegisterTopicAnswerEvenIfThereIsNoTopic() {
+        responder.topicChanged(300, null, "", 0);
+
+        verify(controller).topicAnswered(0);
+    }
+
+    @Test
+    public void topicRequestedShouldLeaveAnswerToController() {
+        responder.topicRequested(300);
+
+        verify(controller).topicRequested(300);
+    }
+
+    @Test
+    public void exposeRequestedShouldLeaveAnswerToController() {
+        responder.exposeRequested();
+
+        verify(controller).exposeRequested();
+        verifyNoMoreInteractions(controller);
+    }
+
     @Test
     public void topicChangedShouldUpdateTopicAndShowTopicRemovedMessageWhenTopicIsNull() {
         final Topic topic = new Topic();
@@ -356,12 +395,51 @@ public class DefaultMessageResponderTest {
         verifyTopic(topic, "Current topic", "Harry", 2000);
     }
 
+    @Test
+    public void userExposingShouldAddUserAndRegisterLogonActivityWhenNotDoneWithLogonYet() {
+        when(controller.isNewUser(100)).thenReturn(true);
+        when(chatState.isLogonCompleted()).thenReturn(false);
+
+        responder.userExposing(100, "Tester", "Gone", "192.168.10.123");
+
+        assertEquals(0, userList.indexOf(user));
+        verify(waitingList).removeWaitingUser(100);
+        verify(chatState).registerLogonActivity();
+
+        final User addedUser = userList.get(0);
+        assertNotSame(user, addedUser);
+        assertEquals("Tester", addedUser.getNick());
+        assertEquals("192.168.10.123", addedUser.getIpAddress());
+        assertEquals("Gone", addedUser.getAwayMsg());
+        assertTrue(addedUser.isAway());
+    }
+
+    @Test
+    public void userExposingShouldNotChangeKnownUserWithSameNickAndAwayMessage() throws CommandException {
+        setUpExistingUser();
+
+        responder.userExposing(100, "Tester", "", "192.168.10.123");
+
+        verify(controller, never()).changeAwayStatus(anyInt(), anyBoolean(), anyString());
+        verifyZeroInteractions(messageController);
+        assertEquals(-1, userList.indexOf(user));
+    }
+
+    @Test
+    public void userExposingShouldUpdateAwayMessageOfKnownUser() throws CommandException {
+        setUpExistingUser();
+
+        responder.userExposing(100, "Tester", "Gone", "192.168.10.123");
+
+        verify(controller).changeAwayStatus(100, true, "Gone");
+    }
+
     @Test
     public void clientInfoShouldFillDetailsOnKnownUser() {
         setUpExistingUser();
 
         responder.clientInfo(100, "swing", 150, "linux",
-                             4000, 5000);
+                             4000, 5000, 6000);
 
         final long logonTime = System.currentTimeMillis() - 150;
         // Allow some slack to avoid flaky test
@@ -371,6 +449,7 @@ public class DefaultMessageResponderTest {
         assertEquals("linux", user.getOperatingSystem());
         assertEquals(4000, user.getPrivateChatPort());
         assertEquals(5000, user.getTcpChatPort());
+        assertEquals(6000, user.getFileTransferPort());
     }
 
     @Test
@@ -378,13 +457,14 @@ public class DefaultMessageResponderTest {
         setUpUnknownUser();
 
         responder.clientInfo(100, "swing", 150, "linux",
-                             4000, 5000);
+                             4000, 5000, 6000);
 
         assertEquals(0, user.getLogonTime());
         assertEquals("<unknown>", user.getClient());
         assertEquals("<unknown>", user.getOperatingSystem());
         assertEquals(0, user.getPrivateChatPort());
         assertEquals(0, user.getTcpChatPort());
+        assertEquals(0, user.getFileTransferPort());
     }
 
     private void verifyTopic(final Topic topic, final String expectedTopic, final String expectedNick,
@@ -394,6 +474,73 @@ public class DefaultMessageResponderTest {
         assertEquals(expectedTime, topic.getTime());
     }
 
+    @Test
+    public void userAliveShouldUpdateLastIdleOfExistingUser() {
+        setUpExistingUser();
+        user.setLastIdle(1000);
+
+        responder.userAlive(100);
+
+        assertTrue(user.getLastIdle() > 1000);
+        verifyZeroInteractions(messageController);
+    }
+
+    @Test
+    public void userAliveShouldDoNothingIfUserIsUnknown() {
+        setUpUnknownUser();
+
+        responder.userAlive(100);
+
+        verify(controller).getUser(100);
+        verifyZeroInteractions(messageController);
+    }
+
+    @Test
+    public void userIdleShouldShowSystemMessageWhenIpAddressChanges() {
+        setUpExistingUser();
+
+        responder.userIdle(100, "192.168.10.124");
+
+        verify(messageController).showSystemMessage("Tester changed ip from 192.168.10.123 to 192.168.10.124");
+        assertEquals("192.168.10.124", user.getIpAddress());
+    }
+
+    @Test
+    public void userIdleShouldAddIpAddressFromOtherProtocolFamilyWithoutSystemMessage() {
+        setUpExistingUser();
+
+        responder.userIdle(100, "2001:db8:0:0:0:0:0:7b");
+
+        verifyZeroInteractions(messageController);
+        assertEquals("192.168.10.123", user.getIpAddress());
+        assertTrue(user.hasIpAddress("2001:db8:0:0:0:0:0:7b"));
+    }
+
+    @Test
+    public void userIdleShouldShowSystemMessageWhenTheOtherIpAddressChanges() {
+        setUpExistingUser();
+        user.addIpAddress("2001:db8:0:0:0:0:0:7b");
+
+        responder.userIdle(100, "2001:db8:0:0:0:0:0:7c");
+
+        verify(messageController).showSystemMessage(
+                "Tester changed ip from 2001:db8:0:0:0:0:0:7b to 2001:db8:0:0:0:0:0:7c");
+        assertEquals("192.168.10.123", user.getIpAddress());
+    }
+
+    @Test
+    public void userIdleShouldNotShowSystemMessageWhenUserOnTwoNetworksIsIdleFromEither() {
+        setUpExistingUser();
+        user.addAdditionalIpAddress("10.0.0.123");
+
+        responder.userIdle(100, "10.0.0.123");
+        responder.userIdle(100, "192.168.10.123");
+        responder.userIdle(100, "10.0.0.123");
+
+        verifyZeroInteractions(messageController);
+        assertEquals("192.168.10.123", user.getIpAddress());
+    }
+
     private void setUpExistingUser() {
         when(controller.isNewUser(100)).thenReturn(false);
         when(controller.getUser(100)).thenReturn(user);
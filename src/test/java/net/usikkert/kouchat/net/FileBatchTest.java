@@ -0,0 +1,226 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test of {@link FileBatch} and {@link FileBatchWriter}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class FileBatchTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File sourceFolder;
+    private File targetFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        sourceFolder = temporaryFolder.newFolder("photos");
+        targetFolder = new File(temporaryFolder.getRoot(), "received");
+
+        writeFile(new File(sourceFolder, "b.txt"), "second");
+        writeFile(new File(sourceFolder, "a.txt"), "first");
+        writeFile(new File(sourceFolder, "empty.txt"), "");
+
+        final File subFolder = new File(sourceFolder, "sub");
+        assertTrue(subFolder.mkdir());
+        writeFile(new File(subFolder, "c.txt"), "third");
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfFolderIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Folder to send can not be null");
+
+        new FileBatch(null);
+    }
+
+    @Test
+    public void folderShouldIncludeAllFilesInSortedOrder() {
+        final FileBatch fileBatch = new FileBatch(sourceFolder);
+
+        assertEquals("photos", fileBatch.getName());
+        assertEquals(4, fileBatch.getFileCount());
+        assertEquals(16, fileBatch.getTotalSize());
+        assertEquals(Arrays.asList("a.txt", "b.txt", "empty.txt", "sub/c.txt"), fileBatch.getPaths());
+    }
+
+    @Test
+    public void filesShouldKeepTheNamesOfFilesAndFolders() {
+        final FileBatch fileBatch = new FileBatch("selected", Arrays.asList(
+                new File(sourceFolder, "b.txt"), new File(sourceFolder, "sub")));
+
+        assertEquals("selected", fileBatch.getName());
+        assertEquals(Arrays.asList("b.txt", "sub/c.txt"), fileBatch.getPaths());
+    }
+
+    @Test
+    public void toFileToSendShouldHaveTheSizeOfTheWholeStream() throws IOException {
+        final FileToSend file = new FileBatch(sourceFolder).toFileToSend();
+
+        assertEquals("photos", file.getName());
+        assertEquals(file.length(), readAll(file.getInputStream()).length);
+    }
+
+    @Test
+    public void writerShouldSaveAllTheFiles() throws IOException {
+        final FileToSend file = new FileBatch(sourceFolder).toFileToSend();
+        final FileBatchWriter writer = new FileBatchWriter(targetFolder);
+
+        writer.write(readAll(file.getInputStream()));
+        writer.close();
+
+        assertTrue(writer.isComplete());
+        assertEquals(4, writer.getFilesSaved());
+        assertEquals("first", readFile(new File(targetFolder, "a.txt")));
+        assertEquals("second", readFile(new File(targetFolder, "b.txt")));
+        assertEquals("", readFile(new File(targetFolder, "empty.txt")));
+        assertEquals("third", readFile(new File(targetFolder, "sub/c.txt")));
+    }
+
+    @Test
+    public void writerShouldHandleOneByteAtATime() throws IOException {
+        final FileToSend file = new FileBatch(sourceFolder).toFileToSend();
+        final FileBatchWriter writer = new FileBatchWriter(targetFolder);
+
+        for (final byte b : readAll(file.getInputStream())) {
+            writer.write(b);
+        }
+
+        writer.close();
+
+        assertTrue(writer.isComplete());
+        assertEquals("third", readFile(new File(targetFolder, "sub/c.txt")));
+    }
+
+    @Test
+    public void writerShouldNotBeCompleteIfStreamEndsEarly() throws IOException {
+        final byte[] batch = readAll(new FileBatch(sourceFolder).toFileToSend().getInputStream());
+        final FileBatchWriter writer = new FileBatchWriter(targetFolder);
+
+        writer.write(Arrays.copyOf(batch, batch.length - 2));
+        writer.close();
+
+        assertFalse(writer.isComplete());
+        assertEquals(3, writer.getFilesSaved());
+    }
+
+    @Test
+    public void writerShouldRefusePathsOutsideTheFolder() throws IOException {
+        final FileBatchWriter writer = new FileBatchWriter(targetFolder);
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("Invalid path: sub/../../evil.txt");
+
+        writer.write(createManifest("sub/../../evil.txt", 4));
+    }
+
+    @Test
+    public void writerShouldRefuseAbsolutePaths() throws IOException {
+        final FileBatchWriter writer = new FileBatchWriter(targetFolder);
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("Invalid path: /etc/evil");
+
+        writer.write(createManifest("/etc/evil", 4));
+    }
+
+    @Test
+    public void streamShouldFailIfFileGetsSmallerAfterCreatingTheBatch() throws IOException {
+        final FileToSend file = new FileBatch(sourceFolder).toFileToSend();
+        writeFile(new File(sourceFolder, "b.txt"), "2");
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("File got smaller while sending: b.txt");
+
+        readAll(file.getInputStream());
+    }
+
+    private byte[] createManifest(final String path, final long size) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final DataOutputStream contentOutputStream = new DataOutputStream(content);
+        contentOutputStream.writeInt(1);
+        contentOutputStream.writeUTF(path);
+        contentOutputStream.writeLong(size);
+
+        final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        final DataOutputStream manifestOutputStream = new DataOutputStream(manifest);
+        manifestOutputStream.writeInt(FileBatch.MAGIC);
+        manifestOutputStream.writeInt(content.size());
+        content.writeTo(manifestOutputStream);
+
+        return manifest.toByteArray();
+    }
+
+    private void writeFile(final File file, final String content) throws IOException {
+        try (final FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    private String readFile(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private byte[] readAll(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[3];
+        int read;
+
+        try {
+            while ((read = inputStream.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+        }
+
+        finally {
+            inputStream.close();
+        }
+
+        return data.toByteArray();
+    }
+}
@@ -0,0 +1,250 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link FileTransferConnectionPool}, using a plain server socket on loopback.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class FileTransferConnectionPoolTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private FileTransferConnectionPool pool;
+    private ServerSocket serverSocket;
+    private User user;
+
+    @Before
+    public void setUp() throws IOException {
+        final User me = new User("Me", 123);
+
+        final Settings settings = mock(Settings.class);
+        when(settings.getMe()).thenReturn(me);
+
+        pool = new FileTransferConnectionPool(settings);
+        TestUtils.setFieldValueWithMock(pool, "LOG", Logger.class);
+
+        serverSocket = new ServerSocket(0);
+        serverSocket.setSoTimeout(5000);
+
+        user = new User("User", 124);
+        user.setIpAddress("127.0.0.1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pool.closeAll();
+        serverSocket.close();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Settings can not be null");
+
+        new FileTransferConnectionPool(null);
+    }
+
+    @Test
+    public void openFileStreamShouldThrowExceptionIfUserIsNull() throws IOException {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("User can not be null");
+
+        pool.openFileStream(null, serverSocket.getLocalPort(), 1);
+    }
+
+    @Test
+    public void openFileStreamShouldThrowExceptionAndNotKeepAnythingIfConnectFails() throws IOException {
+        final int port = serverSocket.getLocalPort();
+        serverSocket.close();
+
+        try {
+            pool.openFileStream(user, port, 1);
+            fail("Should not be able to connect");
+        }
+
+        catch (final IOException e) {
+            assertEquals(0, pool.getConnectionCount());
+        }
+    }
+
+    @Test
+    public void openFileStreamShouldReuseTheConnectionToTheSameUser() throws IOException {
+        final FileTransferConnectionPool.FileTransferOutputStream firstOut =
+                pool.openFileStream(user, serverSocket.getLocalPort(), 1);
+        final Socket socket = serverSocket.accept();
+        final DataInputStream in = readHeader(socket);
+
+        final FileTransferConnectionPool.FileTransferOutputStream secondOut =
+                pool.openFileStream(user, serverSocket.getLocalPort(), 2);
+        assertEquals(1, pool.getConnectionCount());
+
+        firstOut.close();
+        secondOut.abort();
+
+        assertFrame(in, FileTransferServer.FRAME_END, 1);
+        assertFrame(in, FileTransferServer.FRAME_ABORT, 2);
+
+        // Still in use after both files are done
+        final FileTransferConnectionPool.FileTransferOutputStream thirdOut =
+                pool.openFileStream(user, serverSocket.getLocalPort(), 3);
+        thirdOut.close();
+
+        assertFrame(in, FileTransferServer.FRAME_END, 3);
+        assertEquals(1, pool.getConnectionCount());
+
+        socket.close();
+    }
+
+    @Test
+    public void openFileStreamShouldConnectAgainWhenThePortChangesAndCloseTheOldConnectionWhenDone()
+            throws IOException {
+        final FileTransferConnectionPool.FileTransferOutputStream firstOut =
+                pool.openFileStream(user, serverSocket.getLocalPort(), 1);
+        final Socket firstSocket = serverSocket.accept();
+        final DataInputStream firstIn = readHeader(firstSocket);
+
+        final ServerSocket newServerSocket = new ServerSocket(0);
+        newServerSocket.setSoTimeout(5000);
+
+        final FileTransferConnectionPool.FileTransferOutputStream secondOut =
+                pool.openFileStream(user, newServerSocket.getLocalPort(), 2);
+        final Socket secondSocket = newServerSocket.accept();
+        final DataInputStream secondIn = readHeader(secondSocket);
+
+        assertEquals(1, pool.getConnectionCount());
+
+        // The file in progress on the old connection is allowed to finish
+        firstOut.close();
+        assertFrame(firstIn, FileTransferServer.FRAME_END, 1);
+        assertEquals(-1, firstIn.read());
+
+        secondOut.close();
+        assertFrame(secondIn, FileTransferServer.FRAME_END, 2);
+        assertEquals(1, pool.getConnectionCount());
+
+        firstSocket.close();
+        secondSocket.close();
+        newServerSocket.close();
+    }
+
+    @Test
+    public void closeIdleConnectionsShouldCloseConnectionsThatHaveNotBeenUsedForAWhile() throws IOException {
+        pool.openFileStream(user, serverSocket.getLocalPort(), 1).close();
+        final Socket firstSocket = serverSocket.accept();
+        final DataInputStream firstIn = readHeader(firstSocket);
+        assertFrame(firstIn, FileTransferServer.FRAME_END, 1);
+
+        pool.closeIdleConnections(System.currentTimeMillis());
+        assertEquals(1, pool.getConnectionCount());
+
+        pool.closeIdleConnections(System.currentTimeMillis() + FileTransferConnectionPool.IDLE_TIMEOUT + 1000);
+        assertEquals(0, pool.getConnectionCount());
+        assertEquals(-1, firstIn.read());
+
+        // A new connection is opened the next time
+        pool.openFileStream(user, serverSocket.getLocalPort(), 2).close();
+        final Socket secondSocket = serverSocket.accept();
+        assertFrame(readHeader(secondSocket), FileTransferServer.FRAME_END, 2);
+        assertEquals(1, pool.getConnectionCount());
+
+        firstSocket.close();
+        secondSocket.close();
+    }
+
+    @Test
+    public void failedConnectionShouldFailTheFileAndBeRemovedFromThePool() throws IOException {
+        final FileTransferConnectionPool.FileTransferOutputStream firstOut =
+                pool.openFileStream(user, serverSocket.getLocalPort(), 1);
+        serverSocket.accept().close();
+
+        try {
+            // The first writes can succeed before the connection notices that the other side is gone
+            for (int i = 0; i < 100; i++) {
+                firstOut.write(new byte[FileTransferServer.MAX_DATA_SIZE]);
+                firstOut.flush();
+            }
+
+            fail("Should fail to write");
+        }
+
+        catch (final IOException e) {
+            assertEquals(0, pool.getConnectionCount());
+        }
+
+        try {
+            firstOut.write(1);
+            fail("Should fail to write");
+        }
+
+        catch (final IOException e) {
+            assertEquals("Connection to 127.0.0.1 is closed", e.getMessage());
+        }
+
+        // A new connection is opened the next time
+        pool.openFileStream(user, serverSocket.getLocalPort(), 2).close();
+        final Socket secondSocket = serverSocket.accept();
+        assertFrame(readHeader(secondSocket), FileTransferServer.FRAME_END, 2);
+        assertEquals(1, pool.getConnectionCount());
+
+        secondSocket.close();
+    }
+
+    private DataInputStream readHeader(final Socket socket) throws IOException {
+        socket.setSoTimeout(5000);
+        final DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+
+        assertEquals(FileTransferServer.MAGIC, inputStream.readInt());
+        assertEquals(123, inputStream.readInt());
+
+        return inputStream;
+    }
+
+    private void assertFrame(final DataInputStream inputStream, final byte frameType, final int fileHash)
+            throws IOException {
+        assertEquals(frameType, inputStream.readByte());
+        assertEquals(fileHash, inputStream.readInt());
+    }
+}
@@ -0,0 +1,267 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link FileTransferServer} and {@link FileTransferConnectionPool}, using real sockets on loopback.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class FileTransferServerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private FileTransferServer server;
+    private FileTransferConnectionPool pool;
+    private Controller controller;
+    private User me;
+
+    @Before
+    public void setUp() {
+        me = new User("Me", 123);
+        me.setIpAddress("127.0.0.1");
+
+        final Settings settings = mock(Settings.class);
+        when(settings.getMe()).thenReturn(me);
+
+        // Sending files to myself, so I am also the user that connects
+        controller = mock(Controller.class);
+        when(controller.getUser(123)).thenReturn(me);
+
+        server = new FileTransferServer(controller, settings);
+        TestUtils.setFieldValueWithMock(server, "LOG", Logger.class);
+        pool = new FileTransferConnectionPool(settings);
+        TestUtils.setFieldValueWithMock(pool, "LOG", Logger.class);
+
+        server.startServer();
+        assertTrue(server.isStarted());
+    }
+
+    @After
+    public void tearDown() {
+        pool.closeAll();
+        server.stopServer();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfControllerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Controller can not be null");
+
+        new FileTransferServer(null, mock(Settings.class));
+    }
+
+    @Test
+    public void startServerShouldSetPortOnMeAndStopServerShouldReset() {
+        assertTrue(me.getFileTransferPort() > 0);
+        assertEquals(me.getFileTransferPort(), server.getPort());
+
+        server.stopServer();
+
+        assertFalse(server.isStarted());
+        assertEquals(0, me.getFileTransferPort());
+    }
+
+    @Test
+    public void severalFilesShouldBeSentOverTheSameConnectionAtTheSameTime() throws IOException {
+        final InputStream firstIn = server.expectFile(me, 1);
+        final InputStream secondIn = server.expectFile(me, 2);
+
+        final FileTransferConnectionPool.FileTransferOutputStream notExpectedOut =
+                pool.openFileStream(me, server.getPort(), 3);
+        final FileTransferConnectionPool.FileTransferOutputStream firstOut =
+                pool.openFileStream(me, server.getPort(), 1);
+        final FileTransferConnectionPool.FileTransferOutputStream secondOut =
+                pool.openFileStream(me, server.getPort(), 2);
+
+        assertEquals(1, pool.getConnectionCount());
+
+        notExpectedOut.write("skipped".getBytes());
+        notExpectedOut.close();
+        firstOut.write("first ".getBytes());
+        secondOut.write("second ".getBytes());
+        firstOut.write("file".getBytes());
+        secondOut.write(createData(200000));
+        firstOut.close();
+        secondOut.close();
+
+        assertEquals("first file", new String(readAll(firstIn)));
+
+        final byte[] second = readAll(secondIn);
+        assertEquals(200007, second.length);
+        assertEquals("second ", new String(second, 0, 7));
+        assertArrayEquals(createData(200000), Arrays.copyOfRange(second, 7, second.length));
+
+        // The connection is kept open for the next file
+        assertEquals(1, pool.getConnectionCount());
+
+        final InputStream thirdIn = server.expectFile(me, 4);
+        final FileTransferConnectionPool.FileTransferOutputStream thirdOut =
+                pool.openFileStream(me, server.getPort(), 4);
+        thirdOut.write("third".getBytes());
+        thirdOut.close();
+
+        assertEquals("third", new String(readAll(thirdIn)));
+        assertEquals(1, pool.getConnectionCount());
+    }
+
+    @Test
+    public void abortShouldFailTheFileOnTheReceiver() throws IOException {
+        final InputStream in = server.expectFile(me, 1);
+        final FileTransferConnectionPool.FileTransferOutputStream out = pool.openFileStream(me, server.getPort(), 1);
+
+        out.write("half a file".getBytes());
+        out.abort();
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("The sender aborted the file");
+
+        readAll(in);
+    }
+
+    @Test
+    public void fileThatIsNotSavedShouldFailWithoutStoppingTheOtherFilesOnTheConnection() throws IOException {
+        TestUtils.setFieldValue(server, "queueTimeout", 200L);
+
+        final InputStream stuckIn = server.expectFile(me, 1);
+        final InputStream secondIn = server.expectFile(me, 2);
+        final FileTransferConnectionPool.FileTransferOutputStream stuckOut =
+                pool.openFileStream(me, server.getPort(), 1);
+        final FileTransferConnectionPool.FileTransferOutputStream secondOut =
+                pool.openFileStream(me, server.getPort(), 2);
+
+        // Nobody reads the stuck file, so the queue is full after this
+        for (int i = 0; i <= FileTransferServer.MAX_QUEUED_FRAMES; i++) {
+            stuckOut.write(createData(FileTransferServer.MAX_DATA_SIZE));
+        }
+
+        secondOut.write("second file".getBytes());
+        stuckOut.close();
+        secondOut.close();
+
+        assertEquals("second file", new String(readAll(secondIn)));
+        assertEquals(1, pool.getConnectionCount());
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("The file was not saved fast enough");
+
+        readAll(stuckIn);
+    }
+
+    @Test
+    public void closingTheConnectionShouldFailFilesInProgress() throws IOException {
+        final InputStream in = server.expectFile(me, 1);
+        final FileTransferConnectionPool.FileTransferOutputStream out = pool.openFileStream(me, server.getPort(), 1);
+
+        out.write("half a file".getBytes());
+        out.flush();
+        assertEquals('h', in.read());
+
+        pool.closeAll();
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("The sender aborted the file");
+
+        readAll(in);
+    }
+
+    @Test
+    public void serverShouldCloseConnectionsFromUnknownUsers() throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        final DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+        outputStream.writeInt(FileTransferServer.MAGIC);
+        outputStream.writeInt(999);
+        outputStream.flush();
+
+        assertEquals(-1, socket.getInputStream().read());
+        socket.close();
+    }
+
+    @Test
+    public void closeIdleConnectionsShouldOnlyCloseConnectionsWithoutFilesInProgress() throws IOException {
+        server.expectFile(me, 1);
+        final FileTransferConnectionPool.FileTransferOutputStream out = pool.openFileStream(me, server.getPort(), 1);
+        final long later = System.currentTimeMillis() + FileTransferConnectionPool.IDLE_TIMEOUT + 1000;
+
+        pool.closeIdleConnections(later);
+        assertEquals(1, pool.getConnectionCount());
+
+        out.close();
+
+        pool.closeIdleConnections(later);
+        assertEquals(0, pool.getConnectionCount());
+    }
+
+    private byte[] readAll(final InputStream inputStream) throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+
+        try {
+            while ((read = inputStream.read(buffer)) != -1) {
+                data.write(buffer, 0, read);
+            }
+        }
+
+        finally {
+            inputStream.close();
+        }
+
+        return data.toByteArray();
+    }
+
+    private byte[] createData(final int size) {
+        final byte[] data = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,79 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.MulticastSocket;
+import java.util.Random;
+
+/**
+ * A multicast socket that drops some of the packets it's asked to send, to simulate a network that loses packets.
+ *
+ * <p>The packets to drop are picked at random, but from a seed, so the same packets are dropped each time
+ * as long as they are sent in the same order.</p>
+ *
+ * @author Christian Ihle
+ */
+public class LossyMulticastSocket extends MulticastSocket {
+
+    private final int lossPercent;
+    private final Random random;
+    private int droppedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param port The port to bind the socket to.
+     * @param lossPercent The percentage of packets to drop.
+     * @param seed The seed for picking the packets to drop.
+     * @throws IOException If the socket could not be created.
+     */
+    public LossyMulticastSocket(final int port, final int lossPercent, final long seed) throws IOException {
+        super(port);
+
+        this.lossPercent = lossPercent;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void send(final DatagramPacket packet) throws IOException {
+        synchronized (this) {
+            if (random.nextInt(100) < lossPercent) {
+                droppedCount++;
+                return;
+            }
+        }
+
+        super.send(packet);
+    }
+
+    /**
+     * Gets the number of packets that were dropped instead of sent.
+     *
+     * @return The number of dropped packets.
+     */
+    public synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,432 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.util.LatencyHistogram;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test of {@link MessageDeduplicator}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageDeduplicatorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MessageDeduplicator messageDeduplicator;
+
+    private Controller controller;
+    private MessageRepairService messageRepairService;
+    private TransportPolicy transportPolicy;
+    private ParsedMessageListener mainChatListener;
+    private ParsedMessageListener privateChatListener;
+    private Logger log;
+    private User user;
+
+    @Before
+    public void setUp() {
+        controller = mock(Controller.class);
+        messageRepairService = mock(MessageRepairService.class);
+        transportPolicy = mock(TransportPolicy.class);
+        mainChatListener = mock(ParsedMessageListener.class);
+        privateChatListener = mock(ParsedMessageListener.class);
+
+        user = new User("Christian", 16320462);
+        when(controller.getUser(16320462)).thenReturn(user);
+
+        messageDeduplicator = new MessageDeduplicator(controller, messageRepairService, transportPolicy);
+        messageDeduplicator.registerMainChatReceiverListener(mainChatListener);
+        messageDeduplicator.registerPrivateChatReceiverListener(privateChatListener);
+
+        log = TestUtils.setFieldValueWithMock(messageDeduplicator, "LOG", Logger.class);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfControllerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Controller can not be null");
+
+        new MessageDeduplicator(null, messageRepairService, transportPolicy);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfMessageRepairServiceIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Message repair service can not be null");
+
+        new MessageDeduplicator(controller, null, transportPolicy);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTransportPolicyIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Transport policy can not be null");
+
+        new MessageDeduplicator(controller, messageRepairService, null);
+    }
+
+    @Test
+    public void messageArrivedShouldGiveRequestForMissingMessagesToRepairServiceInsteadOfForwarding() {
+        user.setTcpEnabled(true);
+
+        messageDeduplicator.messageArrived("16320462!NACK#Christian:12345678:5,6", "192.168.1.1");
+
+        final ArgumentCaptor<ParsedMessage> captor = ArgumentCaptor.forClass(ParsedMessage.class);
+        verify(messageRepairService).requestArrived(captor.capture());
+        assertEquals("12345678:5,6", captor.getValue().getContent());
+
+        verifyZeroInteractions(mainChatListener, privateChatListener, transportPolicy);
+    }
+
+    @Test
+    public void messageArrivedShouldTellTransportPolicyWhenOwnMessagesWereRequestedAgain() {
+        when(messageRepairService.requestArrived(any(ParsedMessage.class))).thenReturn(2);
+
+        messageDeduplicator.messageArrived("16320462!NACK#Christian:12345678:5,6", "192.168.1.1");
+
+        verify(transportPolicy).messagesLost(user, 2);
+    }
+
+    @Test
+    public void messageArrivedShouldTellTransportPolicyWhichWaySequencedMessagesArrived() {
+        user.setTcpEnabled(true);
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1", user);
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 2), "192.168.1.1", user);
+
+        verify(transportPolicy).messageArrived(eq(user), eq(1L), eq(true), anyLong());
+        verify(transportPolicy).messageArrived(eq(user), eq(1L), eq(false), anyLong());
+        verify(transportPolicy).messageArrived(eq(user), eq(2L), eq(false), anyLong());
+    }
+
+    @Test
+    public void messageArrivedShouldLearnTheIpAddressFromTheOtherProtocolFamilyFromDuplicates() {
+        user.setIpAddress("192.168.1.1");
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "2001:db8:0:0:0:0:0:1");
+
+        verify(mainChatListener, times(1)).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+        verify(transportPolicy).multicastArrivedFrom(eq(user), eq("192.168.1.1"), eq(1L), anyLong());
+        verify(transportPolicy).multicastArrivedFrom(eq(user), eq("2001:db8:0:0:0:0:0:1"), eq(1L), anyLong());
+        assertEquals(Arrays.asList("192.168.1.1", "2001:db8:0:0:0:0:0:1"), user.getIpAddresses());
+    }
+
+    @Test
+    public void messageArrivedShouldLearnTheAdditionalIpAddressOfUserOnTwoNetworksFromDuplicates() {
+        user.setIpAddress("192.168.1.1");
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "10.0.0.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 2), "10.0.0.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 2), "192.168.1.1");
+
+        verify(mainChatListener).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+        verify(mainChatListener).messageArrived(any(ParsedMessage.class), eq("10.0.0.1"));
+        assertTrue(user.hasAdditionalIpAddress("10.0.0.1"));
+        assertNull(user.updateIpAddress("10.0.0.1"));
+        assertEquals(Arrays.asList("192.168.1.1"), user.getIpAddresses());
+    }
+
+    @Test
+    public void messageArrivedShouldNotTellTransportPolicyAboutOwnMessages() {
+        user.setMe(true);
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+
+        verifyZeroInteractions(transportPolicy);
+    }
+
+    @Test
+    public void messageArrivedShouldTellRepairServiceAboutGapsInSequenceNumbers() {
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 2), "192.168.1.1");
+        verifyZeroInteractions(messageRepairService);
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 4), "192.168.1.1");
+        verify(messageRepairService).messagesMissing(eq(user), any(SequenceWindow.class));
+    }
+
+    @Test
+    public void messageArrivedShouldNotTellRepairServiceAboutGapsInOwnMessages() {
+        user.setMe(true);
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 4), "192.168.1.1");
+
+        verifyZeroInteractions(messageRepairService);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardParsedChatMessageToMainChatListener() {
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(mainChatListener);
+        assertParsedMessage(parsedMessage, "MSG", "[-15987646]Hello");
+        verifyZeroInteractions(privateChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardParsedPrivateMessageToPrivateChatListener() {
+        messageDeduplicator.messageArrived("16320462!PRIVMSG#Christian:(1234)[-15987646]Hello", "192.168.1.1");
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(privateChatListener);
+        assertParsedMessage(parsedMessage, "PRIVMSG", "(1234)[-15987646]Hello");
+        verifyZeroInteractions(mainChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardMessagesFromUnknownUsers() {
+        messageDeduplicator.messageArrived("12345!LOGON#Newbie:", "192.168.1.1");
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(mainChatListener);
+        assertParsedMessage(parsedMessage, "LOGON", "");
+    }
+
+    @Test
+    public void messageArrivedShouldForwardUnsequencedMessageFromPrimaryAndAdditionalIpAddressOnlyOnce() {
+        user.setIpAddress("192.168.1.1");
+        user.addAdditionalIpAddress("10.0.0.1");
+
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "10.0.0.1");
+
+        verify(mainChatListener).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+        verifyNoMoreInteractions(mainChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardUnsequencedMessageFromIPv4AndIPv6AddressOnlyOnce() {
+        user.setIpAddress("192.168.1.1");
+        user.addIpAddress("2001:db8:0:0:0:0:0:1");
+
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "2001:db8:0:0:0:0:0:1");
+
+        verify(mainChatListener).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+        verifyNoMoreInteractions(mainChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardMessageFromUnknownUserFromIPv4AndIPv6AddressOnlyOnce() {
+        messageDeduplicator.messageArrived("12345!LOGON#Newbie:", "192.168.1.2");
+        messageDeduplicator.messageArrived("12345!LOGON#Newbie:", "2001:db8:0:0:0:0:0:2");
+
+        verify(mainChatListener).messageArrived(any(ParsedMessage.class), eq("192.168.1.2"));
+        verifyNoMoreInteractions(mainChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldGiveRequestForMissingMessagesFromIPv4AndIPv6AddressToRepairServiceOnlyOnce() {
+        messageDeduplicator.messageArrived("16320462!NACK#Christian:12345678:5,6", "192.168.1.1");
+        messageDeduplicator.messageArrived("16320462!NACK#Christian:12345678:5,6", "2001:db8:0:0:0:0:0:1");
+
+        verify(messageRepairService, times(1)).requestArrived(any(ParsedMessage.class));
+    }
+
+    @Test
+    public void messageArrivedShouldForwardTheSameUnsequencedMessageAgainLater() throws InterruptedException {
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+        Thread.sleep(MessageDeduplicator.REPEAT_WINDOW + 50);
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+
+        verify(mainChatListener, times(2)).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+    }
+
+    @Test
+    public void messageArrivedShouldNotDropDifferentUnsequencedMessages() {
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello again", "192.168.1.1");
+
+        verify(mainChatListener, times(2)).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+    }
+
+    @Test
+    public void messageArrivedShouldNotForwardMulticastMessagesFromUsersWithTcpEnabled() {
+        user.setTcpEnabled(true);
+
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+
+        verifyZeroInteractions(mainChatListener, privateChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardTcpMessagesFromUsersWithTcpEnabled() {
+        user.setTcpEnabled(true);
+
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1", user);
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(mainChatListener);
+        assertParsedMessage(parsedMessage, "MSG", "[-15987646]Hello");
+    }
+
+    @Test
+    public void messageArrivedShouldNotForwardTcpMessagesFromUsersWithTcpDisabled() {
+        messageDeduplicator.messageArrived("16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1", user);
+
+        verifyZeroInteractions(mainChatListener, privateChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldLogAndIgnoreBadlyFormattedMessages() {
+        messageDeduplicator.messageArrived("a16320462!MSG#Christian:[-15987646]Hello", "192.168.1.1");
+
+        verify(log).warning("Failed to parse message: %s, message=%s",
+                            "For input string: \"a16320462\"", "a16320462!MSG#Christian:[-15987646]Hello");
+        verifyZeroInteractions(mainChatListener, privateChatListener);
+        verifyZeroInteractions(controller);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardSequencedMessageFromFirstSourceOnly() {
+        user.setTcpEnabled(true);
+        final String message = MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 10);
+
+        messageDeduplicator.messageArrived(message, "192.168.1.1");
+        messageDeduplicator.messageArrived(message, "192.168.1.1", user);
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(mainChatListener);
+        assertParsedMessage(parsedMessage, "MSG", "[-15987646]Hello");
+        assertEquals(10, parsedMessage.getSequenceNumber());
+        assertEquals(1, messageDeduplicator.getDuplicateMessageCount());
+    }
+
+    @Test
+    public void messageArrivedShouldForwardSequencedMessageFromTcpWhenItArrivesFirst() {
+        user.setTcpEnabled(true);
+        final String message = MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 10);
+
+        messageDeduplicator.messageArrived(message, "192.168.1.1", user);
+        messageDeduplicator.messageArrived(message, "192.168.1.1");
+
+        verifyMessageForwardedTo(mainChatListener);
+    }
+
+    @Test
+    public void messageArrivedShouldForwardSequencedMulticastMessagesWhileTcpIsBeingConnected() {
+        final String message1 = MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 10);
+        final String message2 = MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 11);
+
+        messageDeduplicator.messageArrived(message1, "192.168.1.1");
+        user.setTcpEnabled(true);
+        messageDeduplicator.messageArrived(message2, "192.168.1.1");
+
+        verify(mainChatListener, times(2)).messageArrived(any(ParsedMessage.class), eq("192.168.1.1"));
+    }
+
+    @Test
+    public void messageArrivedShouldEnableSequenceNumbersForUserWhenSequencedMulticastMessageArrives() {
+        messageDeduplicator.messageArrived("16320462!IDLE#Christian:", "192.168.1.1");
+        assertFalse(user.isSequenceNumbersEnabled());
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        assertTrue(user.isSequenceNumbersEnabled());
+    }
+
+    @Test
+    public void getMissingMessageCountShouldCountSequenceNumbersThatNeverArrived() {
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 1), "192.168.1.1");
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 3), "192.168.1.1");
+        assertEquals(0, messageDeduplicator.getMissingMessageCount());
+
+        messageDeduplicator.messageArrived(MessageTrailer.addSequenceNumber("16320462!IDLE#Christian:", 100), "192.168.1.1");
+        assertEquals(100 - SequenceWindow.WINDOW_SIZE - 3, messageDeduplicator.getMissingMessageCount());
+    }
+
+    @Test
+    public void messageArrivedShouldForwardMessageWhenAllFragmentsHaveArrived() {
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            text.append("Hello ").append(i).append(' ');
+        }
+
+        final String message = MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]" + text, 3);
+        final List<String> fragments = MessageFragmenter.split(message, 1);
+        assertEquals(2, fragments.size());
+
+        messageDeduplicator.messageArrived(fragments.get(1), "192.168.1.1");
+        verifyZeroInteractions(mainChatListener);
+
+        messageDeduplicator.messageArrived(fragments.get(0), "192.168.1.1");
+
+        final ParsedMessage parsedMessage = verifyMessageForwardedTo(mainChatListener);
+        assertParsedMessage(parsedMessage, "MSG", "[-15987646]" + text);
+        assertEquals(3, parsedMessage.getSequenceNumber());
+    }
+
+    @Test
+    public void messageArrivedShouldRecordTraceStagesOnlyForTheFirstCopyOfTracedMessage() {
+        user.setTcpEnabled(true);
+        final String message = MessageTrailer.addTraceTime(
+                MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 10),
+                System.currentTimeMillis());
+        final LatencyHistogram histogram = MessageTrace.getHistogram(MessageTraceStage.DEDUPLICATED);
+        final long countBefore = histogram.getCount();
+
+        try {
+            MessageTrace.startReceiving(message);
+            messageDeduplicator.messageArrived(message, "192.168.1.1");
+            MessageTrace.startReceiving(message);
+            messageDeduplicator.messageArrived(message, "192.168.1.1", user);
+        }
+
+        finally {
+            MessageTrace.clear();
+        }
+
+        assertEquals(countBefore + 1, histogram.getCount());
+        verifyMessageForwardedTo(mainChatListener);
+    }
+
+    private ParsedMessage verifyMessageForwardedTo(final ParsedMessageListener listener) {
+        final ArgumentCaptor<ParsedMessage> messageCaptor = ArgumentCaptor.forClass(ParsedMessage.class);
+        verify(listener).messageArrived(messageCaptor.capture(), eq("192.168.1.1"));
+
+        return messageCaptor.getValue();
+    }
+
+    private void assertParsedMessage(final ParsedMessage parsedMessage, final String type, final String content) {
+        assertEquals(type, parsedMessage.getType());
+        assertEquals(content, parsedMessage.getContent());
+    }
+}
@@ -0,0 +1,120 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import net.usikkert.kouchat.Constants;
+import net.usikkert.kouchat.util.Tools;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link MessageFragmenter}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageFragmenterTest {
+
+    @Test
+    public void splitShouldCreateFragmentsThatFitInNetworkPackets() {
+        final String message = "1234!MSG#Christian:[-15987646]" + createText(2000, 'a');
+
+        final List<String> fragments = MessageFragmenter.split(message, 7);
+
+        assertEquals(5, fragments.size());
+
+        for (final String fragment : fragments) {
+            assertTrue(Tools.getBytes(fragment) <= Constants.NETWORK_PACKET_SIZE);
+        }
+
+        assertTrue(fragments.get(0).startsWith("1234!FRAGMENT#Christian:7:0:5:[1234!MSG#Christian:[-15987646]aaa"));
+        assertTrue(fragments.get(4).startsWith("1234!FRAGMENT#Christian:7:4:5:[aaa"));
+        assertTrue(fragments.get(4).endsWith("aaa]"));
+    }
+
+    @Test
+    public void splitShouldNeverSplitCharactersAndCountBytes() {
+        // Each of these is 4 bytes in UTF-8, and 2 chars in Java
+        final String message = "1234!MSG#Christian:[-15987646]" + createText(600, "\uD83D\uDE00");
+
+        final List<String> fragments = MessageFragmenter.split(message, 1);
+        final StringBuilder joined = new StringBuilder();
+
+        for (final String fragment : fragments) {
+            assertTrue(Tools.getBytes(fragment) <= Constants.NETWORK_PACKET_SIZE);
+
+            final String part = fragment.substring(fragment.indexOf('[') + 1, fragment.length() - 1);
+            assertFalse(Character.isHighSurrogate(part.charAt(part.length() - 1)));
+            joined.append(part);
+        }
+
+        assertEquals(message, joined.toString());
+    }
+
+    @Test
+    public void splitShouldKeepWhitespaceAndTrailerInsideBrackets() {
+        final String message = MessageTrailer.addSequenceNumber("1234!MSG#Christian:[-15987646]" +
+                                                                        createText(700, ' '), 5);
+
+        final List<String> fragments = MessageFragmenter.split(message, 1);
+
+        assertEquals(2, fragments.size());
+        assertTrue(fragments.get(0).endsWith(" ]"));
+        assertTrue(fragments.get(1).startsWith("1234!FRAGMENT#Christian:1:1:2:[ "));
+
+        // What the receiver does with each packet
+        assertEquals(fragments.get(1), MessageTrailer.trim(fragments.get(1)));
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, MessageTrailer.getSequenceNumber(fragments.get(1)));
+    }
+
+    @Test
+    public void splitShouldReturnEmptyListForInvalidMessage() {
+        assertTrue(MessageFragmenter.split(createText(1000, 'a'), 1).isEmpty());
+        assertTrue(MessageFragmenter.split("1234#MSG!Christian:" + createText(1000, 'a'), 1).isEmpty());
+    }
+
+    @Test
+    public void splitShouldReturnEmptyListIfMessageNeedsTooManyFragments() {
+        final String message = "1234!MSG#Christian:[-15987646]" + createText(20000, 'a');
+
+        assertTrue(MessageFragmenter.split(message, 1).isEmpty());
+    }
+
+    private String createText(final int count, final char character) {
+        return createText(count, String.valueOf(character));
+    }
+
+    private String createText(final int count, final String text) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+
+        return builder.toString();
+    }
+}
@@ -109,7 +109,7 @@ public class MessageParserTest {
                                      "192.168.1.1");
 
         verify(responder).clientInfo(19879835, "KouChat v1.3.0 Swing", 1854,
-                                     "Linux", 40656, 0);
+                                     "Linux", 40656, 0, 0);
     }
 
     @Test
@@ -118,7 +118,62 @@ public class MessageParserTest {
                                      "192.168.1.1");
 
         verify(responder).clientInfo(10066122, "KouChat v1.4.0 Swing", 1753,
-                                     "Linux", 40656, 40657);
+                                     "Linux", 40656, 40657, 0);
+    }
+
+    @Test
+    public void messageArrivedShouldParseClientWithFileTransferPort() {
+        messageParser.messageArrived("10066122!CLIENT#Christian:(KouChat v1.4.0 Swing)[1753]{Linux}<40656>/40657\\|40756|",
+                                     "192.168.1.1");
+
+        verify(responder).clientInfo(10066122, "KouChat v1.4.0 Swing", 1753,
+                                     "Linux", 40656, 40657, 40756);
+    }
+
+    @Test
+    public void messageArrivedShouldParseExposingWithoutCreatingUser() {
+        messageParser.messageArrived("10066122!EXPOSING#Christian:Gone for lunch", "192.168.1.1");
+
+        verify(responder).userExposing(10066122, "Christian", "Gone for lunch", "192.168.1.1");
+    }
+
+    @Test
+    public void messageArrivedShouldParseSendFolder() {
+        messageParser.messageArrived("10066122!SENDFOLDER#Christian:(1234)[80800]<250>{37563645}my {photos}",
+                                     "192.168.1.1");
+
+        verify(responder).folderSend(10066122, 80800, "my {photos}", "Christian", 37563645, 250);
+    }
+
+    @Test
+    public void messageArrivedShouldNotParseSendFolderToOtherUsers() {
+        messageParser.messageArrived("10066122!SENDFOLDER#Christian:(4321)[80800]<250>{37563645}photos",
+                                     "192.168.1.1");
+
+        verify(responder, never()).folderSend(anyInt(), anyLong(), anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void messageArrivedShouldNotifyThatUserIsAliveForAnyMessageFromOtherUsers() {
+        messageParser.messageArrived("10066122!WRITING#Christian:", "192.168.1.1");
+
+        verify(responder).userAlive(10066122);
+        verify(responder).writingChanged(10066122, true);
+    }
+
+    @Test
+    public void messageArrivedShouldParseGetTopicWithUserCode() {
+        messageParser.messageArrived("10066122!GETTOPIC#Christian:", "192.168.1.1");
+
+        verify(responder).topicRequested(10066122);
+    }
+
+    @Test
+    public void messageArrivedShouldNotNotifyThatUserIsAliveForMessagesFromMe() {
+        messageParser.messageArrived("1234!IDLE#Test:", "192.168.1.1");
+
+        verify(responder, never()).userAlive(anyInt());
+        verify(responder).meIdle("192.168.1.1");
     }
 
     @Test
@@ -137,6 +192,24 @@ public class MessageParserTest {
         checkException(exceptionCaptor, NumberFormatException.class, "For input string: \"b40657\"");
     }
 
+    @Test
+    public void messageArrivedShouldLogIfFileTransferPortCouldNotBeParsed() {
+        messageParser.messageArrived("10066122!CLIENT#Christian:(KouChat v1.4.0 Swing)[1753]{Linux}<40656>/40657\\|c40756|",
+                                     "192.168.1.1");
+
+        final ArgumentCaptor<Exception> exceptionCaptor = ArgumentCaptor.forClass(Exception.class);
+
+        verify(log).log(eq(Level.WARNING),
+                        eq("Failed to parse file transfer port. " +
+                                   "message=10066122!CLIENT#Christian:(KouChat v1.4.0 Swing)[1753]{Linux}<40656>/40657\\|c40756|, " +
+                                   "ipAddress=192.168.1.1"),
+                        exceptionCaptor.capture());
+
+        checkException(exceptionCaptor, NumberFormatException.class, "For input string: \"c40756\"");
+        verify(responder).clientInfo(10066122, "KouChat v1.4.0 Swing", 1753,
+                                     "Linux", 40656, 40657, 0);
+    }
+
     @Test
     public void messageArrivedShouldLogIfTimeSinceLogonCouldNotBeParsed() {
         messageParser.messageArrived("16320462!CLIENT#Christian:(KouChat v1.3.0 Swing)[a2688]{Linux}<40657>",
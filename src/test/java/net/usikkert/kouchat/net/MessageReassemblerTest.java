@@ -0,0 +1,159 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link MessageReassembler}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageReassemblerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MessageReassembler messageReassembler;
+    private Logger log;
+    private String message;
+    private List<String> fragments;
+
+    @Before
+    public void setUp() {
+        messageReassembler = new MessageReassembler();
+        log = TestUtils.setFieldValueWithMock(messageReassembler, "LOG", Logger.class);
+
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 150; i++) {
+            text.append("Line ").append(i).append(' ');
+        }
+
+        message = "1234!MSG#Christian:[-15987646]" + text;
+        fragments = MessageFragmenter.split(message, 10);
+        assertEquals(3, fragments.size());
+    }
+
+    @Test
+    public void fragmentArrivedShouldThrowExceptionIfFragmentIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Fragment can not be null");
+
+        messageReassembler.fragmentArrived(null, 1000);
+    }
+
+    @Test
+    public void fragmentArrivedShouldReturnMessageWhenLastFragmentArrives() {
+        assertNull(fragmentArrived(0, 1000));
+        assertNull(fragmentArrived(1, 1000));
+        assertEquals(1, messageReassembler.getIncompleteMessageCount());
+
+        assertEquals(message, fragmentArrived(2, 1000));
+        assertEquals(0, messageReassembler.getIncompleteMessageCount());
+    }
+
+    @Test
+    public void fragmentArrivedShouldHandleFragmentsInAnyOrderAndDuplicates() {
+        assertNull(fragmentArrived(2, 1000));
+        assertNull(fragmentArrived(0, 1000));
+        assertNull(fragmentArrived(2, 1000));
+
+        assertEquals(message, fragmentArrived(1, 1000));
+    }
+
+    @Test
+    public void fragmentArrivedShouldKeepFragmentsFromDifferentUsersApart() {
+        final List<String> otherFragments = MessageFragmenter.split(message.replace("1234!", "5678!"), 10);
+
+        assertNull(fragmentArrived(0, 1000));
+        assertNull(messageReassembler.fragmentArrived(new ParsedMessage(otherFragments.get(1)), 1000));
+        assertNull(fragmentArrived(1, 1000));
+
+        assertEquals(message, fragmentArrived(2, 1000));
+        assertEquals(1, messageReassembler.getIncompleteMessageCount());
+    }
+
+    @Test
+    public void fragmentArrivedShouldDropIncompleteMessagesAfterTimeout() {
+        assertNull(fragmentArrived(0, 1000));
+        assertNull(fragmentArrived(1, 1000));
+
+        assertNull(fragmentArrived(2, 1000 + MessageReassembler.TIMEOUT));
+
+        assertEquals(1, messageReassembler.getDroppedMessageCount());
+        assertEquals(1, messageReassembler.getIncompleteMessageCount());
+    }
+
+    @Test
+    public void fragmentArrivedShouldDropOldestIncompleteMessageWhenFull() {
+        for (int i = 0; i < MessageReassembler.MAX_INCOMPLETE_MESSAGES; i++) {
+            final String fragment = MessageFragmenter.split(message, 100 + i).get(0);
+            assertNull(messageReassembler.fragmentArrived(new ParsedMessage(fragment), 1000));
+        }
+
+        assertNull(fragmentArrived(0, 1000));
+
+        assertEquals(MessageReassembler.MAX_INCOMPLETE_MESSAGES, messageReassembler.getIncompleteMessageCount());
+        assertEquals(1, messageReassembler.getDroppedMessageCount());
+
+        assertNull(fragmentArrived(1, 1000));
+        assertEquals(message, fragmentArrived(2, 1000));
+    }
+
+    @Test
+    public void fragmentArrivedShouldLogAndIgnoreBadlyFormattedFragments() {
+        assertNull(messageReassembler.fragmentArrived(new ParsedMessage("1234!FRAGMENT#Christian:1:a:2:[Hello]"), 1000));
+
+        verify(log).warning("Failed to parse fragment: %s, message=%s",
+                            "For input string: \"a\"", "1234!FRAGMENT#Christian:1:a:2:[Hello]");
+    }
+
+    @Test
+    public void fragmentArrivedShouldLogAndIgnoreInvalidFragments() {
+        assertNull(messageReassembler.fragmentArrived(new ParsedMessage("1234!FRAGMENT#Christian:1:2:2:[Hello]"), 1000));
+        assertNull(messageReassembler.fragmentArrived(new ParsedMessage("1234!FRAGMENT#Christian:1:0:99:[Hello]"), 1000));
+        assertNull(messageReassembler.fragmentArrived(new ParsedMessage("1234!FRAGMENT#Christian:1:0:2:Hello"), 1000));
+
+        verify(log).warning("Invalid fragment: %s", "1234!FRAGMENT#Christian:1:2:2:[Hello]");
+        verify(log).warning("Invalid fragment: %s", "1234!FRAGMENT#Christian:1:0:99:[Hello]");
+        verify(log).warning("Invalid fragment: %s", "1234!FRAGMENT#Christian:1:0:2:Hello");
+        assertEquals(0, messageReassembler.getIncompleteMessageCount());
+    }
+
+    private String fragmentArrived(final int index, final long now) {
+        return messageReassembler.fragmentArrived(new ParsedMessage(fragments.get(index)), now);
+    }
+}
@@ -0,0 +1,228 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.MulticastSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.tcp.TCPNetworkService;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.TestUtils;
+import net.usikkert.kouchat.util.Tools;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Test of {@link MessageRepairService} and {@link MessageReassembler} together with {@link MessageDeduplicator},
+ * with two clients sending real multicast on loopback through sockets that lose 10% of the packets.
+ *
+ * <p>Uses real multicast, so it's not run as part of the build.</p>
+ *
+ * @author Christian Ihle
+ */
+@Ignore
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageRepairLoopbackTest {
+
+    private static final String ADDRESS = "224.168.5.241";
+    private static final int PORT = 50241;
+    private static final int LOSS_PERCENT = 10;
+    private static final int NUMBER_OF_MESSAGES = 200;
+    private static final int NUMBER_OF_LARGE_MESSAGES = 20;
+
+    private Client sender;
+    private Client receiver;
+
+    @Before
+    public void setUp() {
+        sender = new Client("Sender", 1001);
+        receiver = new Client("Receiver", 1002);
+
+        sender.knows(receiver);
+        receiver.knows(sender);
+
+        sender.start();
+        receiver.start();
+    }
+
+    @After
+    public void tearDown() {
+        sender.stop();
+        receiver.stop();
+    }
+
+    @Test
+    public void receiverShouldGetAllMessagesEvenIfPacketsAreLost() {
+        for (int i = 0; i < NUMBER_OF_MESSAGES; i++) {
+            sender.sendMessage("1001!MSG#Sender:[-15987646]Message " + i);
+            Tools.sleep(20);
+        }
+
+        // A lost message is only noticed when a later one arrives, like the idle messages sent regularly
+        for (int i = 0; i < 3; i++) {
+            sender.sendMessage("1001!IDLE#Sender:");
+        }
+
+        for (int i = 0; i < 50 && receiver.getMessageCount() < NUMBER_OF_MESSAGES; i++) {
+            Tools.sleep(100);
+        }
+
+        System.out.println("Messages received: " + receiver.getMessageCount() + " of " + NUMBER_OF_MESSAGES +
+                                   ", packets dropped by sender: " + sender.getDroppedCount() +
+                                   ", by receiver: " + receiver.getDroppedCount() +
+                                   ", requested: " + receiver.repairService.getRequestedMessageCount() +
+                                   ", retransmitted: " + sender.repairService.getRetransmittedMessageCount());
+
+        assertTrue(sender.getDroppedCount() > 0);
+        assertEquals(NUMBER_OF_MESSAGES, receiver.getMessageCount());
+    }
+
+    @Test
+    public void receiverShouldGetAllLargeMessagesEvenIfFragmentsAreLost() {
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 200; i++) {
+            text.append("at net.usikkert.kouchat.Line").append(i).append(' ');
+        }
+
+        // Messages from before the first one the receiver sees are not repaired, so start like a logon
+        for (int i = 0; i < 3; i++) {
+            sender.sendMessage("1001!IDLE#Sender:");
+        }
+
+        for (int i = 0; i < NUMBER_OF_LARGE_MESSAGES; i++) {
+            sender.sendMessage("1001!MSG#Sender:[-15987646]Message " + i + " " + text);
+            Tools.sleep(100);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            sender.sendMessage("1001!IDLE#Sender:");
+        }
+
+        for (int i = 0; i < 50 && receiver.getMessageCount() < NUMBER_OF_LARGE_MESSAGES; i++) {
+            Tools.sleep(100);
+        }
+
+        System.out.println("Large messages received: " + receiver.getMessageCount() + " of " + NUMBER_OF_LARGE_MESSAGES +
+                                   ", packets dropped by sender: " + sender.getDroppedCount() +
+                                   ", requested: " + receiver.repairService.getRequestedMessageCount() +
+                                   ", retransmitted: " + sender.repairService.getRetransmittedMessageCount());
+
+        assertEquals(NUMBER_OF_LARGE_MESSAGES, receiver.getMessageCount());
+    }
+
+    /**
+     * One client, with the network parts needed to send, receive and repair messages.
+     */
+    private static class Client implements ParsedMessageListener {
+
+        private final Settings settings;
+        private final Controller controller;
+        private final MessageSender messageSender;
+        private final MessageReceiver messageReceiver;
+        private final MessageRepairService repairService;
+        private final Set<String> messages;
+
+        private LossyMulticastSocket socket;
+        private long sequenceNumber;
+
+        Client(final String nick, final int code) {
+            settings = new Settings();
+            settings.getMe().setNick(nick);
+            TestUtils.setFieldValue(settings.getMe(), "code", code);
+
+            final ErrorHandler errorHandler = new ErrorHandler();
+            controller = mock(Controller.class);
+            messages = new HashSet<>();
+
+            messageSender = new MessageSender(ADDRESS, PORT, errorHandler) {
+                @Override
+                protected MulticastSocket createSocket(final int socketPort) throws IOException {
+                    socket = new LossyMulticastSocket(socketPort, LOSS_PERCENT, code);
+                    return socket;
+                }
+            };
+
+            repairService = new MessageRepairService(messageSender, mock(TCPNetworkService.class), controller,
+                                                     settings);
+
+            final MessageDeduplicator messageDeduplicator = new MessageDeduplicator(controller, repairService, new TransportPolicy(settings));
+            messageDeduplicator.registerMainChatReceiverListener(this);
+
+            messageReceiver = new MessageReceiver(ADDRESS, PORT, errorHandler);
+            messageReceiver.registerReceiverListener(messageDeduplicator);
+        }
+
+        void knows(final Client other) {
+            final User user = new User(other.settings.getMe().getNick(), other.settings.getMe().getCode());
+            when(controller.getUser(user.getCode())).thenReturn(user);
+        }
+
+        void start() {
+            messageReceiver.startReceiver(null);
+            messageSender.startSender(null);
+        }
+
+        void stop() {
+            messageSender.stopSender();
+            messageReceiver.stopReceiver();
+        }
+
+        /**
+         * Sends a message to all users, the same way as {@link NetworkService#sendMessageToAllUsers(String)}.
+         */
+        void sendMessage(final String message) {
+            final String sequencedMessage = MessageTrailer.addSequenceNumber(message, sequenceNumber);
+            repairService.messageSent(sequenceNumber, sequencedMessage);
+            sequenceNumber++;
+
+            messageSender.send(sequencedMessage);
+        }
+
+        @Override
+        public synchronized void messageArrived(final ParsedMessage message, final String ipAddress) {
+            if (message.getType().equals(NetworkMessageType.MSG)) {
+                messages.add(message.getContent());
+            }
+        }
+
+        synchronized int getMessageCount() {
+            return messages.size();
+        }
+
+        int getDroppedCount() {
+            return socket.getDroppedCount();
+        }
+    }
+}
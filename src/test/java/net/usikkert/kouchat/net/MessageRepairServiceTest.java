@@ -0,0 +1,346 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.net.tcp.TCPNetworkService;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test of {@link MessageRepairService}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageRepairServiceTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MessageRepairService messageRepairService;
+
+    private MessageSender messageSender;
+    private TCPNetworkService tcpNetworkService;
+    private Controller controller;
+    private Settings settings;
+    private Timer timer;
+    private Logger log;
+    private User user;
+    private SequenceWindow sequenceWindow;
+
+    @Before
+    public void setUp() {
+        messageSender = mock(MessageSender.class);
+        when(messageSender.send(anyString())).thenReturn(true);
+        tcpNetworkService = mock(TCPNetworkService.class);
+        controller = mock(Controller.class);
+
+        settings = new Settings();
+        TestUtils.setFieldValue(settings.getMe(), "code", 500);
+        settings.getMe().setNick("Me");
+
+        user = new User("Niles", 600);
+        sequenceWindow = new SequenceWindow();
+
+        when(controller.getUser(600)).thenReturn(user);
+
+        messageRepairService = new MessageRepairService(messageSender, tcpNetworkService, controller, settings);
+
+        // Makes sure nothing is sent by the timer during the tests
+        timer = TestUtils.setFieldValueWithMock(messageRepairService, "timer", Timer.class);
+        log = TestUtils.setFieldValueWithMock(messageRepairService, "LOG", Logger.class);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfMessageSenderIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Message sender can not be null");
+
+        new MessageRepairService(null, tcpNetworkService, controller, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTCPNetworkServiceIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("TCP network service can not be null");
+
+        new MessageRepairService(messageSender, null, controller, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfControllerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Controller can not be null");
+
+        new MessageRepairService(messageSender, tcpNetworkService, null, settings);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Settings can not be null");
+
+        new MessageRepairService(messageSender, tcpNetworkService, controller, null);
+    }
+
+    @Test
+    public void messagesMissingShouldScheduleRequestAfterRandomDelayOnlyOnce() {
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+
+        final ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(timer).schedule(any(TimerTask.class), delay.capture());
+
+        assertTrue(delay.getValue() >= MessageRepairService.REQUEST_MIN_DELAY);
+        assertTrue(delay.getValue() < MessageRepairService.REQUEST_MAX_DELAY);
+    }
+
+    @Test
+    public void messagesMissingShouldScheduleRequestForEachUser() {
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        messageRepairService.messagesMissing(new User("Other", 700), new SequenceWindow());
+
+        verify(timer, times(2)).schedule(any(TimerTask.class), anyLong());
+    }
+
+    @Test
+    public void sendRequestShouldAskForMissingMessagesAndScheduleRetry() {
+        acceptSequenceNumbers(1, 4);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+
+        messageRepairService.sendRequest(600);
+
+        verify(messageSender).send("500!NACK#Me:600:2,3");
+        verify(timer).schedule(any(TimerTask.class), eq((long) MessageRepairService.RETRY_DELAY));
+        assertEquals(2, messageRepairService.getRequestedMessageCount());
+    }
+
+    @Test
+    public void sendRequestShouldOnlyAskForMessagesStillMissing() {
+        acceptSequenceNumbers(1, 5);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        acceptSequenceNumbers(3);
+
+        messageRepairService.sendRequest(600);
+
+        verify(messageSender).send("500!NACK#Me:600:2,4");
+    }
+
+    @Test
+    public void sendRequestShouldStopWhenNoMessagesAreMissingAnymore() {
+        acceptSequenceNumbers(1, 3);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        acceptSequenceNumbers(2);
+
+        messageRepairService.sendRequest(600);
+
+        verifyZeroInteractions(messageSender);
+        verify(timer, times(1)).schedule(any(TimerTask.class), anyLong());
+
+        // A new gap gets a new request
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        verify(timer, times(2)).schedule(any(TimerTask.class), anyLong());
+    }
+
+    @Test
+    public void sendRequestShouldSkipMessagesOtherClientsHaveAskedFor() {
+        acceptSequenceNumbers(1, 4);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        messageRepairService.requestArrived(new ParsedMessage("700!NACK#Other:600:2"));
+
+        messageRepairService.sendRequest(600);
+
+        verify(messageSender).send("500!NACK#Me:600:3");
+
+        // Only skipped in the attempt right after the other request
+        messageRepairService.sendRequest(600);
+
+        verify(messageSender).send("500!NACK#Me:600:2,3");
+    }
+
+    @Test
+    public void sendRequestShouldNotSendAnythingIfOtherClientsAskedForAllMissingMessages() {
+        acceptSequenceNumbers(1, 3);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        assertEquals(0, messageRepairService.requestArrived(new ParsedMessage("700!NACK#Other:600:2")));
+
+        messageRepairService.sendRequest(600);
+
+        verifyZeroInteractions(messageSender);
+        verify(timer).schedule(any(TimerTask.class), eq((long) MessageRepairService.RETRY_DELAY));
+    }
+
+    @Test
+    public void sendRequestShouldGiveUpAfterMaxAttempts() {
+        acceptSequenceNumbers(1, 3);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+
+        for (int i = 0; i <= MessageRepairService.MAX_ATTEMPTS; i++) {
+            messageRepairService.sendRequest(600);
+        }
+
+        verify(messageSender, times(MessageRepairService.MAX_ATTEMPTS)).send("500!NACK#Me:600:2");
+
+        // A new gap only asks for the new missing messages
+        acceptSequenceNumbers(5);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        messageRepairService.sendRequest(600);
+
+        verify(messageSender).send("500!NACK#Me:600:4");
+    }
+
+    @Test
+    public void sendRequestShouldLimitTheNumberOfSequenceNumbersInOneRequest() {
+        acceptSequenceNumbers(1, 100);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+
+        messageRepairService.sendRequest(600);
+
+        assertEquals(MessageRepairService.MAX_NUMBERS_PER_REQUEST, messageRepairService.getRequestedMessageCount());
+    }
+
+    @Test
+    public void sendRequestShouldDoNothingWithoutPendingRequest() {
+        messageRepairService.sendRequest(600);
+
+        verifyZeroInteractions(messageSender, timer);
+    }
+
+    @Test
+    public void requestArrivedShouldRetransmitStoredMessagesWhenAskedForOwnMessages() {
+        messageRepairService.messageSent(1, "Message 1");
+        messageRepairService.messageSent(2, "Message 2");
+        messageRepairService.messageSent(3, "Message 3");
+
+        assertEquals(3, messageRepairService.requestArrived(new ParsedMessage("600!NACK#Niles:500:1,3,10")));
+
+        verify(messageSender).send("Message 1");
+        verify(messageSender).send("Message 3");
+        verifyNoMoreInteractions(messageSender);
+        assertEquals(2, messageRepairService.getRetransmittedMessageCount());
+    }
+
+    @Test
+    public void requestArrivedShouldOnlySendMessagesAgainOverTcpToTheUserAskingWhenOlderClientsAreInTheChat() {
+        when(controller.isUsersWithoutSequenceNumbers()).thenReturn(true);
+        user.setTcpEnabled(true);
+        messageRepairService.messageSent(1, "Message 1");
+
+        assertEquals(1, messageRepairService.requestArrived(new ParsedMessage("600!NACK#Niles:500:1")));
+
+        verify(tcpNetworkService).sendMessageToUser("Message 1", user);
+        verifyZeroInteractions(messageSender);
+        assertEquals(1, messageRepairService.getRetransmittedMessageCount());
+    }
+
+    @Test
+    public void requestArrivedShouldNotSendMessagesAgainWhenOlderClientsAreInTheChatAndUserAskingHasNoTcp() {
+        when(controller.isUsersWithoutSequenceNumbers()).thenReturn(true);
+        assertFalse(user.isTcpEnabled());
+        messageRepairService.messageSent(1, "Message 1");
+
+        messageRepairService.requestArrived(new ParsedMessage("600!NACK#Niles:500:1"));
+        messageRepairService.requestArrived(new ParsedMessage("700!NACK#Unknown:500:1"));
+
+        verifyZeroInteractions(messageSender, tcpNetworkService);
+        assertEquals(0, messageRepairService.getRetransmittedMessageCount());
+    }
+
+    @Test
+    public void retransmitShouldOnlySendSameMessageOnceWithinInterval() {
+        messageRepairService.messageSent(1, "Message 1");
+
+        messageRepairService.retransmit(600, Arrays.asList(1L), 1000);
+        messageRepairService.retransmit(600, Arrays.asList(1L), 1000 + MessageRepairService.RETRANSMIT_INTERVAL - 1);
+        verify(messageSender, times(1)).send("Message 1");
+
+        messageRepairService.retransmit(600, Arrays.asList(1L), 1000 + MessageRepairService.RETRANSMIT_INTERVAL);
+        verify(messageSender, times(2)).send("Message 1");
+    }
+
+    @Test
+    public void requestArrivedShouldIgnoreOwnRequests() {
+        messageRepairService.messageSent(1, "Message 1");
+
+        assertEquals(0, messageRepairService.requestArrived(new ParsedMessage("500!NACK#Me:500:1")));
+
+        verifyZeroInteractions(messageSender);
+    }
+
+    @Test
+    public void requestArrivedShouldLogAndIgnoreBadlyFormattedRequests() {
+        messageRepairService.messageSent(1, "Message 1");
+
+        assertEquals(0, messageRepairService.requestArrived(new ParsedMessage("600!NACK#Niles:500:one")));
+        assertEquals(0, messageRepairService.requestArrived(new ParsedMessage("600!NACK#Niles:500")));
+
+        verifyZeroInteractions(messageSender);
+        verify(log).warning("Failed to parse request for missing messages: %s, message=%s",
+                            "For input string: \"one\"", "600!NACK#Niles:500:one");
+        verify(log).warning(eq("Failed to parse request for missing messages: %s, message=%s"),
+                            anyString(), eq("600!NACK#Niles:500"));
+    }
+
+    @Test
+    public void resetShouldForgetPendingRequests() {
+        acceptSequenceNumbers(1, 3);
+        messageRepairService.messagesMissing(user, sequenceWindow);
+
+        messageRepairService.reset();
+        messageRepairService.sendRequest(600);
+
+        verifyZeroInteractions(messageSender);
+    }
+
+    @Test
+    public void stopShouldCancelTheTimerAndNotScheduleMoreRequests() {
+        messageRepairService.stop();
+
+        verify(timer).cancel();
+
+        messageRepairService.messagesMissing(user, sequenceWindow);
+        verify(timer, never()).schedule(any(TimerTask.class), anyLong());
+    }
+
+    private void acceptSequenceNumbers(final long... sequenceNumbers) {
+        for (final long sequenceNumber : sequenceNumbers) {
+            sequenceWindow.accept(sequenceNumber);
+        }
+    }
+}
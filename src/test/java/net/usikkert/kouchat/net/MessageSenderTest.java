@@ -22,13 +22,24 @@
 
 package net.usikkert.kouchat.net;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.Collections;
+
 import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.misc.ErrorHandler;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 /**
  * Test of {@link MessageSender}.
@@ -72,4 +83,155 @@ public class MessageSenderTest {
 
         new MessageSender("ip", 0, null);
     }
+
+    @Test
+    public void startSenderShouldThrowExceptionIfAdditionalInterfacesIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Additional network interfaces can not be null");
+
+        createSender(mock(MulticastSocket.class)).startSender(null, null);
+    }
+
+    @Test
+    public void sendShouldOnlyUseTheSocketsNetworkInterfaceWithoutAdditionalInterfaces() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final MessageSender sender = createSender(socket);
+
+        assertTrue(sender.startSender(null));
+        assertTrue(sender.send("Hello"));
+
+        verify(socket).send(any(DatagramPacket.class));
+        verify(socket, never()).setNetworkInterface(any(NetworkInterface.class));
+    }
+
+    @Test
+    public void sendShouldSendOnPrimaryAndThenEveryAdditionalInterface() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0");
+        final NetworkInterface wlan0 = NetworkSnapshotTest.createNetworkInterface("wlan0");
+        final NetworkInterface eth1 = NetworkSnapshotTest.createNetworkInterface("eth1");
+        when(socket.getNetworkInterface()).thenReturn(eth0);
+
+        final MessageSender sender = createSender(socket);
+
+        assertTrue(sender.startSender(eth0, Arrays.asList(wlan0, eth1)));
+        assertTrue(sender.send("Hello"));
+
+        final InOrder inOrder = inOrder(socket);
+        inOrder.verify(socket).setNetworkInterface(eth0);
+        inOrder.verify(socket).send(any(DatagramPacket.class));
+        inOrder.verify(socket).setNetworkInterface(wlan0);
+        inOrder.verify(socket).send(any(DatagramPacket.class));
+        inOrder.verify(socket).setNetworkInterface(eth1);
+        inOrder.verify(socket).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    public void sendShouldSucceedWhenOnlyAnAdditionalInterfaceFails() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0");
+        final NetworkInterface wlan0 = NetworkSnapshotTest.createNetworkInterface("wlan0");
+        when(socket.getNetworkInterface()).thenReturn(eth0);
+        doNothing().doThrow(new IOException("Network is unreachable")).when(socket).send(any(DatagramPacket.class));
+
+        final MessageSender sender = createSender(socket);
+        sender.startSender(eth0, Collections.singletonList(wlan0));
+
+        assertTrue(sender.send("Hello"));
+        verify(socket, times(2)).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    public void sendShouldFailWhenThePrimaryInterfaceFails() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0");
+        final NetworkInterface wlan0 = NetworkSnapshotTest.createNetworkInterface("wlan0");
+        when(socket.getNetworkInterface()).thenReturn(eth0);
+        doThrow(new IOException("Network is unreachable")).when(socket).send(any(DatagramPacket.class));
+
+        final MessageSender sender = createSender(socket);
+        sender.startSender(eth0, Collections.singletonList(wlan0));
+
+        assertFalse(sender.send("Hello"));
+        verify(socket, times(1)).send(any(DatagramPacket.class));
+    }
+
+    @Test
+    public void stopSenderShouldForgetAdditionalInterfaces() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface wlan0 = NetworkSnapshotTest.createNetworkInterface("wlan0");
+
+        final MessageSender sender = createSender(socket);
+        sender.startSender(null, Collections.singletonList(wlan0));
+        sender.stopSender();
+        sender.startSender(null);
+        sender.send("Hello");
+
+        verify(socket, never()).setNetworkInterface(wlan0);
+    }
+
+    @Test
+    public void sendShouldSendToBothIPv4AndIPv6GroupsOnDualStackInterface() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0", "192.168.1.2", "2001:db8::2");
+        when(socket.getNetworkInterface()).thenReturn(eth0);
+
+        final MessageSender sender = createDualStackSender(socket);
+
+        assertTrue(sender.startSender(eth0));
+        assertTrue(sender.send("Hello"));
+
+        final ArgumentCaptor<DatagramPacket> captor = ArgumentCaptor.forClass(DatagramPacket.class);
+        verify(socket, times(2)).send(captor.capture());
+        assertEquals(InetAddress.getByName("224.168.5.1"), captor.getAllValues().get(0).getAddress());
+        assertEquals(InetAddress.getByName("ff05::5:1"), captor.getAllValues().get(1).getAddress());
+        verify(socket).joinGroup(InetAddress.getByName("224.168.5.1"));
+    }
+
+    @Test
+    public void sendShouldOnlySendToIPv6GroupOnIPv6OnlyInterface() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0", "fe80::2", "2001:db8::2");
+        when(socket.getNetworkInterface()).thenReturn(eth0);
+
+        final MessageSender sender = createDualStackSender(socket);
+
+        assertTrue(sender.startSender(eth0));
+        assertTrue(sender.send("Hello"));
+
+        final ArgumentCaptor<DatagramPacket> captor = ArgumentCaptor.forClass(DatagramPacket.class);
+        verify(socket).send(captor.capture());
+        assertEquals(InetAddress.getByName("ff05::5:1"), captor.getValue().getAddress());
+        verify(socket, never()).joinGroup(any(InetAddress.class));
+    }
+
+    @Test
+    public void sendShouldSucceedWhenOnlyTheIPv6GroupFails() throws IOException {
+        final MulticastSocket socket = mock(MulticastSocket.class);
+        final NetworkInterface eth0 = NetworkSnapshotTest.createNetworkInterface("eth0", "192.168.1.2", "2001:db8::2");
+        doNothing().doThrow(new IOException("Network is unreachable")).when(socket).send(any(DatagramPacket.class));
+
+        final MessageSender sender = createDualStackSender(socket);
+        sender.startSender(eth0);
+
+        assertTrue(sender.send("Hello"));
+    }
+
+    private MessageSender createDualStackSender(final MulticastSocket socket) {
+        return new MessageSender("224.168.5.1", "ff05::5:1", 50000, mock(ErrorHandler.class)) {
+            @Override
+            protected MulticastSocket createSocket(final int socketPort) {
+                return socket;
+            }
+        };
+    }
+
+    private MessageSender createSender(final MulticastSocket socket) {
+        return new MessageSender("224.168.5.1", 50000, mock(ErrorHandler.class)) {
+            @Override
+            protected MulticastSocket createSocket(final int socketPort) {
+                return socket;
+            }
+        };
+    }
 }
@@ -0,0 +1,199 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.util.LatencyHistogram;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link MessageTrace}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageTraceTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        MessageTrace.clear();
+        MessageTrace.setSampleRate(MessageTrace.DEFAULT_SAMPLE_RATE);
+    }
+
+    @Test
+    public void startSendingShouldTraceEveryMessageWithSampleRateOne() {
+        MessageTrace.setSampleRate(1);
+
+        MessageTrace.startSending();
+
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+        assertNotNull(trace);
+        assertTrue(Math.abs(System.currentTimeMillis() - trace.getTraceTime()) < 5000);
+    }
+
+    @Test
+    public void startSendingShouldTraceOneOfEachSampleRateMessages() {
+        MessageTrace.setSampleRate(3);
+        int traced = 0;
+
+        for (int i = 0; i < 30; i++) {
+            MessageTrace.startSending();
+
+            if (MessageTrace.getCurrentTrace() != null) {
+                traced++;
+            }
+
+            MessageTrace.clear();
+        }
+
+        assertEquals(10, traced);
+    }
+
+    @Test
+    public void startSendingShouldNotTraceWithSampleRateZero() {
+        MessageTrace.setSampleRate(0);
+
+        for (int i = 0; i < 10; i++) {
+            MessageTrace.startSending();
+        }
+
+        assertNull(MessageTrace.getCurrentTrace());
+    }
+
+    @Test
+    public void setSampleRateShouldThrowExceptionIfNegative() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Sample rate can not be negative");
+
+        MessageTrace.setSampleRate(-1);
+    }
+
+    @Test
+    public void startReceivingShouldTraceMessageWithTraceTime() {
+        final String message = MessageTrailer.addTraceTime(
+                MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 1), 1_500_000_000_123L);
+
+        MessageTrace.startReceiving(message);
+
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+        assertNotNull(trace);
+        assertEquals(1_500_000_000_123L, trace.getTraceTime());
+    }
+
+    @Test
+    public void startReceivingShouldNotTraceMessageWithoutTraceTime() {
+        MessageTrace.startReceiving(MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 1));
+
+        assertNull(MessageTrace.getCurrentTrace());
+    }
+
+    @Test
+    public void clearShouldStopTracing() {
+        MessageTrace.setSampleRate(1);
+        MessageTrace.startSending();
+
+        MessageTrace.clear();
+
+        assertNull(MessageTrace.getCurrentTrace());
+    }
+
+    @Test
+    public void resumeShouldContinueTraceFromAnotherThread() throws InterruptedException {
+        MessageTrace.setSampleRate(1);
+        MessageTrace.startSending();
+        final MessageTrace trace = MessageTrace.getCurrentTrace();
+        final MessageTrace[] resumedTrace = new MessageTrace[1];
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                MessageTrace.resume(trace);
+                resumedTrace[0] = MessageTrace.getCurrentTrace();
+                MessageTrace.clear();
+            }
+        });
+
+        thread.start();
+        thread.join();
+
+        assertSame(trace, resumedTrace[0]);
+    }
+
+    @Test
+    public void recordStageShouldRecordInTheHistogramOfTheStage() {
+        final LatencyHistogram histogram = MessageTrace.getHistogram(MessageTraceStage.SHOWN);
+        final long countBefore = histogram.getCount();
+        MessageTrace.setSampleRate(1);
+        MessageTrace.startSending();
+
+        MessageTrace.recordStage(MessageTraceStage.SHOWN);
+
+        assertEquals(countBefore + 1, histogram.getCount());
+    }
+
+    @Test
+    public void recordStageShouldDoNothingWithoutTrace() {
+        final LatencyHistogram histogram = MessageTrace.getHistogram(MessageTraceStage.SHOWN);
+        final long countBefore = histogram.getCount();
+
+        MessageTrace.recordStage(MessageTraceStage.SHOWN);
+
+        assertEquals(countBefore, histogram.getCount());
+    }
+
+    @Test
+    public void recordNetworkShouldUseTheTraceTimeFromTheMessage() {
+        final LatencyHistogram histogram = MessageTrace.getHistogram(MessageTraceStage.NETWORK);
+        final long countBefore = histogram.getCount();
+        final long sumBefore = histogram.getSum();
+        final long traceTime = System.currentTimeMillis() - 2000;
+
+        MessageTrace.startReceiving(MessageTrailer.addTraceTime(
+                MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 1), traceTime));
+        MessageTrace.recordStage(MessageTraceStage.NETWORK);
+
+        assertEquals(countBefore + 1, histogram.getCount());
+        final long recorded = histogram.getSum() - sumBefore;
+        assertTrue("Recorded " + recorded, recorded >= 2_000_000_000L && recorded < 7_000_000_000L);
+    }
+
+    @Test
+    public void recordNetworkShouldSkipTraceTimeInTheFuture() {
+        final LatencyHistogram histogram = MessageTrace.getHistogram(MessageTraceStage.NETWORK);
+        final long countBefore = histogram.getCount();
+
+        MessageTrace.startReceiving(MessageTrailer.addTraceTime(
+                MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 1), System.currentTimeMillis() + 60000));
+        MessageTrace.recordStage(MessageTraceStage.NETWORK);
+
+        assertEquals(countBefore, histogram.getCount());
+    }
+}
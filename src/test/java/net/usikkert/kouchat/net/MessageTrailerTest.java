@@ -0,0 +1,179 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.Constants;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link MessageTrailer}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MessageTrailerTest {
+
+    @Test
+    public void addSequenceNumberShouldAddTrailerThatCanBeReadBack() {
+        final String message = MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 0x1f2e3d4c5bL);
+
+        assertTrue(message.startsWith("1234!MSG#Test:[-1]Hello"));
+        assertEquals(0x1f2e3d4c5bL, MessageTrailer.getSequenceNumber(message));
+        assertEquals("1234!MSG#Test:[-1]Hello", MessageTrailer.removeTrailer(message));
+    }
+
+    @Test
+    public void addSequenceNumberShouldSupportZeroAndMaxValue() {
+        assertEquals(0, MessageTrailer.getSequenceNumber(MessageTrailer.addSequenceNumber("msg", 0)));
+        assertEquals(Long.MAX_VALUE,
+                     MessageTrailer.getSequenceNumber(MessageTrailer.addSequenceNumber("msg", Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void trailerShouldBeRemovedByStringTrim() {
+        final String message = MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 123456789);
+
+        // This is what older clients do with messages from multicast and private chat
+        assertEquals("1234!MSG#Test:[-1]Hello", message.trim());
+    }
+
+    @Test
+    public void addSequenceNumberShouldNotAddTrailerIfMessageIsTooLarge() {
+        final String largeMessage = createMessage(Constants.NETWORK_PACKET_SIZE - 10);
+
+        assertSame(largeMessage, MessageTrailer.addSequenceNumber(largeMessage, 1));
+    }
+
+    @Test
+    public void addSequenceNumberShouldAddTrailerIfMessageIsTooLargeForNetworkPacketAnyway() {
+        final String largeMessage = createMessage(Constants.NETWORK_PACKET_SIZE + 1);
+        final String message = MessageTrailer.addSequenceNumber(largeMessage, 1);
+
+        assertEquals(1, MessageTrailer.getSequenceNumber(message));
+        assertEquals(largeMessage, MessageTrailer.removeTrailer(message));
+    }
+
+    @Test
+    public void addSequenceNumberShouldCountBytesAndNotCharacters() {
+        final String fitsAsAscii = createMessage(250);
+        assertNotSame(fitsAsAscii, MessageTrailer.addSequenceNumber(fitsAsAscii, 1));
+
+        final String tooLargeAsUtf8 = createMessage(250).replace('a', 'æ');
+        assertSame(tooLargeAsUtf8, MessageTrailer.addSequenceNumber(tooLargeAsUtf8, 1));
+    }
+
+    @Test
+    public void getSequenceNumberShouldReturnNoSequenceNumberForMessageWithoutTrailer() {
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, MessageTrailer.getSequenceNumber("1234!MSG#Test:[-1]Hello"));
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, MessageTrailer.getSequenceNumber(""));
+    }
+
+    @Test
+    public void getSequenceNumberShouldIgnoreStartCharacterFollowedByOtherText() {
+        final String message = "1234!MSG#Test:[-1]Hello" + MessageTrailer.START + MessageTrailer.SEQUENCE_NUMBER + "\u0002 there";
+
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, MessageTrailer.getSequenceNumber(message));
+        assertEquals(message, MessageTrailer.removeTrailer(message));
+    }
+
+    @Test
+    public void getSequenceNumberShouldIgnoreTrailerWithoutDigits() {
+        final String message = "1234!IDLE#Test:" + MessageTrailer.START + MessageTrailer.SEQUENCE_NUMBER;
+
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, MessageTrailer.getSequenceNumber(message));
+    }
+
+    @Test
+    public void addTraceTimeShouldAddFieldThatCanBeReadBackTogetherWithTheSequenceNumber() {
+        final String sequencedMessage = MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 42);
+        final String message = MessageTrailer.addTraceTime(sequencedMessage, 1_500_000_000_123L);
+
+        assertEquals(42, MessageTrailer.getSequenceNumber(message));
+        assertEquals(1_500_000_000_123L, MessageTrailer.getTraceTime(message));
+        assertEquals("1234!MSG#Test:[-1]Hello", MessageTrailer.removeTrailer(message));
+        assertEquals("1234!MSG#Test:[-1]Hello", message.trim());
+    }
+
+    @Test
+    public void addTraceTimeShouldNotAddFieldToMessageWithoutTrailer() {
+        final String message = "1234!MSG#Test:[-1]Hello";
+
+        assertSame(message, MessageTrailer.addTraceTime(message, 1_500_000_000_123L));
+    }
+
+    @Test
+    public void addTraceTimeShouldNotAddFieldIfMessageWouldBeTooLarge() {
+        final String message = MessageTrailer.addSequenceNumber(createMessage(Constants.NETWORK_PACKET_SIZE - 18), 1);
+
+        assertSame(message, MessageTrailer.addTraceTime(message, 1_500_000_000_123L));
+    }
+
+    @Test
+    public void getTraceTimeShouldReturnNoTraceTimeWithoutTheField() {
+        assertEquals(MessageTrailer.NO_TRACE_TIME, MessageTrailer.getTraceTime("1234!MSG#Test:[-1]Hello"));
+        assertEquals(MessageTrailer.NO_TRACE_TIME,
+                     MessageTrailer.getTraceTime(MessageTrailer.addSequenceNumber("1234!MSG#Test:[-1]Hello", 5)));
+    }
+
+    @Test
+    public void getSequenceNumberShouldSkipUnknownFields() {
+        final String message = "1234!MSG#Test:" + MessageTrailer.START + '\u001a' + '\u0002'
+                + MessageTrailer.SEQUENCE_NUMBER + '\u0003';
+
+        assertEquals(2, MessageTrailer.getSequenceNumber(message));
+    }
+
+    @Test
+    public void removeTrailerShouldReturnSameMessageWithoutTrailer() {
+        final String message = "1234!IDLE#Test:";
+
+        assertSame(message, MessageTrailer.removeTrailer(message));
+    }
+
+    @Test
+    public void trimShouldRemoveWhitespaceButKeepTrailer() {
+        final String message = MessageTrailer.addSequenceNumber(" 1234!MSG#Test:[-1]Hello  ", 5);
+        final String trimmed = MessageTrailer.trim(message);
+
+        assertEquals("1234!MSG#Test:[-1]Hello", MessageTrailer.removeTrailer(trimmed));
+        assertEquals(5, MessageTrailer.getSequenceNumber(trimmed));
+    }
+
+    @Test
+    public void trimShouldWorkLikeStringTrimWithoutTrailer() {
+        assertEquals("1234!IDLE#Test:", MessageTrailer.trim("  1234!IDLE#Test:\u0000\u0000"));
+    }
+
+    private String createMessage(final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            builder.append('a');
+        }
+
+        return builder.toString();
+    }
+}
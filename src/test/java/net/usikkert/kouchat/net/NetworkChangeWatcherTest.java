@@ -0,0 +1,188 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test of {@link NetworkChangeWatcher}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class NetworkChangeWatcherTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private NetworkChangeWatcher watcher;
+
+    private ConnectionWorker connectionWorker;
+    private File procNetDirectory;
+    private File interfaceDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        connectionWorker = mock(ConnectionWorker.class);
+        procNetDirectory = temporaryFolder.newFolder("net");
+        interfaceDirectory = temporaryFolder.newFolder("class-net");
+
+        writeFile(new File(procNetDirectory, "route"), "Iface\tDestination\neth0\t00000000\n");
+        addInterface("lo", "unknown");
+        addInterface("eth0", "up");
+
+        watcher = new NetworkChangeWatcher(connectionWorker, procNetDirectory, interfaceDirectory, 20);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfConnectionWorkerIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Connection worker can not be null");
+
+        new NetworkChangeWatcher(null);
+    }
+
+    @Test
+    public void isSupportedShouldBeTrueWhenRouteFileAndInterfaceDirectoryExist() {
+        assertTrue(watcher.isSupported());
+    }
+
+    @Test
+    public void isSupportedShouldBeFalseWhenRouteFileIsMissing() {
+        assertTrue(new File(procNetDirectory, "route").delete());
+
+        assertFalse(watcher.isSupported());
+    }
+
+    @Test
+    public void startShouldDoNothingIfNotSupported() {
+        final NetworkChangeWatcher unsupportedWatcher = new NetworkChangeWatcher(
+                connectionWorker, new File(procNetDirectory, "missing"), interfaceDirectory, 20);
+
+        unsupportedWatcher.start();
+
+        assertFalse(unsupportedWatcher.isAlive());
+    }
+
+    @Test
+    public void readNetworkStateShouldIncludeRoutesAddressesAndInterfaceStates() throws IOException {
+        writeFile(new File(procNetDirectory, "if_inet6"), "fe80000000000000 02 40 20 80 eth0\n");
+
+        assertEquals("Iface\tDestination\neth0\t00000000\n" +
+                     "fe80000000000000 02 40 20 80 eth0\n" +
+                     "eth0:up\n\n" +
+                     "lo:unknown\n\n",
+                     watcher.readNetworkState());
+    }
+
+    @Test
+    public void shouldNotCheckNetworkWhenNothingChanges() throws InterruptedException {
+        watcher.start();
+        assertTrue(watcher.isAlive());
+
+        Thread.sleep(150);
+
+        verifyZeroInteractions(connectionWorker);
+    }
+
+    @Test
+    public void shouldCheckNetworkWhenInterfaceGoesDown() throws IOException {
+        watcher.start();
+
+        writeFile(new File(new File(interfaceDirectory, "eth0"), "operstate"), "down\n");
+
+        verify(connectionWorker, timeout(1000)).checkNetwork();
+    }
+
+    @Test
+    public void shouldCheckNetworkWhenRoutesChange() throws IOException {
+        watcher.start();
+
+        writeFile(new File(procNetDirectory, "route"), "Iface\tDestination\nwlan0\t00000000\n");
+
+        verify(connectionWorker, timeout(1000)).checkNetwork();
+    }
+
+    @Test
+    public void shouldCheckNetworkWhenInterfaceIsAdded() throws IOException {
+        watcher.start();
+
+        addInterface("wlan0", "up");
+
+        verify(connectionWorker, timeout(1000)).checkNetwork();
+    }
+
+    @Test
+    public void shouldCheckNetworkWhenInterfaceIsRemoved() throws IOException {
+        watcher.start();
+
+        final File networkInterface = new File(interfaceDirectory, "eth0");
+        assertTrue(new File(networkInterface, "operstate").delete());
+        assertTrue(networkInterface.delete());
+
+        verify(connectionWorker, timeout(1000)).checkNetwork();
+    }
+
+    @Test
+    public void stopShouldStopTheThread() throws InterruptedException {
+        watcher.start();
+        assertTrue(watcher.isAlive());
+
+        watcher.stop();
+        Thread.sleep(100);
+
+        assertFalse(watcher.isAlive());
+    }
+
+    private void addInterface(final String name, final String operationalState) throws IOException {
+        final File networkInterface = new File(interfaceDirectory, name);
+        assertTrue(networkInterface.mkdir());
+        writeFile(new File(networkInterface, "operstate"), operationalState + "\n");
+    }
+
+    private void writeFile(final File file, final String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
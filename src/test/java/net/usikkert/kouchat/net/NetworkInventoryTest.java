@@ -0,0 +1,174 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static net.usikkert.kouchat.net.NetworkSnapshotTest.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of {@link NetworkInventory}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class NetworkInventoryTest {
+
+    private NetworkInventory networkInventory;
+
+    private NetworkInterface lo;
+    private NetworkInterface eth0;
+
+    @Before
+    public void setUp() throws UnknownHostException, SocketException {
+        networkInventory = spy(new NetworkInventory());
+
+        lo = createNetworkInterface("lo", "127.0.0.1");
+        when(lo.isUp()).thenReturn(true);
+        when(lo.isLoopback()).thenReturn(true);
+
+        eth0 = createUsableNetworkInterface("eth0", "192.168.1.2");
+
+        doReturn(Arrays.asList(lo, eth0)).when(networkInventory).loadNetworkInterfaces();
+    }
+
+    @Test
+    public void getSharedInventoryShouldAlwaysReturnTheSameInventory() {
+        assertNotNull(NetworkInventory.getSharedInventory());
+        assertSame(NetworkInventory.getSharedInventory(), NetworkInventory.getSharedInventory());
+    }
+
+    @Test
+    public void getSnapshotShouldTakeSnapshotTheFirstTimeOnly() {
+        final NetworkSnapshot snapshot = networkInventory.getSnapshot();
+
+        assertEquals(Arrays.asList(lo, eth0), snapshot.getNetworkInterfaces());
+        assertSame(snapshot, networkInventory.getSnapshot());
+        assertSame(snapshot, networkInventory.getSnapshot());
+
+        verify(networkInventory, times(1)).loadNetworkInterfaces();
+    }
+
+    @Test
+    public void snapshotShouldOnlyHaveUsableNetworkInterfacesInUsableList() {
+        final NetworkSnapshot snapshot = networkInventory.getSnapshot();
+
+        assertEquals(Arrays.asList(eth0), snapshot.getUsableNetworkInterfaces());
+        assertSame(eth0, snapshot.getFirstUsableNetworkInterface());
+    }
+
+    @Test
+    public void refreshShouldTakeNewSnapshot() throws UnknownHostException, SocketException {
+        final NetworkSnapshot firstSnapshot = networkInventory.getSnapshot();
+
+        final NetworkInterface wlan0 = createUsableNetworkInterface("wlan0", "10.0.0.2");
+        doReturn(Arrays.asList(lo, wlan0)).when(networkInventory).loadNetworkInterfaces();
+
+        networkInventory.refresh();
+
+        final NetworkSnapshot secondSnapshot = networkInventory.getSnapshot();
+        assertNotSame(firstSnapshot, secondSnapshot);
+        assertSame(wlan0, secondSnapshot.getFirstUsableNetworkInterface());
+    }
+
+    @Test
+    public void firstRefreshShouldHaveAllNetworkInterfacesAdded() {
+        final NetworkChanges changes = networkInventory.refresh();
+
+        assertEquals(Arrays.asList("lo", "eth0"), changes.getAdded());
+        assertEquals(Arrays.asList("lo", "eth0"), networkInventory.getLastChanges().getAdded());
+    }
+
+    @Test
+    public void refreshShouldReturnChangesSinceLastSnapshot() throws UnknownHostException, SocketException {
+        networkInventory.refresh();
+
+        final NetworkInterface wlan0 = createUsableNetworkInterface("wlan0", "10.0.0.2");
+        final NetworkInterface changedEth0 = createUsableNetworkInterface("eth0", "192.168.1.50");
+        doReturn(Arrays.asList(changedEth0, wlan0)).when(networkInventory).loadNetworkInterfaces();
+
+        final NetworkChanges changes = networkInventory.refresh();
+
+        assertEquals(Arrays.asList("wlan0"), changes.getAdded());
+        assertEquals(Arrays.asList("lo"), changes.getRemoved());
+        assertEquals(Arrays.asList("eth0"), changes.getAddressChanged());
+        assertSame(changes, networkInventory.getLastChanges());
+    }
+
+    @Test
+    public void refreshWithoutChangesShouldKeepLastChanges() {
+        final NetworkChanges firstChanges = networkInventory.refresh();
+
+        final NetworkChanges noChanges = networkInventory.refresh();
+
+        assertTrue(noChanges.isEmpty());
+        assertSame(firstChanges, networkInventory.getLastChanges());
+    }
+
+    @Test
+    public void getLastChangesShouldBeEmptyBeforeFirstRefresh() {
+        assertTrue(networkInventory.getLastChanges().isEmpty());
+    }
+
+    @Test
+    public void refreshShouldHandleNoNetworkInterfaces() {
+        doReturn(Collections.<NetworkInterface>emptyList()).when(networkInventory).loadNetworkInterfaces();
+
+        networkInventory.refresh();
+
+        assertTrue(networkInventory.getSnapshot().getNetworkInterfaces().isEmpty());
+        assertNull(networkInventory.getSnapshot().getFirstUsableNetworkInterface());
+    }
+
+    @Test
+    public void networkUtilsShouldLookUpNetworkInterfacesInTheInventory() {
+        final NetworkUtils networkUtils = new NetworkUtils(networkInventory);
+
+        assertSame(eth0, networkUtils.findFirstUsableNetworkInterface());
+        assertSame(lo, networkUtils.getNetworkInterfaceByName("lo"));
+        assertSame(eth0, networkUtils.getUpdatedNetworkInterface(eth0));
+        assertEquals(1, networkUtils.getUsableNetworkInterfaces().size());
+        assertEquals(Arrays.asList(lo, eth0), Collections.list(networkUtils.getNetworkInterfaces()));
+
+        verify(networkInventory, times(1)).loadNetworkInterfaces();
+    }
+
+    private NetworkInterface createUsableNetworkInterface(final String name, final String address)
+            throws UnknownHostException, SocketException {
+        final NetworkInterface networkInterface = createNetworkInterface(name, address);
+
+        when(networkInterface.isUp()).thenReturn(true);
+        when(networkInterface.supportsMulticast()).thenReturn(true);
+
+        return networkInterface;
+    }
+}
@@ -58,6 +58,7 @@ public class NetworkMessagesTest {
         me = new User("TestUser", 123);
         me.setPrivateChatPort(2222);
         me.setTcpChatPort(4444);
+        me.setFileTransferPort(5555);
 
         when(settings.getMe()).thenReturn(me);
 
@@ -107,13 +108,13 @@ public class NetworkMessagesTest {
     /**
      * Tests sendClient().
      *
-     * Expects: 13132531!CLIENT#Christian:(KouChat v0.9.9-dev null)[134]{Linux}<2222>/4444\
+     * Expects: 13132531!CLIENT#Christian:(KouChat v0.9.9-dev null)[134]{Linux}<2222>/4444\|5555|
      */
     @Test
     public void testSendClientMessage() {
         final String startsWith = "(" + me.getClient() + ")[";
         final String middle = ".+\\)\\[\\d+\\]\\{.+"; // like:)[134[{
-        final String endsWidth = "]{" + me.getOperatingSystem() + "}<2222>/4444\\";
+        final String endsWidth = "]{" + me.getOperatingSystem() + "}<2222>/4444\\|5555|";
 
         messages.sendClient();
 
@@ -173,6 +174,29 @@ public class NetworkMessagesTest {
         verify(service).sendMessageToAllUsers(createMessage("SENDFILE") + info);
     }
 
+    /**
+     * Tests sendFolder().
+     *
+     * Expects: 14394329!SENDFOLDER#Christian:(1234)[80800]<25>{37563645}photos
+     *
+     * @throws CommandException In case the message could not be sent.
+     */
+    @Test
+    public void testSendFolderMessage() throws CommandException {
+        final FileToSend file = mock(FileToSend.class);
+        when(file.getName()).thenReturn("photos");
+        when(file.length()).thenReturn(80800L);
+
+        final FileBatch fileBatch = mock(FileBatch.class);
+        when(fileBatch.toFileToSend()).thenReturn(file);
+        when(fileBatch.getFileCount()).thenReturn(25);
+
+        messages.sendFolder(new User("TestUser", 1234), fileBatch);
+
+        verify(service).sendMessageToAllUsers(createMessage("SENDFOLDER") +
+                                                      "(1234)[80800]<25>{" + file.hashCode() + "}photos");
+    }
+
     /**
      * Tests sendFileAbort().
      *
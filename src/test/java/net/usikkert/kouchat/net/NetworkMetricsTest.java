@@ -0,0 +1,93 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.util.Metrics;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link NetworkMetrics}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class NetworkMetricsTest {
+
+    @Test
+    public void getTypeIndexShouldFindTheKnownTypes() {
+        assertEquals("MSG", getType("11515687!MSG#Christian:[-15987646]Some message"));
+        assertEquals("LOGON", getType("11515687!LOGON#Christian:"));
+        assertEquals("FRAGMENT", getType("11515687!FRAGMENT#Christian:(1/2)[abc]"));
+    }
+
+    @Test
+    public void getTypeIndexShouldNotConfuseTypesStartingTheSameWay() {
+        assertEquals("SENDFILE", getType("11515687!SENDFILE#Christian:(1234)[80]{5}file.txt"));
+        assertEquals("SENDFILEACCEPT", getType("11515687!SENDFILEACCEPT#Christian:(1234)[80]{5}file.txt"));
+        assertEquals("SENDFILEABORT", getType("11515687!SENDFILEABORT#Christian:(1234)[80]{5}file.txt"));
+        assertEquals("WRITING", getType("11515687!WRITING#Christian:"));
+        assertEquals("STOPPEDWRITING", getType("11515687!STOPPEDWRITING#Christian:"));
+    }
+
+    @Test
+    public void getTypeIndexShouldReturnOtherForUnknownTypes() {
+        assertEquals("OTHER", getType("11515687!UNKNOWN#Christian:"));
+        assertEquals("OTHER", getType("11515687!MSGX#Christian:"));
+        assertEquals("OTHER", getType("11515687!MS"));
+        assertEquals("OTHER", getType("11515687!MSG"));
+        assertEquals("OTHER", getType("no type here"));
+        assertEquals("OTHER", getType(""));
+    }
+
+    @Test
+    public void packetSentShouldCountPacketsPerType() {
+        final String name = "kouchat_packets_out_total{type=\"NICKCRASH\"}";
+        final long before = getCount(name);
+
+        NetworkMetrics.packetSent("11515687!NICKCRASH#Christian:Christian");
+        NetworkMetrics.packetSent("11515687!NICKCRASH#Christian:Christian");
+
+        assertEquals(before + 2, getCount(name));
+    }
+
+    @Test
+    public void packetReceivedShouldCountUnknownPacketsAsOther() {
+        final String name = "kouchat_packets_in_total{type=\"OTHER\"}";
+        final long before = getCount(name);
+
+        NetworkMetrics.packetReceived("garbage");
+
+        assertEquals(before + 1, getCount(name));
+    }
+
+    private String getType(final String message) {
+        return NetworkMetrics.getTypeName(NetworkMetrics.getTypeIndex(message));
+    }
+
+    private long getCount(final String name) {
+        return Metrics.getSharedMetrics().getCounter(name).getCount();
+    }
+}
@@ -25,17 +25,24 @@ package net.usikkert.kouchat.net;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import java.util.Arrays;
+
+import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.misc.Controller;
 import net.usikkert.kouchat.misc.ErrorHandler;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.misc.UserList;
+import net.usikkert.kouchat.net.tcp.TCPNetworkService;
 import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.settings.TransportMode;
+import net.usikkert.kouchat.util.Metrics;
 import net.usikkert.kouchat.util.TestUtils;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 /**
  * Test of {@link NetworkService}.
@@ -106,6 +113,18 @@ public class NetworkServiceTest {
         assertNull(TestUtils.getFieldValue(networkService, UDPSender.class, "udpSender"));
     }
 
+    @Test
+    public void shutdownShouldRemoveTheGaugesFromTheSharedMetrics() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        assertTrue(Metrics.getSharedMetrics().toPrometheusText().contains("kouchat_messages_missing "));
+
+        networkService.shutdown();
+
+        final String metricsText = Metrics.getSharedMetrics().toPrometheusText();
+        assertFalse(metricsText.contains("kouchat_messages_missing "));
+        assertFalse(metricsText.contains("kouchat_messages_skipped"));
+    }
+
     @Test
     public void registerPrivateChatReceiverListenerShouldNotFailWhenPrivateChatDisabled() {
         when(settings.isNoPrivateChat()).thenReturn(true);
@@ -150,4 +169,134 @@ public class NetworkServiceTest {
         final boolean messageSent = networkService.sendMessageToUser("Nothing", user);
         assertFalse(messageSent);
     }
+
+    @Test
+    public void sendMessageToAllUsersShouldUpdateLastMessageSentTimeWhenSent() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+        when(messageSender.send(anyString())).thenReturn(true);
+
+        assertEquals(0, networkService.getLastMessageSentTime());
+
+        assertTrue(networkService.sendMessageToAllUsers("Message"));
+        assertTrue(networkService.getLastMessageSentTime() > 0);
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldNotUpdateLastMessageSentTimeWhenNotSent() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+
+        assertFalse(networkService.sendMessageToAllUsers("Message"));
+        assertEquals(0, networkService.getLastMessageSentTime());
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldSendTheSameSequenceNumberOverMulticastAndTcp() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final TCPNetworkService tcpNetworkService =
+                TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+
+        networkService.sendMessageToAllUsers("Message");
+        networkService.sendMessageToAllUsers("Message");
+
+        final ArgumentCaptor<String> multicastCaptor = ArgumentCaptor.forClass(String.class);
+        verify(messageSender, times(2)).send(multicastCaptor.capture());
+
+        final ArgumentCaptor<String> tcpCaptor = ArgumentCaptor.forClass(String.class);
+        verify(tcpNetworkService, times(2)).sendMessageToAll(tcpCaptor.capture(), any(TransportPolicy.class));
+
+        assertEquals(multicastCaptor.getAllValues(), tcpCaptor.getAllValues());
+
+        final String firstMessage = multicastCaptor.getAllValues().get(0);
+        assertEquals("Message", MessageTrailer.removeTrailer(firstMessage));
+        assertEquals(0, MessageTrailer.getSequenceNumber(firstMessage));
+
+        final String secondMessage = multicastCaptor.getAllValues().get(1);
+        assertEquals("Message", MessageTrailer.removeTrailer(secondMessage));
+        assertEquals(1, MessageTrailer.getSequenceNumber(secondMessage));
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldKeepSequencedMessagesForRetransmit() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final MessageRepairService messageRepairService =
+                TestUtils.setFieldValueWithMock(networkService, "messageRepairService", MessageRepairService.class);
+        TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+
+        networkService.sendMessageToAllUsers("Message");
+
+        final ArgumentCaptor<String> multicastCaptor = ArgumentCaptor.forClass(String.class);
+        verify(messageSender).send(multicastCaptor.capture());
+        verify(messageRepairService).messageSent(0, multicastCaptor.getValue());
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldNotUseSequenceNumberForMessagesWithoutRoomForTrailer() {
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final MessageRepairService messageRepairService =
+                TestUtils.setFieldValueWithMock(networkService, "messageRepairService", MessageRepairService.class);
+        TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+
+        final char[] characters = new char[Constants.NETWORK_PACKET_SIZE];
+        Arrays.fill(characters, 'a');
+        final String largeMessage = new String(characters);
+
+        networkService.sendMessageToAllUsers(largeMessage);
+        networkService.sendMessageToAllUsers("Message");
+
+        verify(messageSender).send(largeMessage);
+        verify(messageRepairService).messageSent(eq(0L), anyString());
+        verifyNoMoreInteractions(messageRepairService);
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldOnlyUseTcpInTcpOnlyModeWhenAllUsersAreConnected() {
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final TCPNetworkService tcpNetworkService =
+                TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+        when(tcpNetworkService.isConnectedToAllUsers()).thenReturn(true);
+
+        assertTrue(networkService.sendMessageToAllUsers("123!MSG#Tina:[-15987646]Hello"));
+
+        verify(tcpNetworkService).sendMessageToAll(anyString(), eq(networkService.getTransportPolicy()));
+        verifyZeroInteractions(messageSender);
+        assertEquals(1, networkService.getTransportPolicy().getSkippedMulticastMessageCount());
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldAlwaysMulticastMessagesForFindingUsersInTcpOnlyMode() {
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final TCPNetworkService tcpNetworkService =
+                TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+        when(tcpNetworkService.isConnectedToAllUsers()).thenReturn(true);
+
+        networkService.sendMessageToAllUsers("123!EXPOSING#Tina:");
+
+        verify(messageSender).send(startsWith("123!EXPOSING#Tina:"));
+    }
+
+    @Test
+    public void sendMessageToAllUsersShouldMulticastInTcpOnlyModeWhenSomeUsersAreNotConnected() {
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+        final NetworkService networkService = new NetworkService(controller, settings, errorHandler);
+        final MessageSender messageSender = TestUtils.setFieldValueWithMock(networkService, "messageSender", MessageSender.class);
+        final TCPNetworkService tcpNetworkService =
+                TestUtils.setFieldValueWithMock(networkService, "tcpNetworkService", TCPNetworkService.class);
+        when(tcpNetworkService.isConnectedToAllUsers()).thenReturn(false);
+
+        networkService.sendMessageToAllUsers("123!MSG#Tina:[-15987646]Hello");
+
+        verify(messageSender).send(startsWith("123!MSG#Tina:[-15987646]Hello"));
+        assertEquals(0, networkService.getTransportPolicy().getSkippedMulticastMessageCount());
+    }
 }
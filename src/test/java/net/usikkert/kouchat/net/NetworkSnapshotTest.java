@@ -0,0 +1,202 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test of {@link NetworkSnapshot}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class NetworkSnapshotTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void constructorShouldThrowExceptionIfNetworkInterfacesIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Network interfaces can not be null");
+
+        new NetworkSnapshot(null, Collections.<NetworkInterface>emptyList(), 0);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfUsableNetworkInterfacesIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Usable network interfaces can not be null");
+
+        new NetworkSnapshot(Collections.<NetworkInterface>emptyList(), null, 0);
+    }
+
+    @Test
+    public void emptyShouldHaveNoNetworkInterfaces() {
+        final NetworkSnapshot snapshot = NetworkSnapshot.empty();
+
+        assertTrue(snapshot.getNetworkInterfaces().isEmpty());
+        assertTrue(snapshot.getUsableNetworkInterfaces().isEmpty());
+        assertNull(snapshot.getFirstUsableNetworkInterface());
+    }
+
+    @Test
+    public void getFirstUsableNetworkInterfaceShouldReturnFirstUsable() throws UnknownHostException {
+        final NetworkInterface lo = createNetworkInterface("lo", "127.0.0.1");
+        final NetworkInterface eth0 = createNetworkInterface("eth0", "192.168.1.2");
+        final NetworkInterface wlan0 = createNetworkInterface("wlan0", "10.0.0.2");
+
+        final NetworkSnapshot snapshot = new NetworkSnapshot(Arrays.asList(lo, eth0, wlan0), Arrays.asList(eth0, wlan0), 0);
+
+        assertSame(eth0, snapshot.getFirstUsableNetworkInterface());
+    }
+
+    @Test
+    public void getNetworkInterfaceShouldFindByName() throws UnknownHostException {
+        final NetworkInterface lo = createNetworkInterface("lo", "127.0.0.1");
+        final NetworkInterface eth0 = createNetworkInterface("eth0", "192.168.1.2");
+
+        final NetworkSnapshot snapshot = createSnapshot(lo, eth0);
+
+        assertSame(eth0, snapshot.getNetworkInterface("eth0"));
+        assertSame(lo, snapshot.getNetworkInterface("lo"));
+        assertNull(snapshot.getNetworkInterface("wlan0"));
+        assertNull(snapshot.getNetworkInterface((String) null));
+    }
+
+    @Test
+    public void getNetworkInterfaceShouldFindByAddress() throws UnknownHostException {
+        final NetworkInterface lo = createNetworkInterface("lo", "127.0.0.1");
+        final NetworkInterface eth0 = createNetworkInterface("eth0", "192.168.1.2", "192.168.1.3");
+
+        final NetworkSnapshot snapshot = createSnapshot(lo, eth0);
+
+        assertSame(eth0, snapshot.getNetworkInterface(InetAddress.getByName("192.168.1.3")));
+        assertSame(lo, snapshot.getNetworkInterface(InetAddress.getByName("127.0.0.1")));
+        assertNull(snapshot.getNetworkInterface(InetAddress.getByName("10.0.0.1")));
+    }
+
+    @Test
+    public void getNetworkInterfacesShouldNotBeModifiable() throws UnknownHostException {
+        final NetworkSnapshot snapshot = createSnapshot(createNetworkInterface("eth0", "192.168.1.2"));
+
+        expectedException.expect(UnsupportedOperationException.class);
+
+        snapshot.getNetworkInterfaces().clear();
+    }
+
+    @Test
+    public void changesSinceShouldThrowExceptionIfPreviousIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Previous snapshot can not be null");
+
+        NetworkSnapshot.empty().changesSince(null);
+    }
+
+    @Test
+    public void changesSinceShouldBeEmptyWhenNothingChanged() throws UnknownHostException {
+        final NetworkSnapshot previous = createSnapshot(createNetworkInterface("eth0", "192.168.1.2"));
+        final NetworkSnapshot current = createSnapshot(createNetworkInterface("eth0", "192.168.1.2"));
+
+        final NetworkChanges changes = current.changesSince(previous);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void changesSinceShouldFindAddedRemovedAndChangedNetworkInterfaces() throws UnknownHostException {
+        final NetworkSnapshot previous = createSnapshot(
+                createNetworkInterface("lo", "127.0.0.1"),
+                createNetworkInterface("eth0", "192.168.1.2"),
+                createNetworkInterface("docker0", "172.17.0.1"));
+
+        final NetworkSnapshot current = createSnapshot(
+                createNetworkInterface("lo", "127.0.0.1"),
+                createNetworkInterface("eth0", "192.168.5.20"),
+                createNetworkInterface("wlan0", "10.0.0.2"));
+
+        final NetworkChanges changes = current.changesSince(previous);
+
+        assertFalse(changes.isEmpty());
+        assertEquals(Arrays.asList("wlan0"), changes.getAdded());
+        assertEquals(Arrays.asList("docker0"), changes.getRemoved());
+        assertEquals(Arrays.asList("eth0"), changes.getAddressChanged());
+        assertEquals("added=[wlan0], removed=[docker0], addressChanged=[eth0]", changes.toString());
+    }
+
+    @Test
+    public void changesSinceEmptyShouldHaveEverythingAdded() throws UnknownHostException {
+        final NetworkSnapshot current = createSnapshot(
+                createNetworkInterface("lo", "127.0.0.1"),
+                createNetworkInterface("eth0", "192.168.1.2"));
+
+        final NetworkChanges changes = current.changesSince(NetworkSnapshot.empty());
+
+        assertEquals(Arrays.asList("lo", "eth0"), changes.getAdded());
+        assertTrue(changes.getRemoved().isEmpty());
+        assertTrue(changes.getAddressChanged().isEmpty());
+    }
+
+    private NetworkSnapshot createSnapshot(final NetworkInterface... networkInterfaces) {
+        final List<NetworkInterface> networkInterfaceList = Arrays.asList(networkInterfaces);
+        return new NetworkSnapshot(networkInterfaceList, networkInterfaceList, System.currentTimeMillis());
+    }
+
+    static NetworkInterface createNetworkInterface(final String name, final String... addresses)
+            throws UnknownHostException {
+        final NetworkInterface networkInterface = mock(NetworkInterface.class);
+        final List<InetAddress> inetAddresses = new ArrayList<>();
+
+        for (final String address : addresses) {
+            inetAddresses.add(InetAddress.getByName(address));
+        }
+
+        when(networkInterface.getName()).thenReturn(name);
+        when(networkInterface.getDisplayName()).thenReturn(name);
+        when(networkInterface.getInetAddresses()).thenAnswer(new Answer<Enumeration<InetAddress>>() {
+            @Override
+            public Enumeration<InetAddress> answer(final InvocationOnMock invocation) {
+                return Collections.enumeration(inetAddresses);
+            }
+        });
+
+        return networkInterface;
+    }
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
 
@@ -108,4 +109,32 @@ public class NetworkUtilsTest {
         final NetworkInterface eth0 = networkUtils.getNetworkInterfaceByName("eth0");
         System.out.println(networkUtils.getNetworkInterfaceInfo(eth0));
     }
+
+    @Test
+    public void hasIPv6AddressShouldIgnoreLinkLocalAddresses() throws UnknownHostException {
+        assertFalse(networkUtils.hasIPv6Address(NetworkSnapshotTest.createNetworkInterface(
+                "eth0", "192.168.1.2", "fe80::1")));
+        assertTrue(networkUtils.hasIPv6Address(NetworkSnapshotTest.createNetworkInterface(
+                "eth0", "fe80::1", "2001:db8::1")));
+        assertFalse(networkUtils.hasIPv6Address(null));
+    }
+
+    @Test
+    public void getMulticastGroupsShouldUseTheGroupsOfTheProtocolFamiliesOfTheNetworkInterface()
+            throws UnknownHostException {
+        final InetAddress ipv4Group = InetAddress.getByName("224.168.5.200");
+        final InetAddress ipv6Group = InetAddress.getByName("ff05::224:168:5:200");
+
+        final NetworkInterface ipv4Only = NetworkSnapshotTest.createNetworkInterface("eth0", "192.168.1.2", "fe80::1");
+        final NetworkInterface ipv6Only = NetworkSnapshotTest.createNetworkInterface("eth1", "2001:db8::1");
+        final NetworkInterface dualStack = NetworkSnapshotTest.createNetworkInterface("eth2", "192.168.1.2", "2001:db8::1");
+        final NetworkInterface noAddresses = NetworkSnapshotTest.createNetworkInterface("eth3");
+
+        assertEquals(Arrays.asList(ipv4Group), networkUtils.getMulticastGroups(ipv4Only, ipv4Group, ipv6Group));
+        assertEquals(Arrays.asList(ipv6Group), networkUtils.getMulticastGroups(ipv6Only, ipv4Group, ipv6Group));
+        assertEquals(Arrays.asList(ipv4Group, ipv6Group), networkUtils.getMulticastGroups(dualStack, ipv4Group, ipv6Group));
+        assertEquals(Arrays.asList(ipv4Group), networkUtils.getMulticastGroups(dualStack, ipv4Group, null));
+        assertEquals(Arrays.asList(ipv4Group), networkUtils.getMulticastGroups(noAddresses, ipv4Group, ipv6Group));
+        assertEquals(Arrays.asList(ipv4Group), networkUtils.getMulticastGroups(null, ipv4Group, ipv6Group));
+    }
 }
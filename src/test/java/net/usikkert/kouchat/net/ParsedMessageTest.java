@@ -0,0 +1,115 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link ParsedMessage}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class ParsedMessageTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void constructorShouldThrowExceptionIfMessageIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Message can not be null");
+
+        new ParsedMessage(null);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfPartsAreMissing() {
+        expectedException.expect(StringIndexOutOfBoundsException.class);
+
+        new ParsedMessage("Error");
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfUserCodeIsNotANumber() {
+        expectedException.expect(NumberFormatException.class);
+        expectedException.expectMessage("For input string: \"a16320462\"");
+
+        new ParsedMessage("a16320462!LOGON#Christian:");
+    }
+
+    @Test
+    public void constructorShouldParseAllTheParts() {
+        final ParsedMessage parsedMessage = new ParsedMessage("16320462!MSG#Christian:[-15987646]Hello: there!");
+
+        assertEquals("16320462!MSG#Christian:[-15987646]Hello: there!", parsedMessage.getMessage());
+        assertEquals(16320462, parsedMessage.getUserCode());
+        assertEquals("MSG", parsedMessage.getType());
+        assertEquals("Christian", parsedMessage.getNick());
+        assertEquals("[-15987646]Hello: there!", parsedMessage.getContent());
+    }
+
+    @Test
+    public void constructorShouldAcceptEmptyContent() {
+        final ParsedMessage parsedMessage = new ParsedMessage("16320462!IDLE#Christian:");
+
+        assertEquals("IDLE", parsedMessage.getType());
+        assertEquals("", parsedMessage.getContent());
+    }
+
+    @Test
+    public void constructorShouldParseSequenceNumberAndRemoveTrailer() {
+        final ParsedMessage parsedMessage =
+                new ParsedMessage(MessageTrailer.addSequenceNumber("16320462!MSG#Christian:[-15987646]Hello", 42));
+
+        assertEquals("16320462!MSG#Christian:[-15987646]Hello", parsedMessage.getMessage());
+        assertEquals("[-15987646]Hello", parsedMessage.getContent());
+        assertEquals(42, parsedMessage.getSequenceNumber());
+        assertTrue(parsedMessage.hasSequenceNumber());
+    }
+
+    @Test
+    public void constructorShouldHandleMessageWithoutSequenceNumber() {
+        final ParsedMessage parsedMessage = new ParsedMessage("16320462!MSG#Christian:[-15987646]Hello");
+
+        assertEquals(MessageTrailer.NO_SEQUENCE_NUMBER, parsedMessage.getSequenceNumber());
+        assertFalse(parsedMessage.hasSequenceNumber());
+    }
+
+    @Test
+    public void isPrivateMessageShouldOnlyBeTrueForPrivateMessages() {
+        assertTrue(new ParsedMessage("16320462!PRIVMSG#Christian:(1234)[-15987646]Hello").isPrivateMessage());
+        assertFalse(new ParsedMessage("16320462!MSG#Christian:[-15987646]Hello").isPrivateMessage());
+        assertFalse(new ParsedMessage("16320462!PRIVMSGX#Christian:(1234)[-15987646]Hello").isPrivateMessage());
+    }
+
+    @Test
+    public void toStringShouldReturnTheRawMessage() {
+        assertEquals("16320462!IDLE#Christian:", new ParsedMessage("16320462!IDLE#Christian:").toString());
+    }
+}
@@ -0,0 +1,130 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of {@link PeerTransportStats}.
+ *
+ * @author Christian Ihle
+ */
+public class PeerTransportStatsTest {
+
+    private PeerTransportStats stats;
+
+    @Before
+    public void setUp() {
+        stats = new PeerTransportStats();
+    }
+
+    @Test
+    public void newStatsShouldHaveNoLossOrLag() {
+        assertEquals(0, stats.getLossRate(), 0);
+        assertEquals(0, stats.getLag(), 0);
+        assertEquals(0, stats.getSampleCount());
+        assertFalse(stats.isMulticastOnly());
+    }
+
+    @Test
+    public void multicastArrivedShouldNotCountLossWhenNoMessagesAreMissing() {
+        for (int i = 0; i < 100; i++) {
+            stats.multicastArrived(i, 1000);
+        }
+
+        assertEquals(0, stats.getLossRate(), 0);
+        assertEquals(100, stats.getSampleCount());
+    }
+
+    @Test
+    public void multicastArrivedShouldCountGapsAsLoss() {
+        stats.multicastArrived(10, 1000);
+        stats.multicastArrived(13, 1000);
+
+        assertEquals(4, stats.getSampleCount());
+        assertTrue(stats.getLossRate() > 0);
+    }
+
+    @Test
+    public void multicastArrivedShouldNotCountMessagesBeforeTheFirstAsLoss() {
+        stats.multicastArrived(500, 1000);
+
+        assertEquals(1, stats.getSampleCount());
+        assertEquals(0, stats.getLossRate(), 0);
+    }
+
+    @Test
+    public void multicastArrivedShouldNotCountOldMessagesAgain() {
+        stats.multicastArrived(1, 1000);
+        stats.multicastArrived(3, 1000);
+        final double lossRate = stats.getLossRate();
+
+        stats.multicastArrived(2, 1000);
+
+        assertEquals(3, stats.getSampleCount());
+        assertEquals(lossRate, stats.getLossRate(), 0);
+    }
+
+    @Test
+    public void lossRateShouldApproachTheShareOfMissingMessages() {
+        // Every fifth message is lost
+        for (int i = 0; i < 5000; i++) {
+            if (i % 5 != 0) {
+                stats.multicastArrived(i, 1000);
+            }
+        }
+
+        assertEquals(0.2, stats.getLossRate(), 0.05);
+    }
+
+    @Test
+    public void messagesLostShouldCountAsLoss() {
+        stats.messagesLost(3);
+
+        assertEquals(3, stats.getSampleCount());
+        assertTrue(stats.getLossRate() > 0);
+    }
+
+    @Test
+    public void multicastArrivedShouldMeasureLagBehindTcpCopy() {
+        for (int i = 0; i < 1000; i++) {
+            stats.tcpArrived(i, 1000);
+            stats.multicastArrived(i, 1200);
+        }
+
+        assertEquals(200, stats.getLag(), 1);
+    }
+
+    @Test
+    public void multicastArrivedShouldNotMeasureLagWhenMulticastArrivesFirst() {
+        for (int i = 0; i < 1000; i++) {
+            stats.multicastArrived(i, 1000);
+            stats.tcpArrived(i, 1200);
+        }
+
+        assertEquals(0, stats.getLag(), 0);
+    }
+}
@@ -0,0 +1,87 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of {@link RetransmitBuffer}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class RetransmitBufferTest {
+
+    private RetransmitBuffer retransmitBuffer;
+
+    @Before
+    public void setUp() {
+        retransmitBuffer = new RetransmitBuffer(4);
+    }
+
+    @Test
+    public void getMessageToRetransmitShouldReturnStoredMessage() {
+        retransmitBuffer.add(0, "Message 0");
+        retransmitBuffer.add(1, "Message 1");
+
+        assertEquals("Message 0", retransmitBuffer.getMessageToRetransmit(0, 1000, 100));
+        assertEquals("Message 1", retransmitBuffer.getMessageToRetransmit(1, 1000, 100));
+    }
+
+    @Test
+    public void getMessageToRetransmitShouldReturnNullForMessagesNeverStored() {
+        retransmitBuffer.add(0, "Message 0");
+
+        assertNull(retransmitBuffer.getMessageToRetransmit(1, 1000, 100));
+        assertNull(retransmitBuffer.getMessageToRetransmit(4, 1000, 100));
+        assertNull(retransmitBuffer.getMessageToRetransmit(-1, 1000, 100));
+    }
+
+    @Test
+    public void getMessageToRetransmitShouldReturnNullForMessagesReplacedByNewerMessages() {
+        for (int i = 0; i < 6; i++) {
+            retransmitBuffer.add(i, "Message " + i);
+        }
+
+        assertNull(retransmitBuffer.getMessageToRetransmit(1, 1000, 100));
+        assertEquals("Message 2", retransmitBuffer.getMessageToRetransmit(2, 1000, 100));
+        assertEquals("Message 5", retransmitBuffer.getMessageToRetransmit(5, 1000, 100));
+    }
+
+    @Test
+    public void getMessageToRetransmitShouldNotReturnSameMessageAgainWithinInterval() {
+        retransmitBuffer.add(0, "Message 0");
+
+        assertEquals("Message 0", retransmitBuffer.getMessageToRetransmit(0, 1000, 100));
+        assertNull(retransmitBuffer.getMessageToRetransmit(0, 1099, 100));
+        assertEquals("Message 0", retransmitBuffer.getMessageToRetransmit(0, 1100, 100));
+    }
+
+    @Test
+    public void getSizeShouldReturnSizeFromConstructor() {
+        assertEquals(4, retransmitBuffer.getSize());
+    }
+}
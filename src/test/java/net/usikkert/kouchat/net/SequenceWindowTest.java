@@ -0,0 +1,162 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of {@link SequenceWindow}.
+ *
+ * @author Christian Ihle
+ */
+public class SequenceWindowTest {
+
+    private SequenceWindow sequenceWindow;
+
+    @Before
+    public void setUp() {
+        sequenceWindow = new SequenceWindow();
+    }
+
+    @Test
+    public void acceptShouldAcceptFirstSequenceNumberWithoutCountingEarlierAsMissing() {
+        assertEquals(-1, sequenceWindow.getHighest());
+
+        assertTrue(sequenceWindow.accept(1000));
+
+        assertEquals(1000, sequenceWindow.getHighest());
+        assertEquals(0, sequenceWindow.getMissingCount());
+        assertFalse(sequenceWindow.accept(999));
+    }
+
+    @Test
+    public void acceptShouldRejectDuplicates() {
+        assertTrue(sequenceWindow.accept(1));
+        assertTrue(sequenceWindow.accept(2));
+
+        assertFalse(sequenceWindow.accept(2));
+        assertFalse(sequenceWindow.accept(1));
+
+        assertEquals(2, sequenceWindow.getDuplicateCount());
+        assertEquals(0, sequenceWindow.getMissingCount());
+    }
+
+    @Test
+    public void acceptShouldAcceptMessagesArrivingOutOfOrderOnce() {
+        assertTrue(sequenceWindow.accept(1));
+        assertTrue(sequenceWindow.accept(4));
+        assertTrue(sequenceWindow.accept(3));
+        assertTrue(sequenceWindow.accept(2));
+
+        assertFalse(sequenceWindow.accept(3));
+        assertFalse(sequenceWindow.accept(2));
+
+        assertTrue(sequenceWindow.isReceived(2));
+        assertTrue(sequenceWindow.isReceived(4));
+        assertFalse(sequenceWindow.isReceived(5));
+    }
+
+    @Test
+    public void acceptShouldRejectMessagesOlderThanTheWindow() {
+        assertTrue(sequenceWindow.accept(100));
+        assertTrue(sequenceWindow.accept(100 + SequenceWindow.WINDOW_SIZE + 1));
+
+        assertFalse(sequenceWindow.accept(100));
+        assertEquals(1, sequenceWindow.getDuplicateCount());
+    }
+
+    @Test
+    public void acceptShouldHandleTheEdgeOfTheWindow() {
+        assertTrue(sequenceWindow.accept(100));
+        assertTrue(sequenceWindow.accept(100 + SequenceWindow.WINDOW_SIZE));
+
+        assertTrue(sequenceWindow.isReceived(100));
+        assertFalse(sequenceWindow.accept(100));
+        assertTrue(sequenceWindow.accept(101));
+    }
+
+    @Test
+    public void missingCountShouldCountGapsWhenTheyLeaveTheWindow() {
+        assertTrue(sequenceWindow.accept(1));
+        assertTrue(sequenceWindow.accept(3)); // 2 is missing, but might still arrive
+
+        assertEquals(0, sequenceWindow.getMissingCount());
+
+        assertTrue(sequenceWindow.accept(3 + SequenceWindow.WINDOW_SIZE - 1));
+        assertEquals(0, sequenceWindow.getMissingCount());
+
+        assertTrue(sequenceWindow.accept(3 + SequenceWindow.WINDOW_SIZE));
+        assertEquals(1, sequenceWindow.getMissingCount());
+    }
+
+    @Test
+    public void missingCountShouldNotCountGapsThatWereFilled() {
+        assertTrue(sequenceWindow.accept(1));
+        assertTrue(sequenceWindow.accept(3));
+        assertTrue(sequenceWindow.accept(2));
+
+        assertTrue(sequenceWindow.accept(1000));
+
+        // 4 to 935 left the window without arriving
+        assertEquals(1000 - SequenceWindow.WINDOW_SIZE - 4, sequenceWindow.getMissingCount());
+    }
+
+    @Test
+    public void missingCountShouldCountLargeJumps() {
+        assertTrue(sequenceWindow.accept(10));
+        assertTrue(sequenceWindow.accept(10 + 2 * SequenceWindow.WINDOW_SIZE));
+
+        // Only 10 was received of the numbers that left the window
+        assertEquals(SequenceWindow.WINDOW_SIZE - 1, sequenceWindow.getMissingCount());
+
+        for (long i = 10 + SequenceWindow.WINDOW_SIZE; i < 10 + 2 * SequenceWindow.WINDOW_SIZE; i++) {
+            assertTrue(sequenceWindow.accept(i));
+        }
+
+        assertTrue(sequenceWindow.accept(10 + 3 * SequenceWindow.WINDOW_SIZE));
+        assertEquals(SequenceWindow.WINDOW_SIZE - 1, sequenceWindow.getMissingCount());
+    }
+
+    @Test
+    public void getMissingSequenceNumbersShouldBeEmptyBeforeFirstMessage() {
+        assertTrue(sequenceWindow.getMissingSequenceNumbers().isEmpty());
+    }
+
+    @Test
+    public void getMissingSequenceNumbersShouldReturnGapsOldestFirst() {
+        sequenceWindow.accept(1);
+        sequenceWindow.accept(3);
+        sequenceWindow.accept(6);
+
+        assertEquals(Arrays.asList(2L, 4L, 5L), sequenceWindow.getMissingSequenceNumbers());
+
+        sequenceWindow.accept(4);
+
+        assertEquals(Arrays.asList(2L, 5L), sequenceWindow.getMissingSequenceNumbers());
+    }
+}
@@ -0,0 +1,275 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.misc.User;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.settings.TransportMode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link TransportPolicy}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class TransportPolicyTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private TransportPolicy transportPolicy;
+    private Settings settings;
+    private User user;
+
+    @Before
+    public void setUp() {
+        settings = mock(Settings.class);
+        when(settings.getTransportMode()).thenReturn(TransportMode.AUTO);
+
+        transportPolicy = new TransportPolicy(settings);
+
+        user = new User("Tina", 123);
+        user.setSequenceNumbersEnabled(true);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Settings can not be null");
+
+        new TransportPolicy(null);
+    }
+
+    @Test
+    public void getTransportShouldUseBothBeforeEnoughMessagesAreMeasured() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES - 1);
+
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldChooseMulticastOnlyWhenMulticastWorksWell() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldNeverChooseMulticastOnlyForUsersWithoutSequenceNumbers() {
+        user.setSequenceNumbersEnabled(false);
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+
+        when(settings.getTransportMode()).thenReturn(TransportMode.MULTICAST_ONLY);
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldUseBothWhenMulticastLosesMessages() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(user));
+
+        // Every fourth message is lost
+        for (int i = TransportPolicy.MIN_SAMPLES; i < TransportPolicy.MIN_SAMPLES + 40; i++) {
+            if (i % 4 != 0) {
+                transportPolicy.messageArrived(user, i, true, 1000);
+            }
+        }
+
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldUseBothWhenOwnMessagesAreRequestedAgain() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(user));
+
+        transportPolicy.messagesLost(user, 10);
+
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldUseBothWhenMulticastIsLate() {
+        for (int i = 0; i < TransportPolicy.MIN_SAMPLES * 2; i++) {
+            transportPolicy.messageArrived(user, i, false, 1000);
+            transportPolicy.messageArrived(user, i, true, 1000 + (long) TransportPolicy.BAD_LAG * 2);
+        }
+
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldKeepMulticastOnlyForSmallLossBetweenTheLimits() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(user));
+
+        transportPolicy.messagesLost(user, 1);
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void getTransportShouldUseModeFromSettingsWhenNotAuto() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        when(settings.getTransportMode()).thenReturn(TransportMode.BOTH);
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+        assertEquals(TransportMode.TCP_ONLY, transportPolicy.getTransport(user));
+
+        final User newUser = new User("New", 456);
+        newUser.setSequenceNumbersEnabled(true);
+
+        when(settings.getTransportMode()).thenReturn(TransportMode.MULTICAST_ONLY);
+        assertEquals(TransportMode.MULTICAST_ONLY, transportPolicy.getTransport(newUser));
+    }
+
+    @Test
+    public void shouldSendTcpShouldSkipAndCountUsersWithMulticastOnly() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        assertFalse(transportPolicy.shouldSendTcp(user, true));
+        assertEquals(1, transportPolicy.getSkippedTcpMessageCount());
+    }
+
+    @Test
+    public void shouldSendTcpShouldAlwaysSendMessagesWithoutSequenceNumber() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        assertTrue(transportPolicy.shouldSendTcp(user, false));
+        assertEquals(0, transportPolicy.getSkippedTcpMessageCount());
+    }
+
+    @Test
+    public void isMulticastNeededShouldOnlyBeFalseInTcpOnlyMode() {
+        assertTrue(transportPolicy.isMulticastNeeded("123!MSG#Tina:[-15987646]Hello", true));
+
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+        assertFalse(transportPolicy.isMulticastNeeded("123!MSG#Tina:[-15987646]Hello", true));
+    }
+
+    @Test
+    public void isMulticastNeededShouldBeTrueForMessagesWithoutSequenceNumberInTcpOnlyMode() {
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+
+        assertTrue(transportPolicy.isMulticastNeeded("123!MSG#Tina:[-15987646]Hello", false));
+    }
+
+    @Test
+    public void isMulticastNeededShouldBeTrueForMessagesUsedForFindingUsersInTcpOnlyMode() {
+        when(settings.getTransportMode()).thenReturn(TransportMode.TCP_ONLY);
+
+        assertTrue(transportPolicy.isMulticastNeeded("123!LOGON#Tina:", true));
+        assertTrue(transportPolicy.isMulticastNeeded("123!LOGOFF#Tina:", true));
+        assertTrue(transportPolicy.isMulticastNeeded("123!EXPOSE#Tina:", true));
+        assertTrue(transportPolicy.isMulticastNeeded("123!EXPOSING#Tina:", true));
+        assertTrue(transportPolicy.isMulticastNeeded("123!NICKCRASH#Tina:Tina", true));
+        assertTrue(transportPolicy.isMulticastNeeded("123!GETTOPIC#Tina:", true));
+        assertTrue(transportPolicy.isMulticastNeeded("Badly formatted", true));
+    }
+
+    @Test
+    public void describeUsersShouldDescribeEachMeasuredUser() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        final List<String> descriptions = transportPolicy.describeUsers();
+
+        assertEquals(1, descriptions.size());
+        assertEquals("Tina (123): MULTICAST_ONLY, loss=0.0%, lag=0 ms, samples=100", descriptions.get(0));
+    }
+
+    @Test
+    public void resetShouldForgetMeasurements() {
+        receiveMulticastMessages(0, TransportPolicy.MIN_SAMPLES);
+
+        transportPolicy.reset();
+
+        assertTrue(transportPolicy.describeUsers().isEmpty());
+        assertEquals(TransportMode.BOTH, transportPolicy.getTransport(user));
+    }
+
+    @Test
+    public void multicastArrivedFromShouldSwitchToTheIpAddressWithLowerLoss() {
+        user.setIpAddress("192.168.1.2");
+        user.addIpAddress("2001:db8:0:0:0:0:0:2");
+
+        for (int i = 0; i < TransportPolicy.MIN_PATH_SAMPLES * 2; i++) {
+            transportPolicy.multicastArrivedFrom(user, "2001:db8:0:0:0:0:0:2", i, 1000);
+
+            // Every 4th message over IPv4 gets lost
+            if (i % 4 != 0) {
+                transportPolicy.multicastArrivedFrom(user, "192.168.1.2", i, 1000);
+            }
+        }
+
+        assertEquals("2001:db8:0:0:0:0:0:2", user.getIpAddress());
+        assertEquals(Arrays.asList("2001:db8:0:0:0:0:0:2", "192.168.1.2"), user.getIpAddresses());
+    }
+
+    @Test
+    public void multicastArrivedFromShouldKeepTheIpAddressWhenLossIsAboutTheSame() {
+        user.setIpAddress("192.168.1.2");
+        user.addIpAddress("2001:db8:0:0:0:0:0:2");
+
+        for (int i = 0; i < TransportPolicy.MIN_PATH_SAMPLES * 2; i++) {
+            transportPolicy.multicastArrivedFrom(user, "2001:db8:0:0:0:0:0:2", i, 1000);
+
+            // A single lost message is not enough to switch
+            if (i != 60) {
+                transportPolicy.multicastArrivedFrom(user, "192.168.1.2", i, 1000);
+            }
+        }
+
+        assertEquals("192.168.1.2", user.getIpAddress());
+    }
+
+    @Test
+    public void multicastArrivedFromShouldIgnoreUnknownIpAddresses() {
+        user.setIpAddress("192.168.1.2");
+
+        for (int i = 0; i < TransportPolicy.MIN_PATH_SAMPLES * 2; i++) {
+            transportPolicy.multicastArrivedFrom(user, "2001:db8:0:0:0:0:0:2", i, 1000);
+        }
+
+        assertEquals(Arrays.asList("192.168.1.2"), user.getIpAddresses());
+    }
+
+    private void receiveMulticastMessages(final int from, final int count) {
+        for (int i = from; i < from + count; i++) {
+            transportPolicy.messageArrived(user, i, true, 1000);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net.tcp;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.util.Logger;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link TCPClient}, using real sockets on loopback.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class TCPClientTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ServerSocket serverSocket;
+    private Socket otherSide;
+    private TCPClient client;
+    private TCPClientListener clientListener;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        otherSide = serverSocket.accept();
+
+        client = new TCPClient(socket);
+        TestUtils.setFieldValueWithMock(client, "LOG", Logger.class);
+
+        clientListener = mock(TCPClientListener.class);
+        client.registerClientListener(clientListener);
+
+        assertTrue(client.connect());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.disconnect();
+        otherSide.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfSocketIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Socket can not be null");
+
+        new TCPClient(null);
+    }
+
+    @Test
+    public void sendShouldWriteMessagesInOrder() throws IOException {
+        client.send("Hello");
+        client.send(new TCPMessage("World").getBytes(true));
+
+        final DataInputStream inputStream = new DataInputStream(otherSide.getInputStream());
+
+        assertEquals("Hello", inputStream.readUTF());
+        assertEquals("World", inputStream.readUTF());
+    }
+
+    @Test
+    public void sendShouldNotBlockAndShouldDisconnectWhenOtherSideStopsReading() throws IOException {
+        final StringBuilder largeMessage = new StringBuilder();
+
+        for (int i = 0; i < 8000; i++) {
+            largeMessage.append('a');
+        }
+
+        // Shared by every send, like a message to all users
+        final byte[] encodedMessage = new TCPMessage(largeMessage.toString()).getBytes(true);
+        final long start = System.currentTimeMillis();
+
+        // Enough to fill both the socket buffers and the queue, since the other side never reads
+        for (int i = 0; i < TCPClient.MAX_QUEUED_MESSAGES * 10 && client.isConnected(); i++) {
+            client.send(encodedMessage);
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertFalse(client.isConnected());
+        verify(clientListener, atLeastOnce()).disconnected(client);
+    }
+
+    @Test
+    public void sendShouldDoNothingWhenDisconnected() throws IOException {
+        client.disconnect();
+
+        client.send("Hello");
+
+        otherSide.setSoTimeout(200);
+        assertEquals(-1, otherSide.getInputStream().read());
+    }
+}
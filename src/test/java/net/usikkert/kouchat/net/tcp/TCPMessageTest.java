@@ -0,0 +1,94 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.net.tcp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+import net.usikkert.kouchat.net.MessageTrailer;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link TCPMessage}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class TCPMessageTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void constructorShouldThrowExceptionIfMessageIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Message can not be null");
+
+        new TCPMessage(null);
+    }
+
+    @Test
+    public void getBytesShouldEncodeMessageReadableWithReadUTF() throws IOException {
+        final TCPMessage tcpMessage = new TCPMessage("1234!MSG#Christian:[-1]Hello æøå");
+
+        assertEquals("1234!MSG#Christian:[-1]Hello æøå", readUTF(tcpMessage.getBytes(true)));
+    }
+
+    @Test
+    public void getBytesShouldRemoveTrailerIfAsked() throws IOException {
+        final String message = MessageTrailer.addSequenceNumber("1234!MSG#Christian:[-1]Hello", 10);
+        final TCPMessage tcpMessage = new TCPMessage(message);
+
+        assertEquals(message, readUTF(tcpMessage.getBytes(true)));
+        assertEquals("1234!MSG#Christian:[-1]Hello", readUTF(tcpMessage.getBytes(false)));
+    }
+
+    @Test
+    public void getBytesShouldOnlyEncodeOnce() throws IOException {
+        final TCPMessage tcpMessage = new TCPMessage("1234!MSG#Christian:[-1]Hello");
+
+        assertSame(tcpMessage.getBytes(true), tcpMessage.getBytes(true));
+        assertSame(tcpMessage.getBytes(false), tcpMessage.getBytes(false));
+    }
+
+    @Test
+    public void getMessageShouldReturnMessageFromConstructor() {
+        assertEquals("Hello", new TCPMessage("Hello").getMessage());
+        assertEquals("Hello", new TCPMessage("Hello").toString());
+    }
+
+    private String readUTF(final byte[] bytes) throws IOException {
+        final DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(bytes));
+        final String message = inputStream.readUTF();
+
+        assertEquals(0, inputStream.available());
+
+        return message;
+    }
+}
@@ -101,8 +101,10 @@ public class PropertyFileSettingsLoaderTest {
         properties.setProperty(BROWSER.getKey(), "opera");
         properties.setProperty(LOOK_AND_FEEL.getKey(), "sega");
         properties.setProperty(NETWORK_INTERFACE.getKey(), "eth5");
+        properties.setProperty(TRANSPORT_MODE.getKey(), "MULTICAST_ONLY");
+        properties.setProperty(MULTI_INTERFACE.getKey(), "true");
 
-        assertEquals(11, properties.size());
+        assertEquals(13, properties.size());
 
         when(propertyTools.loadProperties(anyString())).thenReturn(properties);
 
@@ -122,6 +124,21 @@ public class PropertyFileSettingsLoaderTest {
         assertEquals("opera", settings.getBrowser());
         assertEquals("sega", settings.getLookAndFeel());
         assertEquals("eth5", settings.getNetworkInterface());
+        assertEquals(TransportMode.MULTICAST_ONLY, settings.getTransportMode());
+        assertTrue(settings.isMultiInterface());
+    }
+
+    @Test
+    public void loadSettingsShouldIgnoreInvalidTransportMode() throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(TRANSPORT_MODE.getKey(), "CARRIER_PIGEON");
+
+        when(propertyTools.loadProperties(anyString())).thenReturn(properties);
+
+        loader.loadSettings(settings);
+
+        assertEquals(TransportMode.AUTO, settings.getTransportMode());
+        verify(log).log(Level.WARNING, "Could not read setting for transportMode...");
     }
 
     @Test
@@ -143,6 +143,8 @@ public class PropertyFileSettingsSaverTest {
         settings.setBrowser("firefox");
         settings.setLookAndFeel("starwars");
         settings.setNetworkInterface("wlan2");
+        settings.setTransportMode(TransportMode.TCP_ONLY);
+        settings.setMultiInterface(true);
 
         settingsSaver.saveSettings();
 
@@ -152,7 +154,7 @@ public class PropertyFileSettingsSaverTest {
 
         final Properties properties = propertiesCaptor.getValue();
 
-        assertEquals(11, properties.size());
+        assertEquals(13, properties.size());
 
         assertEquals("Linda", properties.get(NICK_NAME.getKey()));
         assertEquals("100", properties.get(OWN_COLOR.getKey()));
@@ -165,6 +167,8 @@ public class PropertyFileSettingsSaverTest {
         assertEquals("firefox", properties.get(BROWSER.getKey()));
         assertEquals("starwars", properties.get(LOOK_AND_FEEL.getKey()));
         assertEquals("wlan2", properties.get(NETWORK_INTERFACE.getKey()));
+        assertEquals("TCP_ONLY", properties.get(TRANSPORT_MODE.getKey()));
+        assertEquals("true", properties.get(MULTI_INTERFACE.getKey()));
     }
 
     @Test
@@ -182,7 +186,7 @@ public class PropertyFileSettingsSaverTest {
 
         final Properties properties = propertiesCaptor.getValue();
 
-        assertEquals(11, properties.size());
+        assertEquals(13, properties.size());
 
         assertEquals("", properties.get(NICK_NAME.getKey()));
         assertEquals("", properties.get(BROWSER.getKey()));
@@ -27,6 +27,7 @@ import static org.mockito.Mockito.*;
 
 import net.usikkert.kouchat.Constants;
 import net.usikkert.kouchat.event.SettingsListener;
+import net.usikkert.kouchat.junit.ExpectedException;
 import net.usikkert.kouchat.misc.User;
 
 import org.junit.Before;
@@ -45,6 +46,9 @@ public class SettingsTest {
     @Rule
     public RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
 
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
     private Settings settings;
 
     private SettingsListener listener;
@@ -175,6 +179,28 @@ public class SettingsTest {
         verify(listener2).settingChanged(setting);
     }
 
+    @Test
+    public void setTransportModeShouldThrowExceptionIfTransportModeIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Transport mode can not be null");
+
+        settings.setTransportMode(null);
+    }
+
+    @Test
+    public void getTransportModeShouldReturnSetValue() {
+        settings.setTransportMode(TransportMode.TCP_ONLY);
+
+        assertEquals(TransportMode.TCP_ONLY, settings.getTransportMode());
+    }
+
+    @Test
+    public void isMultiInterfaceShouldReturnSetValue() {
+        settings.setMultiInterface(true);
+
+        assertTrue(settings.isMultiInterface());
+    }
+
     static void verifyDefaultValues(final Settings settings) {
         assertEquals(-15987646, settings.getOwnColor());
         assertEquals(-16759040, settings.getSysColor());
@@ -188,6 +214,8 @@ public class SettingsTest {
         assertEquals("", settings.getBrowser());
         assertEquals("", settings.getLookAndFeel());
         assertNull(settings.getNetworkInterface());
+        assertEquals(TransportMode.AUTO, settings.getTransportMode());
+        assertFalse(settings.isMultiInterface());
 
         assertFalse(settings.isNoPrivateChat());
         assertFalse(settings.isAlwaysLog());
@@ -0,0 +1,588 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.testclient;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.usikkert.kouchat.Constants;
+import net.usikkert.kouchat.message.CoreMessages;
+import net.usikkert.kouchat.misc.Controller;
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.net.NetworkMessageType;
+import net.usikkert.kouchat.settings.PropertyFileSettingsSaver;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.util.Tools;
+
+/**
+ * Generates load on a KouChat client, to find out how many users it can handle.
+ *
+ * <p>Starts a real client in the same JVM, and a number of lightweight {@link SimulatedPeer}s that
+ * talk to it over loopback multicast. The number of peers is increased step by step. In each step
+ * the peers send chat messages, change nick names, go away and come back, start and stop writing,
+ * and offer files, at the configured rates. The peers answer expose requests from the client,
+ * and send idle messages so they don't time out.</p>
+ *
+ * <p>For each step the report shows:</p>
+ *
+ * <ul>
+ *   <li>Packets sent by the peers per second.</li>
+ *   <li>Chat messages sent, and the percentage that never showed up in the client.</li>
+ *   <li>The latency from a chat message is sent until it's shown in the client.</li>
+ *   <li>How many of the peers the client knows about.</li>
+ *   <li>The CPU used by the client, as a percentage of one core. This is the CPU used by the
+ *       whole process, minus the threads of the load generator.</li>
+ *   <li>The heap used after a garbage collection. The load generator itself uses very little.</li>
+ * </ul>
+ *
+ * <p>A step is marked as degraded if more than 1% of the chat messages are lost, the 99th percentile
+ * latency is above one second, or the client has lost track of any peers.</p>
+ *
+ * <p>Configured with system properties:</p>
+ *
+ * <ul>
+ *   <li><code>loadtest.peers</code>: number of peers in each step. Default <code>25,50,100,200,400</code>.</li>
+ *   <li><code>loadtest.duration</code>: seconds to measure in each step. Default <code>20</code>.</li>
+ *   <li><code>loadtest.messageRate</code>: chat messages per peer per second. Default <code>0.1</code>.</li>
+ *   <li><code>loadtest.nickRate</code>: nick name changes per peer per second. Default <code>0.005</code>.</li>
+ *   <li><code>loadtest.awayRate</code>: away and back changes per peer per second. Default <code>0.01</code>.</li>
+ *   <li><code>loadtest.writingRate</code>: writing and stopped writing notices per peer per second.
+ *       Default <code>0.1</code>.</li>
+ *   <li><code>loadtest.fileRate</code>: file offers to the client per peer per second. Default <code>0.002</code>.</li>
+ *   <li><code>loadtest.report</code>: file to write the report to as comma separated values. Optional.</li>
+ * </ul>
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public final class LoadGenerator {
+
+    /** The user code of the first peer. Real clients use codes from 10000000 and up. */
+    private static final int FIRST_PEER_CODE = 100000;
+
+    /** Milliseconds between each idle message from a peer. */
+    private static final int IDLE_INTERVAL = 15000;
+
+    /** The longest random delay, in milliseconds, before a peer answers an expose request. */
+    private static final int EXPOSING_MAX_DELAY = 500;
+
+    /** Milliseconds between each peer logging on. */
+    private static final int LOGON_INTERVAL = 5;
+
+    /** Milliseconds to wait after new peers have logged on, before measuring. */
+    private static final int SETTLE_TIME = 3000;
+
+    /** Milliseconds to wait for the last chat messages to show up after measuring. */
+    private static final int DRAIN_TIME = 2000;
+
+    /** Milliseconds between each time the peers are given something to do. */
+    private static final int TICK_INTERVAL = 10;
+
+    private static final String THREAD_NAME_PREFIX = "LoadGenerator";
+
+    private final int[] peerSteps;
+    private final int duration;
+    private final double messageRate;
+    private final double nickRate;
+    private final double awayRate;
+    private final double writingRate;
+    private final double fileRate;
+    private final String reportFile;
+
+    private final List<SimulatedPeer> peers;
+    private final Random random;
+    private final ScheduledExecutorService executor;
+    private final ThreadMXBean threadMXBean;
+
+    private Controller target;
+    private LoadTestUserInterface targetUserInterface;
+    private int targetCode;
+
+    private MulticastSocket socket;
+    private InetAddress address;
+    private Thread receiverThread;
+
+    private volatile boolean running;
+    private volatile LoadStatistics statistics;
+
+    private int numberOfTicks;
+    private double pendingMessages;
+    private double pendingNickChanges;
+    private double pendingAwayChanges;
+    private double pendingWritingChanges;
+    private double pendingFileOffers;
+
+    private LoadGenerator() {
+        peerSteps = parseSteps(System.getProperty("loadtest.peers", "25,50,100,200,400"));
+        duration = Integer.getInteger("loadtest.duration", 20);
+        messageRate = getDouble("loadtest.messageRate", 0.1);
+        nickRate = getDouble("loadtest.nickRate", 0.005);
+        awayRate = getDouble("loadtest.awayRate", 0.01);
+        writingRate = getDouble("loadtest.writingRate", 0.1);
+        fileRate = getDouble("loadtest.fileRate", 0.002);
+        reportFile = System.getProperty("loadtest.report");
+
+        peers = new ArrayList<>();
+        random = new Random(42);
+        threadMXBean = ManagementFactory.getThreadMXBean();
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, THREAD_NAME_PREFIX + "-Sender");
+            }
+        });
+    }
+
+    /**
+     * Runs the load test with the settings from the system properties.
+     *
+     * @param args Not used.
+     * @throws Exception If the load test fails.
+     */
+    public static void main(final String[] args) throws Exception {
+        final LoadGenerator loadGenerator = new LoadGenerator();
+
+        try {
+            loadGenerator.run();
+        }
+
+        finally {
+            loadGenerator.shutdown();
+        }
+
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        startTarget();
+        startNetwork();
+        startPeerActivity();
+
+        final List<String> report = new ArrayList<>();
+        report.add("peers,packets/s,chat sent,dropped %,p50 ms,p95 ms,p99 ms,max ms,known peers,cpu %,heap MB,degraded");
+
+        System.out.printf("%6s %10s %10s %9s %9s %9s %9s %9s %6s %7s %8s%n",
+                          "Peers", "Packets/s", "Chat sent", "Dropped", "p50 ms", "p95 ms", "p99 ms", "Max ms",
+                          "Known", "CPU", "Heap MB");
+
+        int degradedAt = -1;
+
+        for (int step = 0; step < peerSteps.length; step++) {
+            final int numberOfPeers = peerSteps[step];
+
+            logOnPeers(numberOfPeers);
+            Tools.sleep(SETTLE_TIME);
+
+            final LoadStatistics stepStatistics = new LoadStatistics(step);
+            final long startTime = System.nanoTime();
+            final long startProcessCpu = getProcessCpuTime();
+            final long startGeneratorCpu = getGeneratorCpuTime();
+
+            targetUserInterface.setStatistics(stepStatistics);
+            statistics = stepStatistics;
+
+            Tools.sleep(duration * 1000L);
+
+            // Stop sending chat messages, and wait for the last ones to arrive
+            statistics = null;
+            Tools.sleep(DRAIN_TIME);
+            targetUserInterface.setStatistics(null);
+
+            final long elapsedTime = System.nanoTime() - startTime;
+            final long processCpu = getProcessCpuTime() - startProcessCpu;
+            final long generatorCpu = getGeneratorCpuTime() - startGeneratorCpu;
+            final double cpuPercentage = Math.max(0, processCpu - generatorCpu) * 100.0 / elapsedTime;
+
+            System.gc();
+            final double heapMegabytes =
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024.0 / 1024.0;
+
+            final int knownPeers = target.getUserList().size() - 1;
+            final double packetsPerSecond = stepStatistics.getPacketsSent() * 1000000000.0 / elapsedTime;
+
+            final boolean degraded = stepStatistics.getDropPercentage() > 1 ||
+                    stepStatistics.getLatencyPercentile(99) > 1000 ||
+                    knownPeers < numberOfPeers;
+
+            if (degraded && degradedAt == -1) {
+                degradedAt = numberOfPeers;
+            }
+
+            System.out.printf(Locale.US, "%6d %10.1f %10d %8.2f%% %9.2f %9.2f %9.2f %9.2f %6d %6.1f%% %8.1f%s%n",
+                              numberOfPeers, packetsPerSecond, stepStatistics.getChatMessagesSent(),
+                              stepStatistics.getDropPercentage(), stepStatistics.getLatencyPercentile(50),
+                              stepStatistics.getLatencyPercentile(95), stepStatistics.getLatencyPercentile(99),
+                              stepStatistics.getMaxLatency(), knownPeers, cpuPercentage, heapMegabytes,
+                              degraded ? "  DEGRADED" : "");
+
+            report.add(String.format(Locale.US, "%d,%.1f,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%d,%.1f,%.1f,%s",
+                                     numberOfPeers, packetsPerSecond, stepStatistics.getChatMessagesSent(),
+                                     stepStatistics.getDropPercentage(), stepStatistics.getLatencyPercentile(50),
+                                     stepStatistics.getLatencyPercentile(95), stepStatistics.getLatencyPercentile(99),
+                                     stepStatistics.getMaxLatency(), knownPeers, cpuPercentage, heapMegabytes,
+                                     degraded));
+        }
+
+        if (degradedAt == -1) {
+            System.out.println("No degradation up to " + peerSteps[peerSteps.length - 1] + " peers");
+        } else {
+            System.out.println("The client degraded at " + degradedAt + " peers");
+        }
+
+        writeReport(report);
+    }
+
+    private void startTarget() {
+        final Settings settings = new Settings();
+        settings.setClient("LoadTest");
+        settings.getMe().setNick("Target");
+
+        final ErrorHandler errorHandler = new ErrorHandler();
+        final CoreMessages coreMessages = new CoreMessages();
+
+        targetUserInterface = new LoadTestUserInterface(settings, errorHandler);
+        target = new Controller(targetUserInterface, settings,
+                                new PropertyFileSettingsSaver(settings, coreMessages, errorHandler),
+                                coreMessages, errorHandler);
+        targetCode = settings.getMe().getCode();
+
+        target.start();
+        target.logOn();
+
+        for (int i = 0; i < 100 && !target.isLoggedOn(); i++) {
+            Tools.sleep(100);
+        }
+
+        if (!target.isLoggedOn()) {
+            throw new RuntimeException("The client under test could not connect");
+        }
+    }
+
+    private void startNetwork() throws IOException {
+        address = InetAddress.getByName(Constants.NETWORK_IP);
+        socket = new MulticastSocket(Constants.NETWORK_CHAT_PORT);
+        socket.setSoTimeout(500);
+        socket.joinGroup(address);
+
+        running = true;
+
+        receiverThread = new Thread(THREAD_NAME_PREFIX + "-Receiver") {
+            @Override
+            public void run() {
+                receive();
+            }
+        };
+
+        receiverThread.start();
+    }
+
+    private void startPeerActivity() {
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, TICK_INTERVAL, TICK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Logs on new peers until there are enough of them. The peers log on one at a time,
+     * to avoid the client losing logon messages before the measurement starts.
+     */
+    private void logOnPeers(final int numberOfPeers) throws Exception {
+        final int currentNumberOfPeers = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return peers.size();
+            }
+        }).get();
+
+        for (int i = currentNumberOfPeers; i < numberOfPeers; i++) {
+            final int index = i;
+
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    final SimulatedPeer peer = new SimulatedPeer(FIRST_PEER_CODE + index, index);
+                    peers.add(peer);
+
+                    send(peer.createLogonMessage());
+                    send(peer.createClientMessage());
+                }
+            }).get();
+
+            Tools.sleep(LOGON_INTERVAL);
+        }
+    }
+
+    /**
+     * Gives the peers something to do. Runs on the sender thread every {@link #TICK_INTERVAL} milliseconds.
+     */
+    private void tick() {
+        if (peers.isEmpty()) {
+            return;
+        }
+
+        numberOfTicks++;
+        sendIdleMessages();
+
+        final double peersPerTick = peers.size() * TICK_INTERVAL / 1000.0;
+        final LoadStatistics currentStatistics = statistics;
+
+        if (currentStatistics != null) {
+            pendingMessages += messageRate * peersPerTick;
+
+            while (pendingMessages >= 1) {
+                pendingMessages--;
+                sendChatMessage(currentStatistics);
+            }
+        }
+
+        pendingNickChanges += nickRate * peersPerTick;
+        pendingAwayChanges += awayRate * peersPerTick;
+        pendingWritingChanges += writingRate * peersPerTick;
+        pendingFileOffers += fileRate * peersPerTick;
+
+        while (pendingNickChanges >= 1) {
+            pendingNickChanges--;
+            send(getRandomPeer().createNickMessage());
+        }
+
+        while (pendingAwayChanges >= 1) {
+            pendingAwayChanges--;
+            send(getRandomPeer().createAwayMessage());
+        }
+
+        while (pendingWritingChanges >= 1) {
+            pendingWritingChanges--;
+            send(getRandomPeer().createWritingMessage());
+        }
+
+        while (pendingFileOffers >= 1) {
+            pendingFileOffers--;
+            send(getRandomPeer().createFileOfferMessage(targetCode));
+        }
+    }
+
+    /**
+     * Sends idle messages from the peers whose turn it is, so each peer sends one every {@link #IDLE_INTERVAL}.
+     */
+    private void sendIdleMessages() {
+        final int ticksPerInterval = IDLE_INTERVAL / TICK_INTERVAL;
+        final int currentTick = numberOfTicks % ticksPerInterval;
+
+        for (int i = currentTick; i < peers.size(); i += ticksPerInterval) {
+            send(peers.get(i).createIdleMessage());
+        }
+    }
+
+    /**
+     * Sends a chat message from a random peer that is not away, since the client ignores messages from away users.
+     */
+    private void sendChatMessage(final LoadStatistics currentStatistics) {
+        final SimulatedPeer peer = getRandomPeer();
+
+        if (peer.isAway()) {
+            return;
+        }
+
+        final String message = "load " + currentStatistics.getStep() + " " + System.nanoTime();
+        send(peer.createChatMessage(message, -16777216));
+        currentStatistics.chatMessageSent();
+    }
+
+    private SimulatedPeer getRandomPeer() {
+        return peers.get(random.nextInt(peers.size()));
+    }
+
+    /**
+     * Answers expose requests from the client under test, after a random delay for each peer.
+     */
+    private void receive() {
+        final byte[] buffer = new byte[Constants.NETWORK_PACKET_SIZE];
+        final String exposeMessagePrefix = targetCode + "!" + NetworkMessageType.EXPOSE + "#";
+
+        while (running) {
+            try {
+                final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+
+                final String message = new String(packet.getData(), 0, packet.getLength(), Constants.MESSAGE_CHARSET);
+
+                if (message.startsWith(exposeMessagePrefix)) {
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            scheduleExposingMessages();
+                        }
+                    });
+                }
+            }
+
+            catch (final SocketTimeoutException e) {
+                // Just checking if still running
+            }
+
+            catch (final IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void scheduleExposingMessages() {
+        for (final SimulatedPeer peer : peers) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(peer.createExposingMessage());
+                    send(peer.createClientMessage());
+                }
+            }, random.nextInt(EXPOSING_MAX_DELAY), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void send(final String message) {
+        try {
+            final byte[] encodedMessage = message.getBytes(Constants.MESSAGE_CHARSET);
+            socket.send(new DatagramPacket(encodedMessage, encodedMessage.length, address,
+                                           Constants.NETWORK_CHAT_PORT));
+
+            final LoadStatistics currentStatistics = statistics;
+
+            if (currentStatistics != null) {
+                currentStatistics.packetSent();
+            }
+        }
+
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long getProcessCpuTime() {
+        final OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+
+        if (operatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) operatingSystemMXBean).getProcessCpuTime();
+        }
+
+        return 0;
+    }
+
+    private long getGeneratorCpuTime() {
+        long cpuTime = 0;
+
+        for (final ThreadInfo threadInfo : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+            if (threadInfo != null && threadInfo.getThreadName().startsWith(THREAD_NAME_PREFIX)) {
+                cpuTime += Math.max(0, threadMXBean.getThreadCpuTime(threadInfo.getThreadId()));
+            }
+        }
+
+        return cpuTime;
+    }
+
+    private void writeReport(final List<String> report) throws IOException {
+        if (reportFile == null) {
+            return;
+        }
+
+        try (final PrintWriter writer = new PrintWriter(new FileWriter(reportFile))) {
+            for (final String line : report) {
+                writer.println(line);
+            }
+        }
+
+        System.out.println("Report written to " + reportFile);
+    }
+
+    private void shutdown() throws Exception {
+        if (socket != null) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (final SimulatedPeer peer : peers) {
+                        send(peer.createLogoffMessage());
+                    }
+                }
+            }).get();
+        }
+
+        executor.shutdownNow();
+        running = false;
+
+        if (receiverThread != null) {
+            receiverThread.join();
+        }
+
+        if (socket != null) {
+            socket.close();
+        }
+
+        if (target != null) {
+            target.logOff(false);
+            target.shutdown();
+        }
+    }
+
+    private static int[] parseSteps(final String steps) {
+        final String[] splitSteps = steps.split(",");
+        final int[] parsedSteps = new int[splitSteps.length];
+
+        for (int i = 0; i < splitSteps.length; i++) {
+            parsedSteps[i] = Integer.parseInt(splitSteps[i].trim());
+        }
+
+        return parsedSteps;
+    }
+
+    private static double getDouble(final String property, final double defaultValue) {
+        final String value = System.getProperty(property);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        return Double.parseDouble(value);
+    }
+}
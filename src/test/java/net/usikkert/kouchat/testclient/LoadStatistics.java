@@ -0,0 +1,162 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.testclient;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the numbers measured during one step of the {@link LoadGenerator}.
+ *
+ * <p>Chat messages sent by the simulated peers carry the step they were sent in, and the time
+ * they were sent, so the latency can be calculated when the message is shown by the client
+ * under test. Messages from earlier steps are ignored.</p>
+ *
+ * @author Christian Ihle
+ */
+public class LoadStatistics {
+
+    /** The highest number of latency samples to keep. The rest are counted, but not used for percentiles. */
+    private static final int MAX_SAMPLES = 200000;
+
+    private final int step;
+    private final AtomicLong packetsSent;
+    private final AtomicLong chatMessagesSent;
+    private final AtomicLong chatMessagesReceived;
+    private final long[] latencies;
+
+    private int numberOfLatencies;
+    private long maxLatency;
+
+    /**
+     * Constructor.
+     *
+     * @param step The number of the step to collect numbers for.
+     */
+    public LoadStatistics(final int step) {
+        this.step = step;
+
+        packetsSent = new AtomicLong();
+        chatMessagesSent = new AtomicLong();
+        chatMessagesReceived = new AtomicLong();
+        latencies = new long[MAX_SAMPLES];
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void packetSent() {
+        packetsSent.incrementAndGet();
+    }
+
+    public void chatMessageSent() {
+        chatMessagesSent.incrementAndGet();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public long getChatMessagesSent() {
+        return chatMessagesSent.get();
+    }
+
+    public long getChatMessagesReceived() {
+        return chatMessagesReceived.get();
+    }
+
+    /**
+     * Registers that a chat message was shown by the client under test.
+     *
+     * @param sentInStep The step the message was sent in.
+     * @param sentTime When the message was sent, from {@link System#nanoTime()}.
+     * @param receivedTime When the message was shown, from {@link System#nanoTime()}.
+     */
+    public void chatMessageReceived(final int sentInStep, final long sentTime, final long receivedTime) {
+        if (sentInStep != step) {
+            return;
+        }
+
+        chatMessagesReceived.incrementAndGet();
+        final long latency = receivedTime - sentTime;
+
+        synchronized (latencies) {
+            if (numberOfLatencies < MAX_SAMPLES) {
+                latencies[numberOfLatencies] = latency;
+                numberOfLatencies++;
+            }
+
+            maxLatency = Math.max(maxLatency, latency);
+        }
+    }
+
+    /**
+     * Gets the percentage of chat messages that were sent, but never shown by the client under test.
+     *
+     * @return The percentage of dropped messages.
+     */
+    public double getDropPercentage() {
+        final long sent = getChatMessagesSent();
+
+        if (sent == 0) {
+            return 0;
+        }
+
+        final long dropped = Math.max(0, sent - getChatMessagesReceived());
+
+        return dropped * 100.0 / sent;
+    }
+
+    /**
+     * Gets the latency below which the given percentage of the messages were shown.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency in milliseconds, or 0 if no messages were shown.
+     */
+    public double getLatencyPercentile(final double percentile) {
+        synchronized (latencies) {
+            if (numberOfLatencies == 0) {
+                return 0;
+            }
+
+            final long[] sorted = Arrays.copyOf(latencies, numberOfLatencies);
+            Arrays.sort(sorted);
+
+            final int position = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+
+            return sorted[Math.max(0, position)] / 1000000.0;
+        }
+    }
+
+    /**
+     * Gets the highest latency measured.
+     *
+     * @return The latency in milliseconds.
+     */
+    public double getMaxLatency() {
+        synchronized (latencies) {
+            return maxLatency / 1000000.0;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.testclient;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.settings.Settings;
+
+/**
+ * User interface for the client under test in the {@link LoadGenerator}.
+ *
+ * <p>Does not keep the messages, like the {@link TestClientUserInterface} does, but looks for
+ * the markers the simulated peers put in their chat messages, and reports them to the current
+ * {@link LoadStatistics}. File offers are rejected right away.</p>
+ *
+ * @author Christian Ihle
+ */
+public class LoadTestUserInterface extends TestClientUserInterface {
+
+    /** Matches the marker at the end of a chat message: <code>load &lt;step&gt; &lt;sent time&gt;</code>. */
+    private final Pattern markerPattern;
+
+    private volatile LoadStatistics statistics;
+
+    public LoadTestUserInterface(final Settings settings, final ErrorHandler errorHandler) {
+        super(settings, errorHandler);
+
+        markerPattern = Pattern.compile(">: load (\\d+) (-?\\d+)$");
+    }
+
+    public void setStatistics(final LoadStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public boolean askFileSave(final String user, final String fileName, final String size) {
+        return false;
+    }
+
+    @Override
+    public void appendToChat(final String message, final int color) {
+        final long receivedTime = System.nanoTime();
+        final LoadStatistics currentStatistics = statistics;
+
+        if (currentStatistics == null) {
+            return;
+        }
+
+        final Matcher matcher = markerPattern.matcher(message);
+
+        if (matcher.find()) {
+            currentStatistics.chatMessageReceived(Integer.parseInt(matcher.group(1)),
+                                                  Long.parseLong(matcher.group(2)),
+                                                  receivedTime);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.testclient;
+
+import static net.usikkert.kouchat.net.NetworkMessageType.*;
+
+/**
+ * A lightweight simulated peer, used by the {@link LoadGenerator}.
+ *
+ * <p>Keeps track of the state of the peer, and creates the raw network messages
+ * a real client would send. Does not open any sockets or start any threads of its own,
+ * so a single load generator can simulate hundreds of peers.</p>
+ *
+ * @author Christian Ihle
+ */
+public class SimulatedPeer {
+
+    private final int code;
+    private final int index;
+    private final long logonTime;
+
+    private String nick;
+    private int nickChanges;
+    private boolean away;
+    private boolean writing;
+    private int fileOffers;
+
+    /**
+     * Constructor.
+     *
+     * @param code The unique user code of the peer.
+     * @param index The number of the peer, used for creating unique nick names.
+     */
+    public SimulatedPeer(final int code, final int index) {
+        this.code = code;
+        this.index = index;
+
+        nick = "Load" + index;
+        logonTime = System.currentTimeMillis();
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getNick() {
+        return nick;
+    }
+
+    public boolean isAway() {
+        return away;
+    }
+
+    public String createLogonMessage() {
+        return createMessage(LOGON);
+    }
+
+    public String createLogoffMessage() {
+        return createMessage(LOGOFF);
+    }
+
+    public String createIdleMessage() {
+        return createMessage(IDLE);
+    }
+
+    public String createExposingMessage() {
+        if (away) {
+            return createMessage(EXPOSING) + "Simulating";
+        }
+
+        return createMessage(EXPOSING);
+    }
+
+    public String createClientMessage() {
+        return createMessage(CLIENT) +
+                "(LoadGenerator)" +
+                "[" + (System.currentTimeMillis() - logonTime) + "]" +
+                "{" + System.getProperty("os.name") + "}" +
+                "<0>" +
+                "/0\\";
+    }
+
+    /**
+     * Creates a chat message.
+     *
+     * @param message The text of the message.
+     * @param color The color of the message.
+     * @return The chat message.
+     */
+    public String createChatMessage(final String message, final int color) {
+        return createMessage(MSG) + "[" + color + "]" + message;
+    }
+
+    /**
+     * Changes to a new unique nick name, and creates a message about it.
+     *
+     * @return The nick name message.
+     */
+    public String createNickMessage() {
+        nickChanges++;
+        nick = "L" + index + "n" + (nickChanges % 10);
+
+        return createMessage(NICK);
+    }
+
+    /**
+     * Goes away if back, or comes back if away, and creates a message about it.
+     *
+     * @return The away or back message.
+     */
+    public String createAwayMessage() {
+        away = !away;
+
+        if (away) {
+            return createMessage(AWAY) + "Simulating";
+        }
+
+        return createMessage(BACK);
+    }
+
+    /**
+     * Starts writing if not writing, or stops writing if writing, and creates a message about it.
+     *
+     * @return The writing or stopped writing message.
+     */
+    public String createWritingMessage() {
+        writing = !writing;
+
+        if (writing) {
+            return createMessage(WRITING);
+        }
+
+        return createMessage(STOPPEDWRITING);
+    }
+
+    /**
+     * Creates an offer to send a file that does not exist.
+     *
+     * @param receiverCode The unique code of the user to offer the file to.
+     * @return The file offer message.
+     */
+    public String createFileOfferMessage(final int receiverCode) {
+        fileOffers++;
+        final String fileName = "load" + index + "-" + fileOffers + ".txt";
+
+        return createMessage(SENDFILE) +
+                "(" + receiverCode + ")" +
+                "[" + 1024 + "]" +
+                "{" + fileName.hashCode() + "}" +
+                fileName;
+    }
+
+    private String createMessage(final String type) {
+        return code + "!" + type + "#" + nick + ":";
+    }
+}
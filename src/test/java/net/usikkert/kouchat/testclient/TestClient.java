@@ -350,6 +350,15 @@ public class TestClient {
         return user;
     }
 
+    /**
+     * Gets the number of users this client knows about, including itself.
+     *
+     * @return The number of users.
+     */
+    public int getNumberOfUsers() {
+        return controller.getUserList().size();
+    }
+
     private FileReceiver findFileReceiver(final User user, final String fileName) {
         final User localUser = controller.getUser(user.getCode()); // Because user might be from another context
 
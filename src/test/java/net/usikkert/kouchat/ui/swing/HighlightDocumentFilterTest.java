@@ -0,0 +1,321 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.ui.swing;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+
+import net.usikkert.kouchat.misc.ErrorHandler;
+import net.usikkert.kouchat.settings.Settings;
+import net.usikkert.kouchat.ui.swing.messages.SwingMessages;
+import net.usikkert.kouchat.util.ResourceLoader;
+import net.usikkert.kouchat.util.ResourceValidator;
+import net.usikkert.kouchat.util.TestUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test of {@link HighlightDocumentFilter}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class HighlightDocumentFilterTest {
+
+    private static final String[] TEXTS = {
+            "go to www.kouchat.net for details :)\n",
+            "go to www.kouchat www.kouchat.net www.kou www.kouchat www.kouchat.net\n",
+            "go to ftp.cookie ftp.cookie.net ftp.coo ftp.cookie ftp.cookie.net\n",
+            "go to http://c http://cookie.net http:// http://c http://cookie.net\n",
+            "go to http://cookie.net ftp://ftp.download.com http://www.upload.com\n",
+            "go to http://google.com/search#top?q=some+thing&hl=en_gb&type=1.2.3 to search\n",
+            "http://ab\n",
+            "http://abc\n",
+            "x http://a://b http://x.y/z://q :)\n",
+            "Test :):) :) :):) Test\n",
+            ":$ Test :p :S :) 8) :) ;);) ;) Test\n",
+            "a:) :( www.x.com:) :D www.y.z.com 8)\n",
+            "\n"
+    };
+
+    private HighlightDocumentFilter filter;
+    private DefaultStyledDocument document;
+    private UITools uiTools;
+    private SimpleAttributeSet attributeSet;
+    private Settings settings;
+    private ImageLoader imageLoader;
+
+    @Before
+    public void setUp() {
+        imageLoader = new ImageLoader(mock(ErrorHandler.class), mock(SwingMessages.class),
+                                      new ResourceValidator(), new ResourceLoader());
+        settings = mock(Settings.class);
+        when(settings.isSmileys()).thenReturn(true);
+
+        filter = new HighlightDocumentFilter(true, imageLoader, settings);
+
+        document = new DefaultStyledDocument();
+        document.setDocumentFilter(filter);
+
+        uiTools = TestUtils.setFieldValueWithMock(filter, "uiTools", UITools.class);
+        doAnswer(new RunArgumentAnswer()).when(uiTools).invokeLater(any(Runnable.class));
+
+        attributeSet = new SimpleAttributeSet();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionIfImageLoaderIsNull() {
+        new HighlightDocumentFilter(true, null, settings);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionIfSettingsIsNull() {
+        new HighlightDocumentFilter(true, imageLoader, null);
+    }
+
+    @Test
+    public void insertStringShouldDetectUrlsAndSmileysInTheSameText() throws BadLocationException {
+        document.insertString(0, "go to www.kouchat.net :) or http://google.com\n", attributeSet);
+
+        final Element paragraphElement = document.getParagraphElement(0);
+
+        assertEquals(7, paragraphElement.getElementCount());
+
+        verifyText(paragraphElement.getElement(0), 0, 6, "go to ");
+        verifyUrl(paragraphElement.getElement(1), 6, 21, "www.kouchat.net");
+        verifyText(paragraphElement.getElement(2), 21, 22, " ");
+        verifySmiley(paragraphElement.getElement(3), 22, 24, ":)");
+        verifyText(paragraphElement.getElement(4), 24, 28, " or ");
+        verifyUrl(paragraphElement.getElement(5), 28, 45, "http://google.com");
+        verifyText(paragraphElement.getElement(6), 45, 46, "\n");
+    }
+
+    @Test
+    public void insertStringShouldNotDetectSmileysIfDisabledInSettings() throws BadLocationException {
+        when(settings.isSmileys()).thenReturn(false);
+
+        document.insertString(0, "go to www.kouchat.net :)\n", attributeSet);
+
+        final Element paragraphElement = document.getParagraphElement(0);
+
+        assertEquals(3, paragraphElement.getElementCount());
+
+        verifyText(paragraphElement.getElement(0), 0, 6, "go to ");
+        verifyUrl(paragraphElement.getElement(1), 6, 21, "www.kouchat.net");
+        verifyText(paragraphElement.getElement(2), 21, 25, " :)\n");
+    }
+
+    @Test
+    public void insertStringShouldUseOneInvokeLaterForUrlsAndSmileys() throws BadLocationException {
+        document.insertString(0, "go to www.kouchat.net :) :( www.google.com\n", attributeSet);
+
+        verify(uiTools, times(1)).invokeLater(any(Runnable.class));
+    }
+
+    @Test
+    public void insertStringShouldCopyAttributesBeforeModificationToAvoidConcurrencyIssues() throws BadLocationException {
+        doNothing().when(uiTools).invokeLater(any(Runnable.class));
+
+        document.insertString(0, "go to www.kouchat.net for details\n", attributeSet);
+
+        attributeSet.addAttribute("some", "thing");
+
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(uiTools).invokeLater(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+
+        final Element paragraphElement = document.getParagraphElement(0);
+
+        assertEquals(3, paragraphElement.getElementCount());
+
+        verifyText(paragraphElement.getElement(0), 0, 6, "go to ");
+        verifyUrl(paragraphElement.getElement(1), 6, 21, "www.kouchat.net");
+        verifyText(paragraphElement.getElement(2), 21, 34, " for details\n");
+    }
+
+    @Test
+    public void insertStringShouldHandleEmptyString() throws BadLocationException {
+        document.insertString(0, "\n", attributeSet);
+
+        final Element paragraphElement = document.getParagraphElement(0);
+
+        assertEquals(1, paragraphElement.getElementCount());
+
+        verifyText(paragraphElement.getElement(0), 0, 1, "\n");
+    }
+
+    @Test
+    public void findHighlightsShouldFindSameUrlsAsUrlDocumentFilter() throws BadLocationException {
+        for (final String text : TEXTS) {
+            assertEquals(text, findUrlsWithUrlDocumentFilter(text), findUrls(text));
+        }
+    }
+
+    @Test
+    public void findHighlightsShouldFindSmileyWithWhitespaceOrNothingAround() {
+        assertEquals(Arrays.asList("0::)"), findSmileyCodes(":)"));
+        assertEquals(Arrays.asList("1::)"), findSmileyCodes(" :)"));
+        assertEquals(Arrays.asList("0::)"), findSmileyCodes(":) "));
+        assertEquals(Arrays.asList("1::)"), findSmileyCodes(" :) "));
+    }
+
+    @Test
+    public void findHighlightsShouldNotFindSmileyWithTextAround() {
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes(":):)"));
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes("Test :)x Test"));
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes("Test x:) Test"));
+    }
+
+    @Test
+    public void findHighlightsShouldOnlyFindTheSmileyWithWhitespaceAround() {
+        assertEquals(Arrays.asList("10::)"), findSmileyCodes("Test :):) :) :):) Test"));
+    }
+
+    @Test
+    public void findHighlightsShouldFindAllValidSmileys() {
+        assertEquals(Arrays.asList("0::$", "8::p", "11::S", "14::)", "17:8)", "20::)", "28:;)"),
+                     findSmileyCodes(":$ Test :p :S :) 8) :) ;);) ;) Test"));
+    }
+
+    @Test
+    public void findHighlightsShouldFindAllTheDifferentSmileysWithIcons() {
+        final String[] codes = {":)", ":(", ":p", ":D", ";)", ":O", ":@", ":S", ";(", ":$", "8)"};
+
+        for (final String code : codes) {
+            assertEquals(code, Arrays.asList("0:" + code), findSmileyCodes(code));
+            assertEquals(code, 1, findSmileys(code).size());
+        }
+    }
+
+    @Test
+    public void findHighlightsShouldNotFindUnknownSmileys() {
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes(":/"));
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes("#)"));
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes(":"));
+        assertEquals(Collections.<String>emptyList(), findSmileyCodes(")"));
+    }
+
+    private List<String> findUrls(final String text) {
+        final List<String> urls = new ArrayList<>();
+
+        for (final HighlightDocumentFilter.Highlight highlight : filter.findHighlights(text, false)) {
+            urls.add(highlight.getStartPosition() + ":" + highlight.getUrl());
+        }
+
+        return urls;
+    }
+
+    private List<String> findSmileyCodes(final String text) {
+        final List<String> smileys = new ArrayList<>();
+
+        for (final HighlightDocumentFilter.Highlight highlight : filter.findHighlights(text, true)) {
+            if (highlight.getIcon() != null) {
+                final int startPosition = highlight.getStartPosition();
+                smileys.add(startPosition + ":" + text.substring(startPosition, startPosition + highlight.getLength()));
+            }
+        }
+
+        return smileys;
+    }
+
+    private List<String> findSmileys(final String text) {
+        final List<String> smileys = new ArrayList<>();
+
+        for (final HighlightDocumentFilter.Highlight highlight : filter.findHighlights(text, true)) {
+            if (highlight.getIcon() != null) {
+                smileys.add(highlight.getStartPosition() + ":" + highlight.getIcon());
+            }
+        }
+
+        return smileys;
+    }
+
+    private List<String> findUrlsWithUrlDocumentFilter(final String text) throws BadLocationException {
+        final URLDocumentFilter urlFilter = new URLDocumentFilter(true);
+        final DefaultStyledDocument urlDocument = new DefaultStyledDocument();
+        urlDocument.setDocumentFilter(urlFilter);
+        TestUtils.setFieldValue(urlFilter, "uiTools", uiTools);
+
+        urlDocument.insertString(0, text, attributeSet);
+
+        final List<String> urls = new ArrayList<>();
+        final Element paragraphElement = urlDocument.getParagraphElement(0);
+
+        for (int i = 0; i < paragraphElement.getElementCount(); i++) {
+            final Element element = paragraphElement.getElement(i);
+            final Object url = element.getAttributes().getAttribute(URLDocumentFilter.URL_ATTRIBUTE);
+
+            if (url != null) {
+                urls.add(element.getStartOffset() + ":" + url);
+            }
+        }
+
+        return urls;
+    }
+
+    private void verifyUrl(final Element element, final int expectedStartPosition, final int expectedEndPosition,
+                           final String expectedUrl) throws BadLocationException {
+        verifyPositionAndText(element, expectedStartPosition, expectedEndPosition, expectedUrl);
+
+        assertEquals(2, element.getAttributes().getAttributeCount());
+        assertEquals(expectedUrl, element.getAttributes().getAttribute(URLDocumentFilter.URL_ATTRIBUTE));
+        assertTrue((Boolean) element.getAttributes().getAttribute(StyleConstants.Underline));
+    }
+
+    private void verifySmiley(final Element element, final int expectedStartPosition, final int expectedEndPosition,
+                              final String expectedCode) throws BadLocationException {
+        verifyPositionAndText(element, expectedStartPosition, expectedEndPosition, expectedCode);
+
+        assertEquals(2, element.getAttributes().getAttributeCount());
+        assertNotNull(StyleConstants.getIcon(element.getAttributes()));
+    }
+
+    private void verifyText(final Element element, final int expectedStartPosition, final int expectedEndPosition,
+                            final String expectedText) throws BadLocationException {
+        verifyPositionAndText(element, expectedStartPosition, expectedEndPosition, expectedText);
+
+        assertEquals(0, element.getAttributes().getAttributeCount());
+    }
+
+    private void verifyPositionAndText(final Element element, final int expectedStartPosition,
+                                       final int expectedEndPosition, final String expectedText) throws BadLocationException {
+        assertEquals(expectedStartPosition, element.getStartOffset());
+        assertEquals(expectedEndPosition, element.getEndOffset());
+
+        final int expectedTextLength = expectedEndPosition - expectedStartPosition;
+        assertEquals(expectedText, element.getDocument().getText(expectedStartPosition, expectedTextLength));
+    }
+}
@@ -323,6 +323,13 @@ public class ImageLoaderTest {
         assertThat(imageLoader.getKouAwayActivity32Icon().getDescription(), containsString("kou_away_activity_32x32.png"));
     }
 
+    @Test
+    public void iconsShouldBeCreatedOnceAndReused() {
+        assertSame(imageLoader.getSmileIcon(), imageLoader.getSmileIcon());
+        assertSame(imageLoader.getKouNormal16Icon(), imageLoader.getKouNormal16Icon());
+        assertNotSame(imageLoader.getSmileIcon(), imageLoader.getSadIcon());
+    }
+
     private void checkMissingImage(final String missingImage) {
         final ResourceLoader resourceLoader = spy(new ResourceLoader());
         when(resourceLoader.getResource(missingImage)).thenReturn(null);
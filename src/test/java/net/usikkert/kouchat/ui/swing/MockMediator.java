@@ -184,6 +184,14 @@ public class MockMediator implements Mediator {
      * {@inheritDoc}
      */
     @Override
+    public void prepareNetwork() {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
     public void start() {
 
     }
@@ -26,6 +26,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.io.File;
+import java.util.Arrays;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
@@ -44,6 +45,7 @@ import net.usikkert.kouchat.misc.SoundBeeper;
 import net.usikkert.kouchat.misc.Topic;
 import net.usikkert.kouchat.misc.User;
 import net.usikkert.kouchat.misc.UserList;
+import net.usikkert.kouchat.net.FileBatch;
 import net.usikkert.kouchat.net.FileReceiver;
 import net.usikkert.kouchat.net.FileToSend;
 import net.usikkert.kouchat.settings.Settings;
@@ -55,6 +57,7 @@ import net.usikkert.kouchat.util.TestUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.junit.contrib.java.lang.system.Assertion;
 import org.junit.contrib.java.lang.system.ExpectedSystemExit;
 import org.mockito.invocation.InvocationOnMock;
@@ -634,7 +637,7 @@ public class SwingMediatorTest {
     }
 
     @Test
-    public void sendFileShouldNotSendIfFileIsDirectory() {
+    public void sendFileShouldSendFolderIfFileIsDirectory() throws CommandException {
         final JFileChooser fileChooser = mock(JFileChooser.class);
         when(fileChooser.showOpenDialog(null)).thenReturn(JFileChooser.APPROVE_OPTION);
 
@@ -649,7 +652,23 @@ public class SwingMediatorTest {
 
         verify(uiTools).createFileChooser("Open");
         verify(uiTools, never()).showWarningMessage(anyString(), anyString());
-        verifyZeroInteractions(cmdParser);
+        verify(cmdParser).sendFolder(eq(user), any(FileBatch.class));
+        verify(cmdParser, never()).sendFile(any(User.class), any(FileToSend.class));
+    }
+
+    @Test
+    public void sendFileShouldSendSeveralSelectedFilesAsFolder() throws CommandException {
+        final JFileChooser fileChooser = mock(JFileChooser.class);
+        when(fileChooser.showOpenDialog(null)).thenReturn(JFileChooser.APPROVE_OPTION);
+        when(fileChooser.getSelectedFiles()).thenReturn(new File[] {new File("README"), new File("pom.xml")});
+
+        when(uiTools.createFileChooser(anyString())).thenReturn(fileChooser);
+
+        mediator.sendFile(user, null);
+
+        final ArgumentCaptor<FileBatch> fileBatchCaptor = ArgumentCaptor.forClass(FileBatch.class);
+        verify(cmdParser).sendFolder(eq(user), fileBatchCaptor.capture());
+        assertEquals(Arrays.asList("README", "pom.xml"), fileBatchCaptor.getValue().getPaths());
     }
 
     @Test
@@ -202,4 +202,33 @@ public class UserListCellRendererTest {
 
         assertSame(cellRenderer, rendererComponent);
     }
+
+    @Test
+    public void getListCellRendererComponentShouldOnlyFormatWritingTextOncePerNickName() {
+        final SwingMessages swingMessages = spy(new SwingMessages());
+        final ImageLoader imageLoader = mock(ImageLoader.class);
+        final UserListCellRenderer renderer = new UserListCellRenderer(imageLoader, swingMessages);
+        user.setWriting(true);
+
+        renderer.getListCellRendererComponent(jList, user, 0, false, false);
+        renderer.getListCellRendererComponent(jList, user, 0, true, false);
+        renderer.getListCellRendererComponent(jList, user, 0, false, false);
+
+        assertEquals("Test *", renderer.getText());
+        assertEquals("Test is writing", renderer.getToolTipText());
+        verify(swingMessages, times(1)).getMessage("swing.userList.userWriting.text", "Test");
+        verify(swingMessages, times(1)).getMessage("swing.userList.userWriting.tooltip", "Test");
+    }
+
+    @Test
+    public void getListCellRendererComponentShouldUseNewNickNameAfterNickChange() {
+        user.setWriting(true);
+        cellRenderer.getListCellRendererComponent(jList, user, 0, false, false);
+
+        user.setNick("Other");
+        cellRenderer.getListCellRendererComponent(jList, user, 0, false, false);
+
+        assertEquals("Other *", cellRenderer.getText());
+        assertEquals("Other is writing", cellRenderer.getToolTipText());
+    }
 }
@@ -0,0 +1,187 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.ui.swing;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import net.usikkert.kouchat.misc.SortedUserList;
+import net.usikkert.kouchat.misc.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test of {@link UserListModel}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class UserListModelTest {
+
+    private UserListModel model;
+    private SortedUserList userList;
+    private ListDataListener listener;
+
+    private User abby;
+    private User dorothy;
+    private User sandra;
+
+    @Before
+    public void setUp() {
+        abby = new User("Abby", 123);
+        dorothy = new User("Dorothy", 124);
+        sandra = new User("Sandra", 125);
+
+        userList = new SortedUserList();
+        userList.add(abby);
+        userList.add(sandra);
+
+        model = new UserListModel(userList);
+
+        listener = mock(ListDataListener.class);
+        model.addListDataListener(listener);
+    }
+
+    @Test
+    public void constructorShouldTakeSnapshotOfUserList() {
+        assertEquals(2, model.getSize());
+        assertSame(abby, model.getElementAt(0));
+        assertSame(sandra, model.getElementAt(1));
+        assertNull(model.getElementAt(2));
+    }
+
+    @Test
+    public void changesShouldNotBeVisibleBeforeUpdate() {
+        userList.add(dorothy);
+
+        assertEquals(2, model.getSize());
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void updateSnapshotShouldFireIntervalAddedForAddedUser() {
+        userList.add(dorothy);
+
+        model.updateSnapshot();
+
+        assertEquals(3, model.getSize());
+        assertSame(dorothy, model.getElementAt(1));
+
+        final ListDataEvent event = captureEvent("intervalAdded");
+        assertEquals(1, event.getIndex0());
+        assertEquals(1, event.getIndex1());
+    }
+
+    @Test
+    public void updateSnapshotShouldFireIntervalRemovedForRemovedUser() {
+        userList.remove(abby);
+
+        model.updateSnapshot();
+
+        assertEquals(1, model.getSize());
+        assertSame(sandra, model.getElementAt(0));
+
+        final ListDataEvent event = captureEvent("intervalRemoved");
+        assertEquals(0, event.getIndex0());
+        assertEquals(0, event.getIndex1());
+    }
+
+    @Test
+    public void updateSnapshotShouldFireContentsChangedOnlyForChangedUser() {
+        userList.add(dorothy);
+        model.updateSnapshot();
+        reset(listener);
+
+        dorothy.setWriting(true);
+        userList.set(1, dorothy);
+
+        model.updateSnapshot();
+
+        final ListDataEvent event = captureEvent("contentsChanged");
+        assertEquals(1, event.getIndex0());
+        assertEquals(1, event.getIndex1());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void updateSnapshotShouldFireOneEventForManyChanges() {
+        userList.add(dorothy);
+        model.updateSnapshot();
+        reset(listener);
+
+        for (int i = 0; i < 100; i++) {
+            abby.setWriting(i % 2 == 0);
+            userList.set(0, abby);
+            sandra.setAway(i % 2 == 0);
+            userList.set(2, sandra);
+        }
+
+        model.updateSnapshot();
+
+        final ListDataEvent event = captureEvent("contentsChanged");
+        assertEquals(0, event.getIndex0());
+        assertEquals(2, event.getIndex1());
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void updateSnapshotShouldHandleUserMovingAfterNickChange() {
+        abby.setNick("Zed");
+        userList.set(0, abby);
+
+        model.updateSnapshot();
+
+        assertSame(sandra, model.getElementAt(0));
+        assertSame(abby, model.getElementAt(1));
+
+        final ListDataEvent event = captureEvent("contentsChanged");
+        assertEquals(0, event.getIndex0());
+        assertEquals(1, event.getIndex1());
+    }
+
+    @Test
+    public void updateSnapshotShouldDoNothingWithoutChanges() {
+        model.updateSnapshot();
+
+        verifyZeroInteractions(listener);
+    }
+
+    private ListDataEvent captureEvent(final String method) {
+        final ArgumentCaptor<ListDataEvent> captor = ArgumentCaptor.forClass(ListDataEvent.class);
+
+        if (method.equals("intervalAdded")) {
+            verify(listener).intervalAdded(captor.capture());
+        } else if (method.equals("intervalRemoved")) {
+            verify(listener).intervalRemoved(captor.capture());
+        } else {
+            verify(listener).contentsChanged(captor.capture());
+        }
+
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,118 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test of {@link AhoCorasickMatcher}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class AhoCorasickMatcherTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionIfKeywordsIsNull() {
+        new AhoCorasickMatcher(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionIfKeywordIsEmpty() {
+        new AhoCorasickMatcher(Arrays.asList("a", ""));
+    }
+
+    @Test
+    public void findAllShouldFindNothingWithoutKeywords() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Collections.<String>emptyList());
+
+        assertEquals(Collections.emptyList(), findAll(matcher, "some text"));
+    }
+
+    @Test
+    public void findAllShouldFindNothingInEmptyText() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList(":)"));
+
+        assertEquals(Collections.emptyList(), findAll(matcher, ""));
+    }
+
+    @Test
+    public void findAllShouldFindAllOccurrencesOfAllKeywords() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList(":)", ":(", "://"));
+
+        assertEquals(Arrays.asList(":)[0,2]", ":([3,5]", "://[10,13]", ":)[13,15]"),
+                     findAll(matcher, ":) :( http://:)"));
+    }
+
+    @Test
+    public void findAllShouldFindOverlappingKeywords() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(Arrays.asList("she[1,4]", "he[2,4]", "hers[2,6]"),
+                     findAll(matcher, "ushers"));
+    }
+
+    @Test
+    public void findAllShouldFollowFailureLinksAfterPartialMatch() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList(" www", "ww."));
+
+        assertEquals(Arrays.asList(" www[1,5]", "ww.[3,6]"),
+                     findAll(matcher, "x www.kouchat.net"));
+    }
+
+    @Test
+    public void findAllShouldFindRepeatedKeywords() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("aa"));
+
+        assertEquals(Arrays.asList("aa[0,2]", "aa[1,3]", "aa[2,4]"),
+                     findAll(matcher, "aaaa"));
+    }
+
+    @Test
+    public void getKeywordShouldReturnKeywordFromIndex() {
+        final AhoCorasickMatcher matcher = new AhoCorasickMatcher(Arrays.asList("one", "two"));
+
+        assertEquals("one", matcher.getKeyword(0));
+        assertEquals("two", matcher.getKeyword(1));
+    }
+
+    private List<String> findAll(final AhoCorasickMatcher matcher, final String text) {
+        final List<String> matches = new ArrayList<>();
+
+        matcher.findAll(text, new AhoCorasickMatcher.MatchListener() {
+            @Override
+            public void keywordFound(final int keywordIndex, final int startPosition, final int stopPosition) {
+                matches.add(matcher.getKeyword(keywordIndex) + "[" + startPosition + "," + stopPosition + "]");
+            }
+        });
+
+        return matches;
+    }
+}
@@ -0,0 +1,303 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link AsyncLogHandler}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class AsyncLogHandlerTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private AsyncLogHandler handler;
+
+    private RecordingHandler target;
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        target = new RecordingHandler();
+        metrics = new Metrics();
+
+        handler = new AsyncLogHandler(target, 3, metrics);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close();
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfTargetIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Target handler can not be null");
+
+        new AsyncLogHandler(null, 3, metrics);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfMetricsIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Metrics can not be null");
+
+        new AsyncLogHandler(target, 3, null);
+    }
+
+    @Test
+    public void constructorShouldThrowExceptionIfCapacityIsLessThanOne() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Capacity must be at least 1");
+
+        new AsyncLogHandler(target, 0, metrics);
+    }
+
+    @Test
+    public void publishShouldOnlyBufferTheRecordUntilFlushed() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+
+        assertEquals(1, handler.getBufferedRecordCount());
+        assertTrue(target.getRecords().isEmpty());
+
+        handler.flush();
+
+        assertEquals(0, handler.getBufferedRecordCount());
+        assertEquals(1, target.getRecords().size());
+        assertEquals(1, target.getFlushCount());
+    }
+
+    @Test
+    public void flushShouldWriteTheRecordsInOrder() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.INFO, "two"));
+        handler.publish(new LogRecord(Level.FINE, "three"));
+
+        handler.flush();
+
+        assertMessages("one", "two", "three");
+    }
+
+    @Test
+    public void publishShouldIgnoreRecordsBelowTheLevelOfTheHandler() {
+        handler.setLevel(Level.INFO);
+
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(null);
+
+        assertEquals(0, handler.getBufferedRecordCount());
+    }
+
+    @Test
+    public void publishShouldDropFineRecordsWhenTheBufferIsFull() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.FINE, "two"));
+        handler.publish(new LogRecord(Level.FINE, "three"));
+        handler.publish(new LogRecord(Level.FINE, "four"));
+        handler.publish(new LogRecord(Level.FINEST, "five"));
+
+        assertEquals(3, handler.getBufferedRecordCount());
+        assertEquals(2, handler.getDroppedRecordCount());
+        assertEquals(1, metrics.getCounter("kouchat_log_records_dropped_total", "level", "FINE").getCount());
+        assertEquals(1, metrics.getCounter("kouchat_log_records_dropped_total", "level", "FINEST").getCount());
+
+        handler.flush();
+
+        assertMessages("one", "two", "three", "Dropped 2 log records because the log buffer was full");
+        assertEquals(Level.WARNING, target.getRecords().get(3).getLevel());
+    }
+
+    @Test
+    public void publishShouldDropTheOldestRecordToMakeRoomForImportantRecordsWhenTheBufferIsFull() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.FINE, "two"));
+        handler.publish(new LogRecord(Level.FINE, "three"));
+        handler.publish(new LogRecord(Level.WARNING, "four"));
+        handler.publish(new LogRecord(Level.INFO, "five"));
+
+        assertEquals(3, handler.getBufferedRecordCount());
+        assertEquals(2, handler.getDroppedRecordCount());
+        assertEquals(2, metrics.getCounter("kouchat_log_records_dropped_total", "level", "FINE").getCount());
+
+        handler.flush();
+
+        assertMessages("three", "four", "five", "Dropped 2 log records because the log buffer was full");
+    }
+
+    @Test
+    public void flushShouldOnlyReportDroppedRecordsOnce() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.FINE, "two"));
+        handler.publish(new LogRecord(Level.FINE, "three"));
+        handler.publish(new LogRecord(Level.FINE, "four"));
+
+        handler.flush();
+        handler.flush();
+
+        assertMessages("one", "two", "three", "Dropped 1 log records because the log buffer was full");
+    }
+
+    @Test
+    public void queueDepthGaugeShouldShowTheNumberOfBufferedRecords() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.FINE, "two"));
+
+        assertTrue(metrics.toPrometheusText().contains("kouchat_log_queue_depth 2\n"));
+    }
+
+    @Test
+    public void publishShouldFindTheCallerBeforeTheRecordIsGivenToAnotherThread() {
+        final java.util.logging.Logger logger = java.util.logging.Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.ALL);
+        logger.addHandler(handler);
+
+        logger.fine("one");
+        handler.flush();
+
+        final LogRecord record = target.getRecords().get(0);
+
+        assertEquals(AsyncLogHandlerTest.class.getName(), record.getSourceClassName());
+        assertEquals("publishShouldFindTheCallerBeforeTheRecordIsGivenToAnotherThread",
+                     record.getSourceMethodName());
+    }
+
+    @Test
+    public void startShouldWriteRecordsInTheBackground() throws InterruptedException {
+        handler.start();
+
+        handler.publish(new LogRecord(Level.FINE, "one"));
+        handler.publish(new LogRecord(Level.INFO, "two"));
+
+        target.waitForRecords(2);
+
+        assertMessages("one", "two");
+        assertTrue(target.getFlushCount() >= 1);
+        assertEquals(0, handler.getBufferedRecordCount());
+    }
+
+    @Test
+    public void closeShouldWriteTheBufferedRecordsAndCloseTheTarget() {
+        handler.publish(new LogRecord(Level.FINE, "one"));
+
+        handler.close();
+
+        assertMessages("one");
+        assertTrue(target.isClosed());
+    }
+
+    @Test
+    public void closeShouldRemoveTheQueueDepthGauge() {
+        assertTrue(metrics.toPrometheusText().contains("kouchat_log_queue_depth"));
+
+        handler.close();
+
+        assertFalse(metrics.toPrometheusText().contains("kouchat_log_queue_depth"));
+    }
+
+    @Test
+    public void closeShouldStopTheBackgroundThread() {
+        handler.start();
+
+        handler.close();
+        handler.publish(new LogRecord(Level.FINE, "one"));
+
+        assertEquals(0, handler.getBufferedRecordCount());
+        assertTrue(target.isClosed());
+    }
+
+    private void assertMessages(final String... expectedMessages) {
+        final List<String> messages = new ArrayList<>();
+
+        for (final LogRecord record : target.getRecords()) {
+            messages.add(record.getMessage());
+        }
+
+        assertEquals(Arrays.asList(expectedMessages), messages);
+    }
+
+    /**
+     * Handler that keeps the records it gets.
+     */
+    private static class RecordingHandler extends Handler {
+
+        private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+
+        private volatile int flushCount;
+        private volatile boolean closed;
+
+        @Override
+        public void publish(final LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+            flushCount++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        public List<LogRecord> getRecords() {
+            synchronized (records) {
+                return new ArrayList<>(records);
+            }
+        }
+
+        public int getFlushCount() {
+            return flushCount;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        public void waitForRecords(final int count) throws InterruptedException {
+            for (int i = 0; i < 200 && records.size() < count; i++) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of {@link LatencyHistogram}.
+ *
+ * @author Christian Ihle
+ */
+public class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void emptyHistogramShouldReturnZeroForEverything() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0.5));
+        assertEquals(0, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void recordShouldUpdateCountSumAndMax() {
+        histogram.record(100);
+        histogram.record(300);
+        histogram.record(200);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(600, histogram.getSum());
+        assertEquals(300, histogram.getMax());
+    }
+
+    @Test
+    public void recordShouldTreatNegativeDurationsAsZero() {
+        histogram.record(-50);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void getPercentileShouldBeExactForSmallValues() {
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+
+        assertEquals(1, histogram.getPercentile(0.1));
+        assertEquals(2, histogram.getPercentile(0.5));
+        assertEquals(3, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void getPercentileShouldBeWithin25PercentOfTheRealValue() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertWithin25Percent(500_000, histogram.getPercentile(0.5));
+        assertWithin25Percent(900_000, histogram.getPercentile(0.9));
+        assertWithin25Percent(990_000, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void getPercentileShouldNeverBeMoreThanMax() {
+        histogram.record(1_000_001);
+
+        assertEquals(1_000_001, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void getPercentileShouldFindTheSlowOutlier() {
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000);
+        }
+
+        histogram.record(5_000_000);
+
+        assertWithin25Percent(1_000, histogram.getPercentile(0.5));
+        assertWithin25Percent(1_000, histogram.getPercentile(0.99));
+        assertEquals(5_000_000, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    public void getBucketIndexShouldUseOneBucketForEachValueBelowSubBuckets() {
+        for (int i = 0; i < LatencyHistogram.SUB_BUCKETS; i++) {
+            assertEquals(i, LatencyHistogram.getBucketIndex(i));
+            assertEquals(i, LatencyHistogram.getBucketHighestValue(i));
+        }
+    }
+
+    @Test
+    public void bucketsShouldFollowEachOtherWithoutGaps() {
+        long expectedLowestValue = 0;
+
+        for (int index = 0; index < LatencyHistogram.getBucketIndex(Long.MAX_VALUE); index++) {
+            final long highestValue = LatencyHistogram.getBucketHighestValue(index);
+
+            assertEquals(index, LatencyHistogram.getBucketIndex(expectedLowestValue));
+            assertEquals(index, LatencyHistogram.getBucketIndex(highestValue));
+            assertEquals(index + 1, LatencyHistogram.getBucketIndex(highestValue + 1));
+
+            expectedLowestValue = highestValue + 1;
+        }
+    }
+
+    @Test
+    public void getBucketIndexShouldHandleLongMaxValue() {
+        final int index = LatencyHistogram.getBucketIndex(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketHighestValue(index));
+    }
+
+    private void assertWithin25Percent(final long expected, final long actual) {
+        assertTrue("Expected about " + expected + ", but was " + actual,
+                   actual >= expected && actual <= expected * 1.25);
+    }
+}
@@ -213,4 +213,106 @@ public class LoggerTest {
         assertEquals("message to you", logRecord.getMessage());
         assertEquals(Level.FINE, logRecord.getLevel());
     }
+
+    @Test
+    public void fineWithoutParametersShouldLogMessage() {
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(true);
+
+        logger.fine("plain message");
+
+        verify(julLogger).log(logCaptor.capture());
+        assertEquals("plain message", logCaptor.getValue().getMessage());
+    }
+
+    @Test
+    public void fineWithTwoParametersShouldReplaceParametersInMessage() {
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(true);
+
+        logger.fine("%s arrived from %s", "message", "192.168.1.1");
+
+        verify(julLogger).log(logCaptor.capture());
+        assertEquals("message arrived from 192.168.1.1", logCaptor.getValue().getMessage());
+    }
+
+    @Test
+    public void fineWithParameterShouldLogMessageWithClassOfTheLoggerAndNoMethod() {
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(true);
+
+        logger.fine("message to %s", "you");
+
+        verify(julLogger).log(logCaptor.capture());
+
+        final LogRecord logRecord = logCaptor.getValue();
+        assertEquals("net.usikkert.kouchat.util.LoggerTest", logRecord.getSourceClassName());
+        assertNull(logRecord.getSourceMethodName());
+    }
+
+    @Test
+    public void fineShouldUseTheClassOfTheLoggerInsteadOfLookingForTheCaller() {
+        final Logger otherLogger = Logger.getLogger(String.class);
+        final java.util.logging.Logger otherJulLogger =
+                TestUtils.setFieldValueWithMock(otherLogger, "logger", java.util.logging.Logger.class);
+        when(otherJulLogger.isLoggable(Level.FINE)).thenReturn(true);
+
+        otherLogger.fine("message");
+
+        verify(otherJulLogger).log(logCaptor.capture());
+
+        final LogRecord logRecord = logCaptor.getValue();
+        assertEquals("java.lang.String", logRecord.getSourceClassName());
+        assertFalse(logRecord instanceof Logger.CallerLogRecord);
+    }
+
+    @Test
+    public void fineShouldNotFormatParametersIfLogLevelDisabled() {
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(false);
+        final Object parameter = mock(Object.class);
+
+        logger.fine("message to %s", parameter);
+        logger.fine("message to %s and %s", parameter, parameter);
+        logger.fine("message to %s, %s and %s", parameter, parameter, parameter);
+
+        verify(julLogger, never()).log(any(LogRecord.class));
+        verifyZeroInteractions(parameter);
+    }
+
+    @Test
+    public void isFineEnabledShouldCheckTheLogLevel() {
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(true);
+        assertTrue(logger.isFineEnabled());
+
+        when(julLogger.isLoggable(Level.FINE)).thenReturn(false);
+        assertFalse(logger.isFineEnabled());
+    }
+
+    @Test
+    public void warningWithExceptionShouldLogMessageAndException() {
+        when(julLogger.isLoggable(Level.WARNING)).thenReturn(true);
+        final RuntimeException exception = new RuntimeException("Failed");
+
+        logger.warning(exception, "message with %s", "exception");
+
+        verify(julLogger).log(logCaptor.capture());
+
+        final LogRecord logRecord = logCaptor.getValue();
+        assertEquals(Level.WARNING, logRecord.getLevel());
+        assertEquals("message with exception", logRecord.getMessage());
+        assertSame(exception, logRecord.getThrown());
+    }
+
+    @Test
+    public void sourceClassAndMethodShouldBeChangeable() {
+        when(julLogger.isLoggable(Level.SEVERE)).thenReturn(true);
+
+        logger.severe("message");
+
+        verify(julLogger).log(logCaptor.capture());
+
+        final LogRecord logRecord = logCaptor.getValue();
+        logRecord.setSourceClassName("SomeClass");
+        logRecord.setSourceMethodName("someMethod");
+
+        assertEquals("SomeClass", logRecord.getSourceClassName());
+        assertEquals("someMethod", logRecord.getSourceMethodName());
+    }
 }
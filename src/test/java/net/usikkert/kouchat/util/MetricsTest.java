@@ -0,0 +1,188 @@
+
+/***************************************************************************
+ *   Copyright 2006-2018 by Christian Ihle                                 *
+ *   contact@kouchat.net                                                   *
+ *                                                                         *
+ *   This file is part of KouChat.                                         *
+ *                                                                         *
+ *   KouChat is free software; you can redistribute it and/or modify       *
+ *   it under the terms of the GNU Lesser General Public License as        *
+ *   published by the Free Software Foundation, either version 3 of        *
+ *   the License, or (at your option) any later version.                   *
+ *                                                                         *
+ *   KouChat is distributed in the hope that it will be useful,            *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU      *
+ *   Lesser General Public License for more details.                       *
+ *                                                                         *
+ *   You should have received a copy of the GNU Lesser General Public      *
+ *   License along with KouChat.                                           *
+ *   If not, see <http://www.gnu.org/licenses/>.                           *
+ ***************************************************************************/
+
+package net.usikkert.kouchat.util;
+
+import static org.junit.Assert.*;
+
+import net.usikkert.kouchat.junit.ExpectedException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Test of {@link Metrics}.
+ *
+ * @author Christian Ihle
+ */
+@SuppressWarnings("HardCodedStringLiteral")
+public class MetricsTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics();
+    }
+
+    @Test
+    public void getSharedMetricsShouldAlwaysReturnTheSameInstance() {
+        assertNotNull(Metrics.getSharedMetrics());
+        assertSame(Metrics.getSharedMetrics(), Metrics.getSharedMetrics());
+    }
+
+    @Test
+    public void getCounterShouldThrowExceptionIfNameIsEmpty() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Name can not be empty");
+
+        metrics.getCounter(" ");
+    }
+
+    @Test
+    public void getCounterShouldReturnTheSameCounterForTheSameName() {
+        final MetricCounter counter = metrics.getCounter("kouchat_test_total");
+
+        assertSame(counter, metrics.getCounter("kouchat_test_total"));
+        assertNotSame(counter, metrics.getCounter("kouchat_other_total"));
+    }
+
+    @Test
+    public void getCounterWithLabelShouldReturnTheSameCounterAsTheFullName() {
+        final MetricCounter counter = metrics.getCounter("kouchat_test_total", "type", "MSG");
+
+        assertSame(counter, metrics.getCounter("kouchat_test_total{type=\"MSG\"}"));
+    }
+
+    @Test
+    public void getHistogramShouldReturnTheSameHistogramForTheSameName() {
+        final LatencyHistogram histogram = metrics.getHistogram("kouchat_test_seconds");
+
+        assertSame(histogram, metrics.getHistogram("kouchat_test_seconds"));
+        assertSame(histogram, metrics.getHistogram("kouchat_test_seconds"));
+    }
+
+    @Test
+    public void registerGaugeShouldThrowExceptionIfGaugeIsNull() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Gauge can not be null");
+
+        metrics.registerGauge("kouchat_test", null);
+    }
+
+    @Test
+    public void removeGaugeShouldRemoveTheGauge() {
+        final MetricGauge gauge = createGauge(7);
+        metrics.registerGauge("kouchat_users", gauge);
+
+        metrics.removeGauge("kouchat_users", gauge);
+
+        assertEquals("", metrics.toPrometheusText());
+    }
+
+    @Test
+    public void removeGaugeShouldNotRemoveGaugeRegisteredLaterWithTheSameName() {
+        final MetricGauge oldGauge = createGauge(7);
+        metrics.registerGauge("kouchat_users", oldGauge);
+        metrics.registerGauge("kouchat_users", createGauge(8));
+
+        metrics.removeGauge("kouchat_users", oldGauge);
+
+        assertEquals("# TYPE kouchat_users gauge\n" +
+                             "kouchat_users 8\n",
+                     metrics.toPrometheusText());
+    }
+
+    @Test
+    public void toPrometheusTextShouldBeEmptyWithoutMetrics() {
+        assertEquals("", metrics.toPrometheusText());
+    }
+
+    @Test
+    public void toPrometheusTextShouldIncludeCountersSortedWithOneTypeLinePerName() {
+        metrics.getCounter("kouchat_packets_total", "type", "MSG").add(5);
+        metrics.getCounter("kouchat_packets_total", "type", "AWAY").increment();
+        metrics.getCounter("kouchat_drops_total");
+
+        assertEquals("# TYPE kouchat_drops_total counter\n" +
+                             "kouchat_drops_total 0\n" +
+                             "# TYPE kouchat_packets_total counter\n" +
+                             "kouchat_packets_total{type=\"AWAY\"} 1\n" +
+                             "kouchat_packets_total{type=\"MSG\"} 5\n",
+                     metrics.toPrometheusText());
+    }
+
+    @Test
+    public void toPrometheusTextShouldReadTheGauges() {
+        metrics.registerGauge("kouchat_users", new MetricGauge() {
+            @Override
+            public long getValue() {
+                return 7;
+            }
+        });
+
+        assertEquals("# TYPE kouchat_users gauge\n" +
+                             "kouchat_users 7\n",
+                     metrics.toPrometheusText());
+    }
+
+    @Test
+    public void toPrometheusTextShouldShowHistogramsAsSummariesInSeconds() {
+        final LatencyHistogram histogram = metrics.getHistogram("kouchat_append_seconds");
+        histogram.record(3);
+        histogram.record(2_000_000_000L);
+
+        assertEquals("# TYPE kouchat_append_seconds summary\n" +
+                             "kouchat_append_seconds{quantile=\"0.5\"} 0.000000\n" +
+                             "kouchat_append_seconds{quantile=\"0.9\"} 2.000000\n" +
+                             "kouchat_append_seconds{quantile=\"0.99\"} 2.000000\n" +
+                             "kouchat_append_seconds_sum 2.000000\n" +
+                             "kouchat_append_seconds_count 2\n",
+                     metrics.toPrometheusText());
+    }
+
+    @Test
+    public void toPrometheusTextShouldKeepTheLabelsOfHistograms() {
+        metrics.getHistogram("kouchat_stage_seconds", "stage", "parse").record(1_000_000);
+
+        assertEquals("# TYPE kouchat_stage_seconds summary\n" +
+                             "kouchat_stage_seconds{stage=\"parse\",quantile=\"0.5\"} 0.001000\n" +
+                             "kouchat_stage_seconds{stage=\"parse\",quantile=\"0.9\"} 0.001000\n" +
+                             "kouchat_stage_seconds{stage=\"parse\",quantile=\"0.99\"} 0.001000\n" +
+                             "kouchat_stage_seconds_sum{stage=\"parse\"} 0.001000\n" +
+                             "kouchat_stage_seconds_count{stage=\"parse\"} 1\n",
+                     metrics.toPrometheusText());
+    }
+
+    private MetricGauge createGauge(final long value) {
+        return new MetricGauge() {
+            @Override
+            public long getValue() {
+                return value;
+            }
+        };
+    }
+}